@@ -0,0 +1,111 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * LocationSchedulePolicy that slows updates down to balanced power while the device is still,
+ * and speeds them up when it moves fast.
+ *
+ * <p>The device is considered still when every fix of the last minute is within the larger of
+ * {@link #STILL_RADIUS_METERS} and the fixes' accuracy of the oldest one. Speed is the reported
+ * speed when available, otherwise the displacement over the recent window.
+ */
+class AdaptiveSchedulePolicy implements LocationSchedulePolicy {
+
+    static final LocationSchedule STILL = new LocationSchedule(60000, 30000,
+            LocationSchedule.Accuracy.BALANCED_POWER);
+    static final LocationSchedule WALKING = new LocationSchedule(10000, 5000,
+            LocationSchedule.Accuracy.HIGH_ACCURACY);
+    static final LocationSchedule FAST = new LocationSchedule(5000, 2000,
+            LocationSchedule.Accuracy.HIGH_ACCURACY);
+
+    static final double STILL_RADIUS_METERS = 15;
+    static final long STILL_WINDOW_MILLIS = 60000;
+    static final double FAST_SPEED_METERS_PER_SECOND = 3;
+
+    private static final int WINDOW_SIZE = 16;
+
+    // Ring buffer of the most recent fixes
+    private final LocationFix[] mWindow = new LocationFix[WINDOW_SIZE];
+    private int mHead;
+    private int mCount;
+    private LocationSchedule mSchedule = WALKING;
+
+    @Override
+    public LocationSchedule getInitialSchedule() {
+        return WALKING;
+    }
+
+    @Override
+    public LocationSchedule onFix(LocationFix fix) {
+        mWindow[mHead] = fix;
+        mHead = (mHead + 1) % WINDOW_SIZE;
+        if (mCount < WINDOW_SIZE) {
+            mCount++;
+        }
+
+        if (isStill(fix)) {
+            mSchedule = STILL;
+        } else {
+            double speed = speed(fix);
+            if (speed >= FAST_SPEED_METERS_PER_SECOND) {
+                mSchedule = FAST;
+            } else if (mSchedule != FAST || speed < FAST_SPEED_METERS_PER_SECOND / 2) {
+                // Leave the fast schedule only once the device clearly slowed down
+                mSchedule = WALKING;
+            }
+        }
+        return mSchedule;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            mWindow[i] = null;
+        }
+        mHead = 0;
+        mCount = 0;
+        mSchedule = WALKING;
+    }
+
+    private boolean isStill(LocationFix latest) {
+        if (latest.hasSpeed() && latest.speedMetersPerSecond > 1) {
+            return false;
+        }
+        boolean coversWindow = false;
+        for (int i = 1; i < mCount; i++) {
+            LocationFix older = fixAt(i);
+            if (latest.distanceTo(older) > tolerance(latest, older)) {
+                return false;
+            }
+            if (latest.timeMillis - older.timeMillis >= STILL_WINDOW_MILLIS) {
+                coversWindow = true;
+                break;
+            }
+        }
+        return coversWindow;
+    }
+
+    private double speed(LocationFix latest) {
+        if (latest.hasSpeed()) {
+            return latest.speedMetersPerSecond;
+        }
+        LocationFix oldest = fixAt(mCount - 1);
+        long elapsed = latest.timeMillis - oldest.timeMillis;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return latest.distanceTo(oldest) * 1000.0 / elapsed;
+    }
+
+    /**
+     * @param age 0 for the newest fix, 1 for the one before it and so on.
+     */
+    private LocationFix fixAt(int age) {
+        return mWindow[(mHead - 1 - age + 2 * WINDOW_SIZE) % WINDOW_SIZE];
+    }
+
+    private static double tolerance(LocationFix a, LocationFix b) {
+        double accuracy = Math.max(a.hasAccuracy() ? a.accuracyMeters : 0,
+                b.hasAccuracy() ? b.accuracyMeters : 0);
+        return Math.max(STILL_RADIUS_METERS, accuracy);
+    }
+}
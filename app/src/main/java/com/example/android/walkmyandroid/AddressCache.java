@@ -0,0 +1,159 @@
+package com.example.android.walkmyandroid;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In memory reverse geocode cache keyed by grid cell. Entries expire after a fixed time to live,
+ * and the least recently used entry is evicted once the cache is full. Entries stored ahead of
+ * time by the prefetcher are counted separately, so the share of them that was used can be
+ * reported.
+ */
+class AddressCache {
+
+    private final double mCellSizeMeters;
+    private final long mTtlMillis;
+    private final int mMaxEntries;
+    private final Clock mClock;
+    private final LinkedHashMap<Long, CachedAddress> mEntries;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mPrefetchedCount;
+    private long mPrefetchHitCount;
+
+    /**
+     * @param cellSizeMeters The edge length of a cell; locations in the same cell share an address.
+     * @param ttlMillis      How long an address stays valid after it was stored.
+     * @param maxEntries     The maximum number of cells kept in memory.
+     * @param clock          The clock used to expire entries.
+     */
+    AddressCache(double cellSizeMeters, long ttlMillis, final int maxEntries, Clock clock) {
+        if (cellSizeMeters <= 0 || ttlMillis <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Cell size, TTL and capacity must be positive");
+        }
+        mCellSizeMeters = cellSizeMeters;
+        mTtlMillis = ttlMillis;
+        mMaxEntries = maxEntries;
+        mClock = clock;
+        mEntries = new LinkedHashMap<Long, CachedAddress>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedAddress> eldest) {
+                if (size() > mMaxEntries) {
+                    mEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the cached address of the cell containing the coordinates.
+     *
+     * @return The address, or null if there is no fresh entry for the cell.
+     */
+    synchronized GeoAddress get(double latitude, double longitude) {
+        long key = cellKey(latitude, longitude);
+        CachedAddress entry = mEntries.get(key);
+        if (entry != null && mClock.currentTimeMillis() - entry.storedAt >= mTtlMillis) {
+            mEntries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        if (entry.prefetched) {
+            // Only the first hit shows that the prefetch paid off
+            entry.prefetched = false;
+            mPrefetchHitCount++;
+        }
+        return entry.address;
+    }
+
+    synchronized void put(double latitude, double longitude, GeoAddress address) {
+        mEntries.put(cellKey(latitude, longitude),
+                new CachedAddress(address, mClock.currentTimeMillis(), false));
+    }
+
+    /**
+     * Store an address looked up ahead of time.
+     */
+    synchronized void putPrefetched(double latitude, double longitude, GeoAddress address) {
+        mEntries.put(cellKey(latitude, longitude),
+                new CachedAddress(address, mClock.currentTimeMillis(), true));
+        mPrefetchedCount++;
+    }
+
+    /**
+     * Check for a fresh entry without counting a hit or a miss.
+     */
+    synchronized boolean contains(double latitude, double longitude) {
+        CachedAddress entry = mEntries.get(cellKey(latitude, longitude));
+        return entry != null && mClock.currentTimeMillis() - entry.storedAt < mTtlMillis;
+    }
+
+    /**
+     * Get a fresh entry without counting a hit or a miss.
+     *
+     * @return The address, or null if there is no fresh entry for the cell.
+     */
+    synchronized GeoAddress peek(double latitude, double longitude) {
+        CachedAddress entry = mEntries.get(cellKey(latitude, longitude));
+        if (entry == null || mClock.currentTimeMillis() - entry.storedAt >= mTtlMillis) {
+            return null;
+        }
+        return entry.address;
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    long cellKey(double latitude, double longitude) {
+        return GridCells.cellKey(latitude, longitude, mCellSizeMeters);
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    synchronized long getPrefetchedCount() {
+        return mPrefetchedCount;
+    }
+
+    /**
+     * @return The number of prefetched entries that were later read.
+     */
+    synchronized long getPrefetchHitCount() {
+        return mPrefetchHitCount;
+    }
+
+    private static final class CachedAddress {
+        final GeoAddress address;
+        final long storedAt;
+        // Set until the first hit on an entry stored by the prefetcher
+        boolean prefetched;
+
+        CachedAddress(GeoAddress address, long storedAt, boolean prefetched) {
+            this.address = address;
+            this.storedAt = storedAt;
+            this.prefetched = prefetched;
+        }
+    }
+}
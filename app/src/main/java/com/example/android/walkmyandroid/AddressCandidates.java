@@ -0,0 +1,111 @@
+package com.example.android.walkmyandroid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The addresses a geocoder found around a point, nearest first. Candidates whose position the
+ * geocoder did not report come after the others, in the order the geocoder returned them.
+ */
+final class AddressCandidates {
+
+    private final GeoAddress[] mAddresses;
+    // The distance of each candidate from the looked up point, or NaN if unknown
+    private final double[] mDistances;
+
+    private AddressCandidates(GeoAddress[] addresses, double[] distances) {
+        mAddresses = addresses;
+        mDistances = distances;
+    }
+
+    int size() {
+        return mAddresses.length;
+    }
+
+    boolean isEmpty() {
+        return mAddresses.length == 0;
+    }
+
+    GeoAddress get(int index) {
+        return mAddresses[index];
+    }
+
+    /**
+     * @return The distance in meters from the looked up point, or NaN if the geocoder did not
+     * report the position of this candidate.
+     */
+    double getDistanceMeters(int index) {
+        return mDistances[index];
+    }
+
+    /**
+     * @return The nearest candidate, or null if there is none.
+     */
+    GeoAddress getBest() {
+        return mAddresses.length == 0 ? null : mAddresses[0];
+    }
+
+    /**
+     * Collects the candidates of a lookup and ranks them by distance.
+     */
+    static final class Builder {
+        private final double mLatitude;
+        private final double mLongitude;
+        private final List<Candidate> mCandidates = new ArrayList<>(4);
+
+        private static final class Candidate {
+            final GeoAddress address;
+            final double distance;
+
+            Candidate(GeoAddress address, double distance) {
+                this.address = address;
+                this.distance = distance;
+            }
+        }
+
+        /**
+         * @param latitude  The latitude that was looked up.
+         * @param longitude The longitude that was looked up.
+         */
+        Builder(double latitude, double longitude) {
+            mLatitude = latitude;
+            mLongitude = longitude;
+        }
+
+        Builder add(GeoAddress address, double latitude, double longitude) {
+            mCandidates.add(new Candidate(address,
+                    GeoMath.distanceMeters(mLatitude, mLongitude, latitude, longitude)));
+            return this;
+        }
+
+        Builder addWithoutPosition(GeoAddress address) {
+            mCandidates.add(new Candidate(address, Double.NaN));
+            return this;
+        }
+
+        AddressCandidates build() {
+            // A stable sort, so candidates at the same or an unknown distance keep their order
+            Collections.sort(mCandidates, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate a, Candidate b) {
+                    boolean aKnown = !Double.isNaN(a.distance);
+                    boolean bKnown = !Double.isNaN(b.distance);
+                    if (aKnown != bKnown) {
+                        return aKnown ? -1 : 1;
+                    }
+                    return aKnown ? Double.compare(a.distance, b.distance) : 0;
+                }
+            });
+            int size = mCandidates.size();
+            GeoAddress[] addresses = new GeoAddress[size];
+            double[] distances = new double[size];
+            for (int i = 0; i < size; i++) {
+                addresses[i] = mCandidates.get(i).address;
+                distances[i] = mCandidates.get(i).distance;
+            }
+            return new AddressCandidates(addresses, distances);
+        }
+    }
+}
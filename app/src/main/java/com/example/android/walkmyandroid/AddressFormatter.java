@@ -0,0 +1,55 @@
+package com.example.android.walkmyandroid;
+
+import java.util.List;
+
+/**
+ * Formats address lines for display.
+ */
+final class AddressFormatter {
+
+    static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private AddressFormatter() {
+    }
+
+    /**
+     * Join address lines with the line separator.
+     *
+     * @param lines The address lines.
+     * @return The joined lines.
+     */
+    static String join(List<String> lines) {
+        int size = lines.size();
+        if (size == 1) {
+            return String.valueOf(lines.get(0));
+        }
+        StringBuilder builder = new StringBuilder(64);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(LINE_SEPARATOR);
+            }
+            builder.append(lines.get(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Join address lines with the line separator.
+     *
+     * @param lines The address lines.
+     * @return The joined lines.
+     */
+    static String join(String[] lines) {
+        if (lines.length == 1) {
+            return lines[0];
+        }
+        StringBuilder builder = new StringBuilder(64);
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                builder.append(LINE_SEPARATOR);
+            }
+            builder.append(lines[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warms the address cache along the path the user is expected to take, so that walking into a
+ * new cell finds its address already cached.
+ *
+ * <p>The heading and speed are estimated from the last few fixes. While the user is moving, the
+ * points one step, two steps and so on ahead are looked up on a low priority thread, but only
+ * while the geocode engine has nothing else to do, and only up to a number of backend calls per
+ * minute. A new prediction is only made once the previous one was worked through.
+ */
+class AddressPrefetcher {
+
+    /**
+     * Tells which caching geocoder to warm, e.g. the one of the current locale.
+     */
+    interface Target {
+        CachingReverseGeocoder current();
+    }
+
+    private static final int HISTORY_SIZE = 5;
+    private static final double MIN_SPEED_METERS_PER_SECOND = 0.5;
+    // Below this, the heading is mostly GPS jitter
+    private static final double MIN_TRAVEL_METERS = 10;
+    private static final long BUDGET_WINDOW_MILLIS = 60 * 1000;
+
+    private final Target mTarget;
+    private final GeocodeEngine mEngine;
+    private final double mStepMeters;
+    private final int mLookahead;
+    private final int mMaxCallsPerMinute;
+    private final Clock mClock;
+    private final Executor mExecutor;
+    private final AtomicBoolean mBusy = new AtomicBoolean();
+
+    // Only touched by the thread delivering the fixes
+    private final LocationFix[] mHistory = new LocationFix[HISTORY_SIZE];
+    private int mHistoryCount;
+
+    // Only touched by the prefetch thread
+    private long mWindowStart;
+    private int mWindowCalls;
+
+    private volatile long mCallCount;
+    private volatile long mOverBudgetCount;
+
+    /**
+     * @param target            Resolves the caching geocoder whose memory cache is warmed, each
+     *                          time a prediction is worked through.
+     * @param engine            The engine whose lookups take precedence.
+     * @param stepMeters        The spacing of the predicted points; usually the cache cell size.
+     * @param lookahead         The number of points predicted ahead.
+     * @param maxCallsPerMinute The most backend calls made for prefetching in a minute.
+     * @param clock             The clock used for the budget.
+     */
+    AddressPrefetcher(Target target, GeocodeEngine engine, double stepMeters, int lookahead,
+            int maxCallsPerMinute, Clock clock) {
+        this(target, engine, stepMeters, lookahead, maxCallsPerMinute, clock,
+                newPrefetchThread());
+    }
+
+    AddressPrefetcher(Target target, GeocodeEngine engine, double stepMeters, int lookahead,
+            int maxCallsPerMinute, Clock clock, Executor executor) {
+        mTarget = target;
+        mEngine = engine;
+        mStepMeters = stepMeters;
+        mLookahead = lookahead;
+        mMaxCallsPerMinute = maxCallsPerMinute;
+        mClock = clock;
+        mExecutor = executor;
+    }
+
+    /**
+     * Feed the next fix, and start prefetching ahead of it if the user is moving.
+     */
+    void onFix(LocationFix fix) {
+        System.arraycopy(mHistory, 0, mHistory, 1, HISTORY_SIZE - 1);
+        mHistory[0] = fix;
+        mHistoryCount = Math.min(mHistoryCount + 1, HISTORY_SIZE);
+        if (mHistoryCount < 2) {
+            return;
+        }
+
+        LocationFix oldest = mHistory[mHistoryCount - 1];
+        double travelled = oldest.distanceTo(fix);
+        long elapsedMillis = fix.timeMillis - oldest.timeMillis;
+        if (elapsedMillis <= 0 || travelled < MIN_TRAVEL_METERS
+                || travelled * 1000 / elapsedMillis < MIN_SPEED_METERS_PER_SECOND) {
+            return;
+        }
+        if (!mBusy.compareAndSet(false, true)) {
+            return;
+        }
+
+        double bearing = GeoMath.bearingDegrees(oldest.latitude, oldest.longitude,
+                fix.latitude, fix.longitude);
+        final double[][] points = new double[mLookahead][];
+        for (int i = 0; i < mLookahead; i++) {
+            points[i] = GeoMath.destination(fix.latitude, fix.longitude, bearing,
+                    (i + 1) * mStepMeters);
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prefetch(points);
+                } finally {
+                    mBusy.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget the recent fixes, e.g. when tracking stops.
+     */
+    void reset() {
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            mHistory[i] = null;
+        }
+        mHistoryCount = 0;
+    }
+
+    /**
+     * @return The number of backend calls made for prefetching.
+     */
+    long getCallCount() {
+        return mCallCount;
+    }
+
+    /**
+     * @return The number of predictions cut short by the budget.
+     */
+    long getOverBudgetCount() {
+        return mOverBudgetCount;
+    }
+
+    private void prefetch(double[][] points) {
+        CachingReverseGeocoder geocoder = mTarget.current();
+        for (double[] point : points) {
+            // Lookups the user is waiting for come first
+            if (!mEngine.isIdle()) {
+                return;
+            }
+            long now = mClock.currentTimeMillis();
+            if (now - mWindowStart >= BUDGET_WINDOW_MILLIS) {
+                mWindowStart = now;
+                mWindowCalls = 0;
+            }
+            if (mWindowCalls >= mMaxCallsPerMinute) {
+                mOverBudgetCount++;
+                return;
+            }
+            try {
+                if (geocoder.prefetch(point[0], point[1])) {
+                    mWindowCalls++;
+                    mCallCount++;
+                }
+            } catch (IOException e) {
+                // The backend is unreachable; the next prediction will try again
+                return;
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+        }
+    }
+
+    private static ExecutorService newPrefetchThread() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "address-prefetch");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
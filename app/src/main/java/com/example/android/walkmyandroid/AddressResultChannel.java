@@ -0,0 +1,81 @@
+package com.example.android.walkmyandroid;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Message;
+import android.os.ResultReceiver;
+
+import java.util.regex.Pattern;
+
+/**
+ * ResultReceiver for address lookups that takes a shortcut when the lookup runs in the same
+ * process: the address object is handed to the receiving thread in a pooled Message, with no
+ * Bundle and no parceling. Once the receiver has been parceled, for example into the Intent of
+ * the service, the copy on the other side is a plain ResultReceiver, and results come back
+ * through the Bundle in {@link #onReceiveResult} instead.
+ */
+abstract class AddressResultChannel extends ResultReceiver implements Handler.Callback {
+
+    private static final int MSG_ADDRESS = 1;
+    private static final int MSG_ERROR = 2;
+
+    private final Handler mDispatcher;
+
+    /**
+     * @param handler The handler whose thread receives the results.
+     */
+    AddressResultChannel(Handler handler) {
+        super(handler);
+        mDispatcher = new Handler(handler.getLooper(), this);
+    }
+
+    /**
+     * Called on the handler's thread with the address found.
+     */
+    abstract void onAddress(GeoAddress address);
+
+    /**
+     * Called on the handler's thread with the message explaining why no address was found.
+     */
+    abstract void onAddressError(String errorMessage);
+
+    /**
+     * Deliver a result from any thread of this process.
+     */
+    final void deliverAddress(GeoAddress address) {
+        mDispatcher.obtainMessage(MSG_ADDRESS, address).sendToTarget();
+    }
+
+    final void deliverError(String errorMessage) {
+        mDispatcher.obtainMessage(MSG_ERROR, errorMessage).sendToTarget();
+    }
+
+    @Override
+    public final boolean handleMessage(Message message) {
+        switch (message.what) {
+            case MSG_ADDRESS:
+                onAddress((GeoAddress) message.obj);
+                return true;
+            case MSG_ERROR:
+                onAddressError((String) message.obj);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected final void onReceiveResult(int resultCode, Bundle resultData) {
+        String message = resultData.getString(Constants.RESULT_DATA_KEY);
+        if (resultCode == Constants.SUCCESS_RESULT) {
+            // The lines travel on their own, so they need not be split out of the message
+            String[] lines = resultData.getStringArray(Constants.RESULT_LINES_KEY);
+            if (lines == null) {
+                lines = message.split(Pattern.quote(AddressFormatter.LINE_SEPARATOR));
+            }
+            onAddress(GeoAddress.ofLines(lines));
+        } else {
+            onAddressError(message);
+        }
+    }
+}
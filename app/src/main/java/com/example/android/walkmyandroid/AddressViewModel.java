@@ -0,0 +1,30 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Everything the activity shows for one address lookup, worked out off the main thread, so
+ * that showing it only takes setting a few views.
+ */
+final class AddressViewModel {
+
+    /** The full text of the location text view. */
+    final String text;
+    /** The address, or the message explaining why there is none. */
+    final String address;
+    final boolean addressKnown;
+    /** The name of the place, or null to keep the place shown now. */
+    final String placeName;
+    /** The Android image of the place; only used with a place name. */
+    final int drawableID;
+    /** A fence around the place to add, or null. */
+    final Geofence fence;
+
+    AddressViewModel(String text, String address, boolean addressKnown, String placeName,
+            int drawableID, Geofence fence) {
+        this.text = text;
+        this.address = address;
+        this.addressKnown = addressKnown;
+        this.placeName = placeName;
+        this.drawableID = drawableID;
+        this.fence = fence;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.android.walkmyandroid;
+
+import android.location.Address;
+import android.location.Geocoder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * ReverseGeocoder backed by the platform Geocoder. A single lookup asks for a few candidates,
+ * and the nearest one is used as the address.
+ */
+class AndroidReverseGeocoder implements ReverseGeocoder, CandidateReverseGeocoder {
+
+    private final Geocoder mGeocoder;
+    private final int mMaxResults;
+
+    /**
+     * @param geocoder   The platform geocoder.
+     * @param maxResults The number of candidates {@link #getAddress} chooses from.
+     */
+    AndroidReverseGeocoder(Geocoder geocoder, int maxResults) {
+        mGeocoder = geocoder;
+        mMaxResults = maxResults;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+        return getCandidates(latitude, longitude, mMaxResults).getBest();
+    }
+
+    @Override
+    public AddressCandidates getCandidates(double latitude, double longitude, int maxResults)
+            throws IOException {
+        List<Address> addresses;
+        long start = System.nanoTime();
+        try {
+            addresses = mGeocoder.getFromLocation(latitude, longitude, maxResults);
+        } finally {
+            LatencyMetrics.recordSince(LatencyMetrics.Stage.GEOCODE, start);
+        }
+
+        AddressCandidates.Builder builder = new AddressCandidates.Builder(latitude, longitude);
+        if (addresses != null) {
+            for (Address address : addresses) {
+                if (address.hasLatitude() && address.hasLongitude()) {
+                    builder.add(toGeoAddress(address), address.getLatitude(),
+                            address.getLongitude());
+                } else {
+                    builder.addWithoutPosition(toGeoAddress(address));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Copy the address lines and the structured fields of a platform address.
+     */
+    static GeoAddress toGeoAddress(Address address) {
+        GeoAddress.Builder builder = new GeoAddress.Builder();
+        for (int i = 0; i <= address.getMaxAddressLineIndex(); i++) {
+            builder.addLine(address.getAddressLine(i));
+        }
+        return builder.setFeatureName(address.getFeatureName())
+                .setThoroughfare(address.getThoroughfare())
+                .setLocality(address.getLocality())
+                .setPostalCode(address.getPostalCode())
+                .setCountryCode(address.getCountryCode())
+                .build();
+    }
+}
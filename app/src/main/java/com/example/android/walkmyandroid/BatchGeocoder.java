@@ -0,0 +1,164 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geocodes a batch of fixes with as few lookups as possible. Fixes that are closer than the
+ * dedupe distance to the previous one are dropped, then only the representative points of the
+ * trajectory are looked up: its endpoints, the points where it turns, and enough points in
+ * between that no representative is further than the spacing from the previous one. Every other
+ * fix gets the address of the nearest representative.
+ *
+ * <p>Only the latest fix is on screen, so it is the only lookup the batch depends on. The older
+ * representatives are looked up best effort, and only if a geocoder is given for them.
+ */
+class BatchGeocoder {
+
+    private final ReverseGeocoder mGeocoder;
+    private final ReverseGeocoder mHistoryGeocoder;
+    private final double mDedupeMeters;
+    private final double mTurnDegrees;
+    private final double mMaxSpacingMeters;
+
+    /**
+     * @param geocoder         The geocoder used for the latest fix.
+     * @param historyGeocoder  The geocoder used for the older representative points, or null
+     *                         to leave them without an address.
+     * @param dedupeMeters     Fixes closer than this to the previous fix are dropped.
+     * @param turnDegrees      A change of heading larger than this marks a turning point.
+     * @param maxSpacingMeters The largest distance between two representative points.
+     */
+    BatchGeocoder(ReverseGeocoder geocoder, ReverseGeocoder historyGeocoder,
+            double dedupeMeters, double turnDegrees, double maxSpacingMeters) {
+        mGeocoder = geocoder;
+        mHistoryGeocoder = historyGeocoder;
+        mDedupeMeters = dedupeMeters;
+        mTurnDegrees = turnDegrees;
+        mMaxSpacingMeters = maxSpacingMeters;
+    }
+
+    /**
+     * @param fixes The fixes of the batch, oldest first. Must not be empty.
+     * @return The deduplicated fixes and their addresses.
+     * @throws IOException If the lookup of the latest fix failed.
+     */
+    Result geocode(List<LocationFix> fixes) throws IOException {
+        List<LocationFix> kept = dedupe(fixes);
+        int[] representatives = selectRepresentatives(kept);
+
+        GeoAddress[] representativeAddresses = new GeoAddress[representatives.length];
+        // Look the latest point up first, it is the one on screen
+        int latest = representatives.length - 1;
+        LocationFix latestFix = kept.get(representatives[latest]);
+        representativeAddresses[latest] =
+                mGeocoder.getAddress(latestFix.latitude, latestFix.longitude);
+        int lookupCount = 1;
+        int failedCount = 0;
+        if (mHistoryGeocoder != null) {
+            for (int i = latest - 1; i >= 0; i--) {
+                LocationFix fix = kept.get(representatives[i]);
+                lookupCount++;
+                try {
+                    representativeAddresses[i] =
+                            mHistoryGeocoder.getAddress(fix.latitude, fix.longitude);
+                } catch (IOException ioException) {
+                    // The latest address is already known; these fixes just go without one
+                    failedCount++;
+                } catch (IllegalArgumentException illegalArgumentException) {
+                    failedCount++;
+                }
+            }
+        }
+
+        GeoAddress[] addresses = new GeoAddress[kept.size()];
+        for (int i = 0; i < kept.size(); i++) {
+            LocationFix fix = kept.get(i);
+            double bestDistance = Double.MAX_VALUE;
+            for (int r = 0; r < representatives.length; r++) {
+                double distance = fix.distanceTo(kept.get(representatives[r]));
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    addresses[i] = representativeAddresses[r];
+                }
+            }
+        }
+        return new Result(kept, addresses, lookupCount, failedCount);
+    }
+
+    private List<LocationFix> dedupe(List<LocationFix> fixes) {
+        List<LocationFix> kept = new ArrayList<>(fixes.size());
+        for (int i = 0; i < fixes.size(); i++) {
+            LocationFix fix = fixes.get(i);
+            boolean isLast = i == fixes.size() - 1;
+            if (kept.isEmpty()) {
+                kept.add(fix);
+            } else if (fix.distanceTo(kept.get(kept.size() - 1)) >= mDedupeMeters) {
+                kept.add(fix);
+            } else if (isLast) {
+                // Always keep the latest fix, in place of the one it duplicates
+                kept.set(kept.size() - 1, fix);
+            }
+        }
+        return kept;
+    }
+
+    private int[] selectRepresentatives(List<LocationFix> kept) {
+        int last = kept.size() - 1;
+        int[] selected = new int[kept.size()];
+        int count = 0;
+        selected[count++] = 0;
+        for (int i = 1; i < last; i++) {
+            LocationFix previous = kept.get(i - 1);
+            LocationFix current = kept.get(i);
+            LocationFix next = kept.get(i + 1);
+            double headingIn = GeoMath.bearingDegrees(previous.latitude, previous.longitude,
+                    current.latitude, current.longitude);
+            double headingOut = GeoMath.bearingDegrees(current.latitude, current.longitude,
+                    next.latitude, next.longitude);
+            boolean turns = GeoMath.bearingDifference(headingIn, headingOut) > mTurnDegrees;
+            boolean farFromPrevious =
+                    current.distanceTo(kept.get(selected[count - 1])) > mMaxSpacingMeters;
+            if (turns || farFromPrevious) {
+                selected[count++] = i;
+            }
+        }
+        if (last > 0) {
+            selected[count++] = last;
+        }
+
+        int[] representatives = new int[count];
+        System.arraycopy(selected, 0, representatives, 0, count);
+        return representatives;
+    }
+
+    /**
+     * The outcome of a batch lookup.
+     */
+    static final class Result {
+        /** The deduplicated fixes, oldest first. */
+        final List<LocationFix> fixes;
+        /** The address of each fix, or null where its nearest representative has none. */
+        final GeoAddress[] addresses;
+        /** The number of lookups the batch needed. */
+        final int lookupCount;
+        /** The number of lookups of older representatives that failed. */
+        final int failedCount;
+
+        Result(List<LocationFix> fixes, GeoAddress[] addresses, int lookupCount,
+                int failedCount) {
+            this.fixes = fixes;
+            this.addresses = addresses;
+            this.lookupCount = lookupCount;
+            this.failedCount = failedCount;
+        }
+
+        /**
+         * @return The address of the most recent fix, or null if it has none.
+         */
+        GeoAddress getLatestAddress() {
+            return addresses[addresses.length - 1];
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+
+/**
+ * ReverseGeocoder that answers repeat lookups for the same grid cell from an AddressCache, then
+ * from an optional DiskAddressStore, and only goes to the wrapped geocoder on a miss. Prefetches
+ * may go to a geocoder of their own, e.g. one with a lower priority on the backend's budget.
+ */
+class CachingReverseGeocoder implements ReverseGeocoder {
+
+    private final ReverseGeocoder mDelegate;
+    private final ReverseGeocoder mPrefetchDelegate;
+    private final AddressCache mCache;
+    private final DiskAddressStore mDiskStore;
+
+    CachingReverseGeocoder(ReverseGeocoder delegate, AddressCache cache) {
+        this(delegate, cache, null);
+    }
+
+    /**
+     * @param delegate  The geocoder used on a miss.
+     * @param cache     The in memory cache.
+     * @param diskStore The persistent store consulted on a memory miss, or null.
+     */
+    CachingReverseGeocoder(ReverseGeocoder delegate, AddressCache cache,
+            DiskAddressStore diskStore) {
+        this(delegate, delegate, cache, diskStore);
+    }
+
+    /**
+     * @param delegate         The geocoder used on a miss.
+     * @param prefetchDelegate The geocoder used on a miss of a prefetch.
+     * @param cache            The in memory cache.
+     * @param diskStore        The persistent store consulted on a memory miss, or null.
+     */
+    CachingReverseGeocoder(ReverseGeocoder delegate, ReverseGeocoder prefetchDelegate,
+            AddressCache cache, DiskAddressStore diskStore) {
+        mDelegate = delegate;
+        mPrefetchDelegate = prefetchDelegate;
+        mCache = cache;
+        mDiskStore = diskStore;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+        GeoAddress address = mCache.get(latitude, longitude);
+        if (address != null) {
+            return address;
+        }
+        long cellKey = mCache.cellKey(latitude, longitude);
+        if (mDiskStore != null) {
+            address = mDiskStore.get(cellKey);
+            if (address != null) {
+                mCache.put(latitude, longitude, address);
+                return address;
+            }
+        }
+        address = mDelegate.getAddress(latitude, longitude);
+        // Only cache successful lookups, so a missing address is retried on the next fix
+        if (address != null) {
+            mCache.put(latitude, longitude, address);
+            if (mDiskStore != null) {
+                mDiskStore.put(cellKey, address);
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Warm the memory cache for a point the user is expected to reach. The lookup does not
+     * count as a cache hit or miss, and the entry is counted as prefetched.
+     *
+     * @return True if the wrapped geocoder had to be asked.
+     */
+    boolean prefetch(double latitude, double longitude) throws IOException {
+        return lookUpAhead(latitude, longitude, true);
+    }
+
+    /**
+     * Store the address of a point on the prefetch path, e.g. one resolved in another locale.
+     * Unlike {@link #prefetch}, the entry is not counted as prefetched.
+     *
+     * @return True if the wrapped geocoder had to be asked.
+     */
+    boolean fill(double latitude, double longitude) throws IOException {
+        return lookUpAhead(latitude, longitude, false);
+    }
+
+    private boolean lookUpAhead(double latitude, double longitude, boolean prefetched)
+            throws IOException {
+        if (mCache.contains(latitude, longitude)) {
+            return false;
+        }
+        long cellKey = mCache.cellKey(latitude, longitude);
+        GeoAddress address = mDiskStore != null ? mDiskStore.get(cellKey) : null;
+        boolean fetched = false;
+        if (address == null) {
+            address = mPrefetchDelegate.getAddress(latitude, longitude);
+            fetched = true;
+            if (address != null && mDiskStore != null) {
+                mDiskStore.put(cellKey, address);
+            }
+        }
+        if (address == null) {
+            return fetched;
+        }
+        if (prefetched) {
+            mCache.putPrefetched(latitude, longitude, address);
+        } else {
+            mCache.put(latitude, longitude, address);
+        }
+        return fetched;
+    }
+
+    AddressCache getCache() {
+        return mCache;
+    }
+}
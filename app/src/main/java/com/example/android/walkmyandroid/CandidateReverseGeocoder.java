@@ -0,0 +1,22 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+
+/**
+ * A geocoder that can return several addresses for a point in a single lookup.
+ */
+interface CandidateReverseGeocoder {
+
+    /**
+     * Look up the addresses around the given coordinates.
+     *
+     * @param latitude   The latitude, in degrees.
+     * @param longitude  The longitude, in degrees.
+     * @param maxResults The most candidates to return.
+     * @return The candidates, nearest first; empty if no address was found.
+     * @throws IOException              If the backend could not be reached.
+     * @throws IllegalArgumentException If the coordinates are out of range.
+     */
+    AddressCandidates getCandidates(double latitude, double longitude, int maxResults)
+            throws IOException;
+}
@@ -0,0 +1,98 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Stops calls to a failing backend for a while, so that it is not hammered while it is down.
+ *
+ * <p>The breaker is closed while calls succeed. After a number of failures in a row it opens,
+ * and refuses every call for the open time. Then it lets a single trial call through: if it
+ * succeeds the breaker closes, otherwise it opens again.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+    private final Clock mClock;
+
+    private State mState = State.CLOSED;
+    private int mConsecutiveFailures;
+    private long mOpenedAt;
+    private boolean mTrialInFlight;
+    private long mOpenCount;
+
+    /**
+     * @param failureThreshold The failures in a row that open the breaker.
+     * @param openMillis       How long the breaker stays open before a trial call.
+     * @param clock            The clock used to time the open state.
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, Clock clock) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+        mClock = clock;
+    }
+
+    /**
+     * Ask whether a call may be made. A call that is allowed must be followed by
+     * {@link #onSuccess} or {@link #onFailure}.
+     */
+    synchronized boolean allowRequest() {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (mClock.currentTimeMillis() - mOpenedAt < mOpenMillis) {
+                    return false;
+                }
+                mState = State.HALF_OPEN;
+                mTrialInFlight = true;
+                return true;
+            default:
+                // Only one trial call at a time
+                if (mTrialInFlight) {
+                    return false;
+                }
+                mTrialInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        mConsecutiveFailures = 0;
+        mTrialInFlight = false;
+        mState = State.CLOSED;
+    }
+
+    synchronized void onFailure() {
+        mTrialInFlight = false;
+        mConsecutiveFailures++;
+        if (mState == State.HALF_OPEN || mConsecutiveFailures >= mFailureThreshold) {
+            if (mState != State.OPEN) {
+                mOpenCount++;
+            }
+            mState = State.OPEN;
+            mOpenedAt = mClock.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Report that an allowed call was not made, or that its outcome says nothing about the
+     * backend.
+     */
+    synchronized void onCancelled() {
+        mTrialInFlight = false;
+    }
+
+    synchronized State getState() {
+        return mState;
+    }
+
+    /**
+     * @return The number of times the breaker opened.
+     */
+    synchronized long getOpenCount() {
+        return mOpenCount;
+    }
+}
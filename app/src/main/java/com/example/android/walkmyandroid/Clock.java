@@ -0,0 +1,16 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Source of wall clock time, so that time based policies can be driven by a fake clock in tests.
+ */
+interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
+}
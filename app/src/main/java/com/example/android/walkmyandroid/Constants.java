@@ -8,6 +8,8 @@ final class Constants {
     static final String RECEIVER = PACKAGE_NAME + ".RECEIVER";
     static final String RESULT_DATA_KEY = PACKAGE_NAME +
             ".RESULT_DATA_KEY";
+    static final String RESULT_LINES_KEY = PACKAGE_NAME +
+            ".RESULT_LINES_KEY";
     static final String LOCATION_DATA_EXTRA = PACKAGE_NAME +
             ".LOCATION_DATA_EXTRA";
 }
\ No newline at end of file
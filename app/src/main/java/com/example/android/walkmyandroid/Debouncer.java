@@ -0,0 +1,80 @@
+package com.example.android.walkmyandroid;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds back a stream of values, e.g. the text of a search bar as the user types, and only
+ * passes on a value once no newer one arrived for a quiet period. Values that are replaced
+ * within the period are dropped.
+ *
+ * @param <T> The type of the values.
+ */
+final class Debouncer<T> {
+
+    /**
+     * Receives the values that settled, on the thread of the executor.
+     */
+    interface Listener<T> {
+        void onSettled(T value);
+    }
+
+    private final long mDelayMillis;
+    private final ScheduledExecutorService mExecutor;
+    private final Listener<T> mListener;
+    private ScheduledFuture<?> mPending;
+    private long mSubmittedCount;
+    private long mSettledCount;
+
+    /**
+     * @param delayMillis How long a value must stay the latest to be passed on.
+     * @param executor    Runs the listener.
+     * @param listener    Receives the values that settled.
+     */
+    Debouncer(long delayMillis, ScheduledExecutorService executor, Listener<T> listener) {
+        mDelayMillis = delayMillis;
+        mExecutor = executor;
+        mListener = listener;
+    }
+
+    /**
+     * Replace the pending value, and restart the quiet period.
+     */
+    synchronized void submit(final T value) {
+        mSubmittedCount++;
+        if (mPending != null) {
+            mPending.cancel(false);
+        }
+        mPending = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Debouncer.this) {
+                    mSettledCount++;
+                }
+                mListener.onSettled(value);
+            }
+        }, mDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drop the pending value, if any.
+     */
+    synchronized void cancel() {
+        if (mPending != null) {
+            mPending.cancel(false);
+            mPending = null;
+        }
+    }
+
+    synchronized long getSubmittedCount() {
+        return mSubmittedCount;
+    }
+
+    /**
+     * @return The number of values passed on to the listener.
+     */
+    synchronized long getSettledCount() {
+        return mSettledCount;
+    }
+}
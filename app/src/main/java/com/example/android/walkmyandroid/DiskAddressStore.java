@@ -0,0 +1,303 @@
+package com.example.android.walkmyandroid;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Append-only on-disk store of grid cell to address, so that warm areas can be answered from a
+ * local read after the process is restarted.
+ *
+ * <p>The file is a header followed by (cell key, store time, address) records, where the
+ * address is written by {@link GeoAddress#writeTo}. Newer records for
+ * a cell shadow older ones. The file is read lazily on first access, and rewritten with only the
+ * live records on a background thread once enough dead records pile up.
+ */
+class DiskAddressStore {
+
+    private static final String TAG = DiskAddressStore.class.getSimpleName();
+    private static final int MAGIC = 0x57414443; // "WADC"
+    private static final int VERSION = 2;
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 64;
+
+    private final File mFile;
+    private final long mMaxAgeMillis;
+    private final int mMaxEntries;
+    private final Clock mClock;
+    private final ExecutorService mCompactor;
+    private final HashMap<Long, Record> mRecords = new HashMap<>();
+
+    private boolean mLoaded;
+    private boolean mCompactionScheduled;
+    private int mRecordsOnDisk;
+    private DataOutputStream mOut;
+
+    /**
+     * @param file         The file backing the store; it is created if it does not exist.
+     * @param maxAgeMillis How long an address stays valid after it was stored.
+     * @param maxEntries   The maximum number of cells kept after a compaction.
+     * @param clock        The clock used to expire records.
+     */
+    DiskAddressStore(File file, long maxAgeMillis, int maxEntries, Clock clock) {
+        mFile = file;
+        mMaxAgeMillis = maxAgeMillis;
+        mMaxEntries = maxEntries;
+        mClock = clock;
+        mCompactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                // A compaction cut short leaves only the temporary file behind
+                Thread thread = new Thread(runnable, "address-store");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Get the stored address of a cell.
+     *
+     * @param cellKey The key of the grid cell.
+     * @return The address, or null if the cell is unknown or its record expired.
+     */
+    synchronized GeoAddress get(long cellKey) {
+        ensureLoaded();
+        Record record = mRecords.get(cellKey);
+        if (record == null || isExpired(record)) {
+            return null;
+        }
+        return record.address;
+    }
+
+    /**
+     * Store the address of a cell by appending a record to the file.
+     */
+    synchronized void put(long cellKey, GeoAddress address) {
+        ensureLoaded();
+        Record record = new Record(cellKey, mClock.currentTimeMillis(), address);
+        mRecords.put(cellKey, record);
+        try {
+            if (mOut == null) {
+                openForAppend();
+            }
+            writeRecord(mOut, record);
+            mOut.flush();
+            mRecordsOnDisk++;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to append to " + mFile, e);
+            closeQuietly();
+        }
+        maybeScheduleCompaction();
+    }
+
+    synchronized int size() {
+        ensureLoaded();
+        return mRecords.size();
+    }
+
+    /**
+     * Start loading the file on the background thread, so that the first lookup does not have to.
+     */
+    void preload() {
+        mCompactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DiskAddressStore.this) {
+                    ensureLoaded();
+                }
+            }
+        });
+    }
+
+    /**
+     * Rewrite the file with only the live records.
+     */
+    synchronized void compact() {
+        ensureLoaded();
+        mCompactionScheduled = false;
+        closeQuietly();
+
+        List<Record> live = new ArrayList<>(mRecords.size());
+        for (Iterator<Record> it = mRecords.values().iterator(); it.hasNext(); ) {
+            Record record = it.next();
+            if (isExpired(record)) {
+                it.remove();
+            } else {
+                live.add(record);
+            }
+        }
+        if (live.size() > mMaxEntries) {
+            // Keep the most recently stored cells
+            Collections.sort(live, new Comparator<Record>() {
+                @Override
+                public int compare(Record a, Record b) {
+                    return a.storedAt < b.storedAt ? 1 : (a.storedAt == b.storedAt ? 0 : -1);
+                }
+            });
+            for (Record dropped : live.subList(mMaxEntries, live.size())) {
+                mRecords.remove(dropped.cellKey);
+            }
+            live = new ArrayList<>(live.subList(0, mMaxEntries));
+        }
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Record record : live) {
+                writeRecord(out, record);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("Unable to rename " + temp + " to " + mFile);
+            }
+            mRecordsOnDisk = live.size();
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to compact " + mFile, e);
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+            temp.delete();
+        }
+    }
+
+    private void maybeScheduleCompaction() {
+        if (mCompactionScheduled || mRecordsOnDisk < MIN_RECORDS_BEFORE_COMPACTION
+                || (mRecordsOnDisk <= 2 * mRecords.size()
+                && mRecords.size() <= mMaxEntries)) {
+            return;
+        }
+        mCompactionScheduled = true;
+        mCompactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+            }
+        });
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+
+        boolean clean = false;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognized address store " + mFile);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                // Addresses are cheap to look up again, so older stores are just dropped
+                throw new IOException("Unsupported address store version " + version);
+            }
+            // The file may only end between records; an end of file partway through one
+            // is a torn write, and fails the read below
+            while (!atEndOfFile(in)) {
+                Record record = new Record(in.readLong(), in.readLong(),
+                        GeoAddress.readFrom(in));
+                mRecords.put(record.cellKey, record);
+                mRecordsOnDisk++;
+            }
+            clean = true;
+        } catch (IOException e) {
+            // A torn write at the end of the file, or a store this version cannot read; keep
+            // what was read and rewrite the file
+            Log.w(TAG, "Discarding the damaged tail of " + mFile, e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Nothing was written
+                }
+            }
+        }
+        if (!clean) {
+            compact();
+        }
+    }
+
+    /**
+     * @return True if the stream has no more bytes; otherwise nothing is consumed.
+     */
+    private static boolean atEndOfFile(DataInputStream in) throws IOException {
+        in.mark(1);
+        if (in.read() < 0) {
+            return true;
+        }
+        in.reset();
+        return false;
+    }
+
+    private void openForAppend() throws IOException {
+        boolean fresh = !mFile.exists() || mFile.length() == 0;
+        mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mFile, true)));
+        if (fresh) {
+            mOut.writeInt(MAGIC);
+            mOut.writeInt(VERSION);
+        }
+    }
+
+    private void closeQuietly() {
+        if (mOut != null) {
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to close " + mFile, e);
+            }
+            mOut = null;
+        }
+    }
+
+    private boolean isExpired(Record record) {
+        return mClock.currentTimeMillis() - record.storedAt >= mMaxAgeMillis;
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeLong(record.cellKey);
+        out.writeLong(record.storedAt);
+        record.address.writeTo(out);
+    }
+
+    private static final class Record {
+        final long cellKey;
+        final long storedAt;
+        final GeoAddress address;
+
+        Record(long cellKey, long storedAt, GeoAddress address) {
+            this.cellKey = cellKey;
+            this.storedAt = storedAt;
+            this.address = address;
+        }
+    }
+}
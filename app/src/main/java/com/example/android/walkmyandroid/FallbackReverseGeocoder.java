@@ -0,0 +1,54 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+
+/**
+ * ReverseGeocoder that combines a network geocoder with an offline one. By default the network
+ * geocoder is asked first, and the offline geocoder only answers when the network one cannot be
+ * reached. In offline first mode, the network geocoder is only asked when the offline one has no
+ * address nearby.
+ *
+ * <p>The offline geocoder can be set after construction, since its dataset is loaded in the
+ * background; until then, the network geocoder answers alone.
+ */
+class FallbackReverseGeocoder implements ReverseGeocoder {
+
+    private final ReverseGeocoder mNetwork;
+    private final boolean mOfflineFirst;
+    private volatile ReverseGeocoder mOffline;
+
+    /**
+     * @param network      The geocoder that needs connectivity.
+     * @param offlineFirst True to ask the offline geocoder first.
+     */
+    FallbackReverseGeocoder(ReverseGeocoder network, boolean offlineFirst) {
+        mNetwork = network;
+        mOfflineFirst = offlineFirst;
+    }
+
+    void setOffline(ReverseGeocoder offline) {
+        mOffline = offline;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+        ReverseGeocoder offline = mOffline;
+        if (offline == null) {
+            return mNetwork.getAddress(latitude, longitude);
+        }
+        if (mOfflineFirst) {
+            GeoAddress address = offline.getAddress(latitude, longitude);
+            return address != null ? address : mNetwork.getAddress(latitude, longitude);
+        }
+        try {
+            return mNetwork.getAddress(latitude, longitude);
+        } catch (IOException ioException) {
+            GeoAddress address = offline.getAddress(latitude, longitude);
+            if (address == null) {
+                // Report the original failure rather than a missing address
+                throw ioException;
+            }
+            return address;
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.example.android.walkmyandroid;
 
 import android.app.IntentService;
+import android.content.Context;
 import android.content.Intent;
-import android.location.Address;
-import android.location.Geocoder;
 import android.location.Location;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.LocaleList;
 import android.os.ResultReceiver;
-import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -19,6 +23,15 @@ import java.util.Locale;
 public class FetchAddressIntentService extends IntentService {
 
     private static final String TAG = FetchAddressIntentService.class.getSimpleName();
+    // Addresses used to be stored without their locale
+    private static final String LEGACY_ADDRESS_STORE_FILE = "addresses.db";
+    // Side-loaded into the files directory, or bundled in the assets
+    private static final String OFFLINE_DATASET_FILE = "offline_addresses.csv";
+    // The user's preferred languages that addresses are kept in
+    private static final int ADDRESS_LOCALES = 3;
+
+    // The service instance is recreated for every batch of intents, so the pipeline lives here
+    private static LookupPipeline sPipeline;
     ResultReceiver mReceiver;
 
     public FetchAddressIntentService() {
@@ -27,9 +40,6 @@ public class FetchAddressIntentService extends IntentService {
 
     @Override
     protected void onHandleIntent(Intent intent) {
-        Geocoder geocoder = new Geocoder(this, Locale.getDefault());
-        String errorMessage = "";
-
         // Get the receiver from the Intent that started the service
         mReceiver = intent.getParcelableExtra(Constants.RECEIVER);
 
@@ -37,59 +47,232 @@ public class FetchAddressIntentService extends IntentService {
         Location location = intent.getParcelableExtra(
                 Constants.LOCATION_DATA_EXTRA);
 
-        List<Address> addresses = null;
-
-        try {
-            addresses = geocoder.getFromLocation(
-                    location.getLatitude(),
-                    location.getLongitude(),
-                    // In this app, get just a single address
-                    1);
-        } catch (IOException ioException) {
-            // Catch network or other I/O problems
-            errorMessage = getString(R.string.service_not_available);
-            Log.e(TAG, errorMessage, ioException);
-        } catch (IllegalArgumentException illegalArgumentException) {
-            // Catch invalid latitude or longitude values
-            errorMessage = getString(R.string.invalid_lat_long_used);
-            Log.e(TAG, errorMessage + ". " +
-                    "Latitude = " + location.getLatitude() +
-                    ", Longitude = " +
-                    location.getLongitude(), illegalArgumentException);
+        useDefaultLocale(this);
+        GeocodeEngine.geocode(getGeocoder(this), location.getLatitude(),
+                location.getLongitude(), new ReceiverCallback(this, mReceiver,
+                        location.getLatitude(), location.getLongitude()));
+    }
+
+    /**
+     * Look up the address of a location on the shared geocode engine, and deliver the result
+     * to the receiver. A lookup for the same receiver that has not started yet is dropped,
+     * since its location is older.
+     *
+     * @param context   The context used to build the geocoder and the error messages.
+     * @param latitude  The latitude to look up, in degrees.
+     * @param longitude The longitude to look up, in degrees.
+     * @param receiver  The receiver of the result.
+     */
+    static void fetchAddress(Context context, double latitude, double longitude,
+            ResultReceiver receiver) {
+        useDefaultLocale(context);
+        getEngine(context).submit(receiver, latitude, longitude,
+                new ReceiverCallback(context.getApplicationContext(), receiver, latitude,
+                        longitude));
+    }
+
+    /**
+     * Look up the addresses of a batch of fixes as a single job on the shared geocode engine,
+     * and deliver the address of the most recent fix to the receiver.
+     *
+     * @param context  The context used to build the geocoder and the error messages.
+     * @param fixes    The fixes of the batch, oldest first.
+     * @param latest   The most recent fix of the batch.
+     * @param receiver The receiver of the result.
+     */
+    static void fetchAddresses(Context context, List<LocationFix> fixes, LocationFix latest,
+            ResultReceiver receiver) {
+        useDefaultLocale(context);
+        LookupPipeline pipeline = getPipeline(context);
+        pipeline.getEngine().submitBatch(receiver, pipeline.getBatchGeocoder(), fixes,
+                new ReceiverCallback(context.getApplicationContext(), receiver,
+                        latest.latitude, latest.longitude));
+    }
+
+    /**
+     * Get the lookup pipeline shared by all the instances of the service, which answers repeat
+     * lookups for nearby coordinates from memory, or from disk after a restart. Addresses are
+     * kept in each of the user's languages, so switching language is answered from the cache.
+     */
+    static synchronized LookupPipeline getPipeline(Context context) {
+        if (sPipeline == null) {
+            Context appContext = context.getApplicationContext();
+            new File(appContext.getFilesDir(), LEGACY_ADDRESS_STORE_FILE).delete();
+            sPipeline = new LookupPipeline(GeocoderPool.asProvider(appContext),
+                    appContext.getFilesDir(), getAddressLocales(), Clock.SYSTEM);
+            loadOfflineDataset(appContext, sPipeline);
         }
+        return sPipeline;
+    }
 
-        // Handle case where no address was found
-        if (addresses == null || addresses.size()  == 0) {
-            if (errorMessage.isEmpty()) {
-                errorMessage = getString(R.string.no_address_found);
-                Log.e(TAG, errorMessage);
-            }
-            deliverResultToReceiver(Constants.FAILURE_RESULT, errorMessage);
-        } else {
-            Address address = addresses.get(0);
-            ArrayList<String> addressFragments = new ArrayList<>();
-
-            // Fetch the address lines using getAddressLine,
-            // join them, and send them to the thread
-            for(int i = 0; i <= address.getMaxAddressLineIndex(); i++) {
-                addressFragments.add(address.getAddressLine(i));
+    /**
+     * @return The pipeline, or null if nothing built it yet. Unlike {@link #getPipeline}, it
+     * never builds it, so it is cheap enough for the main thread.
+     */
+    static synchronized LookupPipeline peekPipeline() {
+        return sPipeline;
+    }
+
+    /**
+     * Get the geocoder shared by all the instances of the service. Concurrent lookups for the
+     * same cell share a single call.
+     */
+    static ReverseGeocoder getGeocoder(Context context) {
+        return getPipeline(context).getGeocoder();
+    }
+
+    /**
+     * @return The default locale, followed by the user's other preferred languages where the
+     * platform has a list of them.
+     */
+    private static List<Locale> getAddressLocales() {
+        List<Locale> locales = new ArrayList<>();
+        locales.add(Locale.getDefault());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            LocaleList preferred = LocaleList.getDefault();
+            for (int i = 0; i < preferred.size() && locales.size() < ADDRESS_LOCALES; i++) {
+                if (!locales.contains(preferred.get(i))) {
+                    locales.add(preferred.get(i));
+                }
             }
-            // Deliver the correct result to the ResultReceiver's onReceiveResult() method
-            deliverResultToReceiver(Constants.SUCCESS_RESULT,
-                    TextUtils.join(System.getProperty("line.separator"),
-                            addressFragments));
         }
+        return locales;
+    }
+
+    /**
+     * Answer in the current default locale, which changes when the user switches language.
+     */
+    private static void useDefaultLocale(Context context) {
+        getPipeline(context).getMultiLocaleGeocoder().setLocale(Locale.getDefault());
+    }
+
+    /**
+     * Build the offline geocoder on a background thread, if a dataset is available, and hand
+     * it to the pipeline once it is ready.
+     */
+    private static void loadOfflineDataset(final Context context,
+            final LookupPipeline pipeline) {
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                try {
+                    InputStream in;
+                    File sideLoaded = new File(context.getFilesDir(), OFFLINE_DATASET_FILE);
+                    if (sideLoaded.exists()) {
+                        in = new FileInputStream(sideLoaded);
+                    } else {
+                        in = context.getAssets().open(OFFLINE_DATASET_FILE);
+                    }
+                    int size = pipeline.loadOfflineDataset(in);
+                    Log.d(TAG, "Loaded " + size + " offline addresses in "
+                            + (System.currentTimeMillis() - start) + "ms");
+                } catch (FileNotFoundException e) {
+                    Log.d(TAG, "No offline address dataset");
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to load the offline address dataset", e);
+                }
+            }
+        }, "offline-geocoder");
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.start();
+    }
+
+    static GeocodeEngine getEngine(Context context) {
+        return getPipeline(context).getEngine();
+    }
+
+    /**
+     * Get the prefetcher that warms the address cache ahead of the user, while the shared
+     * geocode engine is idle.
+     */
+    static AddressPrefetcher getPrefetcher(Context context) {
+        return getPipeline(context).getPrefetcher();
+    }
+
+    /**
+     * Get the address cache of the locale addresses are currently shown in.
+     */
+    static AddressCache getAddressCache(Context context) {
+        return getPipeline(context).getAddressCache();
     }
 
     /**
      * Method for sending the results back to the MainActivity through the ResultReceiver.
+     * @param receiver The receiver of the result.
      * @param resultCode Either SUCCESS_RESULT or FAILURE_RESULT.
      * @param message The message, either containing the address or an error message.
+     * @param lines The lines of the address found, or null.
      */
-    private void deliverResultToReceiver(int resultCode, String message) {
+    private static void deliverResultToReceiver(ResultReceiver receiver, int resultCode,
+            String message, String[] lines) {
         Bundle bundle = new Bundle();
         bundle.putString(Constants.RESULT_DATA_KEY, message);
-        mReceiver.send(resultCode, bundle);
+        if (lines != null) {
+            bundle.putStringArray(Constants.RESULT_LINES_KEY, lines);
+        }
+        receiver.send(resultCode, bundle);
     }
 
+    /**
+     * Turns the outcome of a lookup into the result codes and messages that the
+     * ResultReceiver expects. A receiver that lives in this process gets the address object
+     * directly, without a Bundle.
+     */
+    private static class ReceiverCallback implements GeocodeEngine.Callback {
+        private final Context mContext;
+        private final ResultReceiver mReceiver;
+        private final double mLatitude;
+        private final double mLongitude;
+
+        ReceiverCallback(Context context, ResultReceiver receiver, double latitude,
+                double longitude) {
+            mContext = context;
+            mReceiver = receiver;
+            mLatitude = latitude;
+            mLongitude = longitude;
+        }
+
+        @Override
+        public void onAddressFound(GeoAddress address) {
+            if (mReceiver instanceof AddressResultChannel) {
+                ((AddressResultChannel) mReceiver).deliverAddress(address);
+                return;
+            }
+            // Deliver the correct result to the ResultReceiver's onReceiveResult() method
+            String[] lines = new String[address.getLineCount()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = address.getLine(i);
+            }
+            deliverResultToReceiver(mReceiver, Constants.SUCCESS_RESULT, address.format(),
+                    lines);
+        }
+
+        @Override
+        public void onAddressFailed(Exception error) {
+            String errorMessage;
+            if (error instanceof IOException) {
+                // Catch network or other I/O problems
+                errorMessage = mContext.getString(R.string.service_not_available);
+                Log.e(TAG, errorMessage, error);
+            } else if (error instanceof IllegalArgumentException) {
+                // Catch invalid latitude or longitude values
+                errorMessage = mContext.getString(R.string.invalid_lat_long_used);
+                Log.e(TAG, errorMessage + ". " +
+                        "Latitude = " + mLatitude +
+                        ", Longitude = " +
+                        mLongitude, error);
+            } else {
+                // Handle case where no address was found
+                errorMessage = mContext.getString(R.string.no_address_found);
+                Log.e(TAG, errorMessage);
+            }
+            if (mReceiver instanceof AddressResultChannel) {
+                ((AddressResultChannel) mReceiver).deliverError(errorMessage);
+            } else {
+                deliverResultToReceiver(mReceiver, Constants.FAILURE_RESULT, errorMessage,
+                        null);
+            }
+        }
+    }
 }
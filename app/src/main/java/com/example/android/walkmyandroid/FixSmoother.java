@@ -0,0 +1,116 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Drops implausible fixes and smooths the rest with a one-dimensional Kalman filter per axis.
+ *
+ * <p>A fix is rejected if its accuracy is worse than the limit, if it is not newer than the
+ * last accepted fix, or if reaching it would take a speed faster than the limit even after
+ * allowing for its accuracy radius. The filter treats the position as constant between fixes,
+ * and lets its uncertainty grow with the expected speed of the user over the elapsed time, so
+ * precise fixes move the estimate more than imprecise ones. After a long gap, or after several
+ * rejections in a row (the user really did jump, e.g. after a tunnel), the filter restarts from
+ * the raw fix.
+ */
+class FixSmoother {
+
+    // Used when a fix does not report an accuracy
+    private static final float DEFAULT_ACCURACY_METERS = 30;
+    private static final int MAX_CONSECUTIVE_REJECTIONS = 3;
+
+    private final float mMaxAccuracyMeters;
+    private final double mMaxSpeedMetersPerSecond;
+    private final double mProcessNoiseMetersPerSecond;
+    private final long mResetGapMillis;
+
+    private boolean mInitialized;
+    private double mLatitude;
+    private double mLongitude;
+    private long mTimeMillis;
+    // The variance of the estimate, in square meters
+    private double mVariance;
+    private int mConsecutiveRejections;
+
+    private long mAcceptedCount;
+    private long mRejectedCount;
+
+    /**
+     * @param maxAccuracyMeters          Fixes with a larger accuracy radius are dropped.
+     * @param maxSpeedMetersPerSecond    Fixes implying a faster jump are dropped.
+     * @param processNoiseMetersPerSecond How fast the position is expected to drift.
+     * @param resetGapMillis             The gap after which the filter starts over.
+     */
+    FixSmoother(float maxAccuracyMeters, double maxSpeedMetersPerSecond,
+            double processNoiseMetersPerSecond, long resetGapMillis) {
+        mMaxAccuracyMeters = maxAccuracyMeters;
+        mMaxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+        mProcessNoiseMetersPerSecond = processNoiseMetersPerSecond;
+        mResetGapMillis = resetGapMillis;
+    }
+
+    /**
+     * Feed the next raw fix.
+     *
+     * @return The smoothed fix, or null if the fix was rejected.
+     */
+    LocationFix onFix(LocationFix fix) {
+        float accuracy = fix.hasAccuracy() ? fix.accuracyMeters : DEFAULT_ACCURACY_METERS;
+        if (accuracy > mMaxAccuracyMeters
+                || (mInitialized && fix.timeMillis <= mTimeMillis)) {
+            mRejectedCount++;
+            return null;
+        }
+        long elapsedMillis = fix.timeMillis - mTimeMillis;
+        if (!mInitialized || elapsedMillis > mResetGapMillis) {
+            return restart(fix, accuracy);
+        }
+
+        double seconds = elapsedMillis / 1000.0;
+        double jump = GeoMath.distanceMeters(mLatitude, mLongitude,
+                fix.latitude, fix.longitude) - accuracy;
+        if (jump > mMaxSpeedMetersPerSecond * seconds) {
+            if (++mConsecutiveRejections <= MAX_CONSECUTIVE_REJECTIONS) {
+                mRejectedCount++;
+                return null;
+            }
+            return restart(fix, accuracy);
+        }
+        mConsecutiveRejections = 0;
+
+        mVariance += seconds * mProcessNoiseMetersPerSecond * mProcessNoiseMetersPerSecond;
+        double gain = mVariance / (mVariance + accuracy * accuracy);
+        mLatitude += gain * (fix.latitude - mLatitude);
+        mLongitude += gain * (fix.longitude - mLongitude);
+        mVariance *= 1 - gain;
+        mTimeMillis = fix.timeMillis;
+        mAcceptedCount++;
+        return new LocationFix(mLatitude, mLongitude, mTimeMillis,
+                (float) Math.sqrt(mVariance), fix.speedMetersPerSecond);
+    }
+
+    /**
+     * Forget the current estimate, so the next fix is taken as is.
+     */
+    void reset() {
+        mInitialized = false;
+        mConsecutiveRejections = 0;
+    }
+
+    long getAcceptedCount() {
+        return mAcceptedCount;
+    }
+
+    long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    private LocationFix restart(LocationFix fix, float accuracy) {
+        mInitialized = true;
+        mConsecutiveRejections = 0;
+        mLatitude = fix.latitude;
+        mLongitude = fix.longitude;
+        mTimeMillis = fix.timeMillis;
+        mVariance = accuracy * accuracy;
+        mAcceptedCount++;
+        return fix;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.walkmyandroid;
+
+import android.location.Location;
+import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LocationSource backed by the FusedLocationApi. Fixes are delivered on the main thread, either
+ * one at a time through a LocationListener or in batches through a LocationCallback.
+ */
+class FusedLocationSource implements LocationSource {
+
+    private final GoogleApiClient mGoogleApiClient;
+    private Listener mListener;
+    // How the current request was made, so that it can be removed the same way
+    private boolean mBatched;
+    private boolean mRequested;
+
+    private final LocationListener mSingleListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            recordLocationArrival(location);
+            mListener.onFix(toLocationFix(location));
+        }
+    };
+    private final LocationCallback mBatchCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult locationResult) {
+            List<Location> locations = locationResult.getLocations();
+            if (locations.isEmpty()) {
+                return;
+            }
+            recordLocationArrival(locations.get(locations.size() - 1));
+            List<LocationFix> fixes = new ArrayList<>(locations.size());
+            for (Location location : locations) {
+                fixes.add(toLocationFix(location));
+            }
+            mListener.onFixes(fixes);
+        }
+    };
+
+    /**
+     * @param googleApiClient A client with the LocationServices API, connected before updates
+     *                        are requested.
+     */
+    FusedLocationSource(GoogleApiClient googleApiClient) {
+        mGoogleApiClient = googleApiClient;
+    }
+
+    /**
+     * Set up the location request.
+     *
+     * @param schedule The update intervals and power mode to request.
+     * @param batched  True to let the fixes be delivered in batches.
+     * @return The LocationRequest object containing the desired parameters.
+     */
+    static LocationRequest toLocationRequest(LocationSchedule schedule, boolean batched) {
+        LocationRequest locationRequest = new LocationRequest();
+        locationRequest.setInterval(schedule.intervalMillis);
+        locationRequest.setFastestInterval(schedule.fastestIntervalMillis);
+        locationRequest.setPriority(
+                schedule.accuracy == LocationSchedule.Accuracy.HIGH_ACCURACY
+                        ? LocationRequest.PRIORITY_HIGH_ACCURACY
+                        : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        if (batched) {
+            locationRequest.setMaxWaitTime(schedule.intervalMillis * BATCH_INTERVALS);
+        }
+        return locationRequest;
+    }
+
+    /**
+     * Requesting updates again for the same listener replaces the previous request; switching
+     * between single and batched delivery removes the previous request first.
+     */
+    @Override
+    public void requestUpdates(LocationSchedule schedule, boolean batched, Listener listener) {
+        if (mRequested && batched != mBatched) {
+            removeUpdates();
+        }
+        mListener = listener;
+        LocationRequest locationRequest = toLocationRequest(schedule, batched);
+        if (batched) {
+            LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                    locationRequest, mBatchCallback, Looper.getMainLooper());
+        } else {
+            LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                    locationRequest, mSingleListener);
+        }
+        mBatched = batched;
+        mRequested = true;
+    }
+
+    @Override
+    public void removeUpdates() {
+        if (!mRequested) {
+            return;
+        }
+        if (mBatched) {
+            LocationServices.FusedLocationApi.removeLocationUpdates(
+                    mGoogleApiClient, mBatchCallback);
+        } else {
+            LocationServices.FusedLocationApi.removeLocationUpdates(
+                    mGoogleApiClient, mSingleListener);
+        }
+        mRequested = false;
+    }
+
+    private static LocationFix toLocationFix(Location location) {
+        return new LocationFix(location.getLatitude(), location.getLongitude(),
+                location.getTime(),
+                location.hasAccuracy() ? location.getAccuracy() : LocationFix.UNKNOWN,
+                location.hasSpeed() ? location.getSpeed() : LocationFix.UNKNOWN);
+    }
+
+    /**
+     * Record how old a fix is by the time it is delivered.
+     */
+    private static void recordLocationArrival(Location location) {
+        long ageNanos;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            ageNanos = SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos();
+        } else {
+            ageNanos = (System.currentTimeMillis() - location.getTime()) * 1000000;
+        }
+        LatencyMetrics.record(LatencyMetrics.Stage.LOCATION_ARRIVAL, ageNanos);
+    }
+}
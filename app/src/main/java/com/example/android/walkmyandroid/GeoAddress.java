@@ -0,0 +1,226 @@
+package com.example.android.walkmyandroid;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * An immutable address: its display lines, plus the structured fields the geocoder reported.
+ *
+ * <p>Addresses are interned when they are built, so the same address found again, whether from
+ * the network, the caches or the disk store, is the same instance, and is only formatted once.
+ * The joined display text is built lazily on first use.
+ */
+final class GeoAddress {
+
+    // Weak on both sides, so an address nobody holds can be collected
+    private static final WeakHashMap<GeoAddress, WeakReference<GeoAddress>> sInterned =
+            new WeakHashMap<>();
+
+    private final String[] mLines;
+    /** The name of the feature, such as a building or landmark, or null. */
+    final String featureName;
+    /** The street, or null. */
+    final String thoroughfare;
+    /** The city or town, or null. */
+    final String locality;
+    /** The postal code, or null. */
+    final String postalCode;
+    /** The ISO 3166 country code, or null. */
+    final String countryCode;
+
+    private final int mHashCode;
+    private String mFormatted;
+
+    private GeoAddress(Builder builder) {
+        mLines = builder.mLines.toArray(new String[builder.mLines.size()]);
+        featureName = builder.mFeatureName;
+        thoroughfare = builder.mThoroughfare;
+        locality = builder.mLocality;
+        postalCode = builder.mPostalCode;
+        countryCode = builder.mCountryCode;
+        int hash = Arrays.hashCode(mLines);
+        hash = 31 * hash + hashCode(featureName);
+        hash = 31 * hash + hashCode(thoroughfare);
+        hash = 31 * hash + hashCode(locality);
+        hash = 31 * hash + hashCode(postalCode);
+        hash = 31 * hash + hashCode(countryCode);
+        mHashCode = hash;
+    }
+
+    /**
+     * Build an address that only has display lines.
+     */
+    static GeoAddress ofLines(String... lines) {
+        Builder builder = new Builder();
+        for (String line : lines) {
+            builder.addLine(line);
+        }
+        return builder.build();
+    }
+
+    int getLineCount() {
+        return mLines.length;
+    }
+
+    String getLine(int index) {
+        return mLines[index];
+    }
+
+    /**
+     * @return The address lines joined by the line separator.
+     */
+    String format() {
+        // Racy but safe: every thread computes the same immutable string
+        String formatted = mFormatted;
+        if (formatted == null) {
+            formatted = AddressFormatter.join(mLines);
+            mFormatted = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * Write the address in the format read by {@link #readFrom}.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeShort(mLines.length);
+        for (String line : mLines) {
+            out.writeUTF(line);
+        }
+        writeOptional(out, featureName);
+        writeOptional(out, thoroughfare);
+        writeOptional(out, locality);
+        writeOptional(out, postalCode);
+        writeOptional(out, countryCode);
+    }
+
+    static GeoAddress readFrom(DataInput in) throws IOException {
+        Builder builder = new Builder();
+        int lineCount = in.readUnsignedShort();
+        for (int i = 0; i < lineCount; i++) {
+            builder.addLine(in.readUTF());
+        }
+        return builder.setFeatureName(readOptional(in))
+                .setThoroughfare(readOptional(in))
+                .setLocality(readOptional(in))
+                .setPostalCode(readOptional(in))
+                .setCountryCode(readOptional(in))
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GeoAddress)) {
+            return false;
+        }
+        GeoAddress other = (GeoAddress) o;
+        return mHashCode == other.mHashCode
+                && Arrays.equals(mLines, other.mLines)
+                && equal(featureName, other.featureName)
+                && equal(thoroughfare, other.thoroughfare)
+                && equal(locality, other.locality)
+                && equal(postalCode, other.postalCode)
+                && equal(countryCode, other.countryCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    private static GeoAddress intern(GeoAddress address) {
+        synchronized (sInterned) {
+            WeakReference<GeoAddress> reference = sInterned.get(address);
+            GeoAddress interned = reference != null ? reference.get() : null;
+            if (interned != null) {
+                return interned;
+            }
+            sInterned.put(address, new WeakReference<>(address));
+            return address;
+        }
+    }
+
+    private static void writeOptional(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readOptional(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static int hashCode(String value) {
+        return value == null ? 0 : value.hashCode();
+    }
+
+    /**
+     * Collects the parts of an address. Null lines are skipped.
+     */
+    static final class Builder {
+        private final List<String> mLines = new ArrayList<>(4);
+        private String mFeatureName;
+        private String mThoroughfare;
+        private String mLocality;
+        private String mPostalCode;
+        private String mCountryCode;
+
+        Builder addLine(String line) {
+            if (line != null) {
+                mLines.add(line);
+            }
+            return this;
+        }
+
+        Builder setFeatureName(String featureName) {
+            mFeatureName = featureName;
+            return this;
+        }
+
+        Builder setThoroughfare(String thoroughfare) {
+            mThoroughfare = thoroughfare;
+            return this;
+        }
+
+        Builder setLocality(String locality) {
+            mLocality = locality;
+            return this;
+        }
+
+        Builder setPostalCode(String postalCode) {
+            mPostalCode = postalCode;
+            return this;
+        }
+
+        Builder setCountryCode(String countryCode) {
+            mCountryCode = countryCode;
+            return this;
+        }
+
+        /**
+         * @return The interned address.
+         */
+        GeoAddress build() {
+            return intern(new GeoAddress(this));
+        }
+    }
+}
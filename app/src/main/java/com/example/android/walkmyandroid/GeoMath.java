@@ -0,0 +1,70 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Distance helpers on a spherical Earth.
+ */
+final class GeoMath {
+
+    static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private GeoMath() {
+    }
+
+    /**
+     * The great circle distance between two points, using the haversine formula.
+     *
+     * @return The distance in meters.
+     */
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * The initial bearing of the great circle path from the first point to the second.
+     *
+     * @return The bearing in degrees clockwise from north, in [0, 360).
+     */
+    static double bearingDegrees(double lat1, double lng1, double lat2, double lng2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double y = Math.sin(dLng) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2)
+                - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLng);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    /**
+     * The point reached by following the great circle from a start point for some distance.
+     *
+     * @param bearing The initial bearing, in degrees clockwise from north.
+     * @return The latitude and longitude of the destination, in degrees.
+     */
+    static double[] destination(double latitude, double longitude, double bearing,
+            double distanceMeters) {
+        double phi1 = Math.toRadians(latitude);
+        double lambda1 = Math.toRadians(longitude);
+        double theta = Math.toRadians(bearing);
+        double delta = distanceMeters / EARTH_RADIUS_METERS;
+        double phi2 = Math.asin(Math.sin(phi1) * Math.cos(delta)
+                + Math.cos(phi1) * Math.sin(delta) * Math.cos(theta));
+        double lambda2 = lambda1 + Math.atan2(Math.sin(theta) * Math.sin(delta) * Math.cos(phi1),
+                Math.cos(delta) - Math.sin(phi1) * Math.sin(phi2));
+        double destinationLongitude = (Math.toDegrees(lambda2) + 540) % 360 - 180;
+        return new double[]{Math.toDegrees(phi2), destinationLongitude};
+    }
+
+    /**
+     * @return The smallest angle between two bearings, in [0, 180].
+     */
+    static double bearingDifference(double bearing1, double bearing2) {
+        double difference = Math.abs(bearing1 - bearing2) % 360;
+        return difference > 180 ? 360 - difference : difference;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs reverse geocode lookups on a small pool of worker threads.
+ *
+ * <p>Requests are submitted on a channel, typically one per result receiver. Only the newest
+ * pending request of a channel is kept: when a newer location arrives before the previous one
+ * was picked up, the older request is dropped. A channel never has more than one lookup running,
+ * so its results are delivered in order. When more channels are waiting than the queue can hold,
+ * the oldest pending request is shed.
+ */
+class GeocodeEngine {
+
+    /**
+     * Receives the outcome of a lookup, on the worker thread that ran it.
+     */
+    interface Callback {
+        void onAddressFound(GeoAddress address);
+
+        /**
+         * @param error The IOException or IllegalArgumentException thrown by the geocoder, or
+         *              null if the lookup succeeded but no address was found.
+         */
+        void onAddressFailed(Exception error);
+    }
+
+    private final ReverseGeocoder mGeocoder;
+    private final int mQueueCapacity;
+    private final ExecutorService mWorkers;
+    private final LinkedHashMap<Object, Job> mPending = new LinkedHashMap<>();
+    private final Set<Object> mRunning = new HashSet<>();
+
+    private long mSubmittedCount;
+    private long mSupersededCount;
+    private long mShedCount;
+
+    /**
+     * @param geocoder      The geocoder shared by all the workers.
+     * @param workerCount   The number of lookups that may run at the same time.
+     * @param queueCapacity The maximum number of pending requests.
+     */
+    GeocodeEngine(ReverseGeocoder geocoder, int workerCount, int queueCapacity) {
+        if (workerCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Worker count and capacity must be positive");
+        }
+        mGeocoder = geocoder;
+        mQueueCapacity = queueCapacity;
+        mWorkers = Executors.newFixedThreadPool(workerCount, new WorkerFactory());
+    }
+
+    /**
+     * Queue a lookup, replacing any request of the same channel that has not started yet.
+     *
+     * @param channel  Identifies the consumer of the result.
+     * @param latitude  The latitude to look up.
+     * @param longitude The longitude to look up.
+     * @param callback  Receives the result.
+     */
+    void submit(Object channel, final double latitude, final double longitude,
+            final Callback callback) {
+        enqueue(channel, new Runnable() {
+            @Override
+            public void run() {
+                geocode(mGeocoder, latitude, longitude, callback);
+            }
+        });
+    }
+
+    /**
+     * Queue the lookup of a batch of fixes, replacing any request of the same channel that has
+     * not started yet. The callback receives the address of the most recent fix.
+     *
+     * @param channel       Identifies the consumer of the result.
+     * @param batchGeocoder The geocoder that picks the points of the batch to look up.
+     * @param fixes         The fixes of the batch, oldest first.
+     * @param callback      Receives the result.
+     */
+    void submitBatch(Object channel, final BatchGeocoder batchGeocoder,
+            final List<LocationFix> fixes, final Callback callback) {
+        enqueue(channel, new Runnable() {
+            @Override
+            public void run() {
+                BatchGeocoder.Result result;
+                try {
+                    result = batchGeocoder.geocode(fixes);
+                } catch (IOException ioException) {
+                    callback.onAddressFailed(ioException);
+                    return;
+                } catch (IllegalArgumentException illegalArgumentException) {
+                    callback.onAddressFailed(illegalArgumentException);
+                    return;
+                }
+                GeoAddress address = result.getLatestAddress();
+                if (address == null) {
+                    callback.onAddressFailed(null);
+                } else {
+                    callback.onAddressFound(address);
+                }
+            }
+        });
+    }
+
+    private void enqueue(Object channel, Runnable task) {
+        synchronized (this) {
+            mSubmittedCount++;
+            if (mPending.remove(channel) != null) {
+                mSupersededCount++;
+            } else if (mPending.size() >= mQueueCapacity) {
+                Iterator<Job> eldest = mPending.values().iterator();
+                eldest.next();
+                eldest.remove();
+                mShedCount++;
+            }
+            mPending.put(channel, new Job(channel, task, System.nanoTime()));
+        }
+        mWorkers.execute(mDrain);
+    }
+
+    /**
+     * Run a lookup on the calling thread and report the result to the callback.
+     */
+    static void geocode(ReverseGeocoder geocoder, double latitude, double longitude,
+            Callback callback) {
+        GeoAddress address;
+        try {
+            address = geocoder.getAddress(latitude, longitude);
+        } catch (IOException ioException) {
+            callback.onAddressFailed(ioException);
+            return;
+        } catch (IllegalArgumentException illegalArgumentException) {
+            callback.onAddressFailed(illegalArgumentException);
+            return;
+        }
+        if (address == null) {
+            callback.onAddressFailed(null);
+        } else {
+            callback.onAddressFound(address);
+        }
+    }
+
+    /**
+     * @return True if no lookup is running or waiting.
+     */
+    synchronized boolean isIdle() {
+        return mPending.isEmpty() && mRunning.isEmpty();
+    }
+
+    synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    synchronized long getSubmittedCount() {
+        return mSubmittedCount;
+    }
+
+    synchronized long getSupersededCount() {
+        return mSupersededCount;
+    }
+
+    synchronized long getShedCount() {
+        return mShedCount;
+    }
+
+    void shutdown() {
+        mWorkers.shutdown();
+    }
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            Job job = takeNext();
+            if (job == null) {
+                // The request was superseded, shed, or its channel is busy
+                return;
+            }
+            LatencyMetrics.recordSince(LatencyMetrics.Stage.QUEUE, job.submittedNanos);
+            try {
+                job.task.run();
+            } finally {
+                boolean more;
+                synchronized (GeocodeEngine.this) {
+                    mRunning.remove(job.channel);
+                    more = mPending.containsKey(job.channel);
+                }
+                if (more) {
+                    mWorkers.execute(mDrain);
+                }
+            }
+        }
+    };
+
+    private synchronized Job takeNext() {
+        for (Iterator<Job> it = mPending.values().iterator(); it.hasNext(); ) {
+            Job job = it.next();
+            if (!mRunning.contains(job.channel)) {
+                it.remove();
+                mRunning.add(job.channel);
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private static final class Job {
+        final Object channel;
+        final Runnable task;
+        final long submittedNanos;
+
+        Job(Object channel, Runnable task, long submittedNanos) {
+            this.channel = channel;
+            this.task = task;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "geocode-" + mCount.incrementAndGet());
+            // Lookups must never compete with the UI thread
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
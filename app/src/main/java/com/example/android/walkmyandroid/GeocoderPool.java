@@ -0,0 +1,45 @@
+package com.example.android.walkmyandroid;
+
+import android.content.Context;
+import android.location.Geocoder;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Holds a single platform Geocoder per locale, instead of building one for every lookup.
+ */
+final class GeocoderPool {
+
+    // The candidates each lookup chooses the nearest address from
+    private static final int CANDIDATES_PER_LOOKUP = 3;
+
+    private static final HashMap<Locale, AndroidReverseGeocoder> sGeocoders = new HashMap<>();
+
+    private GeocoderPool() {
+    }
+
+    /**
+     * @return A provider of the pooled geocoders.
+     */
+    static GeocoderProvider asProvider(Context context) {
+        final Context appContext = context.getApplicationContext();
+        return new GeocoderProvider() {
+            @Override
+            public ReverseGeocoder forLocale(Locale locale) {
+                return get(appContext, locale);
+            }
+        };
+    }
+
+    static synchronized AndroidReverseGeocoder get(Context context, Locale locale) {
+        AndroidReverseGeocoder geocoder = sGeocoders.get(locale);
+        if (geocoder == null) {
+            geocoder = new AndroidReverseGeocoder(
+                    new Geocoder(context.getApplicationContext(), locale),
+                    CANDIDATES_PER_LOOKUP);
+            sGeocoders.put(locale, geocoder);
+        }
+        return geocoder;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.android.walkmyandroid;
+
+import java.util.Locale;
+
+/**
+ * Supplies the backend geocoder of each locale, the platform Geocoder on a device or a fake
+ * backend in a load test.
+ */
+interface GeocoderProvider {
+
+    /**
+     * @return The geocoder answering in the locale; the same one every time it is asked for.
+     */
+    ReverseGeocoder forLocale(Locale locale);
+}
@@ -0,0 +1,113 @@
+package com.example.android.walkmyandroid;
+
+import java.util.Arrays;
+
+/**
+ * An immutable circular or polygonal area around a known place.
+ */
+final class Geofence {
+
+    final String id;
+    final String name;
+    final double minLatitude;
+    final double maxLatitude;
+    final double minLongitude;
+    final double maxLongitude;
+
+    private final int[] mTypes;
+    // The center and radius of a circle, unused for a polygon
+    private final double mLatitude;
+    private final double mLongitude;
+    private final double mRadiusMeters;
+    // The vertices of a polygon, or null for a circle
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+
+    private Geofence(String id, String name, int[] types, double latitude, double longitude,
+            double radiusMeters, double[] latitudes, double[] longitudes,
+            double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        this.id = id;
+        this.name = name;
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+        mTypes = types.clone();
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadiusMeters = radiusMeters;
+        mLatitudes = latitudes;
+        mLongitudes = longitudes;
+    }
+
+    /**
+     * Create a fence covering the points within a radius of a center.
+     */
+    static Geofence circle(String id, String name, int[] types, double latitude,
+            double longitude, double radiusMeters) {
+        if (radiusMeters <= 0) {
+            throw new IllegalArgumentException("Radius must be positive: " + radiusMeters);
+        }
+        double latitudeRadius = radiusMeters / GridCells.METERS_PER_DEGREE;
+        double longitudeRadius = latitudeRadius
+                / Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        return new Geofence(id, name, types, latitude, longitude, radiusMeters, null, null,
+                latitude - latitudeRadius, latitude + latitudeRadius,
+                longitude - longitudeRadius, longitude + longitudeRadius);
+    }
+
+    /**
+     * Create a fence covering a simple polygon. The vertices may be given in either order, and
+     * the polygon is closed implicitly.
+     */
+    static Geofence polygon(String id, String name, int[] types, double[] latitudes,
+            double[] longitudes) {
+        if (latitudes.length != longitudes.length || latitudes.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least three vertices");
+        }
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < latitudes.length; i++) {
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, longitudes[i]);
+            maxLongitude = Math.max(maxLongitude, longitudes[i]);
+        }
+        return new Geofence(id, name, types, 0, 0, 0, latitudes.clone(), longitudes.clone(),
+                minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    int[] getTypes() {
+        return mTypes.clone();
+    }
+
+    boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude
+                || longitude < minLongitude || longitude > maxLongitude) {
+            return false;
+        }
+        if (mLatitudes == null) {
+            return GeoMath.distanceMeters(mLatitude, mLongitude, latitude, longitude)
+                    <= mRadiusMeters;
+        }
+        // Count the edges crossed by a ray going east from the point
+        boolean inside = false;
+        for (int i = 0, j = mLatitudes.length - 1; i < mLatitudes.length; j = i++) {
+            if ((mLatitudes[i] > latitude) != (mLatitudes[j] > latitude)) {
+                double crossing = mLongitudes[i] + (latitude - mLatitudes[i])
+                        * (mLongitudes[j] - mLongitudes[i]) / (mLatitudes[j] - mLatitudes[i]);
+                if (longitude < crossing) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    @Override
+    public String toString() {
+        return "Geofence{" + id + " " + name + " " + Arrays.toString(mTypes) + "}";
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.android.walkmyandroid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which geofences the user is inside, and reports when that changes.
+ *
+ * <p>The fences are indexed in a grid, so each fix is only tested against the fences whose
+ * bounding box overlaps its cell. A fence is entered by the first fix inside it, dwelt in once
+ * the user stayed inside for the dwell time, and exited by the first fix outside it. Fixes that
+ * do not change the membership do not reach the listener, which must not add or remove fences
+ * while it is called. Once the engine holds its maximum number of fences, adding one drops the
+ * fence that was added the longest time ago. Not thread safe; meant to be used from the thread
+ * that delivers the fixes.
+ */
+class GeofenceEngine {
+
+    enum Transition {
+        ENTER, DWELL, EXIT
+    }
+
+    interface Listener {
+        void onTransition(Geofence fence, Transition transition, long timeMillis);
+    }
+
+    private final double mCellSizeMeters;
+    private final long mDwellMillis;
+    private final int mMaxFences;
+    private final Listener mListener;
+    // In the order they were added, so the oldest one is dropped first
+    private final Map<String, Geofence> mFences = new LinkedHashMap<>();
+    private final Map<Long, List<Geofence>> mIndex = new HashMap<>();
+    private long mEvictionCount;
+    // The fences the user is inside, by ID, in the order they were entered
+    private final Map<String, Membership> mInside = new LinkedHashMap<>();
+
+    private static class Membership {
+        final Geofence fence;
+        final long enteredAt;
+        boolean dwelling;
+
+        Membership(Geofence fence, long enteredAt) {
+            this.fence = fence;
+            this.enteredAt = enteredAt;
+        }
+    }
+
+    /**
+     * @param cellSizeMeters The edge length of an index cell; about the size of a typical fence.
+     * @param dwellMillis    How long the user must stay inside a fence to dwell in it.
+     * @param maxFences      The maximum number of fences kept.
+     * @param listener       Receives the transitions.
+     */
+    GeofenceEngine(double cellSizeMeters, long dwellMillis, int maxFences, Listener listener) {
+        if (cellSizeMeters <= 0 || maxFences <= 0) {
+            throw new IllegalArgumentException("Cell size and capacity must be positive");
+        }
+        mCellSizeMeters = cellSizeMeters;
+        mDwellMillis = dwellMillis;
+        mMaxFences = maxFences;
+        mListener = listener;
+    }
+
+    /**
+     * Add a fence, replacing any fence with the same ID. If the engine is full, the oldest fence
+     * is removed first, without reporting an exit.
+     */
+    void add(Geofence fence) {
+        remove(fence.id);
+        if (mFences.size() == mMaxFences) {
+            remove(mFences.keySet().iterator().next());
+            mEvictionCount++;
+        }
+        mFences.put(fence.id, fence);
+        for (long key : cellKeys(fence)) {
+            List<Geofence> cell = mIndex.get(key);
+            if (cell == null) {
+                cell = new ArrayList<>(2);
+                mIndex.put(key, cell);
+            }
+            cell.add(fence);
+        }
+    }
+
+    /**
+     * Remove a fence. No exit is reported for it, even if the user was inside.
+     *
+     * @return False if there was no fence with that ID.
+     */
+    boolean remove(String id) {
+        Geofence fence = mFences.remove(id);
+        if (fence == null) {
+            return false;
+        }
+        mInside.remove(id);
+        for (long key : cellKeys(fence)) {
+            List<Geofence> cell = mIndex.get(key);
+            if (cell != null && cell.remove(fence) && cell.isEmpty()) {
+                mIndex.remove(key);
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return mFences.size();
+    }
+
+    /**
+     * @return The number of fences dropped to make room for new ones.
+     */
+    long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    boolean isInsideAny() {
+        return !mInside.isEmpty();
+    }
+
+    /**
+     * @return The fence the user entered most recently and is still inside, or null.
+     */
+    Geofence getLatestInside() {
+        Geofence latest = null;
+        for (Membership membership : mInside.values()) {
+            latest = membership.fence;
+        }
+        return latest;
+    }
+
+    /**
+     * Update the membership with a new fix, and report the transitions it caused: exits first,
+     * then entries, then dwells.
+     */
+    void onFix(LocationFix fix) {
+        List<Geofence> cell = mIndex.get(
+                GridCells.cellKey(fix.latitude, fix.longitude, mCellSizeMeters));
+
+        Iterator<Membership> inside = mInside.values().iterator();
+        while (inside.hasNext()) {
+            Membership membership = inside.next();
+            if (!membership.fence.contains(fix.latitude, fix.longitude)) {
+                inside.remove();
+                mListener.onTransition(membership.fence, Transition.EXIT, fix.timeMillis);
+            }
+        }
+        if (cell != null) {
+            for (int i = 0; i < cell.size(); i++) {
+                Geofence fence = cell.get(i);
+                if (!mInside.containsKey(fence.id)
+                        && fence.contains(fix.latitude, fix.longitude)) {
+                    mInside.put(fence.id, new Membership(fence, fix.timeMillis));
+                    mListener.onTransition(fence, Transition.ENTER, fix.timeMillis);
+                }
+            }
+        }
+        for (Membership membership : mInside.values()) {
+            if (!membership.dwelling && fix.timeMillis - membership.enteredAt >= mDwellMillis) {
+                membership.dwelling = true;
+                mListener.onTransition(membership.fence, Transition.DWELL, fix.timeMillis);
+            }
+        }
+    }
+
+    /**
+     * Forget the membership without reporting exits, e.g. when tracking stops.
+     */
+    void resetMembership() {
+        mInside.clear();
+    }
+
+    /**
+     * The keys of the index cells overlapping the bounding box of a fence.
+     */
+    private long[] cellKeys(Geofence fence) {
+        int firstRow = GridCells.row(fence.minLatitude, mCellSizeMeters);
+        int lastRow = GridCells.row(fence.maxLatitude, mCellSizeMeters);
+        long[] keys = new long[8];
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            double longitudeStep = GridCells.longitudeStep(row, mCellSizeMeters);
+            int firstColumn = (int) Math.floor(fence.minLongitude / longitudeStep);
+            int lastColumn = (int) Math.floor(fence.maxLongitude / longitudeStep);
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = ((long) row << 32) | (column & 0xffffffffL);
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+}
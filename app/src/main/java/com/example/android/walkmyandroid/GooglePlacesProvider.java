@@ -0,0 +1,138 @@
+package com.example.android.walkmyandroid;
+
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.location.places.Place;
+import com.google.android.gms.location.places.PlaceLikelihood;
+import com.google.android.gms.location.places.PlaceLikelihoodBuffer;
+import com.google.android.gms.location.places.Places;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PlacesProvider backed by the PlaceDetectionApi. The API detects the places around the device
+ * itself, so the coordinates it is given are not sent along.
+ */
+class GooglePlacesProvider implements PlacesProvider {
+
+    private static final String TAG = GooglePlacesProvider.class.getSimpleName();
+    // Used for places that do not come with a viewport
+    private static final double PLACE_FENCE_RADIUS_METERS = 40;
+
+    private final GoogleApiClient mGoogleApiClient;
+    private final long mTimeoutSeconds;
+    private final int mMaxCandidates;
+
+    /**
+     * @param googleApiClient A client with the PLACE_DETECTION_API.
+     * @param timeoutSeconds  How long to wait for the current place.
+     * @param maxCandidates   How many of the likely places to keep.
+     */
+    GooglePlacesProvider(GoogleApiClient googleApiClient, long timeoutSeconds,
+            int maxCandidates) {
+        mGoogleApiClient = googleApiClient;
+        mTimeoutSeconds = timeoutSeconds;
+        mMaxCandidates = maxCandidates;
+    }
+
+    @Override
+    public Detection detectPlaces(double latitude, double longitude) {
+        PlaceLikelihoodBuffer likelyPlaces = getCurrentPlace();
+        if (likelyPlaces == null) {
+            return null;
+        }
+        try {
+            if (!likelyPlaces.getStatus().isSuccess()) {
+                return null;
+            }
+            // Keep the most likely places
+            PlaceCandidates.Builder builder = new PlaceCandidates.Builder(mMaxCandidates);
+            Place mostLikely = null;
+            float mostLikelihood = 0;
+            for (PlaceLikelihood placeLikelihood : likelyPlaces) {
+                if (placeLikelihood.getLikelihood() > 0) {
+                    Place place = placeLikelihood.getPlace();
+                    builder.add(place.getId(), place.getName().toString(),
+                            toTypeArray(place.getPlaceTypes()),
+                            placeLikelihood.getLikelihood());
+                    if (placeLikelihood.getLikelihood() > mostLikelihood) {
+                        mostLikelihood = placeLikelihood.getLikelihood();
+                        mostLikely = place;
+                    }
+                }
+            }
+            return new Detection(builder.build(),
+                    mostLikely != null ? toPlaceFence(mostLikely) : null);
+        } finally {
+            likelyPlaces.release();
+        }
+    }
+
+    /**
+     * Get the current place from the Places API, waiting for it on the calling thread.
+     *
+     * @return The likely places, or null if the request could not be made or timed out.
+     */
+    private PlaceLikelihoodBuffer getCurrentPlace() {
+        long placeStartNanos = System.nanoTime();
+        try {
+            PendingResult<PlaceLikelihoodBuffer> placeResult = Places.PlaceDetectionApi
+                    .getCurrentPlace(mGoogleApiClient, null);
+            PlaceLikelihoodBuffer likelyPlaces =
+                    placeResult.await(mTimeoutSeconds, TimeUnit.SECONDS);
+            LatencyMetrics.recordSince(LatencyMetrics.Stage.PLACE_DETECTION, placeStartNanos);
+            return likelyPlaces;
+        } catch (SecurityException e) {
+            Log.e(TAG, "getCurrentPlace: ", e);
+        } catch (IllegalStateException e) {
+            // The client disconnected
+            Log.e(TAG, "getCurrentPlace: ", e);
+        }
+        return null;
+    }
+
+    /**
+     * @return A fence around the place's viewport, or around its position if it has none, or
+     * null if the place's type has no Android image of its own.
+     */
+    static Geofence toPlaceFence(Place place) {
+        LatLng center = place.getLatLng();
+        return toPlaceFence(place.getId(), place.getName().toString(),
+                toTypeArray(place.getPlaceTypes()), place.getViewport(), center.latitude,
+                center.longitude);
+    }
+
+    /**
+     * @param viewport The viewport of the place, or null if it has none.
+     * @return A fence around the viewport, or around the position if there is none, or null
+     * if the place's type has no Android image of its own.
+     */
+    static Geofence toPlaceFence(String id, String name, int[] types, LatLngBounds viewport,
+            double latitude, double longitude) {
+        if (PlaceTypeDrawables.forTypes(types) == R.drawable.android_plain) {
+            return null;
+        }
+        if (viewport != null) {
+            return Geofence.polygon(id, name, types,
+                    new double[]{viewport.southwest.latitude, viewport.southwest.latitude,
+                            viewport.northeast.latitude, viewport.northeast.latitude},
+                    new double[]{viewport.southwest.longitude, viewport.northeast.longitude,
+                            viewport.northeast.longitude, viewport.southwest.longitude});
+        }
+        return Geofence.circle(id, name, types, latitude, longitude,
+                PLACE_FENCE_RADIUS_METERS);
+    }
+
+    static int[] toTypeArray(List<Integer> placeTypes) {
+        int[] types = new int[placeTypes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = placeTypes.get(i);
+        }
+        return types;
+    }
+}
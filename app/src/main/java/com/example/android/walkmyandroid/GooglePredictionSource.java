@@ -0,0 +1,112 @@
+package com.example.android.walkmyandroid;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.location.places.AutocompletePrediction;
+import com.google.android.gms.location.places.AutocompletePredictionBuffer;
+import com.google.android.gms.location.places.Place;
+import com.google.android.gms.location.places.PlaceBuffer;
+import com.google.android.gms.location.places.Places;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RemoteSource backed by the GeoDataApi, with the predictions biased towards the user.
+ */
+class GooglePredictionSource implements PlaceAutocompleter.RemoteSource {
+
+    // Half the side of the area the predictions are biased towards, about 5.5km
+    private static final double BIAS_DEGREES = 0.05;
+
+    private final GoogleApiClient mGoogleApiClient;
+    private final long mTimeoutSeconds;
+
+    /**
+     * @param googleApiClient A client with the GEO_DATA_API.
+     * @param timeoutSeconds  How long to wait for the predictions.
+     */
+    GooglePredictionSource(GoogleApiClient googleApiClient, long timeoutSeconds) {
+        mGoogleApiClient = googleApiClient;
+        mTimeoutSeconds = timeoutSeconds;
+    }
+
+    @Override
+    public List<PlaceSuggestion> predict(String query, double latitude, double longitude)
+            throws IOException {
+        LatLngBounds bounds = null;
+        if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            bounds = new LatLngBounds(
+                    new LatLng(latitude - BIAS_DEGREES, longitude - BIAS_DEGREES),
+                    new LatLng(latitude + BIAS_DEGREES, longitude + BIAS_DEGREES));
+        }
+        long startNanos = System.nanoTime();
+        AutocompletePredictionBuffer predictions;
+        try {
+            PendingResult<AutocompletePredictionBuffer> result = Places.GeoDataApi
+                    .getAutocompletePredictions(mGoogleApiClient, query, bounds, null);
+            predictions = result.await(mTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (IllegalStateException e) {
+            // The client disconnected
+            throw new IOException("Unable to request predictions", e);
+        }
+        LatencyMetrics.recordSince(LatencyMetrics.Stage.AUTOCOMPLETE_REMOTE, startNanos);
+        try {
+            if (!predictions.getStatus().isSuccess()) {
+                throw new IOException("Predictions failed: " + predictions.getStatus());
+            }
+            List<PlaceSuggestion> suggestions = new ArrayList<>(predictions.getCount());
+            for (AutocompletePrediction prediction : predictions) {
+                List<Integer> types = prediction.getPlaceTypes();
+                suggestions.add(new PlaceSuggestion(prediction.getPlaceId(),
+                        prediction.getPrimaryText(null).toString(),
+                        prediction.getSecondaryText(null).toString(), Double.NaN, Double.NaN,
+                        types != null ? GooglePlacesProvider.toTypeArray(types) : new int[0]));
+            }
+            return suggestions;
+        } finally {
+            predictions.release();
+        }
+    }
+
+    /**
+     * Get the details of a predicted place, waiting for them on the calling thread.
+     *
+     * @param placeId The ID of the place.
+     * @return The place, frozen so that it outlives the request.
+     * @throws IOException If the place could not be fetched.
+     */
+    Place fetchPlace(String placeId) throws IOException {
+        PlaceBuffer places;
+        try {
+            places = Places.GeoDataApi.getPlaceById(mGoogleApiClient, placeId)
+                    .await(mTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (IllegalStateException e) {
+            // The client disconnected
+            throw new IOException("Unable to request place " + placeId, e);
+        }
+        try {
+            if (!places.getStatus().isSuccess() || places.getCount() == 0) {
+                throw new IOException("Place " + placeId + " not found: " + places.getStatus());
+            }
+            return places.get(0).freeze();
+        } finally {
+            places.release();
+        }
+    }
+
+    /**
+     * @return The suggestion for a place the user selected, with its position.
+     */
+    static PlaceSuggestion toSuggestion(Place place) {
+        CharSequence address = place.getAddress();
+        LatLng position = place.getLatLng();
+        return new PlaceSuggestion(place.getId(), place.getName().toString(),
+                address != null ? address.toString() : "", position.latitude,
+                position.longitude, GooglePlacesProvider.toTypeArray(place.getPlaceTypes()));
+    }
+}
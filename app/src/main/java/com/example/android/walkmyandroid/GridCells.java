@@ -0,0 +1,44 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Quantizes coordinates onto a grid of roughly square cells, so that nearby locations share a key.
+ */
+final class GridCells {
+
+    static final double METERS_PER_DEGREE = 111320.0;
+
+    private GridCells() {
+    }
+
+    /**
+     * Compute the key of the cell that contains the given coordinates.
+     *
+     * @param latitude        The latitude, in degrees.
+     * @param longitude       The longitude, in degrees.
+     * @param cellSizeMeters  The edge length of a cell, in meters.
+     * @return The row of the cell in the upper 32 bits and the column in the lower 32 bits.
+     */
+    static long cellKey(double latitude, double longitude, double cellSizeMeters) {
+        int row = row(latitude, cellSizeMeters);
+        int column = (int) Math.floor(longitude / longitudeStep(row, cellSizeMeters));
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    static int row(double latitude, double cellSizeMeters) {
+        return (int) Math.floor(latitude / latitudeStep(cellSizeMeters));
+    }
+
+    static double latitudeStep(double cellSizeMeters) {
+        return cellSizeMeters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * The width of a cell in degrees of longitude. It only depends on the row, so that all the
+     * cells of a row line up and the cells stay roughly square away from the equator.
+     */
+    static double longitudeStep(int row, double cellSizeMeters) {
+        double latitudeStep = latitudeStep(cellSizeMeters);
+        double rowCenter = Math.min(89.0, Math.abs((row + 0.5) * latitudeStep));
+        return latitudeStep / Math.cos(Math.toRadians(rowCenter));
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Static 3-d tree over points on the Earth, for nearest neighbour lookups.
+ *
+ * <p>Points are stored as unit vectors, where the straight line distance orders points the
+ * same way as the great circle distance. The tree is implicit: the points are packed into a
+ * single array, and the node of the range [lo, hi) is the point at its middle, which splits
+ * the range on the axis given by the depth. Building partitions the ranges in place, in
+ * O(n log n) time and without any per-node objects.
+ */
+final class KdTree {
+
+    private static final int DIMENSIONS = 3;
+
+    // x, y, z of each point, in tree order
+    private final double[] mCoordinates;
+    // The index the caller used for each point, in tree order
+    private final int[] mIds;
+
+    private KdTree(double[] coordinates, int[] ids) {
+        mCoordinates = coordinates;
+        mIds = ids;
+    }
+
+    /**
+     * Build a tree over the given points. The arrays are not kept.
+     *
+     * @param latitudes  The latitudes of the points, in degrees.
+     * @param longitudes The longitudes of the points, in degrees.
+     * @return The tree; lookups return indexes into the given arrays.
+     */
+    static KdTree build(double[] latitudes, double[] longitudes) {
+        int count = latitudes.length;
+        if (longitudes.length != count) {
+            throw new IllegalArgumentException("Latitudes and longitudes differ in length");
+        }
+        double[] coordinates = new double[count * DIMENSIONS];
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            double phi = Math.toRadians(latitudes[i]);
+            double lambda = Math.toRadians(longitudes[i]);
+            double cosPhi = Math.cos(phi);
+            coordinates[i * DIMENSIONS] = cosPhi * Math.cos(lambda);
+            coordinates[i * DIMENSIONS + 1] = cosPhi * Math.sin(lambda);
+            coordinates[i * DIMENSIONS + 2] = Math.sin(phi);
+            ids[i] = i;
+        }
+        partition(coordinates, ids, 0, count, 0);
+        return new KdTree(coordinates, ids);
+    }
+
+    int size() {
+        return mIds.length;
+    }
+
+    /**
+     * @return The index of the point nearest to the coordinates, or -1 if the tree is empty.
+     */
+    int nearest(double latitude, double longitude) {
+        if (mIds.length == 0) {
+            return -1;
+        }
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double cosPhi = Math.cos(phi);
+        Search search = new Search(cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda),
+                Math.sin(phi));
+        search(search, 0, mIds.length, 0);
+        return mIds[search.best];
+    }
+
+    private void search(Search search, int lo, int hi, int depth) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int base = mid * DIMENSIONS;
+            double dx = mCoordinates[base] - search.x;
+            double dy = mCoordinates[base + 1] - search.y;
+            double dz = mCoordinates[base + 2] - search.z;
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < search.bestDistance) {
+                search.bestDistance = distance;
+                search.best = mid;
+            }
+
+            int axis = depth % DIMENSIONS;
+            double delta = search.axis(axis) - mCoordinates[base + axis];
+            depth++;
+            // Descend into the side of the query first, and the other side only if the
+            // splitting plane is closer than the best point so far
+            if (delta < 0) {
+                search(search, lo, mid, depth);
+                if (delta * delta >= search.bestDistance) {
+                    return;
+                }
+                lo = mid + 1;
+            } else {
+                search(search, mid + 1, hi, depth);
+                if (delta * delta >= search.bestDistance) {
+                    return;
+                }
+                hi = mid;
+            }
+        }
+    }
+
+    private static void partition(double[] coordinates, int[] ids, int lo, int hi, int depth) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(coordinates, ids, lo, hi - 1, mid, depth % DIMENSIONS);
+            partition(coordinates, ids, lo, mid, depth + 1);
+            lo = mid + 1;
+            depth++;
+        }
+    }
+
+    /**
+     * Quickselect: reorder [lo, hi] so that the point at k has the k-th smallest value on the
+     * axis, with smaller or equal values before it and larger or equal values after it.
+     */
+    private static void select(double[] coordinates, int[] ids, int lo, int hi, int k,
+            int axis) {
+        while (hi > lo) {
+            // Median of three as the pivot, to stay fast on sorted input
+            int middle = (lo + hi) >>> 1;
+            if (value(coordinates, middle, axis) < value(coordinates, lo, axis)) {
+                swap(coordinates, ids, middle, lo);
+            }
+            if (value(coordinates, hi, axis) < value(coordinates, lo, axis)) {
+                swap(coordinates, ids, hi, lo);
+            }
+            if (value(coordinates, hi, axis) < value(coordinates, middle, axis)) {
+                swap(coordinates, ids, hi, middle);
+            }
+            double pivot = value(coordinates, middle, axis);
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (value(coordinates, i, axis) < pivot) {
+                    i++;
+                }
+                while (value(coordinates, j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(coordinates, ids, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double value(double[] coordinates, int point, int axis) {
+        return coordinates[point * DIMENSIONS + axis];
+    }
+
+    private static void swap(double[] coordinates, int[] ids, int a, int b) {
+        int baseA = a * DIMENSIONS;
+        int baseB = b * DIMENSIONS;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double coordinate = coordinates[baseA + d];
+            coordinates[baseA + d] = coordinates[baseB + d];
+            coordinates[baseB + d] = coordinate;
+        }
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+
+    private static final class Search {
+        final double x;
+        final double y;
+        final double z;
+        int best;
+        double bestDistance = Double.MAX_VALUE;
+
+        Search(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        double axis(int axis) {
+            return axis == 0 ? x : (axis == 1 ? y : z);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.walkmyandroid;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed bucket histogram of durations, safe to record into from any thread without allocating.
+ *
+ * <p>Durations are kept in microseconds, in buckets that split every power of two into four, so
+ * that a reported percentile is at most 25% above the true value. Percentiles report the upper
+ * bound of the bucket they fall in.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for durations up to 2^36 microseconds, about 19 hours
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKET_COUNT = SUB_BUCKETS * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /**
+     * @param nanos The duration to record, in nanoseconds.
+     */
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        mCounts.incrementAndGet(bucketOf(micros));
+        long max = mMaxMicros.get();
+        while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+            max = mMaxMicros.get();
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mMaxMicros.set(0);
+    }
+
+    /**
+     * @return The count and percentiles of the durations recorded so far.
+     */
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        // A bucket's upper bound can overshoot the largest recorded value
+        long max = mMaxMicros.get();
+        return new Snapshot(total, Math.min(max, percentile(counts, total, 0.50)),
+                Math.min(max, percentile(counts, total, 0.95)),
+                Math.min(max, percentile(counts, total, 0.99)), max);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exponent - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    /**
+     * @return The smallest duration, in microseconds, that is above every value of the bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static long percentile(long[] counts, long total, double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    /**
+     * The state of a histogram at one point in time. Durations are in microseconds.
+     */
+    static final class Snapshot {
+        final long count;
+        final long p50Micros;
+        final long p95Micros;
+        final long p99Micros;
+        final long maxMicros;
+
+        Snapshot(long count, long p50Micros, long p95Micros, long p99Micros, long maxMicros) {
+            this.count = count;
+            this.p50Micros = p50Micros;
+            this.p95Micros = p95Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + count + " p50=" + formatMillis(p50Micros) + " p95="
+                    + formatMillis(p95Micros) + " p99=" + formatMillis(p99Micros) + " max="
+                    + formatMillis(maxMicros);
+        }
+
+        private static String formatMillis(long micros) {
+            return (micros / 1000) + "." + (micros % 1000 / 100) + "ms";
+        }
+    }
+}
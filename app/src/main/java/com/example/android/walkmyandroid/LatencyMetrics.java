@@ -0,0 +1,81 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Process wide latency histograms for the stages a fix goes through on its way to a displayed
+ * address, and for the startup of the activity. Recording is allocation free, so it can stay
+ * on in the hot path; snapshots can be pulled at any time.
+ */
+final class LatencyMetrics {
+
+    enum Stage {
+        /** From the time the fix was taken to its delivery in onLocationChanged. */
+        LOCATION_ARRIVAL,
+        /** From the submission of a lookup to the start of its work on a geocode worker. */
+        QUEUE,
+        /** The platform Geocoder call. */
+        GEOCODE,
+        /** The getCurrentPlace round trip. */
+        PLACE_DETECTION,
+        /** From starting the lookup of a fix to its address reaching the activity. */
+        FIX_TO_ADDRESS,
+        /** The main thread time taken to show the result of a lookup; long ones drop frames. */
+        RESULT_MAIN_THREAD,
+        /** From the start of the activity to its first drawn frame. */
+        STARTUP_FIRST_FRAME,
+        /** From the start of the activity to the first address on screen. */
+        STARTUP_FIRST_ADDRESS,
+        /** The getAutocompletePredictions round trip, for queries not answered locally. */
+        AUTOCOMPLETE_REMOTE
+    }
+
+    private static final LatencyHistogram[] sHistograms =
+            new LatencyHistogram[Stage.values().length];
+
+    static {
+        for (int i = 0; i < sHistograms.length; i++) {
+            sHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private LatencyMetrics() {
+    }
+
+    /**
+     * @param stage The stage that was timed.
+     * @param nanos How long it took, in nanoseconds.
+     */
+    static void record(Stage stage, long nanos) {
+        sHistograms[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Record the time elapsed since a System.nanoTime() reading.
+     */
+    static void recordSince(Stage stage, long startNanos) {
+        sHistograms[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    static LatencyHistogram.Snapshot snapshot(Stage stage) {
+        return sHistograms[stage.ordinal()].snapshot();
+    }
+
+    static void reset() {
+        for (LatencyHistogram histogram : sHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return One line per stage that recorded anything, for the log.
+     */
+    static String dump() {
+        StringBuilder builder = new StringBuilder("Latency:");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot snapshot = snapshot(stage);
+            if (snapshot.count > 0) {
+                builder.append('\n').append(stage).append(' ').append(snapshot);
+            }
+        }
+        return builder.toString();
+    }
+}
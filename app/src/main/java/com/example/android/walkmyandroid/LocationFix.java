@@ -0,0 +1,45 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * An immutable location fix, free of any Android type so that it can be recorded and replayed
+ * on the JVM.
+ */
+final class LocationFix {
+
+    static final float UNKNOWN = -1f;
+
+    final double latitude;
+    final double longitude;
+    final long timeMillis;
+    /** The horizontal accuracy radius in meters, or UNKNOWN. */
+    final float accuracyMeters;
+    /** The ground speed in meters per second, or UNKNOWN. */
+    final float speedMetersPerSecond;
+
+    LocationFix(double latitude, double longitude, long timeMillis, float accuracyMeters,
+            float speedMetersPerSecond) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timeMillis = timeMillis;
+        this.accuracyMeters = accuracyMeters;
+        this.speedMetersPerSecond = speedMetersPerSecond;
+    }
+
+    boolean hasAccuracy() {
+        return accuracyMeters >= 0;
+    }
+
+    boolean hasSpeed() {
+        return speedMetersPerSecond >= 0;
+    }
+
+    double distanceTo(LocationFix other) {
+        return GeoMath.distanceMeters(latitude, longitude, other.latitude, other.longitude);
+    }
+
+    @Override
+    public String toString() {
+        return "LocationFix{" + latitude + ", " + longitude + " @" + timeMillis
+                + " accuracy " + accuracyMeters + "m, speed " + speedMetersPerSecond + "m/s}";
+    }
+}
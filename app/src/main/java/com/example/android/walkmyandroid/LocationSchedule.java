@@ -0,0 +1,49 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * The update rate and power mode to request location updates with.
+ */
+final class LocationSchedule {
+
+    enum Accuracy {
+        HIGH_ACCURACY,
+        BALANCED_POWER
+    }
+
+    final long intervalMillis;
+    final long fastestIntervalMillis;
+    final Accuracy accuracy;
+
+    LocationSchedule(long intervalMillis, long fastestIntervalMillis, Accuracy accuracy) {
+        this.intervalMillis = intervalMillis;
+        this.fastestIntervalMillis = fastestIntervalMillis;
+        this.accuracy = accuracy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LocationSchedule)) {
+            return false;
+        }
+        LocationSchedule other = (LocationSchedule) o;
+        return intervalMillis == other.intervalMillis
+                && fastestIntervalMillis == other.fastestIntervalMillis
+                && accuracy == other.accuracy;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (intervalMillis ^ (intervalMillis >>> 32));
+        result = 31 * result + (int) (fastestIntervalMillis ^ (fastestIntervalMillis >>> 32));
+        return 31 * result + accuracy.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "LocationSchedule{" + intervalMillis + "/" + fastestIntervalMillis + "ms, "
+                + accuracy + "}";
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Chooses how often to request location updates from the fixes received so far.
+ */
+interface LocationSchedulePolicy {
+
+    /**
+     * @return The schedule to start tracking with.
+     */
+    LocationSchedule getInitialSchedule();
+
+    /**
+     * Feed a new fix to the policy.
+     *
+     * @param fix The fix that was just received.
+     * @return The schedule to use from now on; the location request only needs to be issued
+     * again when it differs from the previous one.
+     */
+    LocationSchedule onFix(LocationFix fix);
+
+    /**
+     * Forget the fixes seen so far, when tracking is stopped.
+     */
+    void reset();
+}
@@ -0,0 +1,44 @@
+package com.example.android.walkmyandroid;
+
+import java.util.List;
+
+/**
+ * Delivers location fixes, from the fused location provider on a device or from a recorded
+ * trace in a load test.
+ */
+interface LocationSource {
+
+    /** In batched mode, fixes are delivered together once this many intervals have passed. */
+    int BATCH_INTERVALS = 6;
+
+    /**
+     * Receives the fixes, raw, before any filtering or smoothing.
+     */
+    interface Listener {
+        /**
+         * Called with each fix when updates are not batched.
+         */
+        void onFix(LocationFix fix);
+
+        /**
+         * Called with the fixes collected since the last batch, oldest first, when updates
+         * are batched.
+         */
+        void onFixes(List<LocationFix> fixes);
+    }
+
+    /**
+     * Start delivering fixes, replacing the previous request if there is one.
+     *
+     * @param schedule The update intervals and power mode.
+     * @param batched  True to deliver the fixes in batches.
+     * @param listener The listener of the fixes.
+     * @throws SecurityException If the location permission is not granted.
+     */
+    void requestUpdates(LocationSchedule schedule, boolean batched, Listener listener);
+
+    /**
+     * Stop delivering fixes.
+     */
+    void removeUpdates();
+}
@@ -0,0 +1,281 @@
+package com.example.android.walkmyandroid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The components that turn location fixes into addresses and places, with the settings the app
+ * runs them with. FetchAddressIntentService and MainActivity build their components here, and so
+ * does the replay load test, so that it measures the same pipeline against fake backends.
+ *
+ * <p>An instance is the geocode stack: a single flight geocoder over the offline fallback, over
+ * the caching geocoders of each locale, over the backend behind a shared rate limit and circuit
+ * breaker; plus the engine, the batch geocoder and the prefetcher that use it. Prefetches, the
+ * older fixes of a batch and lookups in other locales only take what the lookups on screen leave
+ * of the rate limit. The components the activity owns are built by the static factories.
+ */
+final class LookupPipeline {
+
+    // Lookups are only made once the user moved 20 m, or 2 minutes passed
+    private static final double LOOKUP_MIN_DISTANCE_METERS = 20;
+    private static final long LOOKUP_MIN_INTERVAL_MILLIS = 2 * 60 * 1000;
+    static final double PLACE_CELL_SIZE_METERS = 30;
+    private static final long PLACE_BUCKET_MILLIS = 3 * 60 * 60 * 1000;
+    private static final long PLACE_TTL_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final int PLACE_CACHE_ENTRIES = 128;
+    private static final float FIX_MAX_ACCURACY_METERS = 100;
+    private static final double FIX_MAX_SPEED_METERS_PER_SECOND = 70;
+    private static final double FIX_PROCESS_NOISE_METERS_PER_SECOND = 3;
+    private static final long FIX_RESET_GAP_MILLIS = 5 * 60 * 1000;
+
+    static final double ADDRESS_CELL_SIZE_METERS = 25;
+    private static final long ADDRESS_TTL_MILLIS = 30 * 60 * 1000;
+    private static final int ADDRESS_CACHE_ENTRIES = 256;
+    // One store per locale, e.g. addresses_en_US.db
+    private static final String ADDRESS_STORE_PREFIX = "addresses_";
+    private static final String ADDRESS_STORE_SUFFIX = ".db";
+    private static final long ADDRESS_STORE_MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final int ADDRESS_STORE_ENTRIES = 4096;
+    private static final int GEOCODE_WORKERS = 2;
+    private static final int GEOCODE_QUEUE_CAPACITY = 8;
+    private static final double BATCH_DEDUPE_METERS = 10;
+    private static final double BATCH_TURN_DEGREES = 35;
+    private static final double BATCH_MAX_SPACING_METERS = 200;
+    private static final double OFFLINE_MAX_DISTANCE_METERS = 150;
+    // Set to answer from the offline dataset before trying the network
+    private static final boolean OFFLINE_FIRST = false;
+    // Protects the network geocoder: a burst of 5 lookups, then 1 per second
+    private static final int GEOCODE_BURST = 5;
+    private static final double GEOCODE_PER_SECOND = 1;
+    private static final int GEOCODE_RETRIES = 2;
+    private static final long GEOCODE_BACKOFF_MILLIS = 250;
+    private static final long GEOCODE_MAX_BACKOFF_MILLIS = 2000;
+    private static final long GEOCODE_SLOW_CALL_MILLIS = 5000;
+    // Prefetches, older batch fixes and lookups in other languages can wait, so they leave 3 of
+    // the 5 tokens to the lookups on screen, and are not retried
+    private static final int GEOCODE_BACKGROUND_RESERVE = 3;
+    private static final int BREAKER_FAILURES = 3;
+    private static final long BREAKER_OPEN_MILLIS = 30 * 1000;
+    private static final int PREFETCH_LOOKAHEAD = 3;
+    private static final int PREFETCH_CALLS_PER_MINUTE = 10;
+    // How many of the user's other languages are looked up at the same time, and how many
+    // such lookups may wait
+    private static final int LOCALE_FAN_OUT_THREADS = 2;
+    private static final int LOCALE_FAN_OUT_QUEUE = 16;
+
+    private final GeocoderProvider mProvider;
+    private final File mStoreDirectory;
+    private final Clock mClock;
+    // All the locales share the budget and the health of the same backend
+    private final TokenBucket mBudget;
+    private final CircuitBreaker mBreaker;
+    private final Random mRandom = new Random();
+    // Guarded by this
+    private final List<ResilientReverseGeocoder> mNetworkGeocoders = new ArrayList<>();
+    private final List<ResilientReverseGeocoder> mBackgroundGeocoders = new ArrayList<>();
+
+    private final MultiLocaleReverseGeocoder mMultiLocaleGeocoder;
+    private final FallbackReverseGeocoder mFallback;
+    private final CachingReverseGeocoder mCachingGeocoder;
+    private final SingleFlightReverseGeocoder mGeocoder;
+    private final GeocodeEngine mEngine;
+    private final BatchGeocoder mBatchGeocoder;
+    private final AddressPrefetcher mPrefetcher;
+
+    /**
+     * @param provider       The backend geocoder of each locale.
+     * @param storeDirectory The directory of the address stores, one file per locale.
+     * @param locales        The locales to keep addresses in; the first one is current.
+     * @param clock          The clock of the caches, the stores and the backend protection.
+     */
+    LookupPipeline(GeocoderProvider provider, File storeDirectory, List<Locale> locales,
+            Clock clock) {
+        mProvider = provider;
+        mStoreDirectory = storeDirectory;
+        mClock = clock;
+        mBudget = new TokenBucket(GEOCODE_BURST, GEOCODE_PER_SECOND, clock);
+        mBreaker = new CircuitBreaker(BREAKER_FAILURES, BREAKER_OPEN_MILLIS, clock);
+        mMultiLocaleGeocoder = new MultiLocaleReverseGeocoder(
+                new MultiLocaleReverseGeocoder.Factory() {
+                    @Override
+                    public CachingReverseGeocoder create(Locale locale) {
+                        return newCachingGeocoder(locale);
+                    }
+                }, locales, LOCALE_FAN_OUT_THREADS, LOCALE_FAN_OUT_QUEUE);
+        // While the network geocoder is failing fast, cached and offline answers remain
+        mFallback = new FallbackReverseGeocoder(mMultiLocaleGeocoder, OFFLINE_FIRST);
+        mCachingGeocoder = mMultiLocaleGeocoder.getGeocoder(locales.get(0));
+        mGeocoder = new SingleFlightReverseGeocoder(mFallback, ADDRESS_CELL_SIZE_METERS);
+        mEngine = new GeocodeEngine(mGeocoder, GEOCODE_WORKERS, GEOCODE_QUEUE_CAPACITY);
+        // The older fixes are off screen, so they only take what the lookups on screen leave
+        mBatchGeocoder = new BatchGeocoder(mGeocoder, new ReverseGeocoder() {
+            @Override
+            public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+                return getAddressInBackground(latitude, longitude);
+            }
+        }, BATCH_DEDUPE_METERS, BATCH_TURN_DEGREES, BATCH_MAX_SPACING_METERS);
+        // Warms the cache of the locale addresses are shown in, which may change
+        mPrefetcher = new AddressPrefetcher(new AddressPrefetcher.Target() {
+            @Override
+            public CachingReverseGeocoder current() {
+                return mMultiLocaleGeocoder.getCurrentGeocoder();
+            }
+        }, mEngine, ADDRESS_CELL_SIZE_METERS, PREFETCH_LOOKAHEAD, PREFETCH_CALLS_PER_MINUTE,
+                clock);
+    }
+
+    static FixSmoother newFixSmoother() {
+        return new FixSmoother(FIX_MAX_ACCURACY_METERS, FIX_MAX_SPEED_METERS_PER_SECOND,
+                FIX_PROCESS_NOISE_METERS_PER_SECOND, FIX_RESET_GAP_MILLIS);
+    }
+
+    static MovementGate newMovementGate() {
+        return new MovementGate(LOOKUP_MIN_DISTANCE_METERS, LOOKUP_MIN_INTERVAL_MILLIS);
+    }
+
+    static PlaceCache newPlaceCache(Clock clock) {
+        return new PlaceCache(PLACE_CELL_SIZE_METERS, PLACE_BUCKET_MILLIS, PLACE_TTL_MILLIS,
+                PLACE_CACHE_ENTRIES, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED, clock);
+    }
+
+    /**
+     * @return The geocoder to look addresses up with; concurrent lookups for the same cell
+     * share a single call.
+     */
+    ReverseGeocoder getGeocoder() {
+        return mGeocoder;
+    }
+
+    MultiLocaleReverseGeocoder getMultiLocaleGeocoder() {
+        return mMultiLocaleGeocoder;
+    }
+
+    /**
+     * @return The caching geocoder of the first locale.
+     */
+    CachingReverseGeocoder getCachingGeocoder() {
+        return mCachingGeocoder;
+    }
+
+    /**
+     * @return The address cache of the current locale.
+     */
+    AddressCache getAddressCache() {
+        return mMultiLocaleGeocoder.getCurrentGeocoder().getCache();
+    }
+
+    SingleFlightReverseGeocoder getSingleFlightGeocoder() {
+        return mGeocoder;
+    }
+
+    GeocodeEngine getEngine() {
+        return mEngine;
+    }
+
+    BatchGeocoder getBatchGeocoder() {
+        return mBatchGeocoder;
+    }
+
+    AddressPrefetcher getPrefetcher() {
+        return mPrefetcher;
+    }
+
+    /**
+     * Load an offline address dataset, and answer from it when the network geocoder cannot.
+     * Slow for a large dataset, so it should run on a background thread.
+     *
+     * @param in The dataset, as read by {@link OfflineReverseGeocoder#load}; it is closed once
+     *           read.
+     * @return The number of addresses loaded.
+     * @throws IOException If the dataset cannot be read.
+     */
+    int loadOfflineDataset(InputStream in) throws IOException {
+        OfflineReverseGeocoder offline =
+                OfflineReverseGeocoder.load(in, OFFLINE_MAX_DISTANCE_METERS);
+        mFallback.setOffline(offline);
+        return offline.size();
+    }
+
+    /**
+     * @return The number of lookups of any locale refused by the rate limit or the breaker,
+     * not counting prefetches and lookups in other locales.
+     */
+    synchronized long getRejectedCount() {
+        return sumRejected(mNetworkGeocoders);
+    }
+
+    /**
+     * @return The number of prefetches and lookups in other locales refused by the rate limit,
+     * to leave its reserve, or by the breaker.
+     */
+    synchronized long getBackgroundRejectedCount() {
+        return sumRejected(mBackgroundGeocoders);
+    }
+
+    private static long sumRejected(List<ResilientReverseGeocoder> geocoders) {
+        long rejected = 0;
+        for (ResilientReverseGeocoder geocoder : geocoders) {
+            rejected += geocoder.getRejectedCount();
+        }
+        return rejected;
+    }
+
+    synchronized long getRetryCount() {
+        long retries = 0;
+        for (ResilientReverseGeocoder geocoder : mNetworkGeocoders) {
+            retries += geocoder.getRetryCount();
+        }
+        return retries;
+    }
+
+    /**
+     * @return The number of times the breaker of the backend opened.
+     */
+    long getBreakerOpenCount() {
+        return mBreaker.getOpenCount();
+    }
+
+    /**
+     * Look an address up in the current locale through the background path, and keep it in
+     * the caches.
+     *
+     * @return The address, or null if there is none.
+     */
+    private GeoAddress getAddressInBackground(double latitude, double longitude)
+            throws IOException {
+        CachingReverseGeocoder current = mMultiLocaleGeocoder.getCurrentGeocoder();
+        current.prefetch(latitude, longitude);
+        return current.getCache().peek(latitude, longitude);
+    }
+
+    /**
+     * Build the memory and disk caches of a locale, over the backend geocoder for it.
+     */
+    private CachingReverseGeocoder newCachingGeocoder(Locale locale) {
+        AddressCache cache = new AddressCache(ADDRESS_CELL_SIZE_METERS, ADDRESS_TTL_MILLIS,
+                ADDRESS_CACHE_ENTRIES, mClock);
+        DiskAddressStore diskStore = new DiskAddressStore(
+                new File(mStoreDirectory, ADDRESS_STORE_PREFIX + locale + ADDRESS_STORE_SUFFIX),
+                ADDRESS_STORE_MAX_AGE_MILLIS, ADDRESS_STORE_ENTRIES, mClock);
+        diskStore.preload();
+        ReverseGeocoder backend = mProvider.forLocale(locale);
+        ResilientReverseGeocoder network = new ResilientReverseGeocoder(backend, mBudget,
+                mBreaker, GEOCODE_RETRIES, GEOCODE_BACKOFF_MILLIS, GEOCODE_MAX_BACKOFF_MILLIS,
+                GEOCODE_SLOW_CALL_MILLIS, mClock, ResilientReverseGeocoder.Sleeper.SYSTEM,
+                mRandom);
+        ResilientReverseGeocoder background = new ResilientReverseGeocoder(backend, mBudget,
+                GEOCODE_BACKGROUND_RESERVE, mBreaker, 0, GEOCODE_BACKOFF_MILLIS,
+                GEOCODE_MAX_BACKOFF_MILLIS, GEOCODE_SLOW_CALL_MILLIS, mClock,
+                ResilientReverseGeocoder.Sleeper.SYSTEM, mRandom);
+        synchronized (this) {
+            mNetworkGeocoders.add(network);
+            mBackgroundGeocoders.add(background);
+        }
+        return new CachingReverseGeocoder(network, background, cache, diskStore);
+    }
+}
@@ -3,19 +3,30 @@ package com.example.android.walkmyandroid;
 import android.Manifest;
 import android.animation.AnimatorInflater;
 import android.animation.AnimatorSet;
+import android.content.Context;
 import android.content.Intent;
 import android.content.IntentSender;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.ResultReceiver;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
+import android.widget.Filter;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -25,25 +36,26 @@ import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
-import com.google.android.gms.location.LocationListener;
-import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.LocationSettingsRequest;
 import com.google.android.gms.location.LocationSettingsResult;
 import com.google.android.gms.location.LocationSettingsStatusCodes;
 import com.google.android.gms.location.places.Place;
-import com.google.android.gms.location.places.PlaceLikelihood;
-import com.google.android.gms.location.places.PlaceLikelihoodBuffer;
 import com.google.android.gms.location.places.Places;
-import com.google.android.gms.location.places.ui.PlaceAutocompleteFragment;
 import com.google.android.gms.location.places.ui.PlacePicker;
-import com.google.android.gms.location.places.ui.PlaceSelectionListener;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 public class MainActivity extends AppCompatActivity implements
-        GoogleApiClient.OnConnectionFailedListener, GoogleApiClient.ConnectionCallbacks,
-        LocationListener {
+        GoogleApiClient.OnConnectionFailedListener, GoogleApiClient.ConnectionCallbacks {
 
     private static final int REQUEST_LOCATION_PERMISSION = 1;
     private static final int REQUEST_CHECK_SETTINGS = 2;
@@ -51,50 +63,182 @@ public class MainActivity extends AppCompatActivity implements
     private static final String LAST_DATE_KEY = "last_date";
     private static final String LAST_ADDRESS_KEY = "last_address";
     private static final String LAST_PLACE_NAME_KEY = "last_place";
+    private static final String LAST_ADDRESS_KNOWN_KEY = "last_address_known";
     private static final String TRACKING_LOCATION_KEY = "tracking_location";
+    private static final String BATCHED_TRACKING_KEY = "batched_tracking";
     private static final String TAG = MainActivity.class.getSimpleName();
+    private static final int PLACE_CANDIDATES = 5;
+    private static final long PLACE_DETECTION_TIMEOUT_SECONDS = 10;
+    private static final long METRICS_LOG_INTERVAL_MILLIS = 60 * 1000;
+    private static final double FENCE_CELL_SIZE_METERS = 200;
+    private static final long FENCE_DWELL_MILLIS = 2 * 60 * 1000;
+    // The fenced places outlive the activity, so only the most recently shown ones are kept
+    private static final int FENCE_MAX_COUNT = 128;
+    private static final double TRACK_TOLERANCE_METERS = 5;
+    private static final int TRACK_MAX_WINDOW = 256;
+    private static final String TRACKS_DIRECTORY = "tracks";
+    private static final String PLACE_INDEX_FILE = "places.idx";
+    private static final long TRACK_SEGMENT_BYTES = 1024 * 1024;
+    // Draw the UI first and set up the Google API client, the search suggestions and the
+    // geocoder once the first frame is on screen
+    private static final boolean DEFER_STARTUP = true;
+    private static final String LAST_RESULT_PREFERENCES = "last_result";
+    // The search bar suggests the places selected before, and only asks the Places API for
+    // queries of 3 characters or more that match fewer than 3 of them, once the typing pauses
+    private static final int AUTOCOMPLETE_PLACES = 200;
+    private static final double AUTOCOMPLETE_DISTANCE_SCALE_METERS = 2000;
+    private static final int AUTOCOMPLETE_MIN_LOCAL_RESULTS = 3;
+    private static final int AUTOCOMPLETE_MIN_REMOTE_QUERY_LENGTH = 3;
+    private static final int AUTOCOMPLETE_RESULTS = 5;
+    private static final int AUTOCOMPLETE_REMOTE_CACHE_ENTRIES = 32;
+    private static final long AUTOCOMPLETE_DEBOUNCE_MILLIS = 250;
+    private static final long AUTOCOMPLETE_TIMEOUT_SECONDS = 5;
+    // The decoded place images may take up to an eighth of the heap
+    private static final int PLACE_IMAGE_HEAP_FRACTION = 8;
+    // Shared across activity instances so the writer thread survives configuration changes
+    private static TripRecorder sTripRecorder;
+    // Shared across activity instances so the decoded images survive configuration changes
+    private static PlaceImageLoader sPlaceImages;
+    // Turns lookup results into view models, away from the main thread
+    private static HandlerThread sResultThread;
+    // Shared across activity instances so the detected places survive configuration changes
+    private static final PlaceCache sPlaceCache = LookupPipeline.newPlaceCache(Clock.SYSTEM);
+    // Shared across activity instances so the selected places survive configuration changes
+    private static PlacePrefixIndex sPlaceIndex;
+    // Answers the search bar, away from the main thread
+    private static ScheduledExecutorService sAutocompleteThread;
+    // Shared across activity instances so the fences of the places seen survive configuration
+    // changes; the transitions go to the activity shown, if any. Only used on the main thread.
+    private static GeofenceEngine sGeofences;
+    private static MainActivity sGeofenceActivity;
     private AddressResultReceiver mResultReceiver;
     private GoogleApiClient mGoogleApiClient;
+    private LocationSource mLocationSource;
+    // Only used on the result thread once set up
+    private volatile PlacesProvider mPlacesProvider;
     private Button mLocationButton;
     private TextView mLocationTextView;
     private ImageView mAndroidImageView;
     private String mLastAddress;
-    private long mLastUpdateDate;
-    private boolean mTrackingLocation;
-    private String mLastPlaceName;
+    // False while mLastAddress holds an error message rather than an address
+    private boolean mLastAddressKnown;
+    // Written on the main thread, and also read on the result thread
+    private volatile long mLastUpdateDate;
+    private volatile boolean mTrackingLocation;
+    private volatile String mLastPlaceName;
+    private volatile boolean mInsideFence;
+    private boolean mBatchedTracking;
     private AnimatorSet mRotateAnim;
-    private PlaceAutocompleteFragment mAutocompleteFragment;
+    private AutoCompleteTextView mPlaceSearch;
+    private SuggestionAdapter mSuggestions;
+    private Debouncer<String> mQueryDebouncer;
+    private GooglePredictionSource mPredictionSource;
+    // Only used on the autocomplete thread once set up
+    private volatile PlaceAutocompleter mAutocompleter;
+    // The latest smoothed fix, which the suggestions are ranked and biased by
+    private volatile LocationFix mLastFix;
+    private final MovementGate mMovementGate = LookupPipeline.newMovementGate();
+    private final LocationSchedulePolicy mSchedulePolicy = new AdaptiveSchedulePolicy();
+    private LocationSchedule mSchedule;
+    private StartupTrace mStartupTrace;
+    private final Handler mStartupHandler = new Handler();
+    private final FixSmoother mSmoother = LookupPipeline.newFixSmoother();
+    // Only the key points of the path are recorded
+    private final TrackSimplifier mSimplifier =
+            new TrackSimplifier(TRACK_TOLERANCE_METERS, TRACK_MAX_WINDOW);
+    // The coordinates of the last address lookup, used as the key of the place cache
+    private volatile double mLookupLatitude;
+    private volatile double mLookupLongitude;
+    // When the fix that started the last lookup arrived, as a System.nanoTime() reading
+    private volatile long mLookupStartNanos;
+    private final Handler mMetricsHandler = new Handler();
+    private final Runnable mLogMetrics = new Runnable() {
+        @Override
+        public void run() {
+            Log.d(TAG, LatencyMetrics.dump());
+            mMetricsHandler.postDelayed(this, METRICS_LOG_INTERVAL_MILLIS);
+        }
+    };
+    private final LocationSource.Listener mLocationListener = new LocationSource.Listener() {
+        @Override
+        public void onFix(LocationFix fix) {
+            onLocationChanged(fix);
+        }
+
+        @Override
+        public void onFixes(List<LocationFix> fixes) {
+            onLocationsBatched(fixes);
+        }
+    };
+    private final Runnable mDeferredInit = new Runnable() {
+        @Override
+        public void run() {
+            if (isFinishing()) {
+                return;
+            }
+            long nanos = mStartupTrace.mark(StartupTrace.Milestone.FIRST_FRAME);
+            if (nanos != StartupTrace.NOT_REACHED) {
+                LatencyMetrics.record(LatencyMetrics.Stage.STARTUP_FIRST_FRAME, nanos);
+            }
+            initDeferred();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mStartupTrace = new StartupTrace(System.nanoTime());
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         mLocationButton = (Button) findViewById(R.id.button_location);
         mLocationTextView = (TextView) findViewById(R.id.textview_location);
         mAndroidImageView = (ImageView) findViewById(R.id.imageview_android);
+        mPlaceSearch = (AutoCompleteTextView) findViewById(R.id.place_search);
 
-        // Create an instance of GoogleApiClient
-        if (mGoogleApiClient == null) {
-            mGoogleApiClient = new GoogleApiClient.Builder(this)
-                    .enableAutoManage(this, this)
-                    .addOnConnectionFailedListener(this)
-                    .addConnectionCallbacks(this)
-                    .addApi(Places.PLACE_DETECTION_API)
-                    .addApi(LocationServices.API)
-                    .build();
+        if (sTripRecorder == null) {
+            sTripRecorder = new TripRecorder(new File(getFilesDir(), TRACKS_DIRECTORY),
+                    TRACK_SEGMENT_BYTES);
+        }
+        if (sPlaceImages == null) {
+            sPlaceImages = new PlaceImageLoader(getApplicationContext().getResources(),
+                    (int) Math.min(Runtime.getRuntime().maxMemory() / PLACE_IMAGE_HEAP_FRACTION,
+                            Integer.MAX_VALUE));
+        }
+        if (sGeofences == null) {
+            sGeofences = newGeofenceEngine();
+        }
+        sGeofenceActivity = this;
+        if (sPlaceIndex == null) {
+            sPlaceIndex = new PlacePrefixIndex(AUTOCOMPLETE_PLACES,
+                    AUTOCOMPLETE_DISTANCE_SCALE_METERS);
+            sAutocompleteThread = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "place-autocomplete");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            loadPlaceIndex(new File(getFilesDir(), PLACE_INDEX_FILE));
         }
 
-        // Restore the state if the activity is recreated
+        // Restore the state if the activity is recreated, or the last address of the previous
+        // run otherwise
         if (savedInstanceState != null) {
             mLastAddress = savedInstanceState.getString(LAST_ADDRESS_KEY);
+            mLastAddressKnown = savedInstanceState.getBoolean(LAST_ADDRESS_KNOWN_KEY);
             mLastPlaceName = savedInstanceState.getString(LAST_PLACE_NAME_KEY);
             mLastUpdateDate = savedInstanceState.getLong(LAST_DATE_KEY);
             mTrackingLocation = savedInstanceState.getBoolean(TRACKING_LOCATION_KEY);
+            mBatchedTracking = savedInstanceState.getBoolean(BATCHED_TRACKING_KEY);
             if(mTrackingLocation || mLastUpdateDate > 0) {
                 mLocationTextView.setText(getString(R.string.address_text,
                         mLastPlaceName, mLastAddress, mLastUpdateDate));
+                markFirstAddress();
             }
+        } else {
+            restoreLastResult();
         }
 
         // Toggle the tracking state.
@@ -116,35 +260,171 @@ public class MainActivity extends AppCompatActivity implements
             }
         });
 
-        // Set up the Place Autocomplete search bar
-        mAutocompleteFragment = (PlaceAutocompleteFragment)
-                getFragmentManager().findFragmentById(R.id.place_autocomplete_fragment);
+        // Switch between delivering fixes one at a time and in batches
+        mLocationButton.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                setBatchedTracking(!mBatchedTracking);
+                return true;
+            }
+        });
+
+        // Create a Result Receiver object and associate it with the result thread
+        if (sResultThread == null) {
+            sResultThread = new HandlerThread("address-results",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            sResultThread.start();
+        }
+        mResultReceiver = new AddressResultReceiver(new Handler(sResultThread.getLooper()));
+
+        if (DEFER_STARTUP) {
+            // Pre-draw runs just before the first frame is drawn; the posted task runs once
+            // that frame is done
+            final View content = findViewById(android.R.id.content);
+            content.getViewTreeObserver().addOnPreDrawListener(
+                    new ViewTreeObserver.OnPreDrawListener() {
+                        @Override
+                        public boolean onPreDraw() {
+                            content.getViewTreeObserver().removeOnPreDrawListener(this);
+                            mStartupHandler.post(mDeferredInit);
+                            return true;
+                        }
+                    });
+        } else {
+            initDeferred();
+        }
+    }
+
+    /**
+     * Set up the components that the first frame does not need: the Google API client, the
+     * suggestions of the search bar and the geocoder. Unless the startup is deferred, this
+     * runs from onCreate.
+     */
+    private void initDeferred() {
+        // Create an instance of GoogleApiClient
+        if (mGoogleApiClient == null) {
+            mGoogleApiClient = new GoogleApiClient.Builder(this)
+                    .enableAutoManage(this, this)
+                    .addOnConnectionFailedListener(this)
+                    .addConnectionCallbacks(this)
+                    .addApi(Places.PLACE_DETECTION_API)
+                    .addApi(Places.GEO_DATA_API)
+                    .addApi(LocationServices.API)
+                    .build();
+            mLocationSource = new FusedLocationSource(mGoogleApiClient);
+            mPlacesProvider = new GooglePlacesProvider(mGoogleApiClient,
+                    PLACE_DETECTION_TIMEOUT_SECONDS, PLACE_CANDIDATES);
+            mPredictionSource = new GooglePredictionSource(mGoogleApiClient,
+                    AUTOCOMPLETE_TIMEOUT_SECONDS);
+            mAutocompleter = new PlaceAutocompleter(sPlaceIndex, mPredictionSource,
+                    AUTOCOMPLETE_MIN_LOCAL_RESULTS, AUTOCOMPLETE_MIN_REMOTE_QUERY_LENGTH,
+                    AUTOCOMPLETE_RESULTS, AUTOCOMPLETE_REMOTE_CACHE_ENTRIES);
+        }
+
+        // Suggest places once the typing pauses, rather than on every keystroke
+        mQueryDebouncer = new Debouncer<>(AUTOCOMPLETE_DEBOUNCE_MILLIS, sAutocompleteThread,
+                new Debouncer.Listener<String>() {
+                    @Override
+                    public void onSettled(String query) {
+                        suggestPlaces(query);
+                    }
+                });
+        mSuggestions = new SuggestionAdapter(this);
+        mPlaceSearch.setAdapter(mSuggestions);
+        mPlaceSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-        // Get the result from the Autocomplete search bar
-        mAutocompleteFragment.setOnPlaceSelectedListener(new PlaceSelectionListener() {
             @Override
-            public void onPlaceSelected(Place place) {
-                mLastAddress = place.getAddress().toString();
-                mLastPlaceName = place.getName().toString();
-                mLastUpdateDate = System.currentTimeMillis();
-                setAndroidType(place);
-                mLocationTextView.setText(
-                        getString(R.string.address_text, place.getName(),
-                                place.getAddress(), mLastUpdateDate));
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                // Picking a suggestion fills in its name, which is not a new query
+                if (!mPlaceSearch.isPerformingCompletion()) {
+                    mQueryDebouncer.submit(s.toString());
+                }
             }
+        });
 
+        // Get the result from the search bar
+        mPlaceSearch.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
-            public void onError(Status status) {
-                Log.e(TAG, "An error occurred: " + status);
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                PlaceSuggestion suggestion = mSuggestions.getItem(position);
+                // The attribution footer is not a place
+                if (suggestion != null) {
+                    onSuggestionSelected(suggestion);
+                }
             }
         });
 
-        // Create a Result Receiver object and associate it with the current thread
-        mResultReceiver = new AddressResultReceiver(new Handler());
+        // Start loading the persistent address cache before the first fix arrives
+        FetchAddressIntentService.getGeocoder(this);
+
+        // Decode the place images at the size of the image view before they are needed
+        sPlaceImages.preload(PlaceTypeDrawables.all(), mAndroidImageView.getWidth(),
+                mAndroidImageView.getHeight());
+
+        mStartupTrace.mark(StartupTrace.Milestone.DEFERRED_INIT);
+        Log.d(TAG, mStartupTrace.toString());
+    }
 
-        // Set up the animation
-        mRotateAnim = (AnimatorSet) AnimatorInflater.loadAnimator(this, R.animator.rotate);
-        mRotateAnim.setTarget(mAndroidImageView);
+    /**
+     * Show the address of the previous run while the first lookup of this one is pending.
+     */
+    private void restoreLastResult() {
+        SharedPreferences preferences =
+                getSharedPreferences(LAST_RESULT_PREFERENCES, MODE_PRIVATE);
+        String address = preferences.getString(LAST_ADDRESS_KEY, null);
+        if (address == null) {
+            return;
+        }
+        mLastAddress = address;
+        mLastAddressKnown = true;
+        mLastPlaceName = preferences.getString(LAST_PLACE_NAME_KEY, null);
+        mLastUpdateDate = preferences.getLong(LAST_DATE_KEY, 0);
+        mLocationTextView.setText(getString(R.string.address_text,
+                mLastPlaceName, mLastAddress, mLastUpdateDate));
+        markFirstAddress();
+    }
+
+    /**
+     * Keep the last address for the next run. Error messages are not kept.
+     */
+    private void saveLastResult() {
+        if (!mLastAddressKnown) {
+            return;
+        }
+        getSharedPreferences(LAST_RESULT_PREFERENCES, MODE_PRIVATE).edit()
+                .putString(LAST_ADDRESS_KEY, mLastAddress)
+                .putString(LAST_PLACE_NAME_KEY, mLastPlaceName)
+                .putLong(LAST_DATE_KEY, mLastUpdateDate)
+                .apply();
+    }
+
+    private void markFirstAddress() {
+        long nanos = mStartupTrace.mark(StartupTrace.Milestone.FIRST_ADDRESS);
+        if (nanos != StartupTrace.NOT_REACHED) {
+            LatencyMetrics.record(LatencyMetrics.Stage.STARTUP_FIRST_ADDRESS, nanos);
+        }
+    }
+
+    /**
+     * Inflate the animation the first time tracking starts.
+     */
+    private AnimatorSet getRotateAnim() {
+        if (mRotateAnim == null) {
+            mRotateAnim = (AnimatorSet) AnimatorInflater.loadAnimator(this, R.animator.rotate);
+            mRotateAnim.setTarget(mAndroidImageView);
+        }
+        return mRotateAnim;
+    }
+
+    private boolean isApiClientConnected() {
+        return mGoogleApiClient != null && mGoogleApiClient.isConnected();
     }
 
     /**
@@ -153,7 +433,7 @@ public class MainActivity extends AppCompatActivity implements
      * location settings.
      */
     private void startTrackingLocation() {
-        if (mGoogleApiClient.isConnected()) {
+        if (isApiClientConnected()) {
             if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                     != PackageManager.PERMISSION_GRANTED) {
                 ActivityCompat.requestPermissions(this, new String[]
@@ -162,9 +442,11 @@ public class MainActivity extends AppCompatActivity implements
             } else {
 
                 // Create the location request and check the device settings
-                final LocationRequest locationRequest = getLocationRequest();
+                mSchedulePolicy.reset();
+                mSchedule = mSchedulePolicy.getInitialSchedule();
                 LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder()
-                        .addLocationRequest(locationRequest);
+                        .addLocationRequest(FusedLocationSource.toLocationRequest(mSchedule,
+                                mBatchedTracking));
                 PendingResult<LocationSettingsResult> result =
                         LocationServices.SettingsApi.checkLocationSettings(mGoogleApiClient,
                                 builder.build());
@@ -178,11 +460,13 @@ public class MainActivity extends AppCompatActivity implements
                                 // If the settings are correct, update the button, play the
                                 // animation and request updates
                                 mLocationButton.setText(R.string.stop_tracking_location);
-                                mRotateAnim.start();
+                                getRotateAnim().start();
+                                mMovementGate.reset();
+                                mMetricsHandler.removeCallbacks(mLogMetrics);
+                                mMetricsHandler.postDelayed(mLogMetrics,
+                                        METRICS_LOG_INTERVAL_MILLIS);
                                 try {
-                                    LocationServices.FusedLocationApi.requestLocationUpdates(
-                                            mGoogleApiClient, locationRequest,
-                                            MainActivity.this);
+                                    requestLocationUpdates();
                                 } catch (SecurityException e) {
                                     Log.e(TAG, "onResult: ", e);
                                 }
@@ -208,7 +492,7 @@ public class MainActivity extends AppCompatActivity implements
                 });
             }
 
-            mAutocompleteFragment.setText("");
+            mPlaceSearch.setText("");
         } else {
             Toast.makeText(MainActivity.this, R.string.google_api_client_not_connected,
                     Toast.LENGTH_SHORT).show();
@@ -219,60 +503,216 @@ public class MainActivity extends AppCompatActivity implements
      * Stop location updates, and stop the animation.
      */
     private void stopTrackingLocation() {
-        if (mGoogleApiClient.isConnected()) {
-            LocationServices.FusedLocationApi.removeLocationUpdates(
-                    mGoogleApiClient, this);
+        if (isApiClientConnected()) {
+            mLocationSource.removeUpdates();
+        }
+        Log.d(TAG, "Lookups run: " + mMovementGate.getPassedCount()
+                + ", suppressed: " + mMovementGate.getSuppressedCount());
+        mMetricsHandler.removeCallbacks(mLogMetrics);
+        Log.d(TAG, "Fixes accepted: " + mSmoother.getAcceptedCount()
+                + ", rejected: " + mSmoother.getRejectedCount());
+        // Building the pipeline just for its stats would stall the main thread
+        LookupPipeline pipeline = FetchAddressIntentService.peekPipeline();
+        if (pipeline != null) {
+            AddressPrefetcher prefetcher = pipeline.getPrefetcher();
+            AddressCache addressCache = pipeline.getAddressCache();
+            Log.d(TAG, "Prefetch calls: " + prefetcher.getCallCount()
+                    + ", over budget: " + prefetcher.getOverBudgetCount()
+                    + ", prefetched entries used: " + addressCache.getPrefetchHitCount()
+                    + " of " + addressCache.getPrefetchedCount());
+            prefetcher.reset();
+        }
+        if (mAutocompleter != null) {
+            Log.d(TAG, "Autocomplete queries: " + mQueryDebouncer.getSettledCount() + " of "
+                    + mQueryDebouncer.getSubmittedCount() + " after debouncing, answered "
+                    + "locally: " + mAutocompleter.getLocalHitCount() + ", from kept answers: "
+                    + mAutocompleter.getRemoteCacheHitCount() + ", remotely: "
+                    + mAutocompleter.getRemoteCallCount() + ", hit ratio: "
+                    + mAutocompleter.getHitRatio());
         }
+        mSmoother.reset();
+        sGeofences.resetMembership();
+        mInsideFence = false;
+        recordKeyPoint(mSimplifier.flush());
+        sTripRecorder.flush();
         mLocationButton.setText(R.string.start_tracking_location);
         mLocationTextView.setText(R.string.textview_hint);
-        mAndroidImageView.setImageResource(R.drawable.android_plain);
-        mRotateAnim.end();
+        sPlaceImages.load(mAndroidImageView, R.drawable.android_plain);
+        if (mRotateAnim != null) {
+            mRotateAnim.end();
+        }
     }
 
     /**
-     * Set up the location request.
+     * Request location updates on the current schedule, either one fix at a time or in
+     * batches. Requesting updates again replaces the previous request.
      *
-     * @return The LocationRequest object containing the desired parameters.
+     * @throws SecurityException If the location permission is not granted.
      */
-    private LocationRequest getLocationRequest() {
-        LocationRequest locationRequest = new LocationRequest();
-        locationRequest.setInterval(10000);
-        locationRequest.setFastestInterval(5000);
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-        return locationRequest;
+    private void requestLocationUpdates() {
+        mLocationSource.requestUpdates(mSchedule, mBatchedTracking, mLocationListener);
     }
 
+    /**
+     * Switch between single and batched location delivery, moving the current location
+     * request over if tracking is on.
+     *
+     * @param batched True to receive fixes in batches.
+     */
+    private void setBatchedTracking(boolean batched) {
+        if (batched == mBatchedTracking) {
+            return;
+        }
+        boolean moveRequest = mTrackingLocation && mSchedule != null
+                && isApiClientConnected();
+        mBatchedTracking = batched;
+        if (moveRequest) {
+            try {
+                requestLocationUpdates();
+            } catch (SecurityException e) {
+                Log.e(TAG, "setBatchedTracking: ", e);
+            }
+        }
+        Toast.makeText(this, batched ? R.string.batched_tracking_on
+                : R.string.batched_tracking_off, Toast.LENGTH_SHORT).show();
+    }
 
     /**
-     * Method for starting the service to fetch the address from the set of coordinates.
-     * Passes in the ResultsReceiver object and the location.
+     * Re-issue the location request when the schedule policy picked a different schedule.
+     * Requesting updates again for the same listener replaces the previous request.
+     *
+     * @param schedule The new schedule.
      */
-    private void startIntentService(Location location) {
-        Intent intent = new Intent(this, FetchAddressIntentService.class);
-        intent.putExtra(Constants.RECEIVER, mResultReceiver);
-        intent.putExtra(Constants.LOCATION_DATA_EXTRA, location);
-        startService(intent);
+    private void updateLocationRequest(LocationSchedule schedule) {
+        if (schedule.equals(mSchedule) || !isApiClientConnected()) {
+            return;
+        }
+        Log.d(TAG, "Switching location updates to " + schedule);
+        mSchedule = schedule;
+        try {
+            requestLocationUpdates();
+        } catch (SecurityException e) {
+            Log.e(TAG, "updateLocationRequest: ", e);
+        }
     }
 
     /**
-     * Callback that is invoked by the FusedLocationApi, which delivers location updates with the
-     * parameters specified by the location request.
+     * Method for starting the lookup of the address from the set of coordinates.
+     * Passes in the ResultsReceiver object and the fix; a lookup that is still waiting
+     * for a worker is replaced by the newer fix.
+     */
+    private void startIntentService(LocationFix fix) {
+        mLookupLatitude = fix.latitude;
+        mLookupLongitude = fix.longitude;
+        mLookupStartNanos = System.nanoTime();
+        FetchAddressIntentService.fetchAddress(this, fix.latitude, fix.longitude,
+                mResultReceiver);
+    }
+
+    private static void recordKeyPoint(LocationFix keyPoint) {
+        if (keyPoint != null) {
+            sTripRecorder.record(keyPoint);
+        }
+    }
+
+    /**
+     * Callback that is invoked by the location source, which delivers location updates with the
+     * parameters specified by the schedule. Implausible fixes are dropped and the rest
+     * are smoothed before use. The address is only looked up again once the device moved far
+     * enough from, or enough time passed since, the last lookup.
      *
-     * @param location The new location.
+     * @param rawFix The new fix.
      */
-    @Override
-    public void onLocationChanged(Location location) {
-        mLastUpdateDate = location.getTime();
-        startIntentService(location);
+    private void onLocationChanged(LocationFix rawFix) {
+        LocationFix fix = mSmoother.onFix(rawFix);
+        if (fix == null) {
+            return;
+        }
+        mLastFix = fix;
+        mLastUpdateDate = fix.timeMillis;
+        recordKeyPoint(mSimplifier.onFix(fix));
+        sGeofences.onFix(fix);
+        updateLocationRequest(mSchedulePolicy.onFix(fix));
+        if (mMovementGate.shouldLookup(fix.latitude, fix.longitude, fix.timeMillis)) {
+            startIntentService(fix);
+        } else {
+            showLastResult();
+        }
+        FetchAddressIntentService.getPrefetcher(this).onFix(fix);
+    }
+
+    /**
+     * Callback that is invoked by the location source in batched mode, which delivers the fixes
+     * collected since the last batch. The fixes are filtered and smoothed like single ones, the
+     * whole batch is geocoded as a single job, and the address of the most recent fix is shown.
+     *
+     * @param rawFixes The fixes of the batch, oldest first.
+     */
+    private void onLocationsBatched(List<LocationFix> rawFixes) {
+        List<LocationFix> fixes = new ArrayList<>(rawFixes.size());
+        LocationSchedule schedule = mSchedule;
+        for (LocationFix rawFix : rawFixes) {
+            LocationFix fix = mSmoother.onFix(rawFix);
+            if (fix == null) {
+                continue;
+            }
+            fixes.add(fix);
+            recordKeyPoint(mSimplifier.onFix(fix));
+            sGeofences.onFix(fix);
+            schedule = mSchedulePolicy.onFix(fix);
+        }
+        if (fixes.isEmpty()) {
+            return;
+        }
+        updateLocationRequest(schedule);
+
+        LocationFix latestFix = fixes.get(fixes.size() - 1);
+        mLastFix = latestFix;
+        mLastUpdateDate = latestFix.timeMillis;
+        if (mMovementGate.shouldLookup(latestFix.latitude, latestFix.longitude,
+                latestFix.timeMillis)) {
+            mLookupLatitude = latestFix.latitude;
+            mLookupLongitude = latestFix.longitude;
+            mLookupStartNanos = System.nanoTime();
+            FetchAddressIntentService.fetchAddresses(this, fixes, latestFix, mResultReceiver);
+        } else {
+            showLastResult();
+        }
+        FetchAddressIntentService.getPrefetcher(this).onFix(latestFix);
+    }
+
+    /**
+     * The device barely moved since the last lookup, so reuse the last address and place with
+     * the time of the new fix.
+     */
+    private void showLastResult() {
+        if (mLastAddress != null) {
+            mLocationTextView.setText(getString(R.string.address_text,
+                    mLastPlaceName, mLastAddress, mLastUpdateDate));
+        }
     }
 
     /**
-     * Pause the location tracking when the Activity is paused.
+     * Pause the location tracking when the Activity is paused, and keep the last address for
+     * the next run.
      */
     @Override
     protected void onPause() {
         super.onPause();
         stopTrackingLocation();
+        saveLastResult();
+    }
+
+    @Override
+    protected void onDestroy() {
+        mStartupHandler.removeCallbacks(mDeferredInit);
+        if (mQueryDebouncer != null) {
+            mQueryDebouncer.cancel();
+        }
+        if (sGeofenceActivity == this) {
+            sGeofenceActivity = null;
+        }
+        super.onDestroy();
     }
 
 
@@ -282,8 +722,10 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         outState.putBoolean(TRACKING_LOCATION_KEY, mTrackingLocation);
+        outState.putBoolean(BATCHED_TRACKING_KEY, mBatchedTracking);
         outState.putLong(LAST_DATE_KEY, mLastUpdateDate);
         outState.putString(LAST_ADDRESS_KEY, mLastAddress);
+        outState.putBoolean(LAST_ADDRESS_KNOWN_KEY, mLastAddressKnown);
         outState.putString(LAST_PLACE_NAME_KEY, mLastPlaceName);
         super.onSaveInstanceState(outState);
     }
@@ -345,14 +787,7 @@ public class MainActivity extends AppCompatActivity implements
                 break;
             case REQUEST_PICK_PLACE:
                 if (resultCode == RESULT_OK) {
-                    Place place = PlacePicker.getPlace(this, data);
-                    mLastAddress = place.getAddress().toString();
-                    mLastPlaceName = place.getName().toString();
-                    mLastUpdateDate = System.currentTimeMillis();
-                    setAndroidType(place);
-                    mLocationTextView.setText(
-                            getString(R.string.address_text, place.getName(),
-                                    place.getAddress(), mLastUpdateDate));
+                    onPlaceSelected(PlacePicker.getPlace(this, data));
                 } else {
                     mLocationTextView.setText(R.string.no_place);
                 }
@@ -380,88 +815,393 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Set the Android image to reflect the Place type if it is it a school gym, restaurant
-     * or library, otherwise reset it to the plain Android.
+     * Set the Android image to reflect the Place type if it is it a school, gym, restaurant
+     * or library, otherwise reset it to the plain Android. Images decoded before are reused.
+     *
+     * @param placeTypes The types of the current place.
+     */
+    private void setAndroidType(int[] placeTypes) {
+        sPlaceImages.load(mAndroidImageView, PlaceTypeDrawables.forTypes(placeTypes));
+    }
+
+    /**
+     * Show a place the user picked or searched for, and remember it so that the search bar
+     * suggests it locally from now on.
      *
-     * @param currentPlace The current place.
+     * @param place The selected place.
      */
-    private void setAndroidType(Place currentPlace) {
-        int drawableID = -1;
-        for (Integer placeType : currentPlace.getPlaceTypes()) {
-            switch (placeType) {
-                case Place.TYPE_SCHOOL:
-                    drawableID = R.drawable.android_school;
-                    break;
-                case Place.TYPE_GYM:
-                    drawableID = R.drawable.android_gym;
-                    break;
-                case Place.TYPE_RESTAURANT:
-                    drawableID = R.drawable.android_restaurant;
-                    break;
-                case Place.TYPE_LIBRARY:
-                    drawableID = R.drawable.android_library;
-                    break;
+    private void onPlaceSelected(Place place) {
+        sPlaceIndex.record(GooglePredictionSource.toSuggestion(place));
+        savePlaceIndex();
+        showSelectedPlace(place.getName().toString(), place.getAddress().toString(),
+                GooglePlacesProvider.toTypeArray(place.getPlaceTypes()),
+                GooglePlacesProvider.toPlaceFence(place));
+    }
+
+    /**
+     * Read the places selected in earlier runs, on the autocomplete thread.
+     */
+    private static void loadPlaceIndex(final File file) {
+        sAutocompleteThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!file.exists()) {
+                    return;
+                }
+                try {
+                    sPlaceIndex.load(file);
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to load the selected places", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Keep the selected places for the next runs, writing them on the autocomplete thread.
+     */
+    private void savePlaceIndex() {
+        final File file = new File(getFilesDir(), PLACE_INDEX_FILE);
+        sAutocompleteThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sPlaceIndex.save(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to save the selected places", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Show a place from the search bar. A place selected before is shown right away; a
+     * prediction of the Places API needs its details fetched first.
+     */
+    private void onSuggestionSelected(final PlaceSuggestion suggestion) {
+        if (suggestion.hasLocation()) {
+            sPlaceIndex.record(suggestion);
+            savePlaceIndex();
+            showSelectedPlace(suggestion.name, suggestion.address, suggestion.types,
+                    GooglePlacesProvider.toPlaceFence(suggestion.id, suggestion.name,
+                            suggestion.types, null, suggestion.latitude,
+                            suggestion.longitude));
+            return;
+        }
+        sAutocompleteThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Place place;
+                try {
+                    place = mPredictionSource.fetchPlace(suggestion.id);
+                } catch (IOException e) {
+                    Log.e(TAG, "onSuggestionSelected: ", e);
+                    return;
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing()) {
+                            onPlaceSelected(place);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Show a selected place as the current one. A place whose type has its own Android image
+     * is also fenced, so that entering or leaving it is noticed from the fixes alone, without
+     * asking the Places API again.
+     *
+     * @param fence A fence around the place, or null.
+     */
+    private void showSelectedPlace(String name, String address, int[] types, Geofence fence) {
+        mLastAddress = address;
+        mLastAddressKnown = true;
+        mLastPlaceName = name;
+        mLastUpdateDate = System.currentTimeMillis();
+        setAndroidType(types);
+        mLocationTextView.setText(
+                getString(R.string.address_text, name, address, mLastUpdateDate));
+        if (fence != null) {
+            sGeofences.add(fence);
+        }
+    }
+
+    /**
+     * Get the suggestions for a query that settled, on the autocomplete thread.
+     */
+    private void suggestPlaces(final String query) {
+        LocationFix fix = mLastFix;
+        final List<PlaceSuggestion> suggestions = mAutocompleter.suggest(query,
+                fix != null ? fix.latitude : Double.NaN,
+                fix != null ? fix.longitude : Double.NaN);
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // Drop the suggestions if the user typed on meanwhile
+                if (isFinishing() || !query.equals(mPlaceSearch.getText().toString())) {
+                    return;
+                }
+                mSuggestions.setSuggestions(suggestions);
+                if (!suggestions.isEmpty() && mPlaceSearch.hasFocus()) {
+                    mPlaceSearch.showDropDown();
+                }
             }
+        });
+    }
+
+    /**
+     * Build the geofence engine shared by the activity instances. The listener is built in a
+     * static method, so that it does not hold on to the activity that created it.
+     */
+    private static GeofenceEngine newGeofenceEngine() {
+        return new GeofenceEngine(FENCE_CELL_SIZE_METERS, FENCE_DWELL_MILLIS, FENCE_MAX_COUNT,
+                new GeofenceEngine.Listener() {
+                    @Override
+                    public void onTransition(Geofence fence,
+                            GeofenceEngine.Transition transition, long timeMillis) {
+                        if (sGeofenceActivity != null) {
+                            sGeofenceActivity.onGeofenceTransition(fence, transition);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Update the Android image and the place name when the user enters or leaves a fenced
+     * place. After leaving, the next fix looks the address and place up again.
+     */
+    private void onGeofenceTransition(Geofence fence, GeofenceEngine.Transition transition) {
+        Log.d(TAG, transition + " " + fence);
+        if (transition == GeofenceEngine.Transition.DWELL) {
+            return;
+        }
+        Geofence current = sGeofences.getLatestInside();
+        mInsideFence = current != null;
+        if (current != null) {
+            mLastPlaceName = current.name;
+            setAndroidType(current.getTypes());
+        } else {
+            mLastPlaceName = getString(R.string.loading);
+            setAndroidType(new int[0]);
+            mMovementGate.reset();
         }
+        mLocationTextView.setText(getString(R.string.address_text, mLastPlaceName,
+                mLastAddress, mLastUpdateDate));
+    }
 
-        if (drawableID < 0) {
-            drawableID = R.drawable.android_plain;
+    /**
+     * Show the view model of a lookup result. This is all the main thread does per result, and
+     * the time it takes is recorded.
+     */
+    private void showResult(AddressViewModel model) {
+        long startNanos = System.nanoTime();
+        if (mTrackingLocation && !isFinishing()) {
+            mLastAddress = model.address;
+            mLastAddressKnown = model.addressKnown;
+            if (model.placeName != null) {
+                mLastPlaceName = model.placeName;
+                sPlaceImages.load(mAndroidImageView, model.drawableID);
+            }
+            if (model.fence != null) {
+                sGeofences.add(model.fence);
+            }
+            mLocationTextView.setText(model.text);
+            if (model.addressKnown) {
+                markFirstAddress();
+                if (mStartupTrace.mark(StartupTrace.Milestone.FIRST_LIVE_ADDRESS)
+                        != StartupTrace.NOT_REACHED) {
+                    Log.d(TAG, mStartupTrace.toString());
+                }
+            }
         }
-        mAndroidImageView.setImageResource(drawableID);
+        LatencyMetrics.recordSince(LatencyMetrics.Stage.RESULT_MAIN_THREAD, startNanos);
     }
 
 
     /**
      * Extension of the ResultReceiver class for receiving the results from the reverse geocode
-     * service.
+     * service, directly when the service runs in this process. Results arrive on the result
+     * thread, where the place is detected and the text is formatted; only the finished view
+     * model is posted to the main thread.
      */
-    private class AddressResultReceiver extends ResultReceiver {
+    private class AddressResultReceiver extends AddressResultChannel {
         AddressResultReceiver(Handler handler) {
             super(handler);
         }
 
         @Override
-        protected void onReceiveResult(int resultCode, Bundle resultData) throws SecurityException {
-            if (mTrackingLocation) {
-                // Get the data from the service, either the address or an error message
-                mLastAddress = resultData.getString(Constants.RESULT_DATA_KEY);
-
-                // Get the current place from the Places API
-                PendingResult<PlaceLikelihoodBuffer> placeResult = Places.PlaceDetectionApi
-                        .getCurrentPlace(mGoogleApiClient, null);
-                placeResult.setResultCallback(new ResultCallback<PlaceLikelihoodBuffer>() {
-                    @Override
-                    public void onResult(@NonNull PlaceLikelihoodBuffer likelyPlaces) {
-                        // If a you get a result, get the most likely place and update the place
-                        // name and picture
-                        if (likelyPlaces.getStatus().isSuccess()) {
-                            float maxLikelihood = 0;
-                            Place currentPlace = null;
-                            for (PlaceLikelihood placeLikelihood : likelyPlaces) {
-                                if (maxLikelihood < placeLikelihood.getLikelihood()) {
-                                    maxLikelihood = placeLikelihood.getLikelihood();
-                                    currentPlace = placeLikelihood.getPlace();
-                                }
-                            }
-
-                            if (currentPlace != null) {
-                                mLastPlaceName = currentPlace.getName().toString();
-                                setAndroidType(currentPlace);
-                                mLocationTextView.setText(
-                                        getString(R.string.address_text, mLastPlaceName,
-                                                mLastAddress, mLastUpdateDate));
-                            }
-                            // Otherwise, show an error
-                        } else {
-                            mLocationTextView.setText(
-                                    getString(R.string.address_text,
-                                            getString(R.string.no_place),
-                                            mLastAddress, mLastUpdateDate));
-                        }
-                        likelyPlaces.release();
+        void onAddress(GeoAddress address) {
+            // The interned address only formats its lines once
+            onResult(address.format(), true);
+        }
+
+        @Override
+        void onAddressError(String errorMessage) {
+            onResult(errorMessage, false);
+        }
+
+        private void onResult(String addressText, boolean known) {
+            if (!mTrackingLocation) {
+                return;
+            }
+            // Get the data from the service, either the address or an error message
+            LatencyMetrics.recordSince(LatencyMetrics.Stage.FIX_TO_ADDRESS, mLookupStartNanos);
+            final AddressViewModel model = buildViewModel(addressText, known);
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    showResult(model);
+                }
+            });
+        }
+
+        private AddressViewModel buildViewModel(String addressText, boolean known) {
+            long date = mLastUpdateDate;
+
+            // Inside a fenced place, the place only changes when the fence is left
+            if (mInsideFence) {
+                return new AddressViewModel(getString(R.string.address_text, mLastPlaceName,
+                        addressText, date), addressText, known, null, 0, null);
+            }
+
+            // Repeat visits to the same place are answered from the cache
+            double latitude = mLookupLatitude;
+            double longitude = mLookupLongitude;
+            PlaceCandidates candidates = sPlaceCache.get(latitude, longitude);
+            Geofence fence = null;
+            if (candidates == null) {
+                PlacesProvider.Detection detection =
+                        mPlacesProvider.detectPlaces(latitude, longitude);
+                // If a you get a result, keep the most likely places; an empty one is not
+                // cached, so that the place is detected again on the next lookup
+                if (detection != null) {
+                    candidates = detection.candidates;
+                    fence = detection.fence;
+                    if (!candidates.isEmpty()) {
+                        sPlaceCache.put(latitude, longitude, candidates);
                     }
-                });
+                }
             }
+
+            // Show the most likely of the candidate places, or an error if there is none
+            if (candidates == null) {
+                return new AddressViewModel(getString(R.string.address_text,
+                        getString(R.string.no_place), addressText, date),
+                        addressText, known, null, 0, null);
+            }
+            if (candidates.isEmpty()) {
+                return new AddressViewModel(getString(R.string.address_text, mLastPlaceName,
+                        addressText, date), addressText, known, null, 0, null);
+            }
+            String placeName = candidates.getName(0);
+            return new AddressViewModel(
+                    getString(R.string.address_text, placeName, addressText, date),
+                    addressText, known, placeName,
+                    PlaceTypeDrawables.forTypes(candidates.getTypes(0)), fence);
+        }
+    }
+
+    /**
+     * Shows the suggestions as they come from the autocompleter. The query was already
+     * answered off the main thread, so the filter passes the suggestions through unchanged.
+     * The suggestions come from the Places API, so a "Powered by Google" footer follows them.
+     */
+    private static class SuggestionAdapter extends ArrayAdapter<PlaceSuggestion> {
+        private static final int VIEW_TYPE_SUGGESTION = 0;
+        private static final int VIEW_TYPE_ATTRIBUTION = 1;
+
+        private volatile List<PlaceSuggestion> mItems = Collections.emptyList();
+
+        private final Filter mFilter = new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence constraint) {
+                List<PlaceSuggestion> items = mItems;
+                FilterResults results = new FilterResults();
+                results.values = items;
+                results.count = items.size();
+                return results;
+            }
+
+            @Override
+            protected void publishResults(CharSequence constraint, FilterResults results) {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public CharSequence convertResultToString(Object resultValue) {
+                return ((PlaceSuggestion) resultValue).name;
+            }
+        };
+
+        SuggestionAdapter(Context context) {
+            super(context, android.R.layout.simple_dropdown_item_1line);
+        }
+
+        void setSuggestions(List<PlaceSuggestion> suggestions) {
+            mItems = suggestions;
+            setNotifyOnChange(false);
+            clear();
+            addAll(suggestions);
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            int count = super.getCount();
+            return count == 0 ? 0 : count + 1;
+        }
+
+        /**
+         * @return The suggestion at a position, or null for the attribution footer.
+         */
+        @Override
+        public PlaceSuggestion getItem(int position) {
+            return isAttribution(position) ? null : super.getItem(position);
+        }
+
+        @Override
+        public int getViewTypeCount() {
+            return 2;
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return isAttribution(position) ? VIEW_TYPE_ATTRIBUTION : VIEW_TYPE_SUGGESTION;
+        }
+
+        @Override
+        public boolean areAllItemsEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isEnabled(int position) {
+            return !isAttribution(position);
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            if (!isAttribution(position)) {
+                return super.getView(position, convertView, parent);
+            }
+            if (convertView != null) {
+                return convertView;
+            }
+            return LayoutInflater.from(getContext())
+                    .inflate(R.layout.item_place_attribution, parent, false);
+        }
+
+        private boolean isAttribution(int position) {
+            return position == super.getCount();
+        }
+
+        @Override
+        public Filter getFilter() {
+            return mFilter;
         }
     }
 }
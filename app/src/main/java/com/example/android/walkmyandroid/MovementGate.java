@@ -0,0 +1,69 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Decides whether a new fix is worth a reverse geocode and a place detection call. A fix is
+ * suppressed when it is both closer than the distance threshold and sooner than the time
+ * threshold to the last fix that was let through, in which case the last result is reused.
+ */
+class MovementGate {
+
+    private final double mMinDistanceMeters;
+    private final long mMinIntervalMillis;
+
+    private boolean mHasAnchor;
+    private double mAnchorLatitude;
+    private double mAnchorLongitude;
+    private long mAnchorTime;
+
+    private long mPassedCount;
+    private long mSuppressedCount;
+
+    /**
+     * @param minDistanceMeters A fix at least this far from the last lookup is let through.
+     * @param minIntervalMillis A fix at least this long after the last lookup is let through.
+     */
+    MovementGate(double minDistanceMeters, long minIntervalMillis) {
+        mMinDistanceMeters = minDistanceMeters;
+        mMinIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * @param latitude   The latitude of the fix.
+     * @param longitude  The longitude of the fix.
+     * @param timeMillis The time of the fix.
+     * @return True if the lookups should run for this fix, false to reuse the last result.
+     */
+    synchronized boolean shouldLookup(double latitude, double longitude, long timeMillis) {
+        if (mHasAnchor
+                && timeMillis - mAnchorTime < mMinIntervalMillis
+                && GeoMath.distanceMeters(mAnchorLatitude, mAnchorLongitude,
+                latitude, longitude) < mMinDistanceMeters) {
+            mSuppressedCount++;
+            return false;
+        }
+        mHasAnchor = true;
+        mAnchorLatitude = latitude;
+        mAnchorLongitude = longitude;
+        mAnchorTime = timeMillis;
+        mPassedCount++;
+        return true;
+    }
+
+    /**
+     * Forget the last lookup, so that the next fix is always let through.
+     */
+    synchronized void reset() {
+        mHasAnchor = false;
+    }
+
+    synchronized long getPassedCount() {
+        return mPassedCount;
+    }
+
+    /**
+     * @return The number of suppressed fixes; each one saved a geocode and a place detection.
+     */
+    synchronized long getSuppressedCount() {
+        return mSuppressedCount;
+    }
+}
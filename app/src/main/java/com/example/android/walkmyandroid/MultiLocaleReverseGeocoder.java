@@ -0,0 +1,234 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReverseGeocoder that answers in the current one of several locales, each with a caching
+ * geocoder of its own.
+ *
+ * <p>Once a cell is resolved in the current locale, the same coordinates are looked up in the
+ * other locales in parallel, in the background, and each result goes to the cache of its locale.
+ * Switching locale then finds the cells that were already visited in the cache, without new
+ * backend calls. These lookups go through {@link CachingReverseGeocoder#fill}, so they can be
+ * given a lower priority on the backend without counting as prefetches, and once too many of
+ * them wait, new ones are shed.
+ */
+class MultiLocaleReverseGeocoder implements ReverseGeocoder {
+
+    /**
+     * Builds the caching geocoder of a locale, the first time the locale is used.
+     */
+    interface Factory {
+        CachingReverseGeocoder create(Locale locale);
+    }
+
+    private final Factory mFactory;
+    private final Executor mExecutor;
+    // Guarded by this
+    private final Map<Locale, LocaleGeocoder> mGeocoders = new HashMap<>();
+    private final List<Locale> mLocales = new ArrayList<>();
+    private volatile Locale mLocale;
+
+    private final AtomicLong mFanOutCallCount = new AtomicLong();
+    private final AtomicLong mFanOutFailureCount = new AtomicLong();
+    private final AtomicLong mFanOutShedCount = new AtomicLong();
+
+    /**
+     * The caching geocoder of a locale, and the cells it is being filled in for.
+     */
+    private static class LocaleGeocoder {
+        final Locale locale;
+        final CachingReverseGeocoder geocoder;
+        // Guarded by the MultiLocaleReverseGeocoder
+        final Set<Long> pendingCells = new HashSet<>();
+
+        LocaleGeocoder(Locale locale, CachingReverseGeocoder geocoder) {
+            this.locale = locale;
+            this.geocoder = geocoder;
+        }
+    }
+
+    /**
+     * @param factory         Builds the caching geocoder of each locale.
+     * @param locales         The locales to keep addresses in; the first one is current.
+     * @param fanOutThreads   The number of other locales looked up at the same time.
+     * @param fanOutQueueSize The most lookups in other locales that may wait to run.
+     */
+    MultiLocaleReverseGeocoder(Factory factory, List<Locale> locales, int fanOutThreads,
+            int fanOutQueueSize) {
+        this(factory, locales, newFanOutPool(fanOutThreads, fanOutQueueSize));
+    }
+
+    /**
+     * @param executor Runs the lookups in other locales; it may reject them when it is busy.
+     */
+    MultiLocaleReverseGeocoder(Factory factory, List<Locale> locales, Executor executor) {
+        if (locales.isEmpty()) {
+            throw new IllegalArgumentException("At least one locale is needed");
+        }
+        mFactory = factory;
+        mExecutor = executor;
+        for (Locale locale : locales) {
+            if (!mLocales.contains(locale)) {
+                mLocales.add(locale);
+            }
+        }
+        mLocale = mLocales.get(0);
+    }
+
+    /**
+     * Answer the following lookups in another locale. A locale that was not given to the
+     * constructor is added to the ones addresses are kept in.
+     */
+    synchronized void setLocale(Locale locale) {
+        if (!mLocales.contains(locale)) {
+            mLocales.add(locale);
+        }
+        mLocale = locale;
+    }
+
+    Locale getLocale() {
+        return mLocale;
+    }
+
+    synchronized List<Locale> getLocales() {
+        return new ArrayList<>(mLocales);
+    }
+
+    /**
+     * @return The caching geocoder of a locale, built the first time it is asked for.
+     */
+    CachingReverseGeocoder getGeocoder(Locale locale) {
+        return getLocaleGeocoder(locale).geocoder;
+    }
+
+    /**
+     * @return The caching geocoder of the current locale.
+     */
+    CachingReverseGeocoder getCurrentGeocoder() {
+        return getLocaleGeocoder(mLocale).geocoder;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+        LocaleGeocoder current = getLocaleGeocoder(mLocale);
+        GeoAddress address = current.geocoder.getAddress(latitude, longitude);
+        if (address != null) {
+            fanOut(current, latitude, longitude);
+        }
+        return address;
+    }
+
+    /**
+     * @return The number of backend calls made for the other locales.
+     */
+    long getFanOutCallCount() {
+        return mFanOutCallCount.get();
+    }
+
+    /**
+     * @return The number of lookups in other locales that failed; they are tried again the
+     * next time the cell is resolved.
+     */
+    long getFanOutFailureCount() {
+        return mFanOutFailureCount.get();
+    }
+
+    /**
+     * @return The number of lookups in other locales dropped because too many were waiting;
+     * they are tried again the next time the cell is resolved.
+     */
+    long getFanOutShedCount() {
+        return mFanOutShedCount.get();
+    }
+
+    private synchronized LocaleGeocoder getLocaleGeocoder(Locale locale) {
+        LocaleGeocoder geocoder = mGeocoders.get(locale);
+        if (geocoder == null) {
+            geocoder = new LocaleGeocoder(locale, mFactory.create(locale));
+            mGeocoders.put(locale, geocoder);
+        }
+        return geocoder;
+    }
+
+    /**
+     * Look the coordinates up in every other locale that does not have the cell cached yet,
+     * and is not already looking it up.
+     */
+    private void fanOut(LocaleGeocoder current, final double latitude, final double longitude) {
+        List<LocaleGeocoder> targets = new ArrayList<>();
+        final long cellKey = current.geocoder.getCache().cellKey(latitude, longitude);
+        synchronized (this) {
+            for (Locale locale : mLocales) {
+                if (locale.equals(current.locale)) {
+                    continue;
+                }
+                LocaleGeocoder target = getLocaleGeocoder(locale);
+                if (!target.geocoder.getCache().contains(latitude, longitude)
+                        && target.pendingCells.add(cellKey)) {
+                    targets.add(target);
+                }
+            }
+        }
+        for (final LocaleGeocoder target : targets) {
+            try {
+                execute(target, latitude, longitude, cellKey);
+            } catch (RejectedExecutionException e) {
+                mFanOutShedCount.incrementAndGet();
+                synchronized (this) {
+                    target.pendingCells.remove(cellKey);
+                }
+            }
+        }
+    }
+
+    private void execute(final LocaleGeocoder target, final double latitude,
+            final double longitude, final long cellKey) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (target.geocoder.fill(latitude, longitude)) {
+                        mFanOutCallCount.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    mFanOutFailureCount.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    mFanOutFailureCount.incrementAndGet();
+                } finally {
+                    synchronized (MultiLocaleReverseGeocoder.this) {
+                        target.pendingCells.remove(cellKey);
+                    }
+                }
+            }
+        });
+    }
+
+    private static ExecutorService newFanOutPool(int threads, int queueSize) {
+        // Rejects what does not fit in the queue, rather than letting it grow
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "geocode-locale");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.walkmyandroid;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * ReverseGeocoder that answers from a local dataset of addresses, by returning the address of
+ * the nearest known point. It needs no connectivity.
+ */
+class OfflineReverseGeocoder implements ReverseGeocoder {
+
+    private final KdTree mTree;
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+    private final GeoAddress[] mAddresses;
+    private final double mMaxDistanceMeters;
+
+    /**
+     * @param latitudes         The latitudes of the known points.
+     * @param longitudes        The longitudes of the known points.
+     * @param addresses         The address of each point.
+     * @param maxDistanceMeters Points further than this from the coordinates are not used.
+     */
+    OfflineReverseGeocoder(double[] latitudes, double[] longitudes, GeoAddress[] addresses,
+            double maxDistanceMeters) {
+        if (addresses.length != latitudes.length) {
+            throw new IllegalArgumentException("Every point needs an address");
+        }
+        mTree = KdTree.build(latitudes, longitudes);
+        mLatitudes = latitudes;
+        mLongitudes = longitudes;
+        mAddresses = addresses;
+        mMaxDistanceMeters = maxDistanceMeters;
+    }
+
+    /**
+     * Read a dataset of one point per line, as "latitude,longitude,address". Lines of the
+     * address are separated by "|". Blank lines and lines starting with "#" are skipped.
+     *
+     * @param in                The dataset; it is closed once read.
+     * @param maxDistanceMeters Points further than this from the coordinates are not used.
+     * @return The geocoder.
+     * @throws IOException If the dataset cannot be read or a line is malformed.
+     */
+    static OfflineReverseGeocoder load(InputStream in, double maxDistanceMeters)
+            throws IOException {
+        double[] latitudes = new double[1024];
+        double[] longitudes = new double[1024];
+        ArrayList<GeoAddress> addresses = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                int first = line.indexOf(',');
+                int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+                if (second < 0) {
+                    throw new IOException("Malformed line " + lineNumber + ": " + line);
+                }
+                int count = addresses.size();
+                if (count == latitudes.length) {
+                    latitudes = Arrays.copyOf(latitudes, count * 2);
+                    longitudes = Arrays.copyOf(longitudes, count * 2);
+                }
+                try {
+                    latitudes[count] = Double.parseDouble(line.substring(0, first));
+                    longitudes[count] = Double.parseDouble(line.substring(first + 1, second));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed line " + lineNumber + ": " + line);
+                }
+                addresses.add(GeoAddress.ofLines(line.substring(second + 1).split("\\|")));
+            }
+        } finally {
+            reader.close();
+        }
+
+        int count = addresses.size();
+        return new OfflineReverseGeocoder(Arrays.copyOf(latitudes, count),
+                Arrays.copyOf(longitudes, count), addresses.toArray(new GeoAddress[count]),
+                maxDistanceMeters);
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("Coordinates out of range: "
+                    + latitude + ", " + longitude);
+        }
+        int nearest = mTree.nearest(latitude, longitude);
+        if (nearest < 0 || GeoMath.distanceMeters(latitude, longitude,
+                mLatitudes[nearest], mLongitudes[nearest]) > mMaxDistanceMeters) {
+            return null;
+        }
+        return mAddresses[nearest];
+    }
+
+    int size() {
+        return mAddresses.length;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Suggests places for what the user typed in the search bar. The places selected before are
+ * answered locally from a {@link PlacePrefixIndex}; the Places API is only asked when they do
+ * not give enough suggestions, and its recent answers are kept, so that deleting and retyping
+ * a character does not ask again.
+ */
+class PlaceAutocompleter {
+
+    /**
+     * Predicts places remotely, e.g. the GeoDataApi.
+     */
+    interface RemoteSource {
+        /**
+         * Blocks until the predictions arrive.
+         *
+         * @param query     What the user typed.
+         * @param latitude  The latitude to bias the predictions towards, or NaN.
+         * @param longitude The longitude to bias the predictions towards, or NaN.
+         * @return The predictions, most relevant first.
+         * @throws IOException If the predictions could not be fetched.
+         */
+        List<PlaceSuggestion> predict(String query, double latitude, double longitude)
+                throws IOException;
+    }
+
+    private final PlacePrefixIndex mIndex;
+    private final RemoteSource mRemote;
+    private final int mMinLocalResults;
+    private final int mMinRemoteQueryLength;
+    private final int mMaxResults;
+    private final Map<String, List<PlaceSuggestion>> mRemoteCache;
+
+    private long mLocalHitCount;
+    private long mRemoteCacheHitCount;
+    private long mRemoteCallCount;
+    private long mRemoteFailureCount;
+
+    /**
+     * @param index                The places selected before.
+     * @param remote               The source of the predictions for the other places.
+     * @param minLocalResults      How many local suggestions answer a query without the remote
+     *                             source.
+     * @param minRemoteQueryLength Shorter queries are only answered locally.
+     * @param maxResults           The most suggestions returned.
+     * @param remoteCacheEntries   How many remote answers are kept.
+     */
+    PlaceAutocompleter(PlacePrefixIndex index, RemoteSource remote, int minLocalResults,
+            int minRemoteQueryLength, int maxResults, final int remoteCacheEntries) {
+        mIndex = index;
+        mRemote = remote;
+        mMinLocalResults = minLocalResults;
+        mMinRemoteQueryLength = minRemoteQueryLength;
+        mMaxResults = maxResults;
+        mRemoteCache = new LinkedHashMap<String, List<PlaceSuggestion>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<PlaceSuggestion>> e) {
+                return size() > remoteCacheEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the suggestions for a query: the local matches, followed by the remote predictions
+     * for other places if there are too few of them. May block on the remote source, so it
+     * must not be called on the main thread.
+     *
+     * @param query     What the user typed so far.
+     * @param latitude  The latitude of the user, or NaN if unknown.
+     * @param longitude The longitude of the user, or NaN if unknown.
+     * @return The suggestions, best first; only the local ones if the remote source failed.
+     */
+    List<PlaceSuggestion> suggest(String query, double latitude, double longitude) {
+        String normalized = query.trim();
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<PlaceSuggestion> local = mIndex.search(normalized, latitude, longitude,
+                mMaxResults);
+        if (local.size() >= mMinLocalResults || normalized.length() < mMinRemoteQueryLength) {
+            synchronized (this) {
+                mLocalHitCount++;
+            }
+            return local;
+        }
+
+        String key = normalized.toLowerCase(Locale.ROOT);
+        List<PlaceSuggestion> remote;
+        synchronized (this) {
+            remote = mRemoteCache.get(key);
+            if (remote != null) {
+                mRemoteCacheHitCount++;
+            } else {
+                mRemoteCallCount++;
+            }
+        }
+        if (remote == null) {
+            try {
+                remote = mRemote.predict(normalized, latitude, longitude);
+            } catch (IOException e) {
+                synchronized (this) {
+                    mRemoteFailureCount++;
+                }
+                return local;
+            }
+            synchronized (this) {
+                mRemoteCache.put(key, remote);
+            }
+        }
+        return merge(local, remote);
+    }
+
+    synchronized long getLocalHitCount() {
+        return mLocalHitCount;
+    }
+
+    /**
+     * @return The number of queries answered by a remote answer kept from before.
+     */
+    synchronized long getRemoteCacheHitCount() {
+        return mRemoteCacheHitCount;
+    }
+
+    synchronized long getRemoteCallCount() {
+        return mRemoteCallCount;
+    }
+
+    synchronized long getRemoteFailureCount() {
+        return mRemoteFailureCount;
+    }
+
+    /**
+     * @return The share of the queries answered without calling the remote source, or 0 if
+     * there was none.
+     */
+    synchronized double getHitRatio() {
+        long hits = mLocalHitCount + mRemoteCacheHitCount;
+        long total = hits + mRemoteCallCount;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The local suggestions first, then the remote ones for other places, up to the limit.
+     */
+    private List<PlaceSuggestion> merge(List<PlaceSuggestion> local,
+            List<PlaceSuggestion> remote) {
+        List<PlaceSuggestion> merged = new ArrayList<>(mMaxResults);
+        merged.addAll(local);
+        for (PlaceSuggestion suggestion : remote) {
+            if (merged.size() >= mMaxResults) {
+                break;
+            }
+            boolean duplicate = false;
+            for (PlaceSuggestion kept : local) {
+                if (kept.id.equals(suggestion.id)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                merged.add(suggestion);
+            }
+        }
+        return merged;
+    }
+}
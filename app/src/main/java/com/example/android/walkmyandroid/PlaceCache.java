@@ -0,0 +1,136 @@
+package com.example.android.walkmyandroid;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Cache of place detection results keyed by grid cell and time of day, so that repeat visits to
+ * the same venue at a similar time of day are answered without the Places API. The time of day
+ * is part of the key because the likely venue at an address can change, for example from a cafe
+ * in the morning to a bar at night.
+ */
+class PlaceCache {
+
+    /**
+     * Which entry to drop when the cache is full.
+     */
+    enum EvictionPolicy {
+        /** Drop the entry that was read or written the longest time ago. */
+        LEAST_RECENTLY_USED,
+        /** Drop the entry that was written the longest time ago. */
+        FIRST_IN_FIRST_OUT
+    }
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private final double mCellSizeMeters;
+    private final long mBucketMillis;
+    private final long mTtlMillis;
+    private final int mMaxEntries;
+    private final Clock mClock;
+    private final LinkedHashMap<Key, CachedPlaces> mEntries;
+
+    private long mHitCount;
+    private long mMissCount;
+
+    /**
+     * @param cellSizeMeters The edge length of a cell.
+     * @param bucketMillis   The length of a time of day bucket, which should divide a day.
+     * @param ttlMillis      How long a result stays valid after it was stored.
+     * @param maxEntries     The maximum number of entries kept.
+     * @param policy         Which entry to drop when the cache is full.
+     * @param clock          The clock used for the time of day and to expire entries.
+     */
+    PlaceCache(double cellSizeMeters, long bucketMillis, long ttlMillis, final int maxEntries,
+            EvictionPolicy policy, Clock clock) {
+        if (cellSizeMeters <= 0 || bucketMillis <= 0 || ttlMillis <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Cell size, bucket, TTL and capacity must be "
+                    + "positive");
+        }
+        mCellSizeMeters = cellSizeMeters;
+        mBucketMillis = bucketMillis;
+        mTtlMillis = ttlMillis;
+        mMaxEntries = maxEntries;
+        mClock = clock;
+        mEntries = new LinkedHashMap<Key, CachedPlaces>(16, 0.75f,
+                policy == EvictionPolicy.LEAST_RECENTLY_USED) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedPlaces> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return The cached candidates for the location at the current time of day, or null.
+     */
+    synchronized PlaceCandidates get(double latitude, double longitude) {
+        long now = mClock.currentTimeMillis();
+        Key key = key(latitude, longitude, now);
+        CachedPlaces entry = mEntries.get(key);
+        if (entry != null && now - entry.storedAt >= mTtlMillis) {
+            mEntries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry.candidates;
+    }
+
+    synchronized void put(double latitude, double longitude, PlaceCandidates candidates) {
+        long now = mClock.currentTimeMillis();
+        mEntries.put(key(latitude, longitude, now), new CachedPlaces(candidates, now));
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    private Key key(double latitude, double longitude, long timeMillis) {
+        long localTime = timeMillis + TimeZone.getDefault().getOffset(timeMillis);
+        int bucket = (int) ((localTime % DAY_MILLIS + DAY_MILLIS) % DAY_MILLIS / mBucketMillis);
+        return new Key(GridCells.cellKey(latitude, longitude, mCellSizeMeters), bucket);
+    }
+
+    private static final class Key {
+        final long cellKey;
+        final int bucket;
+
+        Key(long cellKey, int bucket) {
+            this.cellKey = cellKey;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return cellKey == other.cellKey && bucket == other.bucket;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (cellKey ^ (cellKey >>> 32)) + bucket;
+        }
+    }
+
+    private static final class CachedPlaces {
+        final PlaceCandidates candidates;
+        final long storedAt;
+
+        CachedPlaces(PlaceCandidates candidates, long storedAt) {
+            this.candidates = candidates;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.android.walkmyandroid;
+
+import java.util.Arrays;
+
+/**
+ * The most likely places at a location, ordered by decreasing likelihood. The candidates are kept
+ * in parallel arrays, with the place types of all candidates packed into a single int array.
+ */
+final class PlaceCandidates {
+
+    private final String[] mIds;
+    private final String[] mNames;
+    private final float[] mLikelihoods;
+    // The types of candidate i are mTypes[mTypeOffsets[i]] to mTypes[mTypeOffsets[i + 1] - 1]
+    private final int[] mTypeOffsets;
+    private final int[] mTypes;
+
+    private PlaceCandidates(String[] ids, String[] names, float[] likelihoods,
+            int[] typeOffsets, int[] types) {
+        mIds = ids;
+        mNames = names;
+        mLikelihoods = likelihoods;
+        mTypeOffsets = typeOffsets;
+        mTypes = types;
+    }
+
+    int size() {
+        return mIds.length;
+    }
+
+    boolean isEmpty() {
+        return mIds.length == 0;
+    }
+
+    String getId(int index) {
+        return mIds[index];
+    }
+
+    String getName(int index) {
+        return mNames[index];
+    }
+
+    float getLikelihood(int index) {
+        return mLikelihoods[index];
+    }
+
+    int[] getTypes(int index) {
+        return Arrays.copyOfRange(mTypes, mTypeOffsets[index], mTypeOffsets[index + 1]);
+    }
+
+    /**
+     * Collects candidates and keeps only the most likely ones.
+     */
+    static final class Builder {
+        private final int mMaxCount;
+        private final String[] mIds;
+        private final String[] mNames;
+        private final float[] mLikelihoods;
+        private final int[][] mTypes;
+        private int mCount;
+
+        /**
+         * @param maxCount The number of candidates to keep.
+         */
+        Builder(int maxCount) {
+            mMaxCount = maxCount;
+            mIds = new String[maxCount];
+            mNames = new String[maxCount];
+            mLikelihoods = new float[maxCount];
+            mTypes = new int[maxCount][];
+        }
+
+        /**
+         * Add a candidate, if it is more likely than the least likely one kept so far.
+         *
+         * @return This builder.
+         */
+        Builder add(String id, String name, int[] types, float likelihood) {
+            if (mCount == mMaxCount && likelihood <= mLikelihoods[mCount - 1]) {
+                return this;
+            }
+            // Insertion sort; the lists are only a handful of entries long
+            int position = mCount < mMaxCount ? mCount++ : mCount - 1;
+            while (position > 0 && mLikelihoods[position - 1] < likelihood) {
+                mIds[position] = mIds[position - 1];
+                mNames[position] = mNames[position - 1];
+                mLikelihoods[position] = mLikelihoods[position - 1];
+                mTypes[position] = mTypes[position - 1];
+                position--;
+            }
+            mIds[position] = id;
+            mNames[position] = name;
+            mLikelihoods[position] = likelihood;
+            mTypes[position] = types;
+            return this;
+        }
+
+        PlaceCandidates build() {
+            int[] typeOffsets = new int[mCount + 1];
+            for (int i = 0; i < mCount; i++) {
+                typeOffsets[i + 1] = typeOffsets[i] + mTypes[i].length;
+            }
+            int[] types = new int[typeOffsets[mCount]];
+            for (int i = 0; i < mCount; i++) {
+                System.arraycopy(mTypes[i], 0, types, typeOffsets[i], mTypes[i].length);
+            }
+            return new PlaceCandidates(Arrays.copyOf(mIds, mCount),
+                    Arrays.copyOf(mNames, mCount), Arrays.copyOf(mLikelihoods, mCount),
+                    typeOffsets, types);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.android.walkmyandroid;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Shows the place images. They are decoded on a background thread, downsampled to about the
+ * size they are shown at, and kept in a memory cache, so that switching between place types
+ * reuses the decoded bitmaps instead of decoding the JPEGs again.
+ */
+final class PlaceImageLoader {
+
+    private static final String TAG = PlaceImageLoader.class.getSimpleName();
+
+    private final Resources mResources;
+    private final LruCache<Integer, Bitmap> mCache;
+    private final ExecutorService mDecoder;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // The image each view should end up showing; only touched on the main thread
+    private final Map<ImageView, Integer> mRequested = new WeakHashMap<>();
+
+    /**
+     * @param resources The resources the images are decoded from.
+     * @param maxBytes  The most memory the decoded bitmaps may take.
+     */
+    PlaceImageLoader(Resources resources, int maxBytes) {
+        mResources = resources;
+        mCache = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        mDecoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "place-image");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Show an image in a view, right away if it was decoded before. Otherwise the view keeps
+     * its current image until the decoding is done. Must be called on the main thread.
+     *
+     * @param view       The view to show the image in.
+     * @param drawableID The drawable resource ID of the image.
+     */
+    void load(final ImageView view, final int drawableID) {
+        mRequested.put(view, drawableID);
+        Bitmap bitmap = mCache.get(drawableID);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        final int width = view.getWidth();
+        final int height = view.getHeight();
+        mDecoder.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap decoded = decodeIfMissing(drawableID, width, height);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A newer request for the view may have come in meanwhile
+                        Integer requested = mRequested.get(view);
+                        if (decoded != null && requested != null
+                                && requested == drawableID) {
+                            view.setImageBitmap(decoded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Decode images ahead of their first use, in the background.
+     *
+     * @param drawableIDs The drawable resource IDs of the images.
+     * @param width       The width the images are shown at, or 0 if not known yet.
+     * @param height      The height the images are shown at, or 0 if not known yet.
+     */
+    void preload(int[] drawableIDs, final int width, final int height) {
+        for (final int drawableID : drawableIDs) {
+            mDecoder.execute(new Runnable() {
+                @Override
+                public void run() {
+                    decodeIfMissing(drawableID, width, height);
+                }
+            });
+        }
+    }
+
+    int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * Get the largest power of two sample size that still decodes an image at least as large
+     * as requested in both dimensions.
+     *
+     * @param width     The width of the image.
+     * @param height    The height of the image.
+     * @param reqWidth  The width it is shown at.
+     * @param reqHeight The height it is shown at.
+     * @return The value for BitmapFactory.Options.inSampleSize, at least 1.
+     */
+    static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Runs on the decoder thread.
+     */
+    private Bitmap decodeIfMissing(int drawableID, int width, int height) {
+        Bitmap bitmap = mCache.get(drawableID);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        if (width <= 0 || height <= 0) {
+            // Not laid out yet; the screen is an upper bound
+            DisplayMetrics metrics = mResources.getDisplayMetrics();
+            width = metrics.widthPixels;
+            height = metrics.heightPixels;
+        }
+        long start = SystemClock.elapsedRealtime();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, drawableID, options);
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        bitmap = BitmapFactory.decodeResource(mResources, drawableID, options);
+        if (bitmap != null) {
+            mCache.put(drawableID, bitmap);
+            Log.d(TAG, "Decoded " + bitmap.getWidth() + "x" + bitmap.getHeight() + " at 1/"
+                    + options.inSampleSize + " in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+        return bitmap;
+    }
+}
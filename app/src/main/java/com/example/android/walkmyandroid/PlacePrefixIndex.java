@@ -0,0 +1,433 @@
+package com.example.android.walkmyandroid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The places the user selected before, indexed by the words of their names in a prefix trie,
+ * so that the search bar can suggest them without asking the Places API. Matches are ranked by
+ * how often the place was selected, discounted by its distance from the user. Words are
+ * compared without case or accents, and a query of several words matches the places that have
+ * a word starting with each of them. When the index is full, the least selected place is
+ * dropped, the least recently selected of them first.
+ *
+ * <p>The selections can be saved to a file and loaded back, so that they outlive the process.
+ */
+final class PlacePrefixIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String[] NO_TOKENS = new String[0];
+    private static final int MAGIC = 0x57415049; // "WAPI"
+    private static final int VERSION = 1;
+
+    private final int mMaxEntries;
+    private final double mDistanceScaleMeters;
+    private final Node mRoot = new Node();
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    // Orders the selections, for recency
+    private long mSequence;
+
+    /**
+     * @param maxEntries          The most places kept.
+     * @param distanceScaleMeters The distance at which a place ranks as if it had been
+     *                            selected half as often.
+     */
+    PlacePrefixIndex(int maxEntries, double distanceScaleMeters) {
+        if (maxEntries <= 0 || distanceScaleMeters <= 0) {
+            throw new IllegalArgumentException("Capacity and distance scale must be positive");
+        }
+        mMaxEntries = maxEntries;
+        mDistanceScaleMeters = distanceScaleMeters;
+    }
+
+    /**
+     * Count a selection of a place, adding it to the index if it is new, or updating its
+     * details otherwise.
+     */
+    synchronized void record(PlaceSuggestion place) {
+        Entry entry = mEntries.get(place.id);
+        if (entry != null) {
+            String[] tokens = tokenize(place.name);
+            if (!Arrays.equals(tokens, entry.tokens)) {
+                unindex(entry);
+                entry.tokens = tokens;
+                index(entry);
+            }
+            entry.place = place;
+            entry.count++;
+            entry.lastUsed = ++mSequence;
+            return;
+        }
+        if (mEntries.size() == mMaxEntries) {
+            evictWeakest();
+        }
+        entry = new Entry(place, tokenize(place.name));
+        entry.count = 1;
+        entry.lastUsed = ++mSequence;
+        mEntries.put(place.id, entry);
+        index(entry);
+    }
+
+    /**
+     * @param query     What the user typed so far.
+     * @param latitude  The latitude of the user, or NaN if unknown.
+     * @param longitude The longitude of the user, or NaN if unknown.
+     * @param limit     The most places returned.
+     * @return The matching places, best ranked first; empty if there is none.
+     */
+    synchronized List<PlaceSuggestion> search(String query, final double latitude,
+            final double longitude, int limit) {
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return Collections.emptyList();
+        }
+        Node node = mRoot;
+        String first = queryTokens[0];
+        for (int i = 0; i < first.length() && node != null; i++) {
+            node = node.child(first.charAt(i));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        Set<Entry> matches = new LinkedHashSet<>();
+        collect(node, matches);
+
+        List<Entry> ranked = new ArrayList<>(matches.size());
+        for (Entry entry : matches) {
+            if (matchesAll(entry, queryTokens)) {
+                ranked.add(entry);
+            }
+        }
+        Collections.sort(ranked, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int byScore = Double.compare(score(b, latitude, longitude),
+                        score(a, latitude, longitude));
+                if (byScore != 0) {
+                    return byScore;
+                }
+                return a.lastUsed < b.lastUsed ? 1 : (a.lastUsed > b.lastUsed ? -1 : 0);
+            }
+        });
+        List<PlaceSuggestion> places = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            places.add(ranked.get(i).place);
+        }
+        return places;
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Write the selected places to a file, replacing it only once the whole index is written.
+     * Slow, so it should run on a background thread.
+     */
+    void save(File file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : mEntries.values()) {
+                Entry copy = new Entry(entry.place, entry.tokens);
+                copy.count = entry.count;
+                copy.lastUsed = entry.lastUsed;
+                entries.add(copy);
+            }
+        }
+        // Least recently selected first, so that loading them keeps their order
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.lastUsed < b.lastUsed ? -1 : (a.lastUsed == b.lastUsed ? 0 : 1);
+            }
+        });
+
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                PlaceSuggestion place = entry.place;
+                out.writeUTF(place.id);
+                out.writeUTF(place.name);
+                out.writeUTF(place.address);
+                out.writeDouble(place.latitude);
+                out.writeDouble(place.longitude);
+                out.writeShort(place.types.length);
+                for (int type : place.types) {
+                    out.writeInt(type);
+                }
+                out.writeInt(entry.count);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Add the places saved by {@link #save} to the index. Places selected since the index was
+     * built keep their selections, added to the saved ones, and stay the most recent. Slow, so
+     * it should run on a background thread.
+     *
+     * @throws IOException If the file cannot be read; the index is left unchanged.
+     */
+    void load(File file) throws IOException {
+        List<Entry> loaded = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognized place index " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported place index version " + version);
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String id = in.readUTF();
+                String name = in.readUTF();
+                String address = in.readUTF();
+                double latitude = in.readDouble();
+                double longitude = in.readDouble();
+                int[] types = new int[in.readUnsignedShort()];
+                for (int t = 0; t < types.length; t++) {
+                    types[t] = in.readInt();
+                }
+                Entry entry = new Entry(new PlaceSuggestion(id, name, address, latitude,
+                        longitude, types), tokenize(name));
+                entry.count = in.readInt();
+                loaded.add(entry);
+            }
+        } finally {
+            in.close();
+        }
+
+        synchronized (this) {
+            // The loaded places were selected before any place already in the index
+            for (Entry entry : mEntries.values()) {
+                entry.lastUsed += loaded.size();
+            }
+            mSequence += loaded.size();
+            long sequence = 0;
+            for (Entry entry : loaded) {
+                sequence++;
+                Entry existing = mEntries.get(entry.place.id);
+                if (existing != null) {
+                    existing.count += entry.count;
+                    continue;
+                }
+                if (mEntries.size() == mMaxEntries) {
+                    evictWeakest();
+                }
+                entry.lastUsed = sequence;
+                mEntries.put(entry.place.id, entry);
+                index(entry);
+            }
+        }
+    }
+
+    /**
+     * @return The words of a text, lower case and without accents.
+     */
+    static String[] tokenize(String text) {
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens.isEmpty() ? NO_TOKENS : tokens.toArray(new String[tokens.size()]);
+    }
+
+    private double score(Entry entry, double latitude, double longitude) {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude) || !entry.place.hasLocation()) {
+            return entry.count;
+        }
+        double distance = GeoMath.distanceMeters(latitude, longitude, entry.place.latitude,
+                entry.place.longitude);
+        return entry.count / (1 + distance / mDistanceScaleMeters);
+    }
+
+    /**
+     * The first query word selected the entry through the trie; the others must each start a
+     * word of its name too.
+     */
+    private static boolean matchesAll(Entry entry, String[] queryTokens) {
+        for (int q = 1; q < queryTokens.length; q++) {
+            boolean found = false;
+            for (String token : entry.tokens) {
+                if (token.startsWith(queryTokens[q])) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void collect(Node node, Set<Entry> out) {
+        if (node.entries != null) {
+            out.addAll(node.entries);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            collect(node.children[i], out);
+        }
+    }
+
+    private void index(Entry entry) {
+        for (String token : entry.tokens) {
+            Node node = mRoot;
+            for (int i = 0; i < token.length(); i++) {
+                node = node.childOrCreate(token.charAt(i));
+            }
+            if (node.entries == null) {
+                node.entries = new ArrayList<>(1);
+            }
+            if (!node.entries.contains(entry)) {
+                node.entries.add(entry);
+            }
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String token : entry.tokens) {
+            remove(mRoot, token, 0, entry);
+        }
+    }
+
+    /**
+     * Remove the entry from the node of a token, and the nodes left empty on the way.
+     *
+     * @return True if the node is now empty.
+     */
+    private static boolean remove(Node node, String token, int depth, Entry entry) {
+        if (depth == token.length()) {
+            if (node.entries != null) {
+                node.entries.remove(entry);
+                if (node.entries.isEmpty()) {
+                    node.entries = null;
+                }
+            }
+        } else {
+            char key = token.charAt(depth);
+            Node child = node.child(key);
+            if (child != null && remove(child, token, depth + 1, entry)) {
+                node.removeChild(key);
+            }
+        }
+        return node.entries == null && node.childCount == 0;
+    }
+
+    private void evictWeakest() {
+        Entry weakest = null;
+        for (Entry entry : mEntries.values()) {
+            if (weakest == null || entry.count < weakest.count
+                    || (entry.count == weakest.count && entry.lastUsed < weakest.lastUsed)) {
+                weakest = entry;
+            }
+        }
+        mEntries.remove(weakest.place.id);
+        unindex(weakest);
+    }
+
+    private static final class Entry {
+        PlaceSuggestion place;
+        String[] tokens;
+        int count;
+        long lastUsed;
+
+        Entry(PlaceSuggestion place, String[] tokens) {
+            this.place = place;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * A trie node. The children are kept in small parallel arrays, searched linearly, since
+     * most nodes have only one or two.
+     */
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int childCount;
+        // The entries with a word ending here
+        List<Entry> entries;
+
+        Node child(char key) {
+            for (int i = 0; i < childCount; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node childOrCreate(char key) {
+            Node child = child(key);
+            if (child == null) {
+                if (childCount == keys.length) {
+                    int capacity = Math.max(2, childCount * 2);
+                    keys = Arrays.copyOf(keys, capacity);
+                    children = Arrays.copyOf(children, capacity);
+                }
+                child = new Node();
+                keys[childCount] = key;
+                children[childCount] = child;
+                childCount++;
+            }
+            return child;
+        }
+
+        void removeChild(char key) {
+            for (int i = 0; i < childCount; i++) {
+                if (keys[i] == key) {
+                    childCount--;
+                    keys[i] = keys[childCount];
+                    children[i] = children[childCount];
+                    children[childCount] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * A place offered while the user types in the search bar, either one selected before or a
+ * prediction of the Places API.
+ */
+final class PlaceSuggestion {
+
+    /** The Places API ID of the place. */
+    final String id;
+    final String name;
+    /** The address, or the secondary text of a prediction; may be empty. */
+    final String address;
+    /** The position of the place, or NaN for predictions, which do not come with one. */
+    final double latitude;
+    final double longitude;
+    final int[] types;
+
+    PlaceSuggestion(String id, String name, String address, double latitude, double longitude,
+            int[] types) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.types = types;
+    }
+
+    /**
+     * @return True if the place is fully known, so selecting it needs no further lookup.
+     */
+    boolean hasLocation() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    /**
+     * Shown in the suggestion list.
+     */
+    @Override
+    public String toString() {
+        return address.isEmpty() ? name : name + ", " + address;
+    }
+}
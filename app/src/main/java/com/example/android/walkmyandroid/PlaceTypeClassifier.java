@@ -0,0 +1,103 @@
+package com.example.android.walkmyandroid;
+
+import java.util.Arrays;
+
+/**
+ * Classifies a place by its types into one of a set of categories, e.g. the Android image that
+ * represents it. Each configured type maps to a category and a rank; the place gets the category
+ * of its best ranked type, whatever the order of its types. Types are looked up in a table
+ * indexed by the type itself, so classifying does not box or search.
+ */
+final class PlaceTypeClassifier {
+
+    static final int UNRANKED = Integer.MAX_VALUE;
+
+    private final int[] mCategories;
+    private final int[] mRanks;
+    private final int mDefaultCategory;
+
+    private PlaceTypeClassifier(int[] categories, int[] ranks, int defaultCategory) {
+        mCategories = categories;
+        mRanks = ranks;
+        mDefaultCategory = defaultCategory;
+    }
+
+    /**
+     * @param placeTypes The types of the place.
+     * @return The category of the best ranked known type, or the default category if no type
+     * is known. Of two types with the same rank, the first one wins.
+     */
+    int classify(int[] placeTypes) {
+        int bestRank = UNRANKED;
+        int category = mDefaultCategory;
+        for (int placeType : placeTypes) {
+            int rank = getRank(placeType);
+            if (rank < bestRank) {
+                bestRank = rank;
+                category = mCategories[placeType];
+            }
+        }
+        return category;
+    }
+
+    /**
+     * @return The rank of a type, lower being preferred, or UNRANKED if it is not configured.
+     */
+    int getRank(int placeType) {
+        if (placeType < 0 || placeType >= mRanks.length) {
+            return UNRANKED;
+        }
+        return mRanks[placeType];
+    }
+
+    int getDefaultCategory() {
+        return mDefaultCategory;
+    }
+
+    /**
+     * Configures the categories, best ranked first.
+     */
+    static final class Builder {
+        private final int mDefaultCategory;
+        private int[] mCategories = new int[0];
+        private int[] mRanks = new int[0];
+        private int mNextRank;
+
+        /**
+         * @param defaultCategory The category of places without any configured type.
+         */
+        Builder(int defaultCategory) {
+            mDefaultCategory = defaultCategory;
+        }
+
+        /**
+         * Map types to a category, ranked below all the types added before. Adding a type
+         * again moves it to the new category and rank.
+         *
+         * @param category   The category.
+         * @param placeTypes The non-negative place types that belong to it.
+         */
+        Builder add(int category, int... placeTypes) {
+            int rank = mNextRank++;
+            for (int placeType : placeTypes) {
+                if (placeType < 0) {
+                    throw new IllegalArgumentException("Negative place type " + placeType);
+                }
+                if (placeType >= mRanks.length) {
+                    int oldLength = mRanks.length;
+                    mCategories = Arrays.copyOf(mCategories, placeType + 1);
+                    mRanks = Arrays.copyOf(mRanks, placeType + 1);
+                    Arrays.fill(mRanks, oldLength, mRanks.length, UNRANKED);
+                }
+                mCategories[placeType] = category;
+                mRanks[placeType] = rank;
+            }
+            return this;
+        }
+
+        PlaceTypeClassifier build() {
+            return new PlaceTypeClassifier(mCategories.clone(), mRanks.clone(),
+                    mDefaultCategory);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.android.walkmyandroid;
+
+import com.google.android.gms.location.places.Place;
+
+/**
+ * Maps place types to the Android image that represents them.
+ */
+final class PlaceTypeDrawables {
+
+    // The more specific places first, so that e.g. a library on a campus is a library
+    private static final PlaceTypeClassifier sClassifier =
+            new PlaceTypeClassifier.Builder(R.drawable.android_plain)
+                    .add(R.drawable.android_library, Place.TYPE_LIBRARY)
+                    .add(R.drawable.android_gym, Place.TYPE_GYM)
+                    .add(R.drawable.android_restaurant, Place.TYPE_RESTAURANT)
+                    .add(R.drawable.android_restaurant, Place.TYPE_MEAL_TAKEAWAY,
+                            Place.TYPE_CAFE)
+                    .add(R.drawable.android_school, Place.TYPE_SCHOOL, Place.TYPE_UNIVERSITY)
+                    .build();
+
+    private PlaceTypeDrawables() {
+    }
+
+    /**
+     * Get the image for a place: the library, gym, restaurant or school Android for the best
+     * ranked of its types that has one, or the plain Android otherwise.
+     *
+     * @param placeTypes The types of the place.
+     * @return The drawable resource ID.
+     */
+    static int forTypes(int[] placeTypes) {
+        return sClassifier.classify(placeTypes);
+    }
+
+    /**
+     * @return The images a place can be shown with, the plain Android first.
+     */
+    static int[] all() {
+        return new int[]{R.drawable.android_plain, R.drawable.android_library,
+                R.drawable.android_gym, R.drawable.android_restaurant,
+                R.drawable.android_school};
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Detects the places around the device, from the Places API on a device or from a fake backend
+ * in a load test.
+ */
+interface PlacesProvider {
+
+    /**
+     * The outcome of a successful detection.
+     */
+    final class Detection {
+        /** The likely places, most likely first. */
+        final PlaceCandidates candidates;
+        /** A fence around the most likely place, or null if it should not be fenced. */
+        final Geofence fence;
+
+        Detection(PlaceCandidates candidates, Geofence fence) {
+            this.candidates = candidates;
+            this.fence = fence;
+        }
+    }
+
+    /**
+     * Detect the places at the current position of the device, waiting for the answer. Must
+     * not be called on the main thread.
+     *
+     * @param latitude  The latitude of the device, in degrees.
+     * @param longitude The longitude of the device, in degrees.
+     * @return The detected places, or null if they could not be detected.
+     */
+    Detection detectPlaces(double latitude, double longitude);
+}
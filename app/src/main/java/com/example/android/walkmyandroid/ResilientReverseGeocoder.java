@@ -0,0 +1,162 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+
+/**
+ * ReverseGeocoder that protects a remote backend from being hammered while it is slow, rate
+ * limited or down.
+ *
+ * <p>Every call takes a token from a rate limiter. A failed call is retried after an exponential
+ * backoff with full jitter, as long as tokens and retries are left. A circuit breaker counts
+ * failures, and calls slower than a threshold, and once it opens, lookups fail at once with an
+ * IOException instead of reaching the backend. Placed under a {@link FallbackReverseGeocoder}
+ * and a {@link CachingReverseGeocoder}, that failure turns into an offline or cached answer.
+ */
+class ResilientReverseGeocoder implements ReverseGeocoder {
+
+    /**
+     * Waits between retries; replaced by a fake in tests.
+     */
+    interface Sleeper {
+        Sleeper SYSTEM = new Sleeper() {
+            @Override
+            public void sleep(long millis) throws InterruptedException {
+                Thread.sleep(millis);
+            }
+        };
+
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private final ReverseGeocoder mBackend;
+    private final TokenBucket mRateLimiter;
+    private final int mReserve;
+    private final CircuitBreaker mBreaker;
+    private final int mMaxRetries;
+    private final long mBaseBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final long mSlowCallMillis;
+    private final Clock mClock;
+    private final Sleeper mSleeper;
+    private final Random mRandom;
+
+    private long mRejectedCount;
+    private long mRetryCount;
+
+    /**
+     * @param backend           The remote geocoder.
+     * @param rateLimiter       Limits the calls made to the backend.
+     * @param breaker           Tracks the health of the backend.
+     * @param maxRetries        The retries after a failed call.
+     * @param baseBackoffMillis The longest wait before the first retry; doubled for each retry.
+     * @param maxBackoffMillis  The longest wait before any retry.
+     * @param slowCallMillis    Calls taking longer count as failures for the breaker.
+     * @param clock             The clock used to time calls.
+     * @param sleeper           Waits between retries.
+     * @param random            Picks the jitter.
+     */
+    ResilientReverseGeocoder(ReverseGeocoder backend, TokenBucket rateLimiter,
+            CircuitBreaker breaker, int maxRetries, long baseBackoffMillis,
+            long maxBackoffMillis, long slowCallMillis, Clock clock, Sleeper sleeper,
+            Random random) {
+        this(backend, rateLimiter, 0, breaker, maxRetries, baseBackoffMillis,
+                maxBackoffMillis, slowCallMillis, clock, sleeper, random);
+    }
+
+    /**
+     * A geocoder for lookups that can wait, such as prefetches, which shares the rate limiter
+     * with others but leaves them a reserve of tokens.
+     *
+     * @param reserve The tokens of the rate limiter this geocoder must leave to others.
+     */
+    ResilientReverseGeocoder(ReverseGeocoder backend, TokenBucket rateLimiter, int reserve,
+            CircuitBreaker breaker, int maxRetries, long baseBackoffMillis,
+            long maxBackoffMillis, long slowCallMillis, Clock clock, Sleeper sleeper,
+            Random random) {
+        mBackend = backend;
+        mRateLimiter = rateLimiter;
+        mReserve = reserve;
+        mBreaker = breaker;
+        mMaxRetries = maxRetries;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mSlowCallMillis = slowCallMillis;
+        mClock = clock;
+        mSleeper = sleeper;
+        mRandom = random;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            if (!mBreaker.allowRequest()) {
+                countRejected();
+                throw new IOException("Geocoder backend unavailable, circuit open");
+            }
+            if (!mRateLimiter.tryAcquire(mReserve)) {
+                mBreaker.onCancelled();
+                countRejected();
+                throw new IOException("Geocoder rate limit reached");
+            }
+
+            long start = mClock.currentTimeMillis();
+            IOException failure;
+            try {
+                GeoAddress address = mBackend.getAddress(latitude, longitude);
+                if (mClock.currentTimeMillis() - start > mSlowCallMillis) {
+                    mBreaker.onFailure();
+                } else {
+                    mBreaker.onSuccess();
+                }
+                return address;
+            } catch (IOException e) {
+                mBreaker.onFailure();
+                failure = e;
+            } catch (RuntimeException e) {
+                // Bad coordinates say nothing about the backend's health
+                mBreaker.onCancelled();
+                throw e;
+            }
+
+            if (attempt >= mMaxRetries) {
+                throw failure;
+            }
+            synchronized (this) {
+                mRetryCount++;
+            }
+            try {
+                mSleeper.sleep(backoffMillis(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while backing off");
+            }
+        }
+    }
+
+    /**
+     * @return The number of lookups refused by the breaker or the rate limiter.
+     */
+    synchronized long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    synchronized long getRetryCount() {
+        return mRetryCount;
+    }
+
+    /**
+     * Full jitter: a uniform wait between zero and the exponential backoff of the attempt.
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << Math.min(attempt, 20));
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * ceiling);
+        }
+    }
+
+    private synchronized void countRejected() {
+        mRejectedCount++;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+
+/**
+ * Turns a set of coordinates into a human readable address.
+ */
+interface ReverseGeocoder {
+
+    /**
+     * Look up the address for the given coordinates.
+     *
+     * @param latitude  The latitude, in degrees.
+     * @param longitude The longitude, in degrees.
+     * @return The interned address, or null if no address was found.
+     * @throws IOException              If the backend could not be reached.
+     * @throws IllegalArgumentException If the coordinates are out of range.
+     */
+    GeoAddress getAddress(double latitude, double longitude) throws IOException;
+}
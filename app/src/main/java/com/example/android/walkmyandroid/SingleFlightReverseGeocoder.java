@@ -0,0 +1,105 @@
+package com.example.android.walkmyandroid;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * ReverseGeocoder that lets concurrent lookups for the same grid cell share a single call to the
+ * wrapped geocoder. The first lookup for a cell runs the call; lookups for that cell arriving
+ * while it runs wait for it and get the same address, or the same exception.
+ */
+class SingleFlightReverseGeocoder implements ReverseGeocoder {
+
+    private final ReverseGeocoder mDelegate;
+    private final double mCellSizeMeters;
+    private final Map<Long, Flight> mInFlight = new HashMap<>();
+
+    private long mCallCount;
+    private long mSharedCount;
+
+    /**
+     * A call to the wrapped geocoder, and its outcome once it is done.
+     */
+    private static class Flight {
+        final CountDownLatch done = new CountDownLatch(1);
+        GeoAddress address;
+        IOException ioException;
+        RuntimeException runtimeException;
+    }
+
+    /**
+     * @param delegate       The geocoder doing the lookups.
+     * @param cellSizeMeters The size of the cells whose lookups are shared; usually the cell size
+     *                       of the address cache.
+     */
+    SingleFlightReverseGeocoder(ReverseGeocoder delegate, double cellSizeMeters) {
+        mDelegate = delegate;
+        mCellSizeMeters = cellSizeMeters;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+        long key = GridCells.cellKey(latitude, longitude, mCellSizeMeters);
+        Flight flight;
+        boolean leader;
+        synchronized (this) {
+            flight = mInFlight.get(key);
+            leader = flight == null;
+            if (leader) {
+                flight = new Flight();
+                mInFlight.put(key, flight);
+                mCallCount++;
+            } else {
+                mSharedCount++;
+            }
+        }
+
+        if (leader) {
+            try {
+                flight.address = mDelegate.getAddress(latitude, longitude);
+            } catch (IOException e) {
+                flight.ioException = e;
+            } catch (RuntimeException e) {
+                flight.runtimeException = e;
+            } finally {
+                synchronized (this) {
+                    mInFlight.remove(key);
+                }
+                flight.done.countDown();
+            }
+        } else {
+            try {
+                flight.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a lookup");
+            }
+        }
+
+        // The latch makes the fields written by the leader visible here
+        if (flight.ioException != null) {
+            throw flight.ioException;
+        }
+        if (flight.runtimeException != null) {
+            throw flight.runtimeException;
+        }
+        return flight.address;
+    }
+
+    /**
+     * @return The number of calls made to the wrapped geocoder.
+     */
+    synchronized long getCallCount() {
+        return mCallCount;
+    }
+
+    /**
+     * @return The number of lookups that were answered by another lookup's call.
+     */
+    synchronized long getSharedCount() {
+        return mSharedCount;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Times the milestones of a launch, from the start of the activity. Each milestone is only
+ * recorded the first time it is reached, so later frames and addresses do not move it.
+ */
+final class StartupTrace {
+
+    enum Milestone {
+        /** The first frame of the UI was drawn. */
+        FIRST_FRAME,
+        /** The components that were kept off the critical path are ready. */
+        DEFERRED_INIT,
+        /** An address is on screen, either restored from the last run or looked up. */
+        FIRST_ADDRESS,
+        /** The first address looked up in this run is on screen. */
+        FIRST_LIVE_ADDRESS
+    }
+
+    static final long NOT_REACHED = -1;
+
+    private final long mStartNanos;
+    private final long[] mElapsedNanos = new long[Milestone.values().length];
+
+    /**
+     * @param startNanos When the launch started, as a System.nanoTime() reading.
+     */
+    StartupTrace(long startNanos) {
+        mStartNanos = startNanos;
+        for (int i = 0; i < mElapsedNanos.length; i++) {
+            mElapsedNanos[i] = NOT_REACHED;
+        }
+    }
+
+    /**
+     * Record that a milestone was reached now.
+     *
+     * @return The time since the start of the launch in nanoseconds, or NOT_REACHED if the
+     * milestone had already been reached.
+     */
+    long mark(Milestone milestone) {
+        return mark(milestone, System.nanoTime());
+    }
+
+    /**
+     * @param nowNanos The System.nanoTime() reading at which the milestone was reached.
+     */
+    synchronized long mark(Milestone milestone, long nowNanos) {
+        if (mElapsedNanos[milestone.ordinal()] != NOT_REACHED) {
+            return NOT_REACHED;
+        }
+        long elapsed = Math.max(0, nowNanos - mStartNanos);
+        mElapsedNanos[milestone.ordinal()] = elapsed;
+        return elapsed;
+    }
+
+    /**
+     * @return The time from the start of the launch to the milestone in nanoseconds, or
+     * NOT_REACHED.
+     */
+    synchronized long getElapsedNanos(Milestone milestone) {
+        return mElapsedNanos[milestone.ordinal()];
+    }
+
+    synchronized boolean isReached(Milestone milestone) {
+        return mElapsedNanos[milestone.ordinal()] != NOT_REACHED;
+    }
+
+    /**
+     * @return The milestones reached so far, in milliseconds, for the log.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("Startup:");
+        for (Milestone milestone : Milestone.values()) {
+            long elapsed = mElapsedNanos[milestone.ordinal()];
+            if (elapsed != NOT_REACHED) {
+                builder.append(' ').append(milestone).append('=')
+                        .append(elapsed / 1000000).append("ms");
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Token bucket rate limiter: holds up to a fixed number of tokens, refilled at a steady rate,
+ * and every permitted call takes one.
+ */
+class TokenBucket {
+
+    private final double mCapacity;
+    private final double mTokensPerMilli;
+    private final Clock mClock;
+    private double mTokens;
+    private long mLastRefill;
+
+    /**
+     * @param capacity        The most calls that may be made in a burst.
+     * @param tokensPerSecond The sustained rate of calls.
+     * @param clock           The clock used to refill the bucket.
+     */
+    TokenBucket(int capacity, double tokensPerSecond, Clock clock) {
+        if (capacity <= 0 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and rate must be positive");
+        }
+        mCapacity = capacity;
+        mTokensPerMilli = tokensPerSecond / 1000;
+        mClock = clock;
+        mTokens = capacity;
+        mLastRefill = clock.currentTimeMillis();
+    }
+
+    /**
+     * Take a token if one is available.
+     *
+     * @return False if the call should not be made now.
+     */
+    synchronized boolean tryAcquire() {
+        return tryAcquire(0);
+    }
+
+    /**
+     * Take a token only if more than a reserve of them is available, so that calls that can
+     * wait leave room for the ones that cannot.
+     *
+     * @param reserve The tokens that must be left after this call.
+     * @return False if the call should not be made now.
+     */
+    synchronized boolean tryAcquire(int reserve) {
+        long now = mClock.currentTimeMillis();
+        if (now > mLastRefill) {
+            mTokens = Math.min(mCapacity, mTokens + (now - mLastRefill) * mTokensPerMilli);
+            mLastRefill = now;
+        }
+        if (mTokens < 1 + reserve) {
+            return false;
+        }
+        mTokens--;
+        return true;
+    }
+}
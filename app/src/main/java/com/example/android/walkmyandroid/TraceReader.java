@@ -0,0 +1,206 @@
+package com.example.android.walkmyandroid;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Reads recorded location traces, to be replayed with {@link TraceReplayer}. Two formats are
+ * understood: the track points of a GPX file, and a CSV of "timeMillis,latitude,longitude"
+ * with optional accuracy and speed columns.
+ */
+final class TraceReader {
+
+    // ISO 8601 as written in GPX files, e.g. 2017-06-01T12:34:56.789Z or ...+02:00
+    private static final Pattern GPX_TIME = Pattern.compile(
+            "(\\d{4})-(\\d{2})-(\\d{2})T(\\d{2}):(\\d{2}):(\\d{2})(?:\\.(\\d+))?"
+                    + "(Z|([+-])(\\d{2}):?(\\d{2}))?");
+
+    private TraceReader() {
+    }
+
+    /**
+     * Read the track points of a GPX file, in file order. Every point needs a time.
+     *
+     * @param in The GPX document; it is closed once read.
+     * @return The fixes, without accuracy or speed.
+     * @throws IOException If the document cannot be read or a point is malformed.
+     */
+    static List<LocationFix> readGpx(InputStream in) throws IOException {
+        GpxHandler handler = new GpxHandler();
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.newSAXParser().parse(in, handler);
+        } catch (ParserConfigurationException e) {
+            throw new IOException("No XML parser", e);
+        } catch (SAXException e) {
+            throw new IOException("Malformed GPX: " + e.getMessage(), e);
+        } finally {
+            in.close();
+        }
+        return handler.mFixes;
+    }
+
+    /**
+     * Read a CSV trace of one fix per line, as "timeMillis,latitude,longitude", optionally
+     * followed by ",accuracyMeters" and ",speedMetersPerSecond". Blank lines and lines starting
+     * with "#" are skipped.
+     *
+     * @param in The trace; it is closed once read.
+     * @return The fixes, in file order.
+     * @throws IOException If the trace cannot be read or a line is malformed.
+     */
+    static List<LocationFix> readCsv(InputStream in) throws IOException {
+        List<LocationFix> fixes = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] columns = line.split(",");
+                if (columns.length < 3 || columns.length > 5) {
+                    throw new IOException("Malformed line " + lineNumber + ": " + line);
+                }
+                try {
+                    fixes.add(new LocationFix(
+                            Double.parseDouble(columns[1].trim()),
+                            Double.parseDouble(columns[2].trim()),
+                            Long.parseLong(columns[0].trim()),
+                            columns.length > 3 ? parseOptional(columns[3])
+                                    : LocationFix.UNKNOWN,
+                            columns.length > 4 ? parseOptional(columns[4])
+                                    : LocationFix.UNKNOWN));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed line " + lineNumber + ": " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return fixes;
+    }
+
+    /**
+     * @param time An ISO 8601 date and time; without an offset, it is taken as UTC.
+     * @return The time in milliseconds since the epoch.
+     * @throws IOException If the time is malformed.
+     */
+    static long parseGpxTime(String time) throws IOException {
+        Matcher matcher = GPX_TIME.matcher(time.trim());
+        if (!matcher.matches()) {
+            throw new IOException("Malformed time " + time);
+        }
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1,
+                Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)),
+                Integer.parseInt(matcher.group(5)), Integer.parseInt(matcher.group(6)));
+        long millis = calendar.getTimeInMillis();
+        String fraction = matcher.group(7);
+        if (fraction != null) {
+            // Only the milliseconds are kept
+            String digits = (fraction + "00").substring(0, 3);
+            millis += Integer.parseInt(digits);
+        }
+        if (matcher.group(9) != null) {
+            long offsetMillis = (Integer.parseInt(matcher.group(10)) * 60
+                    + Integer.parseInt(matcher.group(11))) * 60 * 1000L;
+            millis += "+".equals(matcher.group(9)) ? -offsetMillis : offsetMillis;
+        }
+        return millis;
+    }
+
+    private static float parseOptional(String column) {
+        column = column.trim();
+        return column.isEmpty() ? LocationFix.UNKNOWN : Float.parseFloat(column);
+    }
+
+    /**
+     * Collects the trkpt elements and their time child.
+     */
+    private static final class GpxHandler extends DefaultHandler {
+        final List<LocationFix> mFixes = new ArrayList<>();
+        private final StringBuilder mText = new StringBuilder();
+        private boolean mInPoint;
+        private boolean mInTime;
+        private double mLatitude;
+        private double mLongitude;
+        private long mTimeMillis;
+        private boolean mHasTime;
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) throws SAXException {
+            String name = localName.isEmpty() ? qName : localName;
+            if ("trkpt".equals(name)) {
+                String latitude = attributes.getValue("lat");
+                String longitude = attributes.getValue("lon");
+                if (latitude == null || longitude == null) {
+                    throw new SAXException("Track point without coordinates");
+                }
+                try {
+                    mLatitude = Double.parseDouble(latitude);
+                    mLongitude = Double.parseDouble(longitude);
+                } catch (NumberFormatException e) {
+                    throw new SAXException("Malformed coordinates " + latitude + ","
+                            + longitude);
+                }
+                mHasTime = false;
+                mInPoint = true;
+            } else if (mInPoint && "time".equals(name)) {
+                mText.setLength(0);
+                mInTime = true;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (mInTime) {
+                mText.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+                throws SAXException {
+            String name = localName.isEmpty() ? qName : localName;
+            if (mInTime && "time".equals(name)) {
+                mInTime = false;
+                try {
+                    mTimeMillis = parseGpxTime(mText.toString());
+                    mHasTime = true;
+                } catch (IOException e) {
+                    throw new SAXException(e.getMessage());
+                }
+            } else if (mInPoint && "trkpt".equals(name)) {
+                mInPoint = false;
+                if (!mHasTime) {
+                    throw new SAXException("Track point without a time at " + mLatitude
+                            + "," + mLongitude);
+                }
+                mFixes.add(new LocationFix(mLatitude, mLongitude, mTimeMillis,
+                        LocationFix.UNKNOWN, LocationFix.UNKNOWN));
+            }
+        }
+    }
+}
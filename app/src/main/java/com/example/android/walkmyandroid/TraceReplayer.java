@@ -0,0 +1,223 @@
+package com.example.android.walkmyandroid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocationSource that replays a recorded trace, so that the lookup pipeline can be loaded the
+ * same way every run. The fixes are delivered on a replay thread, paced by their recorded times
+ * and sped up by a constant factor. Like the fused location provider, it delivers a fix only
+ * once the requested interval has passed since the previous one, and in batched mode it holds
+ * the fixes back until {@link #BATCH_INTERVALS} intervals have passed.
+ */
+class TraceReplayer implements LocationSource {
+
+    static final double MIN_SPEED = 1;
+    static final double MAX_SPEED = 1000;
+
+    private final List<LocationFix> mFixes;
+    private final double mSpeed;
+    private final long mTraceStartMillis;
+
+    // Guarded by this
+    private LocationSchedule mSchedule;
+    private boolean mBatched;
+    private Listener mListener;
+    private Thread mThread;
+    private long mWallStartNanos;
+    private boolean mStopped;
+    private boolean mFinished;
+    private long mFinishedTraceMillis;
+
+    // Only written by the replay thread
+    private volatile long mDeliveredCount;
+    private volatile long mSkippedCount;
+
+    /**
+     * @param fixes The trace, oldest first.
+     * @param speed How many times faster than recorded to replay, from MIN_SPEED to MAX_SPEED.
+     */
+    TraceReplayer(List<LocationFix> fixes, double speed) {
+        if (!(speed >= MIN_SPEED && speed <= MAX_SPEED)) {
+            throw new IllegalArgumentException("Speed must be between " + MIN_SPEED + " and "
+                    + MAX_SPEED + ", was " + speed);
+        }
+        mFixes = new ArrayList<>(fixes);
+        mSpeed = speed;
+        mTraceStartMillis = fixes.isEmpty() ? 0 : fixes.get(0).timeMillis;
+    }
+
+    /**
+     * Start the replay on the first call. Later calls change the schedule, the mode or the
+     * listener from the next fix on.
+     */
+    @Override
+    public synchronized void requestUpdates(LocationSchedule schedule, boolean batched,
+            Listener listener) {
+        if (mStopped) {
+            throw new IllegalStateException("The replay was stopped");
+        }
+        mSchedule = schedule;
+        mBatched = batched;
+        mListener = listener;
+        if (mThread == null) {
+            mWallStartNanos = System.nanoTime();
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    replay();
+                }
+            }, "trace-replay");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+    }
+
+    /**
+     * Stop the replay for good; the fixes not delivered yet are dropped.
+     */
+    @Override
+    public synchronized void removeUpdates() {
+        mStopped = true;
+        notifyAll();
+    }
+
+    /**
+     * @return A clock that follows the time of the trace: the time of the first fix before the
+     * replay starts, sped up like the fixes while it runs, and stopped once it ends. Time based
+     * components fed by the replay should use it instead of the system clock.
+     */
+    Clock getClock() {
+        return new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return getTraceTimeMillis();
+            }
+        };
+    }
+
+    synchronized long getTraceTimeMillis() {
+        if (mThread == null) {
+            return mTraceStartMillis;
+        }
+        if (mFinished) {
+            return mFinishedTraceMillis;
+        }
+        return toTraceMillis(System.nanoTime());
+    }
+
+    /**
+     * Wait for the replay to end, after its last fix or batch was delivered.
+     *
+     * @param timeoutMillis The most time to wait.
+     * @return True if the replay ended.
+     * @throws InterruptedException If the waiting thread was interrupted.
+     */
+    synchronized boolean awaitEnd(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (!mFinished && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return mFinished;
+    }
+
+    synchronized boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * @return The number of fixes delivered, alone or in a batch.
+     */
+    long getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /**
+     * @return The number of fixes skipped because they came before the requested interval.
+     */
+    long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * Runs on the replay thread.
+     */
+    private void replay() {
+        LocationFix lastDelivered = null;
+        List<LocationFix> batch = new ArrayList<>();
+        Listener listener = null;
+        for (LocationFix fix : mFixes) {
+            LocationSchedule schedule;
+            boolean batched;
+            synchronized (this) {
+                if (!awaitTraceTime(fix.timeMillis)) {
+                    break;
+                }
+                schedule = mSchedule;
+                batched = mBatched;
+                listener = mListener;
+            }
+            if (!batched && !batch.isEmpty()) {
+                // Switched out of batched mode; the held back fixes still go out
+                listener.onFixes(batch);
+                batch = new ArrayList<>();
+            }
+            if (lastDelivered != null
+                    && fix.timeMillis - lastDelivered.timeMillis < schedule.intervalMillis) {
+                mSkippedCount++;
+                continue;
+            }
+            lastDelivered = fix;
+            mDeliveredCount++;
+            if (!batched) {
+                listener.onFix(fix);
+                continue;
+            }
+            batch.add(fix);
+            if (fix.timeMillis - batch.get(0).timeMillis
+                    >= schedule.intervalMillis * BATCH_INTERVALS) {
+                listener.onFixes(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        boolean stopped;
+        synchronized (this) {
+            stopped = mStopped;
+        }
+        if (!stopped && !batch.isEmpty()) {
+            listener.onFixes(batch);
+        }
+        synchronized (this) {
+            mFinishedTraceMillis = mFixes.isEmpty() ? mTraceStartMillis
+                    : Math.min(toTraceMillis(System.nanoTime()),
+                            mFixes.get(mFixes.size() - 1).timeMillis);
+            mFinished = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the replay reaches a time of the trace. Called holding the lock.
+     *
+     * @return False if the replay was stopped meanwhile.
+     */
+    private boolean awaitTraceTime(long traceMillis) {
+        long dueNanos = mWallStartNanos
+                + (long) ((traceMillis - mTraceStartMillis) * 1e6 / mSpeed);
+        long remaining;
+        while (!mStopped && (remaining = dueNanos - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                mStopped = true;
+            }
+        }
+        return !mStopped;
+    }
+
+    private long toTraceMillis(long wallNanos) {
+        return mTraceStartMillis + (long) ((wallNanos - mWallStartNanos) * mSpeed / 1e6);
+    }
+}
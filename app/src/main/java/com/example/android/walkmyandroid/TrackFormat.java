@@ -0,0 +1,226 @@
+package com.example.android.walkmyandroid;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The on-disk format of recorded tracks.
+ *
+ * <p>A segment file starts with a magic number and a version, followed by blocks of up to
+ * {@link #BLOCK_SIZE} fixes. Each block has a fixed size header (payload length, count, first
+ * and last time) so that readers can skip blocks outside of a time range without decoding them.
+ * The payload stores each column in turn: times, latitudes and longitudes (in 1e-7 degrees) as
+ * zigzag varint deltas from the previous fix, then accuracies in decimeters as varints, with 0
+ * meaning unknown. A fix at walking pace takes about 6 bytes.
+ */
+final class TrackFormat {
+
+    static final int MAGIC = 0x5754524b; // "WTRK"
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 256;
+    static final int BLOCK_HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    private static final double E7 = 1e7;
+
+    private TrackFormat() {
+    }
+
+    /**
+     * The columns of the fixes of one block.
+     */
+    static final class Block {
+        final long[] times = new long[BLOCK_SIZE];
+        final int[] latitudesE7 = new int[BLOCK_SIZE];
+        final int[] longitudesE7 = new int[BLOCK_SIZE];
+        final int[] accuraciesDm = new int[BLOCK_SIZE];
+        int count;
+
+        boolean isFull() {
+            return count == BLOCK_SIZE;
+        }
+
+        void add(LocationFix fix) {
+            times[count] = fix.timeMillis;
+            latitudesE7[count] = (int) Math.round(fix.latitude * E7);
+            longitudesE7[count] = (int) Math.round(fix.longitude * E7);
+            accuraciesDm[count] = fix.hasAccuracy()
+                    ? Math.min(Integer.MAX_VALUE - 1, Math.round(fix.accuracyMeters * 10))
+                    + 1 : 0;
+            count++;
+        }
+
+        LocationFix get(int index) {
+            return new LocationFix(latitudesE7[index] / E7, longitudesE7[index] / E7,
+                    times[index],
+                    accuraciesDm[index] == 0 ? LocationFix.UNKNOWN
+                            : (accuraciesDm[index] - 1) / 10f,
+                    LocationFix.UNKNOWN);
+        }
+
+        void clear() {
+            count = 0;
+        }
+    }
+
+    /**
+     * Growable byte buffer the payload is encoded into, reused from block to block.
+     */
+    static final class Buffer {
+        byte[] bytes = new byte[BLOCK_SIZE * 8];
+        int length;
+
+        void writeVarLong(long value) {
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7fL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+    }
+
+    static void writeFileHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void readFileHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a track segment");
+        }
+    }
+
+    /**
+     * Encode a block and write it with its header.
+     */
+    static void writeBlock(DataOutputStream out, Block block, Buffer buffer) throws IOException {
+        buffer.length = 0;
+        long previousTime = 0;
+        long previousLatitude = 0;
+        long previousLongitude = 0;
+        for (int i = 0; i < block.count; i++) {
+            buffer.writeSignedVarLong(block.times[i] - previousTime);
+            previousTime = block.times[i];
+        }
+        for (int i = 0; i < block.count; i++) {
+            buffer.writeSignedVarLong(block.latitudesE7[i] - previousLatitude);
+            previousLatitude = block.latitudesE7[i];
+        }
+        for (int i = 0; i < block.count; i++) {
+            buffer.writeSignedVarLong(block.longitudesE7[i] - previousLongitude);
+            previousLongitude = block.longitudesE7[i];
+        }
+        for (int i = 0; i < block.count; i++) {
+            buffer.writeVarLong(block.accuraciesDm[i]);
+        }
+
+        out.writeInt(buffer.length);
+        out.writeInt(block.count);
+        out.writeLong(block.times[0]);
+        out.writeLong(block.times[block.count - 1]);
+        out.write(buffer.bytes, 0, buffer.length);
+    }
+
+    /**
+     * Read the blocks of a segment, and add the fixes within [fromMillis, toMillis] to the
+     * list. Blocks entirely outside of the range are skipped without being decoded. A block cut
+     * short by a crash ends the segment.
+     */
+    static void readBlocks(DataInputStream in, long fromMillis, long toMillis,
+            List<LocationFix> out) throws IOException {
+        Block block = new Block();
+        byte[] payload = new byte[BLOCK_SIZE * 8];
+        while (true) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException endOfSegment) {
+                return;
+            }
+            int count;
+            long firstTime;
+            long lastTime;
+            try {
+                count = in.readInt();
+                firstTime = in.readLong();
+                lastTime = in.readLong();
+                if (count <= 0 || count > BLOCK_SIZE || length < 0) {
+                    throw new IOException("Corrupt track block");
+                }
+                if (lastTime < fromMillis || firstTime > toMillis) {
+                    in.skipBytes(length);
+                    continue;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                in.readFully(payload, 0, length);
+            } catch (EOFException tornBlock) {
+                return;
+            }
+
+            decode(payload, length, count, block);
+            for (int i = 0; i < count; i++) {
+                if (block.times[i] >= fromMillis && block.times[i] <= toMillis) {
+                    out.add(block.get(i));
+                }
+            }
+        }
+    }
+
+    private static void decode(byte[] payload, int length, int count, Block block)
+            throws IOException {
+        int[] position = {0};
+        long time = 0;
+        long latitude = 0;
+        long longitude = 0;
+        for (int i = 0; i < count; i++) {
+            time += readSignedVarLong(payload, length, position);
+            block.times[i] = time;
+        }
+        for (int i = 0; i < count; i++) {
+            latitude += readSignedVarLong(payload, length, position);
+            block.latitudesE7[i] = (int) latitude;
+        }
+        for (int i = 0; i < count; i++) {
+            longitude += readSignedVarLong(payload, length, position);
+            block.longitudesE7[i] = (int) longitude;
+        }
+        for (int i = 0; i < count; i++) {
+            block.accuraciesDm[i] = (int) readVarLong(payload, length, position);
+        }
+        block.count = count;
+    }
+
+    private static long readVarLong(byte[] bytes, int length, int[] position)
+            throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= length) {
+                throw new IOException("Truncated varint");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long readSignedVarLong(byte[] bytes, int length, int[] position)
+            throws IOException {
+        long value = readVarLong(bytes, length, position);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
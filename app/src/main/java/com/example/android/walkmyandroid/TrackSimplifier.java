@@ -0,0 +1,105 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Simplifies a stream of fixes into the key points of the path, as an online variant of
+ * Douglas-Peucker.
+ *
+ * <p>The simplifier keeps the last key point and the fixes seen since. While every buffered fix
+ * stays within the tolerance of the straight line from the key point to the newest fix, the
+ * newest fix just extends the line. Once one strays, the fix before the newest one becomes the
+ * next key point. The buffer holds at most a fixed number of fixes; when it is full, its last
+ * fix is made a key point, so memory stays bounded on long straight legs.
+ */
+class TrackSimplifier {
+
+    private final double mToleranceMeters;
+    private final LocationFix[] mWindow;
+    private int mWindowSize;
+    private LocationFix mAnchor;
+
+    /**
+     * @param toleranceMeters How far a dropped fix may lie from the simplified path.
+     * @param maxWindow       The most fixes buffered between two key points.
+     */
+    TrackSimplifier(double toleranceMeters, int maxWindow) {
+        mToleranceMeters = toleranceMeters;
+        mWindow = new LocationFix[maxWindow];
+    }
+
+    /**
+     * Feed the next fix.
+     *
+     * @return The key point this fix completed, or null if there is none yet.
+     */
+    LocationFix onFix(LocationFix fix) {
+        if (mAnchor == null) {
+            mAnchor = fix;
+            return fix;
+        }
+        if (mWindowSize < mWindow.length && fitsLine(fix)) {
+            mWindow[mWindowSize++] = fix;
+            return null;
+        }
+        LocationFix keyPoint = mWindow[mWindowSize - 1];
+        mAnchor = keyPoint;
+        clearWindow();
+        mWindow[mWindowSize++] = fix;
+        // The new line from the key point is a single segment, so it always fits
+        return keyPoint;
+    }
+
+    /**
+     * End the current path, e.g. when tracking stops.
+     *
+     * @return The last fix seen, unless it was already returned as a key point.
+     */
+    LocationFix flush() {
+        LocationFix last = mWindowSize > 0 ? mWindow[mWindowSize - 1] : null;
+        clearWindow();
+        mAnchor = null;
+        return last;
+    }
+
+    private boolean fitsLine(LocationFix end) {
+        // Project onto a local plane around the key point, in meters
+        double cosLat = Math.cos(Math.toRadians(mAnchor.latitude));
+        double endX = toX(end, cosLat);
+        double endY = toY(end);
+        for (int i = 0; i < mWindowSize; i++) {
+            double distance = distanceToSegment(toX(mWindow[i], cosLat), toY(mWindow[i]),
+                    endX, endY);
+            if (distance > mToleranceMeters) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double toX(LocationFix fix, double cosLat) {
+        return Math.toRadians(fix.longitude - mAnchor.longitude) * cosLat
+                * GeoMath.EARTH_RADIUS_METERS;
+    }
+
+    private double toY(LocationFix fix) {
+        return Math.toRadians(fix.latitude - mAnchor.latitude) * GeoMath.EARTH_RADIUS_METERS;
+    }
+
+    /**
+     * The distance from a point to the segment from the origin to the end point.
+     */
+    private static double distanceToSegment(double x, double y, double endX, double endY) {
+        double lengthSquared = endX * endX + endY * endY;
+        double t = lengthSquared == 0 ? 0 : (x * endX + y * endY) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double dx = x - t * endX;
+        double dy = y - t * endY;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private void clearWindow() {
+        for (int i = 0; i < mWindowSize; i++) {
+            mWindow[i] = null;
+        }
+        mWindowSize = 0;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.android.walkmyandroid;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records fixes into compact, append-only track segments (see {@link TrackFormat}).
+ *
+ * <p>{@link #record} only hands the fix to a queue, so it never blocks the location callback;
+ * a background thread encodes and writes the fixes. If the queue is full, the fix is dropped
+ * and counted. A block is written once it is full, and what was recorded is on disk at most
+ * the flush delay after it was recorded, even while fixes keep arriving. A new segment is
+ * started for every recorder and whenever the current one grows past the maximum size, so a
+ * segment is never appended to after a crash.
+ */
+class TripRecorder {
+
+    private static final String TAG = TripRecorder.class.getSimpleName();
+    private static final String SEGMENT_PREFIX = "track-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long MAX_FLUSH_DELAY_MILLIS = 30 * 1000;
+
+    // Tells the writer thread to write its pending block
+    private static final LocationFix FLUSH = new LocationFix(0, 0, 0, 0, 0);
+
+    private final File mDirectory;
+    private final long mMaxSegmentBytes;
+    private final long mMaxFlushDelayNanos;
+    private final BlockingQueue<LocationFix> mQueue =
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread mWriter;
+
+    private volatile long mRecordedCount;
+    private volatile long mDroppedCount;
+
+    // Only touched by the writer thread
+    private final TrackFormat.Block mBlock = new TrackFormat.Block();
+    private final TrackFormat.Buffer mBuffer = new TrackFormat.Buffer();
+    private DataOutputStream mOut;
+    private File mSegment;
+    // When the oldest fix not flushed to disk yet was recorded, if there is one
+    private boolean mDirty;
+    private long mDirtySinceNanos;
+
+    /**
+     * @param directory       The directory holding the segments; it is created if needed.
+     * @param maxSegmentBytes The size past which a new segment is started.
+     */
+    TripRecorder(File directory, long maxSegmentBytes) {
+        this(directory, maxSegmentBytes, MAX_FLUSH_DELAY_MILLIS);
+    }
+
+    /**
+     * @param directory           The directory holding the segments; it is created if needed.
+     * @param maxSegmentBytes     The size past which a new segment is started.
+     * @param maxFlushDelayMillis The longest a recorded fix waits before it is flushed to disk.
+     */
+    TripRecorder(File directory, long maxSegmentBytes, long maxFlushDelayMillis) {
+        mDirectory = directory;
+        mMaxSegmentBytes = maxSegmentBytes;
+        mMaxFlushDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxFlushDelayMillis);
+        mWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "trip-recorder");
+        mWriter.setPriority(Thread.MIN_PRIORITY);
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    /**
+     * Queue a fix for recording. Never blocks.
+     *
+     * @return False if the queue was full and the fix was dropped.
+     */
+    boolean record(LocationFix fix) {
+        if (mQueue.offer(fix)) {
+            return true;
+        }
+        mDroppedCount++;
+        return false;
+    }
+
+    /**
+     * Ask the writer to write the pending fixes to disk, without waiting for it.
+     */
+    void flush() {
+        mQueue.offer(FLUSH);
+    }
+
+    long getRecordedCount() {
+        return mRecordedCount;
+    }
+
+    long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Read the recorded fixes within a time range. Fixes that are still queued or pending in
+     * the current block are not included; call {@link #flush()} first to include them.
+     *
+     * @param fromMillis The start of the range, inclusive.
+     * @param toMillis   The end of the range, inclusive.
+     * @return The fixes, oldest first.
+     */
+    List<LocationFix> scan(long fromMillis, long toMillis) {
+        return scan(mDirectory, fromMillis, toMillis);
+    }
+
+    /**
+     * Read the fixes within a time range from the segments of a directory.
+     */
+    static List<LocationFix> scan(File directory, long fromMillis, long toMillis) {
+        List<LocationFix> fixes = new ArrayList<>();
+        File[] segments = listSegments(directory);
+        for (int i = 0; i < segments.length; i++) {
+            // Segments are named after their first fix, so later ones start after the range
+            if (segmentStart(segments[i]) > toMillis) {
+                break;
+            }
+            if (i + 1 < segments.length && segmentStart(segments[i + 1]) < fromMillis) {
+                continue;
+            }
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(segments[i])));
+                TrackFormat.readFileHeader(in);
+                TrackFormat.readBlocks(in, fromMillis, toMillis, fixes);
+            } catch (IOException e) {
+                Log.w(TAG, "Skipping the rest of " + segments[i], e);
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        // Only read from
+                    }
+                }
+            }
+        }
+        return fixes;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            LocationFix fix;
+            try {
+                if (mDirty) {
+                    long waitNanos = mDirtySinceNanos + mMaxFlushDelayNanos - System.nanoTime();
+                    fix = waitNanos > 0 ? mQueue.poll(waitNanos, TimeUnit.NANOSECONDS) : null;
+                } else {
+                    fix = mQueue.take();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (fix != null && fix != FLUSH) {
+                    if (!mDirty) {
+                        mDirty = true;
+                        mDirtySinceNanos = System.nanoTime();
+                    }
+                    mBlock.add(fix);
+                    mRecordedCount++;
+                    if (mBlock.isFull()) {
+                        writePendingBlock();
+                    }
+                }
+                // Checked after every fix, so that a steady stream does not hold fixes back
+                if (fix == FLUSH || (mDirty
+                        && System.nanoTime() - mDirtySinceNanos >= mMaxFlushDelayNanos)) {
+                    writePendingBlock();
+                    if (mOut != null) {
+                        mOut.flush();
+                    }
+                    mDirty = false;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to write " + mSegment, e);
+                mBlock.clear();
+                closeSegment();
+                mDirty = false;
+            }
+        }
+    }
+
+    private void writePendingBlock() throws IOException {
+        if (mBlock.count == 0) {
+            return;
+        }
+        if (mOut == null || mOut.size() > mMaxSegmentBytes) {
+            openSegment(mBlock.times[0]);
+        }
+        TrackFormat.writeBlock(mOut, mBlock, mBuffer);
+        mBlock.clear();
+    }
+
+    private void openSegment(long startMillis) throws IOException {
+        closeSegment();
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        File segment = new File(mDirectory, SEGMENT_PREFIX + startMillis + SEGMENT_SUFFIX);
+        while (segment.exists()) {
+            segment = new File(mDirectory, SEGMENT_PREFIX + (++startMillis) + SEGMENT_SUFFIX);
+        }
+        mSegment = segment;
+        mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment)));
+        TrackFormat.writeFileHeader(mOut);
+    }
+
+    private void closeSegment() {
+        if (mOut != null) {
+            try {
+                mOut.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to close " + mSegment, e);
+            }
+            mOut = null;
+        }
+    }
+
+    private static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long startA = segmentStart(a);
+                long startB = segmentStart(b);
+                return startA < startB ? -1 : (startA == startB ? 0 : 1);
+            }
+        });
+        return segments;
+    }
+
+    private static long segmentStart(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
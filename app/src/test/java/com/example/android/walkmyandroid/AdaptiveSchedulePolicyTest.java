@@ -0,0 +1,140 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic location traces through the AdaptiveSchedulePolicy.
+ */
+public class AdaptiveSchedulePolicyTest {
+
+    private static final double START_LAT = 37.4220;
+    private static final double START_LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private AdaptiveSchedulePolicy mPolicy;
+    private Trace mTrace;
+
+    @Before
+    public void setUp() {
+        mPolicy = new AdaptiveSchedulePolicy();
+        mTrace = new Trace();
+    }
+
+    @Test
+    public void initialSchedule_isWalking() {
+        assertEquals(AdaptiveSchedulePolicy.WALKING, mPolicy.getInitialSchedule());
+    }
+
+    @Test
+    public void stationaryTrace_switchesToStillAfterWindow() {
+        List<LocationSchedule> schedules =
+                replay(mTrace.stationary(10000, 180000).fixes);
+
+        // Not enough history for the first minute
+        for (int i = 0; i < 6; i++) {
+            assertEquals(AdaptiveSchedulePolicy.WALKING, schedules.get(i));
+        }
+        assertEquals(AdaptiveSchedulePolicy.STILL, last(schedules));
+    }
+
+    @Test
+    public void walkingTrace_staysWalking() {
+        List<LocationSchedule> schedules = replay(mTrace.moving(10000, 300000, 1.4).fixes);
+
+        for (LocationSchedule schedule : schedules) {
+            assertEquals(AdaptiveSchedulePolicy.WALKING, schedule);
+        }
+    }
+
+    @Test
+    public void drivingTrace_switchesToFast() {
+        List<LocationSchedule> schedules = replay(mTrace.moving(10000, 120000, 12).fixes);
+
+        assertEquals(AdaptiveSchedulePolicy.FAST, last(schedules));
+    }
+
+    @Test
+    public void stillThenWalking_tightensQuickly() {
+        assertEquals(AdaptiveSchedulePolicy.STILL,
+                last(replay(mTrace.stationary(60000, 300000).fixes)));
+
+        mTrace.fixes.clear();
+        List<LocationSchedule> schedules = replay(mTrace.moving(60000, 120000, 1.4).fixes);
+        assertEquals(AdaptiveSchedulePolicy.WALKING, schedules.get(0));
+    }
+
+    @Test
+    public void walkStopWalk_changesScheduleTwice() {
+        mTrace.moving(10000, 120000, 1.4)
+                .stationary(10000, 240000)
+                .moving(10000, 120000, 1.4);
+
+        int changes = 0;
+        LocationSchedule current = mPolicy.getInitialSchedule();
+        for (LocationFix fix : mTrace.fixes) {
+            LocationSchedule next = mPolicy.onFix(fix);
+            if (!next.equals(current)) {
+                changes++;
+                current = next;
+            }
+        }
+        assertEquals(2, changes);
+        assertEquals(AdaptiveSchedulePolicy.WALKING, current);
+    }
+
+    @Test
+    public void reset_forgetsHistory() {
+        replay(mTrace.stationary(10000, 180000).fixes);
+        mPolicy.reset();
+
+        LocationFix fix = new LocationFix(START_LAT, START_LNG, 0, 5, LocationFix.UNKNOWN);
+        assertEquals(AdaptiveSchedulePolicy.WALKING, mPolicy.onFix(fix));
+    }
+
+    private List<LocationSchedule> replay(List<LocationFix> fixes) {
+        List<LocationSchedule> schedules = new ArrayList<>();
+        for (LocationFix fix : fixes) {
+            schedules.add(mPolicy.onFix(fix));
+        }
+        return schedules;
+    }
+
+    private static LocationSchedule last(List<LocationSchedule> schedules) {
+        return schedules.get(schedules.size() - 1);
+    }
+
+    /**
+     * Generates fixes with a few meters of GPS jitter, continuing from the last fix.
+     */
+    private static class Trace {
+        final List<LocationFix> fixes = new ArrayList<>();
+        private final Random mRandom = new Random(42);
+        private double mNorthMeters;
+        private long mTime;
+
+        Trace stationary(long intervalMillis, long durationMillis) {
+            return moving(intervalMillis, durationMillis, 0);
+        }
+
+        Trace moving(long intervalMillis, long durationMillis, double speed) {
+            for (long t = 0; t < durationMillis; t += intervalMillis) {
+                mTime += intervalMillis;
+                mNorthMeters += speed * intervalMillis / 1000.0;
+                double jitterNorth = (mRandom.nextDouble() - 0.5) * 8;
+                double jitterEast = (mRandom.nextDouble() - 0.5) * 8;
+                fixes.add(new LocationFix(
+                        START_LAT + (mNorthMeters + jitterNorth) / METERS_PER_DEGREE,
+                        START_LNG + jitterEast / METERS_PER_DEGREE,
+                        mTime, 8, LocationFix.UNKNOWN));
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the AddressCache and the CachingReverseGeocoder, using a fake geocoder.
+ */
+public class AddressCacheTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    // About 1 meter at this latitude
+    private static final double ONE_METER = 1.0 / 111320.0;
+
+    private FakeClock mClock;
+    private FakeGeocoder mBackend;
+    private AddressCache mCache;
+    private CachingReverseGeocoder mGeocoder;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mBackend = new FakeGeocoder();
+        mCache = new AddressCache(25, 60000, 3, mClock);
+        mGeocoder = new CachingReverseGeocoder(mBackend, mCache);
+    }
+
+    @Test
+    public void repeatLookup_servedFromMemory() throws Exception {
+        GeoAddress first = mGeocoder.getAddress(LAT, LNG);
+        GeoAddress second = mGeocoder.getAddress(LAT, LNG);
+
+        assertEquals(first, second);
+        assertEquals(1, mBackend.calls);
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(1, mCache.getMissCount());
+    }
+
+    @Test
+    public void nearbyLookup_sameCell_servedFromMemory() throws Exception {
+        double lat = Math.floor(LAT / (25 * ONE_METER)) * 25 * ONE_METER + 5 * ONE_METER;
+        mGeocoder.getAddress(lat, LNG);
+        mGeocoder.getAddress(lat + 3 * ONE_METER, LNG);
+
+        assertEquals(1, mBackend.calls);
+    }
+
+    @Test
+    public void distantLookup_otherCell_goesToBackend() throws Exception {
+        mGeocoder.getAddress(LAT, LNG);
+        mGeocoder.getAddress(LAT + 100 * ONE_METER, LNG);
+
+        assertEquals(2, mBackend.calls);
+        assertEquals(0, mCache.getHitCount());
+    }
+
+    @Test
+    public void expiredEntry_goesToBackend() throws Exception {
+        mGeocoder.getAddress(LAT, LNG);
+        mClock.now += 59999;
+        mGeocoder.getAddress(LAT, LNG);
+        assertEquals(1, mBackend.calls);
+
+        mClock.now += 1;
+        mGeocoder.getAddress(LAT, LNG);
+        assertEquals(2, mBackend.calls);
+    }
+
+    @Test
+    public void fullCache_evictsLeastRecentlyUsed() throws Exception {
+        double step = 100 * ONE_METER;
+        mGeocoder.getAddress(LAT, LNG);
+        mGeocoder.getAddress(LAT + step, LNG);
+        mGeocoder.getAddress(LAT + 2 * step, LNG);
+        // Touch the first cell so the second one becomes the eldest
+        mGeocoder.getAddress(LAT, LNG);
+        mGeocoder.getAddress(LAT + 3 * step, LNG);
+
+        assertEquals(3, mCache.size());
+        assertEquals(1, mCache.getEvictionCount());
+        assertNotNull(mCache.get(LAT, LNG));
+        assertNull(mCache.get(LAT + step, LNG));
+    }
+
+    @Test
+    public void missingAddress_notCached() throws Exception {
+        mBackend.address = null;
+        assertNull(mGeocoder.getAddress(LAT, LNG));
+        assertNull(mGeocoder.getAddress(LAT, LNG));
+
+        assertEquals(2, mBackend.calls);
+        assertEquals(0, mCache.size());
+    }
+
+    @Test
+    public void backendFailure_propagatesAndIsNotCached() throws Exception {
+        mBackend.failure = new IOException("offline");
+        try {
+            mGeocoder.getAddress(LAT, LNG);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Expected
+        }
+
+        mBackend.failure = null;
+        assertNotNull(mGeocoder.getAddress(LAT, LNG));
+        assertEquals(2, mBackend.calls);
+    }
+
+    @Test
+    public void cellKey_differsAcrossHemispheres() {
+        long north = GridCells.cellKey(0.0001, 0.0001, 25);
+        long south = GridCells.cellKey(-0.0001, 0.0001, 25);
+        long west = GridCells.cellKey(0.0001, -0.0001, 25);
+
+        assertNotEquals(north, south);
+        assertNotEquals(north, west);
+        assertNotEquals(south, west);
+    }
+
+    private static class FakeClock implements Clock {
+        long now = 1000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class FakeGeocoder implements ReverseGeocoder {
+        int calls;
+        GeoAddress address = GeoAddress.ofLines("1600 Amphitheatre Pkwy");
+        IOException failure;
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            calls++;
+            if (failure != null) {
+                throw failure;
+            }
+            return address;
+        }
+    }
+}
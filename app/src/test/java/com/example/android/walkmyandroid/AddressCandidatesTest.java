@@ -0,0 +1,58 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the distance ranking of AddressCandidates.
+ */
+public class AddressCandidatesTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    @Test
+    public void candidates_areRankedByDistance() {
+        GeoAddress far = GeoAddress.ofLines("Far");
+        GeoAddress near = GeoAddress.ofLines("Near");
+        GeoAddress middle = GeoAddress.ofLines("Middle");
+        AddressCandidates candidates = new AddressCandidates.Builder(LAT, LNG)
+                .add(far, LAT + 80 / METERS_PER_DEGREE, LNG)
+                .add(near, LAT + 5 / METERS_PER_DEGREE, LNG)
+                .add(middle, LAT - 30 / METERS_PER_DEGREE, LNG)
+                .build();
+
+        assertEquals(3, candidates.size());
+        assertSame(near, candidates.getBest());
+        assertSame(middle, candidates.get(1));
+        assertSame(far, candidates.get(2));
+        assertEquals(5, candidates.getDistanceMeters(0), 0.1);
+    }
+
+    @Test
+    public void unknownPosition_ranksLastInGeocoderOrder() {
+        GeoAddress first = GeoAddress.ofLines("First unknown");
+        GeoAddress second = GeoAddress.ofLines("Second unknown");
+        GeoAddress known = GeoAddress.ofLines("Known");
+        AddressCandidates candidates = new AddressCandidates.Builder(LAT, LNG)
+                .addWithoutPosition(first)
+                .add(known, LAT + 500 / METERS_PER_DEGREE, LNG)
+                .addWithoutPosition(second)
+                .build();
+
+        assertSame(known, candidates.getBest());
+        assertSame(first, candidates.get(1));
+        assertSame(second, candidates.get(2));
+        assertTrue(Double.isNaN(candidates.getDistanceMeters(2)));
+    }
+
+    @Test
+    public void noCandidates_hasNoBest() {
+        AddressCandidates candidates = new AddressCandidates.Builder(LAT, LNG).build();
+
+        assertTrue(candidates.isEmpty());
+        assertNull(candidates.getBest());
+    }
+}
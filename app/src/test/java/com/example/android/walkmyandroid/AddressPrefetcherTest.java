@@ -0,0 +1,186 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks synthetic paths past the AddressPrefetcher, running its prefetches inline.
+ */
+public class AddressPrefetcherTest {
+
+    private static final double START_LAT = 37.4220;
+    private static final double START_LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final double CELL_SIZE_METERS = 25;
+
+    private FakeClock mClock;
+    private FakeGeocoder mBackend;
+    private AddressCache mCache;
+    private CachingReverseGeocoder mGeocoder;
+    private GeocodeEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mBackend = new FakeGeocoder();
+        mCache = new AddressCache(CELL_SIZE_METERS, 60 * 60 * 1000, 256, mClock);
+        mGeocoder = new CachingReverseGeocoder(mBackend, mCache);
+        mEngine = new GeocodeEngine(mGeocoder, 1, 4);
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.shutdown();
+    }
+
+    @Test
+    public void walkingNorth_warmsCellsAhead() throws Exception {
+        AddressPrefetcher prefetcher = prefetcher(3, 100);
+        for (int second = 0; second <= 20; second += 5) {
+            prefetcher.onFix(fix(second * 1.4, second));
+        }
+
+        // The next cells along the way are already cached
+        int callsBefore = mBackend.calls;
+        for (double north = 40; north <= 80; north += CELL_SIZE_METERS) {
+            assertNotNull(mGeocoder.getAddress(lat(north), START_LNG));
+        }
+        assertEquals(callsBefore, mBackend.calls);
+        assertTrue(mCache.getPrefetchHitCount() > 0);
+        assertTrue(mCache.getPrefetchHitCount() <= mCache.getPrefetchedCount());
+    }
+
+    @Test
+    public void prefetchHit_isCountedOnce() throws Exception {
+        AddressPrefetcher prefetcher = prefetcher(1, 100);
+        prefetcher.onFix(fix(0, 0));
+        prefetcher.onFix(fix(20, 10));
+        assertEquals(1, mCache.getPrefetchedCount());
+
+        mGeocoder.getAddress(lat(20 + CELL_SIZE_METERS), START_LNG);
+        mGeocoder.getAddress(lat(20 + CELL_SIZE_METERS), START_LNG);
+        assertEquals(1, mCache.getPrefetchHitCount());
+        // Prefetching did not count as cache traffic
+        assertEquals(2, mCache.getHitCount());
+        assertEquals(0, mCache.getMissCount());
+    }
+
+    @Test
+    public void standingStill_prefetchesNothing() {
+        AddressPrefetcher prefetcher = prefetcher(3, 100);
+        for (int second = 0; second <= 60; second += 5) {
+            prefetcher.onFix(fix(second % 2, second));
+        }
+
+        assertEquals(0, mBackend.calls);
+        assertEquals(0, prefetcher.getCallCount());
+    }
+
+    @Test
+    public void budget_capsCallsPerMinute() {
+        AddressPrefetcher prefetcher = prefetcher(3, 4);
+        for (int second = 0; second < 60; second += 5) {
+            prefetcher.onFix(fix(second * 10, second));
+        }
+        assertEquals(4, prefetcher.getCallCount());
+        assertTrue(prefetcher.getOverBudgetCount() > 0);
+
+        // A new window opens after a minute
+        mClock.now += 60 * 1000;
+        prefetcher.onFix(fix(1000, 120));
+        assertEquals(7, prefetcher.getCallCount());
+    }
+
+    @Test
+    public void backendFailure_stopsPrediction() {
+        mBackend.failure = new IOException("offline");
+        AddressPrefetcher prefetcher = prefetcher(3, 100);
+        prefetcher.onFix(fix(0, 0));
+        prefetcher.onFix(fix(20, 10));
+
+        assertEquals(1, mBackend.calls);
+        assertEquals(0, mCache.size());
+    }
+
+    @Test
+    public void target_isResolvedForEachPrediction() {
+        AddressCache otherCache = new AddressCache(CELL_SIZE_METERS, 60 * 60 * 1000, 256, mClock);
+        final CachingReverseGeocoder other = new CachingReverseGeocoder(mBackend, otherCache);
+        final CachingReverseGeocoder[] current = {mGeocoder};
+        AddressPrefetcher prefetcher = prefetcher(new AddressPrefetcher.Target() {
+            @Override
+            public CachingReverseGeocoder current() {
+                return current[0];
+            }
+        }, 1, 100);
+        prefetcher.onFix(fix(0, 0));
+        prefetcher.onFix(fix(20, 10));
+        assertEquals(1, mCache.getPrefetchedCount());
+
+        // E.g. the user switched language
+        current[0] = other;
+        prefetcher.onFix(fix(40, 20));
+        assertEquals(1, mCache.getPrefetchedCount());
+        assertEquals(1, otherCache.getPrefetchedCount());
+        assertTrue(otherCache.contains(lat(40 + CELL_SIZE_METERS), START_LNG));
+    }
+
+    private AddressPrefetcher prefetcher(int lookahead, int maxCallsPerMinute) {
+        return prefetcher(new AddressPrefetcher.Target() {
+            @Override
+            public CachingReverseGeocoder current() {
+                return mGeocoder;
+            }
+        }, lookahead, maxCallsPerMinute);
+    }
+
+    private AddressPrefetcher prefetcher(AddressPrefetcher.Target target, int lookahead,
+            int maxCallsPerMinute) {
+        return new AddressPrefetcher(target, mEngine, CELL_SIZE_METERS, lookahead,
+                maxCallsPerMinute, mClock, new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                });
+    }
+
+    private LocationFix fix(double northMeters, long second) {
+        return new LocationFix(lat(northMeters), START_LNG, second * 1000, 5,
+                LocationFix.UNKNOWN);
+    }
+
+    private static double lat(double northMeters) {
+        return START_LAT + northMeters / METERS_PER_DEGREE;
+    }
+
+    private static class FakeClock implements Clock {
+        long now = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class FakeGeocoder implements ReverseGeocoder {
+        int calls;
+        IOException failure;
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            calls++;
+            if (failure != null) {
+                throw failure;
+            }
+            return GeoAddress.ofLines("Cell " + GridCells.cellKey(latitude, longitude,
+                    CELL_SIZE_METERS));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which fixes of a batch the BatchGeocoder looks up.
+ */
+public class BatchGeocoderTest {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final double DEDUPE_METERS = 10;
+    private static final double TURN_DEGREES = 35;
+    private static final double MAX_SPACING_METERS = 200;
+
+    /**
+     * Answers every lookup with its coordinates, and records them.
+     */
+    private static class RecordingGeocoder implements ReverseGeocoder {
+        final List<double[]> lookups = new ArrayList<>();
+        boolean failing;
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            lookups.add(new double[]{latitude, longitude});
+            if (failing) {
+                throw new IOException("Rate limited");
+            }
+            return GeoAddress.ofLines(latitude + "," + longitude);
+        }
+    }
+
+    private static LocationFix fix(double northMeters, double eastMeters, long timeMillis) {
+        return new LocationFix(northMeters / METERS_PER_DEGREE, eastMeters / METERS_PER_DEGREE,
+                timeMillis, 5, LocationFix.UNKNOWN);
+    }
+
+    /**
+     * 450 m east in steps of 50 m, then 450 m north.
+     */
+    private static List<LocationFix> corner() {
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            fixes.add(fix(0, i * 50, i * 1000));
+        }
+        for (int i = 1; i < 10; i++) {
+            fixes.add(fix(i * 50, 450, (9 + i) * 1000));
+        }
+        return fixes;
+    }
+
+    private static void assertLookedUp(LocationFix expected, double[] lookup) {
+        assertEquals(expected.latitude, lookup[0], 1e-12);
+        assertEquals(expected.longitude, lookup[1], 1e-12);
+    }
+
+    @Test
+    public void duplicates_collapseIntoTheLatestFix() throws Exception {
+        RecordingGeocoder geocoder = new RecordingGeocoder();
+        BatchGeocoder batch = new BatchGeocoder(geocoder, geocoder, DEDUPE_METERS,
+                TURN_DEGREES, MAX_SPACING_METERS);
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            fixes.add(fix(i, 0, i * 1000));
+        }
+
+        BatchGeocoder.Result result = batch.geocode(fixes);
+
+        assertEquals(1, result.fixes.size());
+        assertSame(fixes.get(4), result.fixes.get(0));
+        assertEquals(1, result.lookupCount);
+        assertLookedUp(fixes.get(4), geocoder.lookups.get(0));
+    }
+
+    @Test
+    public void representatives_areTheEndsTurnsAndSpacedPoints() throws Exception {
+        RecordingGeocoder geocoder = new RecordingGeocoder();
+        BatchGeocoder batch = new BatchGeocoder(geocoder, geocoder, DEDUPE_METERS,
+                TURN_DEGREES, MAX_SPACING_METERS);
+        List<LocationFix> fixes = corner();
+
+        BatchGeocoder.Result result = batch.geocode(fixes);
+
+        // Latest first, then back to the start: the spaced point 250 m up, the corner, the
+        // spaced point 250 m along, and the start
+        int[] expected = {18, 14, 9, 5, 0};
+        assertEquals(expected.length, result.lookupCount);
+        assertEquals(expected.length, geocoder.lookups.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertLookedUp(fixes.get(expected[i]), geocoder.lookups.get(i));
+        }
+        // Every fix gets the address of its nearest representative
+        assertSame(result.addresses[9], result.addresses[8]);
+        assertSame(result.addresses[9], result.addresses[10]);
+        assertEquals(GeoAddress.ofLines(fixes.get(18).latitude + "," + fixes.get(18).longitude),
+                result.getLatestAddress());
+    }
+
+    @Test
+    public void withoutHistoryGeocoder_onlyTheLatestFixIsLookedUp() throws Exception {
+        RecordingGeocoder geocoder = new RecordingGeocoder();
+        BatchGeocoder batch = new BatchGeocoder(geocoder, null, DEDUPE_METERS, TURN_DEGREES,
+                MAX_SPACING_METERS);
+        List<LocationFix> fixes = corner();
+
+        BatchGeocoder.Result result = batch.geocode(fixes);
+
+        assertEquals(1, result.lookupCount);
+        assertEquals(1, geocoder.lookups.size());
+        assertNotNull(result.getLatestAddress());
+        assertNull(result.addresses[0]);
+        assertNull(result.addresses[9]);
+    }
+
+    @Test
+    public void failedHistoryLookups_keepTheLatestAddress() throws Exception {
+        RecordingGeocoder latest = new RecordingGeocoder();
+        RecordingGeocoder history = new RecordingGeocoder();
+        history.failing = true;
+        BatchGeocoder batch = new BatchGeocoder(latest, history, DEDUPE_METERS, TURN_DEGREES,
+                MAX_SPACING_METERS);
+
+        BatchGeocoder.Result result = batch.geocode(corner());
+
+        assertNotNull(result.getLatestAddress());
+        assertEquals(4, result.failedCount);
+        assertNull(result.addresses[0]);
+    }
+
+    @Test(expected = IOException.class)
+    public void failedLatestLookup_failsTheBatch() throws Exception {
+        RecordingGeocoder latest = new RecordingGeocoder();
+        latest.failing = true;
+        RecordingGeocoder history = new RecordingGeocoder();
+        BatchGeocoder batch = new BatchGeocoder(latest, history, DEDUPE_METERS, TURN_DEGREES,
+                MAX_SPACING_METERS);
+
+        try {
+            batch.geocode(corner());
+        } finally {
+            // Nothing else is spent on a batch that cannot be shown
+            assertTrue(history.lookups.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Types into the Debouncer the way the search bar does, on a real scheduled executor.
+ */
+public class DebouncerTest {
+
+    private static final long DELAY_MILLIS = 100;
+
+    private ScheduledExecutorService mExecutor;
+    private final List<String> mSettled = new CopyOnWriteArrayList<>();
+    private CountDownLatch mSettledLatch;
+    private Debouncer<String> mDebouncer;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mDebouncer = new Debouncer<>(DELAY_MILLIS, mExecutor, new Debouncer.Listener<String>() {
+            @Override
+            public void onSettled(String value) {
+                mSettled.add(value);
+                mSettledLatch.countDown();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void burst_passesOnlyTheLastValue() throws Exception {
+        mSettledLatch = new CountDownLatch(1);
+        for (String text : new String[]{"c", "ca", "caf", "cafe"}) {
+            mDebouncer.submit(text);
+        }
+
+        assertTrue(mSettledLatch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(2 * DELAY_MILLIS);
+        assertEquals(Arrays.asList("cafe"), mSettled);
+        assertEquals(4, mDebouncer.getSubmittedCount());
+        assertEquals(1, mDebouncer.getSettledCount());
+    }
+
+    @Test
+    public void pauses_passEachValue() throws Exception {
+        mSettledLatch = new CountDownLatch(1);
+        mDebouncer.submit("ca");
+        assertTrue(mSettledLatch.await(5, TimeUnit.SECONDS));
+
+        mSettledLatch = new CountDownLatch(1);
+        mDebouncer.submit("cafe");
+        assertTrue(mSettledLatch.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("ca", "cafe"), mSettled);
+        assertEquals(2, mDebouncer.getSettledCount());
+    }
+
+    @Test
+    public void cancel_dropsThePendingValue() throws Exception {
+        mSettledLatch = new CountDownLatch(1);
+        mDebouncer.submit("cafes");
+        mDebouncer.cancel();
+
+        assertFalse(mSettledLatch.await(3 * DELAY_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(mSettled.isEmpty());
+        assertEquals(1, mDebouncer.getSubmittedCount());
+        assertEquals(0, mDebouncer.getSettledCount());
+
+        // Cancelling does not stop the values that follow
+        mDebouncer.submit("cafe");
+        assertTrue(mSettledLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("cafe"), mSettled);
+    }
+}
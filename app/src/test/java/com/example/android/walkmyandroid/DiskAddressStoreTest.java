@@ -0,0 +1,166 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the DiskAddressStore survives reloads, torn writes and stale files.
+ */
+public class DiskAddressStoreTest {
+
+    private static final long MAX_AGE_MILLIS = 60000;
+    private static final int MAX_ENTRIES = 100;
+    // Magic and version
+    private static final int HEADER_BYTES = 8;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private FakeClock mClock;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = new File(mFolder.getRoot(), "addresses");
+        mClock = new FakeClock();
+    }
+
+    private DiskAddressStore open(int maxEntries) {
+        return new DiskAddressStore(mFile, MAX_AGE_MILLIS, maxEntries, mClock);
+    }
+
+    private static GeoAddress address(long cellKey) {
+        return GeoAddress.ofLines(cellKey + " Main St", "Springfield");
+    }
+
+    @Test
+    public void roundTrip_keepsTheLatestRecordPerCell() {
+        DiskAddressStore store = open(MAX_ENTRIES);
+        store.put(1, address(1));
+        store.put(2, address(2));
+        store.put(1, GeoAddress.ofLines("Moved"));
+
+        DiskAddressStore reloaded = open(MAX_ENTRIES);
+        assertEquals(2, reloaded.size());
+        assertEquals(GeoAddress.ofLines("Moved"), reloaded.get(1));
+        assertEquals(address(2), reloaded.get(2));
+        assertNull(reloaded.get(3));
+    }
+
+    @Test
+    public void tornTail_isDroppedAndRewritten() throws Exception {
+        DiskAddressStore store = open(MAX_ENTRIES);
+        store.put(1, address(1));
+        long oneRecord = mFile.length();
+        store.put(2, address(2));
+        truncate(mFile.length() - 5);
+
+        DiskAddressStore reloaded = open(MAX_ENTRIES);
+        assertEquals(1, reloaded.size());
+        assertEquals(address(1), reloaded.get(1));
+        assertNull(reloaded.get(2));
+        // The damaged bytes are gone, so the next record is appended after a whole one
+        assertEquals(oneRecord, mFile.length());
+        reloaded.put(3, address(3));
+
+        DiskAddressStore again = open(MAX_ENTRIES);
+        assertEquals(2, again.size());
+        assertEquals(address(1), again.get(1));
+        assertEquals(address(3), again.get(3));
+    }
+
+    @Test
+    public void tornRecordKey_isDamageToo() throws Exception {
+        DiskAddressStore store = open(MAX_ENTRIES);
+        store.put(1, address(1));
+        long oneRecord = mFile.length();
+        store.put(2, address(2));
+        // Only part of the second record's cell key made it to disk
+        truncate(oneRecord + 3);
+
+        DiskAddressStore reloaded = open(MAX_ENTRIES);
+        assertEquals(1, reloaded.size());
+        assertEquals(oneRecord, mFile.length());
+    }
+
+    @Test
+    public void expiredRecords_areNotReturned() {
+        DiskAddressStore store = open(MAX_ENTRIES);
+        store.put(1, address(1));
+        mClock.now += MAX_AGE_MILLIS / 2;
+        store.put(2, address(2));
+        mClock.now += MAX_AGE_MILLIS / 2;
+
+        DiskAddressStore reloaded = open(MAX_ENTRIES);
+        assertNull(reloaded.get(1));
+        assertEquals(address(2), reloaded.get(2));
+
+        reloaded.compact();
+        assertEquals(1, reloaded.size());
+    }
+
+    @Test
+    public void otherVersion_isDropped() throws Exception {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        out.writeInt(0x57414443);
+        out.writeInt(1);
+        out.writeLong(1);
+        out.writeLong(mClock.now);
+        out.close();
+
+        DiskAddressStore store = open(MAX_ENTRIES);
+        assertEquals(0, store.size());
+        assertEquals(HEADER_BYTES, mFile.length());
+        store.put(1, address(1));
+        assertEquals(address(1), open(MAX_ENTRIES).get(1));
+    }
+
+    @Test
+    public void compaction_keepsOnlyTheNewestLiveRecords() {
+        DiskAddressStore store = open(2);
+        for (int i = 0; i < 10; i++) {
+            store.put(1, GeoAddress.ofLines("Version " + i));
+        }
+        mClock.now++;
+        store.put(2, address(2));
+        mClock.now++;
+        store.put(3, address(3));
+        long before = mFile.length();
+
+        store.compact();
+
+        assertTrue(mFile.length() < before);
+        DiskAddressStore reloaded = open(2);
+        assertEquals(2, reloaded.size());
+        assertNull(reloaded.get(1));
+        assertEquals(address(2), reloaded.get(2));
+        assertEquals(address(3), reloaded.get(3));
+    }
+
+    private void truncate(long length) throws Exception {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static class FakeClock implements Clock {
+        long now = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+}
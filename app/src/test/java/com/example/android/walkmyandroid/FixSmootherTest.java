@@ -0,0 +1,107 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays noisy synthetic traces through the FixSmoother.
+ */
+public class FixSmootherTest {
+
+    private static final double START_LAT = 37.4220;
+    private static final double START_LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    private FixSmoother mSmoother;
+
+    @Before
+    public void setUp() {
+        mSmoother = new FixSmoother(100, 60, 3, 5 * 60 * 1000);
+    }
+
+    @Test
+    public void noisyWalk_smoothedIsCloserToTruth() {
+        Random random = new Random(7);
+        double rawError = 0;
+        double smoothedError = 0;
+        int count = 0;
+        for (int i = 0; i < 600; i++) {
+            double north = i * 1.4;
+            LocationFix truth = fix(north, 0, i * 1000L, 10);
+            LocationFix raw = fix(north + random.nextGaussian() * 10,
+                    random.nextGaussian() * 10, i * 1000L, 10);
+            LocationFix smoothed = mSmoother.onFix(raw);
+            assertNotNull(smoothed);
+            if (i >= 30) {
+                rawError += square(raw.distanceTo(truth));
+                smoothedError += square(smoothed.distanceTo(truth));
+                count++;
+            }
+        }
+        double rawRms = Math.sqrt(rawError / count);
+        double smoothedRms = Math.sqrt(smoothedError / count);
+        assertTrue("raw " + rawRms + "m, smoothed " + smoothedRms + "m",
+                smoothedRms < rawRms * 0.6);
+    }
+
+    @Test
+    public void inaccurateFix_isRejected() {
+        assertNotNull(mSmoother.onFix(fix(0, 0, 0, 10)));
+        assertNull(mSmoother.onFix(fix(5, 0, 1000, 500)));
+        assertEquals(1, mSmoother.getRejectedCount());
+    }
+
+    @Test
+    public void staleFix_isRejected() {
+        assertNotNull(mSmoother.onFix(fix(0, 0, 5000, 10)));
+        assertNull(mSmoother.onFix(fix(1, 0, 5000, 10)));
+        assertNull(mSmoother.onFix(fix(1, 0, 4000, 10)));
+    }
+
+    @Test
+    public void spike_isRejectedAndDoesNotMoveEstimate() {
+        for (int i = 0; i < 10; i++) {
+            mSmoother.onFix(fix(i, 0, i * 1000L, 5));
+        }
+        // Two kilometers in one second
+        assertNull(mSmoother.onFix(fix(2000, 0, 10000, 5)));
+
+        LocationFix next = mSmoother.onFix(fix(11, 0, 11000, 5));
+        assertNotNull(next);
+        assertEquals(11, (next.latitude - START_LAT) * METERS_PER_DEGREE, 5);
+    }
+
+    @Test
+    public void repeatedJump_isAcceptedAsNewPosition() {
+        mSmoother.onFix(fix(0, 0, 0, 5));
+        LocationFix accepted = null;
+        for (int i = 1; i <= 4; i++) {
+            accepted = mSmoother.onFix(fix(5000, 0, i * 1000L, 5));
+        }
+        assertNotNull(accepted);
+        assertEquals(5000, (accepted.latitude - START_LAT) * METERS_PER_DEGREE, 1);
+    }
+
+    @Test
+    public void longGap_restartsFromRawFix() {
+        mSmoother.onFix(fix(0, 0, 0, 5));
+        LocationFix after = mSmoother.onFix(fix(3000, 0, 10 * 60 * 1000, 5));
+
+        assertEquals(3000, (after.latitude - START_LAT) * METERS_PER_DEGREE, 1e-6);
+    }
+
+    private static LocationFix fix(double northMeters, double eastMeters, long time,
+            float accuracy) {
+        return new LocationFix(START_LAT + northMeters / METERS_PER_DEGREE,
+                START_LNG + eastMeters / METERS_PER_DEGREE, time, accuracy,
+                LocationFix.UNKNOWN);
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the interning, formatting and serialization of GeoAddress.
+ */
+public class GeoAddressTest {
+
+    private static final String SEPARATOR = System.getProperty("line.separator");
+
+    @Test
+    public void equalAddresses_areInterned() {
+        GeoAddress first = amphitheatre();
+        GeoAddress second = amphitheatre();
+
+        assertSame(first, second);
+        assertSame(first.format(), second.format());
+    }
+
+    @Test
+    public void differentFields_areDifferentAddresses() {
+        GeoAddress withoutFields = GeoAddress.ofLines("1600 Amphitheatre Pkwy",
+                "Mountain View, CA 94043");
+
+        assertNotEquals(amphitheatre(), withoutFields);
+        assertEquals(amphitheatre().format(), withoutFields.format());
+    }
+
+    @Test
+    public void format_joinsLines() {
+        assertEquals("1600 Amphitheatre Pkwy" + SEPARATOR + "Mountain View, CA 94043",
+                amphitheatre().format());
+        assertEquals("Single line", GeoAddress.ofLines("Single line").toString());
+    }
+
+    @Test
+    public void builder_skipsNullLines() {
+        GeoAddress address = new GeoAddress.Builder().addLine(null).addLine("Main St").build();
+
+        assertEquals(1, address.getLineCount());
+        assertEquals("Main St", address.getLine(0));
+    }
+
+    @Test
+    public void writeThenRead_returnsSameInstance() throws Exception {
+        GeoAddress address = amphitheatre();
+        GeoAddress partial = GeoAddress.ofLines("Somewhere");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        address.writeTo(out);
+        partial.writeTo(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertSame(address, GeoAddress.readFrom(in));
+        GeoAddress readPartial = GeoAddress.readFrom(in);
+        assertSame(partial, readPartial);
+        assertNull(readPartial.locality);
+    }
+
+    private static GeoAddress amphitheatre() {
+        return new GeoAddress.Builder()
+                .addLine("1600 Amphitheatre Pkwy")
+                .addLine("Mountain View, CA 94043")
+                .setFeatureName("1600")
+                .setThoroughfare("Amphitheatre Pkwy")
+                .setLocality("Mountain View")
+                .setPostalCode("94043")
+                .setCountryCode("US")
+                .build();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the GeocodeEngine with a geocoder that holds chosen lookups until released, so the
+ * queue can be filled while the workers are busy.
+ */
+public class GeocodeEngineTest {
+
+    // Lookups of this latitude wait for the release
+    private static final double BLOCKING = 10;
+    private static final double FAILING = 20;
+    private static final double NOWHERE = 30;
+
+    private final GatedGeocoder mGeocoder = new GatedGeocoder();
+    private GeocodeEngine mEngine;
+
+    @After
+    public void tearDown() {
+        mGeocoder.release.countDown();
+        if (mEngine != null) {
+            mEngine.shutdown();
+        }
+    }
+
+    @Test
+    public void newerRequest_supersedesPendingOneOfSameChannel() throws Exception {
+        mEngine = new GeocodeEngine(mGeocoder, 1, 8);
+        Recorder channel = new Recorder(2);
+        mEngine.submit(channel, BLOCKING, 0, channel);
+        mGeocoder.awaitBlocked();
+
+        mEngine.submit(channel, 1, 0, channel);
+        mEngine.submit(channel, 2, 0, channel);
+        assertEquals(1, mEngine.getPendingCount());
+        mGeocoder.release.countDown();
+
+        channel.await();
+        assertEquals(Arrays.asList("10.0", "2.0"), channel.results);
+        assertEquals(3, mEngine.getSubmittedCount());
+        assertEquals(1, mEngine.getSupersededCount());
+        assertEquals(0, mEngine.getShedCount());
+    }
+
+    @Test
+    public void fullQueue_shedsOldestPendingRequest() throws Exception {
+        mEngine = new GeocodeEngine(mGeocoder, 1, 2);
+        Recorder busy = new Recorder(1);
+        Recorder first = new Recorder(1);
+        Recorder second = new Recorder(1);
+        Recorder third = new Recorder(1);
+        mEngine.submit(busy, BLOCKING, 0, busy);
+        mGeocoder.awaitBlocked();
+
+        mEngine.submit(first, 1, 0, first);
+        mEngine.submit(second, 2, 0, second);
+        mEngine.submit(third, 3, 0, third);
+        assertEquals(2, mEngine.getPendingCount());
+        mGeocoder.release.countDown();
+
+        second.await();
+        third.await();
+        assertTrue(first.results.isEmpty());
+        assertEquals(Arrays.asList("2.0"), second.results);
+        assertEquals(Arrays.asList("3.0"), third.results);
+        assertEquals(1, mEngine.getShedCount());
+        assertEquals(0, mEngine.getSupersededCount());
+    }
+
+    @Test
+    public void channel_runsOneLookupAtATimeWhileOthersProceed() throws Exception {
+        mEngine = new GeocodeEngine(mGeocoder, 2, 8);
+        Recorder slow = new Recorder(2);
+        Recorder other = new Recorder(1);
+        mEngine.submit(slow, BLOCKING, 0, slow);
+        mGeocoder.awaitBlocked();
+
+        // A worker is free, but the channel is busy, so its next request waits
+        mEngine.submit(slow, 1, 0, slow);
+        mEngine.submit(other, 2, 0, other);
+        other.await();
+        assertTrue(slow.results.isEmpty());
+        assertEquals(1, mEngine.getPendingCount());
+
+        mGeocoder.release.countDown();
+        slow.await();
+        assertEquals(Arrays.asList("10.0", "1.0"), slow.results);
+        assertTrue(waitUntilIdle(mEngine));
+    }
+
+    @Test
+    public void failures_reachTheCallback() throws Exception {
+        mEngine = new GeocodeEngine(mGeocoder, 1, 8);
+        Recorder failing = new Recorder(1);
+        Recorder nowhere = new Recorder(1);
+        mEngine.submit(failing, FAILING, 0, failing);
+        mEngine.submit(nowhere, NOWHERE, 0, nowhere);
+
+        failing.await();
+        nowhere.await();
+        assertEquals(Arrays.asList("IOException"), failing.results);
+        assertEquals(Arrays.asList("none"), nowhere.results);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noWorkers_fail() {
+        new GeocodeEngine(mGeocoder, 0, 8);
+    }
+
+    private static boolean waitUntilIdle(GeocodeEngine engine) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!engine.isIdle() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return engine.isIdle();
+    }
+
+    /**
+     * Answers with the latitude as the address line.
+     */
+    private static class GatedGeocoder implements ReverseGeocoder {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            if (latitude == FAILING) {
+                throw new IOException("offline");
+            }
+            if (latitude == NOWHERE) {
+                return null;
+            }
+            if (latitude == BLOCKING) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return GeoAddress.ofLines(String.valueOf(latitude));
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * A channel that records what its callbacks receive.
+     */
+    private static class Recorder implements GeocodeEngine.Callback {
+        final List<String> results = new CopyOnWriteArrayList<>();
+        private final CountDownLatch mDone;
+
+        Recorder(int expected) {
+            mDone = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onAddressFound(GeoAddress address) {
+            results.add(address.format());
+            mDone.countDown();
+        }
+
+        @Override
+        public void onAddressFailed(Exception error) {
+            results.add(error == null ? "none" : error.getClass().getSimpleName());
+            mDone.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks synthetic paths through fences registered in the GeofenceEngine.
+ */
+public class GeofenceEngineTest {
+
+    private static final double START_LAT = 37.4220;
+    private static final double START_LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final long DWELL_MILLIS = 60 * 1000;
+    private static final int[] GYM = {44};
+    private static final int MAX_FENCES = 10000;
+
+    private final List<String> mEvents = new ArrayList<>();
+    private GeofenceEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mEngine = new GeofenceEngine(200, DWELL_MILLIS, MAX_FENCES, new GeofenceEngine.Listener() {
+            @Override
+            public void onTransition(Geofence fence, GeofenceEngine.Transition transition,
+                    long timeMillis) {
+                mEvents.add(transition + " " + fence.id + " @" + timeMillis / 1000);
+            }
+        });
+    }
+
+    @Test
+    public void walkThroughCircle_entersDwellsAndExits() {
+        mEngine.add(Geofence.circle("gym", "Gym", GYM, lat(100), lng(0), 30));
+
+        // Walk north at 1 m/s, one fix every ten seconds
+        for (int second = 0; second <= 200; second += 10) {
+            mEngine.onFix(fix(second, 0, second));
+        }
+
+        assertEquals(3, mEvents.size());
+        assertEquals("ENTER gym @70", mEvents.get(0));
+        assertEquals("DWELL gym @130", mEvents.get(1));
+        assertEquals("EXIT gym @140", mEvents.get(2));
+    }
+
+    @Test
+    public void fixesInsideFence_reportOnlyTheEntry() {
+        mEngine.add(Geofence.circle("gym", "Gym", GYM, lat(0), lng(0), 50));
+        for (int second = 0; second < DWELL_MILLIS / 1000; second++) {
+            mEngine.onFix(fix(second % 7, second % 5, second));
+        }
+
+        assertEquals(1, mEvents.size());
+        assertTrue(mEngine.isInsideAny());
+        assertEquals("gym", mEngine.getLatestInside().id);
+    }
+
+    @Test
+    public void concavePolygon_excludesNotch() {
+        // A U shape, open to the north
+        double[] north = {0, 0, 100, 100, 30, 30, 100, 100};
+        double[] east = {0, 90, 90, 60, 60, 30, 30, 0};
+        double[] lats = new double[north.length];
+        double[] lngs = new double[east.length];
+        for (int i = 0; i < north.length; i++) {
+            lats[i] = lat(north[i]);
+            lngs[i] = lng(east[i]);
+        }
+        Geofence fence = Geofence.polygon("u", "U", GYM, lats, lngs);
+
+        assertTrue(fence.contains(lat(15), lng(45)));
+        assertTrue(fence.contains(lat(80), lng(15)));
+        assertTrue(fence.contains(lat(80), lng(75)));
+        assertFalse(fence.contains(lat(80), lng(45)));
+        assertFalse(fence.contains(lat(-5), lng(45)));
+    }
+
+    @Test
+    public void largeFence_isFoundFromEveryCell() {
+        mEngine.add(Geofence.circle("park", "Park", GYM, lat(0), lng(0), 1000));
+
+        mEngine.onFix(fix(-900, 0, 0));
+        mEngine.onFix(fix(0, 900, 10));
+        mEngine.onFix(fix(900, 0, 20));
+        mEngine.onFix(fix(1100, 0, 30));
+
+        assertEquals(2, mEvents.size());
+        assertEquals("ENTER park @0", mEvents.get(0));
+        assertEquals("EXIT park @30", mEvents.get(1));
+    }
+
+    @Test
+    public void addWithSameId_replacesFence() {
+        mEngine.add(Geofence.circle("gym", "Gym", GYM, lat(0), lng(0), 30));
+        mEngine.add(Geofence.circle("gym", "Gym", GYM, lat(500), lng(0), 30));
+        assertEquals(1, mEngine.size());
+
+        mEngine.onFix(fix(0, 0, 0));
+        assertTrue(mEvents.isEmpty());
+        mEngine.onFix(fix(500, 0, 10));
+        assertEquals("ENTER gym @10", mEvents.get(0));
+
+        assertTrue(mEngine.remove("gym"));
+        assertFalse(mEngine.isInsideAny());
+        assertFalse(mEngine.remove("gym"));
+    }
+
+    @Test
+    public void fullEngine_dropsTheOldestFence() {
+        for (int i = 0; i < MAX_FENCES; i++) {
+            mEngine.add(Geofence.circle("f" + i, "Fence", GYM, lat(i * 100), lng(0), 30));
+        }
+        // Adding the first fence again makes it the newest
+        mEngine.add(Geofence.circle("f0", "Fence", GYM, lat(0), lng(0), 30));
+        mEngine.add(Geofence.circle("gym", "Gym", GYM, lat(-500), lng(0), 30));
+
+        assertEquals(MAX_FENCES, mEngine.size());
+        assertEquals(1, mEngine.getEvictionCount());
+        assertFalse(mEngine.remove("f1"));
+        assertTrue(mEngine.remove("f0"));
+
+        // The dropped fence is gone from the index too
+        mEngine.onFix(fix(100, 0, 0));
+        mEngine.onFix(fix(-500, 0, 1));
+        assertEquals(1, mEvents.size());
+        assertEquals("ENTER gym @1", mEvents.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noCapacity_fails() {
+        new GeofenceEngine(200, DWELL_MILLIS, 0, null);
+    }
+
+    @Test
+    public void thousandsOfFences_matchBruteForce() {
+        Random random = new Random(11);
+        List<Geofence> fences = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double north = random.nextDouble() * 20000;
+            double east = random.nextDouble() * 20000;
+            Geofence fence;
+            if (i % 2 == 0) {
+                fence = Geofence.circle("c" + i, "Circle", GYM, lat(north), lng(east),
+                        10 + random.nextDouble() * 300);
+            } else {
+                double size = 10 + random.nextDouble() * 300;
+                fence = Geofence.polygon("p" + i, "Square", GYM,
+                        new double[]{lat(north), lat(north), lat(north + size), lat(north + size)},
+                        new double[]{lng(east), lng(east + size), lng(east + size), lng(east)});
+            }
+            fences.add(fence);
+            mEngine.add(fence);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            double north = random.nextDouble() * 20000;
+            double east = random.nextDouble() * 20000;
+            mEngine.resetMembership();
+            mEvents.clear();
+            mEngine.onFix(fix(north, east, i));
+
+            int expected = 0;
+            for (Geofence fence : fences) {
+                if (fence.contains(lat(north), lng(east))) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, mEvents.size());
+        }
+    }
+
+    private static LocationFix fix(double northMeters, double eastMeters, long second) {
+        return new LocationFix(lat(northMeters), lng(eastMeters), second * 1000, 5,
+                LocationFix.UNKNOWN);
+    }
+
+    private static double lat(double northMeters) {
+        return START_LAT + northMeters / METERS_PER_DEGREE;
+    }
+
+    private static double lng(double eastMeters) {
+        return START_LNG
+                + eastMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LAT)));
+    }
+}
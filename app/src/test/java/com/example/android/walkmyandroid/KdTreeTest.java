@@ -0,0 +1,85 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the KdTree against a brute force scan. Build and lookup times are measured by
+ * KdTreeBenchmark, in the benchmarks module.
+ */
+public class KdTreeTest {
+
+    @Test
+    public void emptyTree_returnsNoPoint() {
+        KdTree tree = KdTree.build(new double[0], new double[0]);
+
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.nearest(10, 10));
+    }
+
+    @Test
+    public void singlePoint_isAlwaysNearest() {
+        KdTree tree = KdTree.build(new double[]{48.8584}, new double[]{2.2945});
+
+        assertEquals(0, tree.nearest(-33.8568, 151.2153));
+    }
+
+    @Test
+    public void nearest_acrossAntimeridian() {
+        KdTree tree = KdTree.build(new double[]{0, 0}, new double[]{179.999, 170});
+
+        assertEquals(0, tree.nearest(0, -179.999));
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(7);
+        double[] latitudes = new double[20000];
+        double[] longitudes = new double[20000];
+        fillCity(random, latitudes, longitudes);
+        // Duplicates must not confuse the partitioning
+        latitudes[1] = latitudes[0];
+        longitudes[1] = longitudes[0];
+        KdTree tree = KdTree.build(latitudes, longitudes);
+
+        for (int q = 0; q < 2000; q++) {
+            double latitude = 37.7 + random.nextDouble() * 0.2;
+            double longitude = -122.5 + random.nextDouble() * 0.2;
+            int expected = bruteForce(latitudes, longitudes, latitude, longitude);
+            int actual = tree.nearest(latitude, longitude);
+
+            assertEquals(GeoMath.distanceMeters(latitude, longitude,
+                    latitudes[expected], longitudes[expected]),
+                    GeoMath.distanceMeters(latitude, longitude,
+                            latitudes[actual], longitudes[actual]), 1e-6);
+        }
+    }
+
+    /**
+     * Scatter points over a city sized area.
+     */
+    private static void fillCity(Random random, double[] latitudes, double[] longitudes) {
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 37.7 + random.nextDouble() * 0.2;
+            longitudes[i] = -122.5 + random.nextDouble() * 0.2;
+        }
+    }
+
+    private static int bruteForce(double[] latitudes, double[] longitudes, double latitude,
+            double longitude) {
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < latitudes.length; i++) {
+            double distance = GeoMath.distanceMeters(latitude, longitude,
+                    latitudes[i], longitudes[i]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
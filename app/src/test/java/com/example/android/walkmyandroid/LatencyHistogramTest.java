@@ -0,0 +1,108 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bucket boundaries and the percentile math of the LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    private static final long NANOS_PER_MILLI = 1000 * 1000;
+
+    @Test
+    public void smallDurations_haveABucketEach() {
+        for (int micros = 0; micros < 8; micros++) {
+            assertEquals(micros, LatencyHistogram.bucketOf(micros));
+            assertEquals(micros + 1, LatencyHistogram.upperBoundOf(micros));
+        }
+    }
+
+    @Test
+    public void buckets_splitEachPowerOfTwoInFour() {
+        // 1024 to 2047 microseconds
+        assertEquals(LatencyHistogram.bucketOf(1024), LatencyHistogram.bucketOf(1279));
+        assertEquals(LatencyHistogram.bucketOf(1279) + 1, LatencyHistogram.bucketOf(1280));
+        assertEquals(1280, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(1024)));
+        assertEquals(2048, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(2047)));
+        assertEquals(LatencyHistogram.bucketOf(2047) + 1, LatencyHistogram.bucketOf(2048));
+    }
+
+    @Test
+    public void upperBound_isAboveTheValueByAtMostAQuarter() {
+        for (long micros = 1; micros < (1L << 36); micros = micros * 5 / 4 + 1) {
+            for (long value = micros; value < micros + 3; value++) {
+                long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+                assertTrue(value + " < " + upper, value < upper);
+                assertTrue(value + " * 1.25 >= " + upper, value * 5 / 4 + 1 >= upper);
+            }
+        }
+    }
+
+    @Test
+    public void buckets_areContiguous() {
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT - 1; bucket++) {
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper - 1));
+            assertEquals(bucket + 1, LatencyHistogram.bucketOf(upper));
+        }
+    }
+
+    @Test
+    public void hugeDurations_goToTheLastBucket() {
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(1L << 40));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1,
+                LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void snapshot_reportsUpperBoundsOfPercentileBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * NANOS_PER_MILLI);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count);
+        // 50 ms is in [49152, 57344) microseconds
+        assertEquals(57344, snapshot.p50Micros);
+        // 95 ms is in [81920, 98304)
+        assertEquals(98304, snapshot.p95Micros);
+        // 99 ms is in [98304, 114688), which is capped at the largest value
+        assertEquals(100000, snapshot.p99Micros);
+        assertEquals(100000, snapshot.maxMicros);
+    }
+
+    @Test
+    public void emptyHistogram_reportsZeros() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.p50Micros);
+        assertEquals(0, snapshot.p99Micros);
+        assertEquals(0, snapshot.maxMicros);
+    }
+
+    @Test
+    public void negativeDuration_countsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.count);
+        assertEquals(0, snapshot.p50Micros);
+        assertEquals(0, snapshot.maxMicros);
+    }
+
+    @Test
+    public void reset_clearsCountsAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3 * NANOS_PER_MILLI);
+        histogram.reset();
+        histogram.record(1500 * 1000);
+
+        assertEquals("n=1 p50=1.5ms p95=1.5ms p99=1.5ms max=1.5ms",
+                histogram.snapshot().toString());
+    }
+}
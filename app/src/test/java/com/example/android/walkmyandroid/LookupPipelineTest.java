@@ -0,0 +1,118 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the layers of the LookupPipeline are ordered, against a fake backend.
+ */
+public class LookupPipelineTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final String DATASET = "37.4220,-122.0841,Offline address\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void offlineAnswer_isNotCached() throws Exception {
+        FakeClock clock = new FakeClock();
+        final FakeBackend backend = new FakeBackend();
+        File storeDirectory = mFolder.newFolder("stores");
+        LookupPipeline pipeline = new LookupPipeline(new GeocoderProvider() {
+            @Override
+            public ReverseGeocoder forLocale(Locale locale) {
+                return backend;
+            }
+        }, storeDirectory, Arrays.asList(Locale.US), clock);
+        pipeline.loadOfflineDataset(new ByteArrayInputStream(DATASET.getBytes("UTF-8")));
+
+        backend.failing = true;
+        assertEquals("Offline address", pipeline.getGeocoder().getAddress(LAT, LNG).format());
+        assertFalse(pipeline.getCachingGeocoder().getCache().contains(LAT, LNG));
+        for (File store : storeDirectory.listFiles()) {
+            assertEquals(store.getName(), 0, store.length());
+        }
+
+        // Once the backend is back, the cell is looked up on it rather than kept offline
+        clock.now += 60 * 1000;
+        backend.failing = false;
+        int calls = backend.calls;
+        assertEquals("Network address", pipeline.getGeocoder().getAddress(LAT, LNG).format());
+        assertEquals(calls + 1, backend.calls);
+        assertTrue(pipeline.getCachingGeocoder().getCache().contains(LAT, LNG));
+    }
+
+    @Test
+    public void olderBatchFixes_reachTheCacheWithinTheBackgroundBudget() throws Exception {
+        FakeClock clock = new FakeClock();
+        final FakeBackend backend = new FakeBackend();
+        LookupPipeline pipeline = new LookupPipeline(new GeocoderProvider() {
+            @Override
+            public ReverseGeocoder forLocale(Locale locale) {
+                return backend;
+            }
+        }, mFolder.newFolder("stores"), Arrays.asList(Locale.US), clock);
+        // Far enough apart that each fix is a representative
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            fixes.add(new LocationFix(LAT, LNG + i * 300 / METERS_PER_DEGREE, i * 1000, 5,
+                    LocationFix.UNKNOWN));
+        }
+
+        BatchGeocoder.Result result = pipeline.getBatchGeocoder().geocode(fixes);
+        AddressCache cache = pipeline.getCachingGeocoder().getCache();
+        assertEquals("Network address", result.getLatestAddress().format());
+        assertEquals("Network address", result.addresses[1].format());
+        assertTrue(cache.contains(fixes.get(2).latitude, fixes.get(2).longitude));
+        assertTrue(cache.contains(fixes.get(1).latitude, fixes.get(1).longitude));
+        // The oldest fix would take one of the tokens left to the lookups on screen
+        assertFalse(cache.contains(fixes.get(0).latitude, fixes.get(0).longitude));
+        assertEquals(1, result.failedCount);
+        assertEquals(1, pipeline.getBackgroundRejectedCount());
+        assertEquals(0, pipeline.getRejectedCount());
+
+        // Once the budget refilled, the next batch fills it in
+        clock.now += 60 * 1000;
+        result = pipeline.getBatchGeocoder().geocode(fixes);
+        assertEquals(0, result.failedCount);
+        assertTrue(cache.contains(fixes.get(0).latitude, fixes.get(0).longitude));
+        assertEquals(3, backend.calls);
+    }
+
+    private static class FakeClock implements Clock {
+        long now = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class FakeBackend implements ReverseGeocoder {
+        volatile boolean failing;
+        volatile int calls;
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            calls++;
+            if (failing) {
+                throw new IOException("offline");
+            }
+            return GeoAddress.ofLines("Network address");
+        }
+    }
+}
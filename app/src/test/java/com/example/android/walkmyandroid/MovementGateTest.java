@@ -0,0 +1,80 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walks fixes past the MovementGate, around its distance and interval thresholds.
+ */
+public class MovementGateTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final double MIN_DISTANCE_METERS = 20;
+    private static final long MIN_INTERVAL_MILLIS = 2 * 60 * 1000;
+
+    private final MovementGate mGate = new MovementGate(MIN_DISTANCE_METERS, MIN_INTERVAL_MILLIS);
+
+    /**
+     * @return The latitude the given distance north of LAT.
+     */
+    private static double north(double meters) {
+        return LAT + meters / METERS_PER_DEGREE;
+    }
+
+    @Test
+    public void firstFix_isLetThrough() {
+        assertTrue(mGate.shouldLookup(LAT, LNG, 0));
+        assertEquals(1, mGate.getPassedCount());
+    }
+
+    @Test
+    public void nearAndSoon_isSuppressed() {
+        mGate.shouldLookup(LAT, LNG, 0);
+
+        assertFalse(mGate.shouldLookup(north(5), LNG, 1000));
+        assertFalse(mGate.shouldLookup(north(19), LNG, MIN_INTERVAL_MILLIS - 1));
+        assertEquals(1, mGate.getPassedCount());
+        assertEquals(2, mGate.getSuppressedCount());
+    }
+
+    @Test
+    public void movingFar_isLetThroughEarly() {
+        mGate.shouldLookup(LAT, LNG, 0);
+
+        assertTrue(mGate.shouldLookup(north(21), LNG, 1000));
+    }
+
+    @Test
+    public void waitingLong_isLetThroughInPlace() {
+        mGate.shouldLookup(LAT, LNG, 0);
+
+        assertTrue(mGate.shouldLookup(LAT, LNG, MIN_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void passedFix_becomesTheNewAnchor() {
+        mGate.shouldLookup(LAT, LNG, 0);
+        // Suppressed fixes do not move the anchor, so small steps add up
+        assertFalse(mGate.shouldLookup(north(12), LNG, 1000));
+        assertTrue(mGate.shouldLookup(north(24), LNG, 2000));
+
+        // Measured from the fix at 24 m and 2 s now
+        assertFalse(mGate.shouldLookup(north(40), LNG, 3000));
+        assertFalse(mGate.shouldLookup(north(24), LNG, 2000 + MIN_INTERVAL_MILLIS - 1));
+        assertTrue(mGate.shouldLookup(north(45), LNG, 4000));
+        assertEquals(3, mGate.getPassedCount());
+        assertEquals(3, mGate.getSuppressedCount());
+    }
+
+    @Test
+    public void reset_letsTheNextFixThrough() {
+        mGate.shouldLookup(LAT, LNG, 0);
+        mGate.reset();
+
+        assertTrue(mGate.shouldLookup(LAT, LNG, 1000));
+        assertFalse(mGate.shouldLookup(LAT, LNG, 2000));
+    }
+}
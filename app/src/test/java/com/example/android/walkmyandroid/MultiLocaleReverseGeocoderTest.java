@@ -0,0 +1,240 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the MultiLocaleReverseGeocoder, with a fake backend per locale.
+ */
+public class MultiLocaleReverseGeocoderTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    private static final Locale ENGLISH = Locale.US;
+    private static final Locale GERMAN = Locale.GERMANY;
+    private static final Locale FRENCH = Locale.FRANCE;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Map<Locale, FakeGeocoder> mBackends = new HashMap<>();
+    private MultiLocaleReverseGeocoder.Factory mFactory;
+
+    @Before
+    public void setUp() {
+        mFactory = new MultiLocaleReverseGeocoder.Factory() {
+            @Override
+            public CachingReverseGeocoder create(Locale locale) {
+                FakeGeocoder backend = new FakeGeocoder(locale);
+                mBackends.put(locale, backend);
+                return new CachingReverseGeocoder(backend,
+                        new AddressCache(25, 60000, 16, Clock.SYSTEM));
+            }
+        };
+    }
+
+    @Test
+    public void lookup_answersInCurrentLocaleAndFansOut() throws Exception {
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(mFactory,
+                Arrays.asList(ENGLISH, GERMAN, FRENCH), DIRECT);
+
+        assertEquals("Address in en_US", geocoder.getAddress(LAT, LNG).format());
+        assertEquals(1, mBackends.get(ENGLISH).calls);
+        assertEquals(1, mBackends.get(GERMAN).calls);
+        assertEquals(1, mBackends.get(FRENCH).calls);
+        assertEquals(2, geocoder.getFanOutCallCount());
+    }
+
+    @Test
+    public void localeSwitch_servedFromCache() throws Exception {
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(mFactory,
+                Arrays.asList(ENGLISH, GERMAN), DIRECT);
+        geocoder.getAddress(LAT, LNG);
+
+        geocoder.setLocale(GERMAN);
+        assertEquals("Address in de_DE", geocoder.getAddress(LAT, LNG).format());
+        geocoder.setLocale(ENGLISH);
+        assertEquals("Address in en_US", geocoder.getAddress(LAT, LNG).format());
+
+        assertEquals(1, mBackends.get(ENGLISH).calls);
+        assertEquals(1, mBackends.get(GERMAN).calls);
+        assertEquals(2, geocoder.getGeocoder(GERMAN).getCache().getHitCount()
+                + geocoder.getGeocoder(ENGLISH).getCache().getHitCount());
+    }
+
+    @Test
+    public void fanOut_isNotCountedAsPrefetch() throws Exception {
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(mFactory,
+                Arrays.asList(ENGLISH, GERMAN), DIRECT);
+        geocoder.getAddress(LAT, LNG);
+        AddressCache german = geocoder.getGeocoder(GERMAN).getCache();
+        assertTrue(german.contains(LAT, LNG));
+        assertEquals(0, german.getPrefetchedCount());
+
+        geocoder.setLocale(GERMAN);
+        assertSame(german, geocoder.getCurrentGeocoder().getCache());
+        geocoder.getAddress(LAT, LNG);
+        assertEquals(1, german.getHitCount());
+        assertEquals(0, german.getPrefetchHitCount());
+    }
+
+    @Test
+    public void failedFanOut_isRetriedNextTime() throws Exception {
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(mFactory,
+                Arrays.asList(ENGLISH, GERMAN), DIRECT);
+        geocoder.getGeocoder(GERMAN);
+        mBackends.get(GERMAN).failure = new IOException("offline");
+
+        // The failure of another locale does not fail the lookup
+        assertNotNull(geocoder.getAddress(LAT, LNG));
+        assertEquals(1, geocoder.getFanOutFailureCount());
+
+        mBackends.get(GERMAN).failure = null;
+        geocoder.getAddress(LAT, LNG);
+        assertEquals(2, mBackends.get(GERMAN).calls);
+        assertEquals(1, mBackends.get(ENGLISH).calls);
+        assertTrue(geocoder.getGeocoder(GERMAN).getCache().contains(LAT, LNG));
+    }
+
+    @Test
+    public void newLocale_isAddedAndFilledFromThen() throws Exception {
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(mFactory,
+                Arrays.asList(ENGLISH), DIRECT);
+        geocoder.getAddress(LAT, LNG);
+        assertEquals(1, mBackends.size());
+
+        geocoder.setLocale(FRENCH);
+        assertEquals(Arrays.asList(ENGLISH, FRENCH), geocoder.getLocales());
+        assertEquals("Address in fr_FR", geocoder.getAddress(LAT, LNG).format());
+        assertEquals(1, mBackends.get(FRENCH).calls);
+        // Already cached in English, so nothing to fan out
+        assertEquals(0, geocoder.getFanOutCallCount());
+    }
+
+    @Test
+    public void fanOut_runsLocalesInParallel() throws Exception {
+        // Both other locales must be in their backend call at the same time to get past it
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        MultiLocaleReverseGeocoder.Factory factory = new MultiLocaleReverseGeocoder.Factory() {
+            @Override
+            public CachingReverseGeocoder create(final Locale locale) {
+                ReverseGeocoder backend = new ReverseGeocoder() {
+                    @Override
+                    public GeoAddress getAddress(double latitude, double longitude)
+                            throws IOException {
+                        if (!locale.equals(ENGLISH)) {
+                            try {
+                                barrier.await(5, TimeUnit.SECONDS);
+                            } catch (Exception e) {
+                                throw new IOException(e);
+                            }
+                        }
+                        return GeoAddress.ofLines("Address in " + locale);
+                    }
+                };
+                return new CachingReverseGeocoder(backend,
+                        new AddressCache(25, 60000, 16, Clock.SYSTEM));
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(factory,
+                Arrays.asList(ENGLISH, GERMAN, FRENCH), pool);
+
+        geocoder.getAddress(LAT, LNG);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, geocoder.getFanOutCallCount());
+        assertEquals(0, geocoder.getFanOutFailureCount());
+    }
+
+    @Test
+    public void busyExecutor_shedsFanOutAndRetriesNextTime() throws Exception {
+        final boolean[] reject = {true};
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(mFactory,
+                Arrays.asList(ENGLISH, GERMAN, FRENCH), new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        if (reject[0]) {
+                            throw new RejectedExecutionException("busy");
+                        }
+                        command.run();
+                    }
+                });
+
+        // Shedding the other locales does not fail the lookup
+        assertEquals("Address in en_US", geocoder.getAddress(LAT, LNG).format());
+        assertEquals(2, geocoder.getFanOutShedCount());
+        assertEquals(0, geocoder.getFanOutCallCount());
+
+        reject[0] = false;
+        geocoder.getAddress(LAT, LNG);
+        assertEquals(2, geocoder.getFanOutCallCount());
+        assertTrue(geocoder.getGeocoder(GERMAN).getCache().contains(LAT, LNG));
+        assertTrue(geocoder.getGeocoder(FRENCH).getCache().contains(LAT, LNG));
+    }
+
+    @Test
+    public void fanOut_goesThroughPrefetchDelegate() throws Exception {
+        final Map<Locale, FakeGeocoder> prefetchBackends = new HashMap<>();
+        MultiLocaleReverseGeocoder.Factory factory = new MultiLocaleReverseGeocoder.Factory() {
+            @Override
+            public CachingReverseGeocoder create(Locale locale) {
+                FakeGeocoder backend = new FakeGeocoder(locale);
+                FakeGeocoder prefetchBackend = new FakeGeocoder(locale);
+                mBackends.put(locale, backend);
+                prefetchBackends.put(locale, prefetchBackend);
+                return new CachingReverseGeocoder(backend, prefetchBackend,
+                        new AddressCache(25, 60000, 16, Clock.SYSTEM), null);
+            }
+        };
+        MultiLocaleReverseGeocoder geocoder = new MultiLocaleReverseGeocoder(factory,
+                Arrays.asList(ENGLISH, GERMAN), DIRECT);
+
+        geocoder.getAddress(LAT, LNG);
+        assertEquals(1, mBackends.get(ENGLISH).calls);
+        assertEquals(0, prefetchBackends.get(ENGLISH).calls);
+        assertEquals(0, mBackends.get(GERMAN).calls);
+        assertEquals(1, prefetchBackends.get(GERMAN).calls);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noLocales_fail() {
+        new MultiLocaleReverseGeocoder(mFactory, Arrays.<Locale>asList(), DIRECT);
+    }
+
+    private static class FakeGeocoder implements ReverseGeocoder {
+        private final Locale mLocale;
+        int calls;
+        IOException failure;
+
+        FakeGeocoder(Locale locale) {
+            mLocale = locale;
+        }
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            calls++;
+            if (failure != null) {
+                throw failure;
+            }
+            return GeoAddress.ofLines("Address in " + mLocale);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the OfflineReverseGeocoder and its use as a fallback.
+ */
+public class OfflineReverseGeocoderTest {
+
+    private static final String DATASET = "# lat,lng,address\n"
+            + "37.4220,-122.0841,1600 Amphitheatre Pkwy|Mountain View, CA 94043\n"
+            + "\n"
+            + "37.3318,-122.0312,1 Infinite Loop|Cupertino, CA 95014\n";
+
+    @Test
+    public void load_answersNearestAddress() throws Exception {
+        OfflineReverseGeocoder geocoder = OfflineReverseGeocoder.load(stream(DATASET), 150);
+
+        assertEquals(2, geocoder.size());
+        assertEquals("1 Infinite Loop" + System.getProperty("line.separator")
+                + "Cupertino, CA 95014", geocoder.getAddress(37.3319, -122.0313).format());
+    }
+
+    @Test
+    public void farFromAnyPoint_returnsNull() throws Exception {
+        OfflineReverseGeocoder geocoder = OfflineReverseGeocoder.load(stream(DATASET), 150);
+
+        assertNull(geocoder.getAddress(37.40, -122.05));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedLine_fails() throws Exception {
+        OfflineReverseGeocoder.load(stream("37.4220;-122.0841;Nowhere\n"), 150);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCoordinates_fail() throws Exception {
+        OfflineReverseGeocoder.load(stream(DATASET), 150).getAddress(91, 0);
+    }
+
+    @Test
+    public void fallback_answersOfflineWhenNetworkFails() throws Exception {
+        FallbackReverseGeocoder geocoder = new FallbackReverseGeocoder(
+                new ReverseGeocoder() {
+                    @Override
+                    public GeoAddress getAddress(double latitude, double longitude)
+                            throws IOException {
+                        throw new IOException("offline");
+                    }
+                }, false);
+        geocoder.setOffline(OfflineReverseGeocoder.load(stream(DATASET), 150));
+
+        assertNotNull(geocoder.getAddress(37.4220, -122.0841));
+        try {
+            geocoder.getAddress(0, 0);
+            fail("Expected the network failure when there is no offline address");
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+
+    private static InputStream stream(String content) throws IOException {
+        return new ByteArrayInputStream(content.getBytes("UTF-8"));
+    }
+}
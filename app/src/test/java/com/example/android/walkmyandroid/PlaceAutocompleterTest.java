@@ -0,0 +1,125 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the search bar is answered locally when it can.
+ */
+public class PlaceAutocompleterTest {
+
+    private static final double NO_POSITION = Double.NaN;
+
+    /**
+     * Predicts a fixed list of places, and counts the calls.
+     */
+    private static class FakeRemote implements PlaceAutocompleter.RemoteSource {
+        final List<PlaceSuggestion> predictions = new ArrayList<>();
+        final List<String> queries = new ArrayList<>();
+        boolean failing;
+
+        @Override
+        public List<PlaceSuggestion> predict(String query, double latitude, double longitude)
+                throws IOException {
+            queries.add(query);
+            if (failing) {
+                throw new IOException("Offline");
+            }
+            return predictions;
+        }
+    }
+
+    private static PlaceSuggestion selected(String id, String name) {
+        return new PlaceSuggestion(id, name, "", 0, 0, new int[0]);
+    }
+
+    private static PlaceSuggestion predicted(String id, String name) {
+        return new PlaceSuggestion(id, name, "", NO_POSITION, NO_POSITION, new int[0]);
+    }
+
+    private static List<String> ids(List<PlaceSuggestion> suggestions) {
+        List<String> ids = new ArrayList<>();
+        for (PlaceSuggestion suggestion : suggestions) {
+            ids.add(suggestion.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void enoughLocalMatches_skipTheRemoteSource() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, 1000);
+        index.record(selected("a", "Market Hall"));
+        index.record(selected("b", "Market Street"));
+        FakeRemote remote = new FakeRemote();
+        PlaceAutocompleter autocompleter = new PlaceAutocompleter(index, remote, 2, 3, 5, 8);
+
+        assertEquals(2, autocompleter.suggest("mark", NO_POSITION, NO_POSITION).size());
+        // Too short to ask remotely, even without a local match
+        assertTrue(autocompleter.suggest("zz", NO_POSITION, NO_POSITION).isEmpty());
+        assertTrue(autocompleter.suggest("   ", NO_POSITION, NO_POSITION).isEmpty());
+
+        assertTrue(remote.queries.isEmpty());
+        assertEquals(2, autocompleter.getLocalHitCount());
+        assertEquals(1.0, autocompleter.getHitRatio(), 0);
+    }
+
+    @Test
+    public void localMiss_mergesRemotePredictionsWithoutDuplicates() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, 1000);
+        index.record(selected("a", "Market Hall"));
+        FakeRemote remote = new FakeRemote();
+        remote.predictions.addAll(Arrays.asList(predicted("a", "Market Hall"),
+                predicted("c", "Market Square"), predicted("d", "Marketplace"),
+                predicted("e", "Market Lane")));
+        PlaceAutocompleter autocompleter = new PlaceAutocompleter(index, remote, 2, 3, 3, 8);
+
+        List<PlaceSuggestion> suggestions =
+                autocompleter.suggest("market", NO_POSITION, NO_POSITION);
+        assertEquals(Arrays.asList("a", "c", "d"), ids(suggestions));
+        assertTrue(suggestions.get(0).hasLocation());
+        assertEquals(Arrays.asList("market"), remote.queries);
+    }
+
+    @Test
+    public void repeatedQuery_usesTheKeptRemoteAnswer() {
+        FakeRemote remote = new FakeRemote();
+        remote.predictions.add(predicted("c", "Harbour"));
+        PlaceAutocompleter autocompleter = new PlaceAutocompleter(
+                new PlacePrefixIndex(10, 1000), remote, 1, 3, 5, 8);
+
+        autocompleter.suggest("harb", NO_POSITION, NO_POSITION);
+        autocompleter.suggest("harbo", NO_POSITION, NO_POSITION);
+        // Deleting the last character again, in another case
+        List<PlaceSuggestion> again = autocompleter.suggest("HARB ", NO_POSITION, NO_POSITION);
+
+        assertEquals(Arrays.asList("c"), ids(again));
+        assertEquals(2, remote.queries.size());
+        assertEquals(1, autocompleter.getRemoteCacheHitCount());
+        assertEquals(2, autocompleter.getRemoteCallCount());
+        assertEquals(1 / 3.0, autocompleter.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    public void remoteFailure_fallsBackToLocalMatches() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, 1000);
+        index.record(selected("a", "Library"));
+        FakeRemote remote = new FakeRemote();
+        remote.failing = true;
+        PlaceAutocompleter autocompleter = new PlaceAutocompleter(index, remote, 2, 3, 5, 8);
+
+        assertEquals(Arrays.asList("a"),
+                ids(autocompleter.suggest("lib", NO_POSITION, NO_POSITION)));
+        assertEquals(1, autocompleter.getRemoteFailureCount());
+
+        // The failure is not kept; the next attempt asks again
+        remote.failing = false;
+        autocompleter.suggest("lib", NO_POSITION, NO_POSITION);
+        assertEquals(2, remote.queries.size());
+    }
+}
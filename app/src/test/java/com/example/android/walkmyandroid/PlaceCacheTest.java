@@ -0,0 +1,160 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the PlaceCache, driven by a fake clock in a fixed time zone.
+ */
+public class PlaceCacheTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    // About 1 meter at this latitude
+    private static final double ONE_METER = 1.0 / 111320.0;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final long BUCKET_MILLIS = 3 * HOUR_MILLIS;
+    private static final long TTL_MILLIS = 7 * DAY_MILLIS;
+
+    private TimeZone mDefaultTimeZone;
+    private FakeClock mClock;
+    private PlaceCandidates mCafe;
+    private PlaceCandidates mBar;
+
+    @Before
+    public void setUp() {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        mClock = new FakeClock();
+        // 09:00 on the first day
+        mClock.now = 10 * DAY_MILLIS + 9 * HOUR_MILLIS;
+        mCafe = new PlaceCandidates.Builder(1).add("cafe", "Cafe", new int[]{15}, 0.9f).build();
+        mBar = new PlaceCandidates.Builder(1).add("bar", "Bar", new int[]{9}, 0.8f).build();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void sameCellAndBucket_isAHit() {
+        PlaceCache cache = newCache(4, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        cache.put(LAT, LNG, mCafe);
+
+        // 11:59, same 09:00 to 12:00 bucket, a few meters away
+        mClock.now += BUCKET_MILLIS - 60 * 1000;
+        assertSame(mCafe, cache.get(LAT + 2 * ONE_METER, LNG));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void otherBucket_isAMiss() {
+        PlaceCache cache = newCache(4, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        cache.put(LAT, LNG, mCafe);
+
+        // 12:00 starts the next bucket
+        mClock.now += BUCKET_MILLIS;
+        assertNull(cache.get(LAT, LNG));
+        cache.put(LAT, LNG, mBar);
+        assertSame(mBar, cache.get(LAT, LNG));
+
+        // The next morning finds the morning entry again
+        mClock.now += DAY_MILLIS - BUCKET_MILLIS;
+        assertSame(mCafe, cache.get(LAT, LNG));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void bucket_followsTheLocalTimeOfDay() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+02:00"));
+        PlaceCache cache = newCache(4, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        // 22:30 UTC is 00:30 local time, in the first bucket of the next local day
+        mClock.now = 10 * DAY_MILLIS + 22 * HOUR_MILLIS + 30 * 60 * 1000;
+        cache.put(LAT, LNG, mBar);
+
+        // 01:00 UTC is 03:00 local time
+        mClock.now += 2 * HOUR_MILLIS + 30 * 60 * 1000;
+        assertNull(cache.get(LAT, LNG));
+        mClock.now -= 60 * 1000;
+        assertSame(mBar, cache.get(LAT, LNG));
+    }
+
+    @Test
+    public void otherCell_isAMiss() {
+        PlaceCache cache = newCache(4, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        cache.put(LAT, LNG, mCafe);
+
+        assertNull(cache.get(LAT + 100 * ONE_METER, LNG));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void expiredEntry_isAMiss() {
+        PlaceCache cache = newCache(4, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        cache.put(LAT, LNG, mCafe);
+
+        // Whole days keep the time of day, so only the TTL decides
+        mClock.now += TTL_MILLIS - DAY_MILLIS;
+        assertSame(mCafe, cache.get(LAT, LNG));
+        mClock.now += DAY_MILLIS;
+        assertNull(cache.get(LAT, LNG));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void fullCache_leastRecentlyUsed_keepsTheEntryJustRead() {
+        PlaceCache cache = newCache(2, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        fillAndTouchFirst(cache);
+
+        assertSame(mCafe, cache.get(LAT, LNG));
+        assertNull(cache.get(LAT + 100 * ONE_METER, LNG));
+        assertNotNull(cache.get(LAT + 200 * ONE_METER, LNG));
+    }
+
+    @Test
+    public void fullCache_firstInFirstOut_dropsTheOldestWrite() {
+        PlaceCache cache = newCache(2, PlaceCache.EvictionPolicy.FIRST_IN_FIRST_OUT);
+        fillAndTouchFirst(cache);
+
+        assertNull(cache.get(LAT, LNG));
+        assertSame(mBar, cache.get(LAT + 100 * ONE_METER, LNG));
+        assertNotNull(cache.get(LAT + 200 * ONE_METER, LNG));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noCapacity_fails() {
+        newCache(0, PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * Store three cells in a row, reading the first one before the third is stored.
+     */
+    private void fillAndTouchFirst(PlaceCache cache) {
+        cache.put(LAT, LNG, mCafe);
+        cache.put(LAT + 100 * ONE_METER, LNG, mBar);
+        assertSame(mCafe, cache.get(LAT, LNG));
+        cache.put(LAT + 200 * ONE_METER, LNG, mCafe);
+    }
+
+    private PlaceCache newCache(int maxEntries, PlaceCache.EvictionPolicy policy) {
+        return new PlaceCache(30, BUCKET_MILLIS, TTL_MILLIS, maxEntries, policy, mClock);
+    }
+
+    private static class FakeClock implements Clock {
+        long now = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+}
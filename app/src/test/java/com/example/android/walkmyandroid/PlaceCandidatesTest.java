@@ -0,0 +1,74 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the PlaceCandidates builder, which keeps the most likely candidates.
+ */
+public class PlaceCandidatesTest {
+
+    @Test
+    public void candidates_areSortedByDecreasingLikelihood() {
+        PlaceCandidates candidates = new PlaceCandidates.Builder(3)
+                .add("b", "Bakery", new int[]{7}, 0.2f)
+                .add("c", "Cafe", new int[]{15, 38}, 0.7f)
+                .add("p", "Park", new int[]{69}, 0.1f)
+                .build();
+
+        assertEquals(3, candidates.size());
+        assertEquals("Cafe", candidates.getName(0));
+        assertEquals("Bakery", candidates.getName(1));
+        assertEquals("Park", candidates.getName(2));
+        assertEquals("c", candidates.getId(0));
+        assertEquals(0.7f, candidates.getLikelihood(0), 0);
+    }
+
+    @Test
+    public void fullBuilder_keepsOnlyTheMostLikely() {
+        PlaceCandidates candidates = new PlaceCandidates.Builder(2)
+                .add("p", "Park", new int[]{69}, 0.1f)
+                .add("b", "Bakery", new int[]{7}, 0.2f)
+                .add("m", "Museum", new int[]{66}, 0.05f)
+                .add("c", "Cafe", new int[]{15}, 0.6f)
+                .build();
+
+        assertEquals(2, candidates.size());
+        assertEquals("Cafe", candidates.getName(0));
+        assertEquals("Bakery", candidates.getName(1));
+    }
+
+    @Test
+    public void equalLikelihood_keepsTheFirstAdded() {
+        PlaceCandidates candidates = new PlaceCandidates.Builder(2)
+                .add("a", "Arcade", new int[]{1}, 0.5f)
+                .add("b", "Bakery", new int[]{7}, 0.5f)
+                .add("c", "Cafe", new int[]{15}, 0.5f)
+                .build();
+
+        assertEquals("Arcade", candidates.getName(0));
+        assertEquals("Bakery", candidates.getName(1));
+    }
+
+    @Test
+    public void types_stayWithTheirCandidate() {
+        PlaceCandidates candidates = new PlaceCandidates.Builder(3)
+                .add("s", "Station", new int[]{}, 0.1f)
+                .add("c", "Cafe", new int[]{15, 38, 79}, 0.3f)
+                .add("b", "Bakery", new int[]{7}, 0.2f)
+                .build();
+
+        assertArrayEquals(new int[]{15, 38, 79}, candidates.getTypes(0));
+        assertArrayEquals(new int[]{7}, candidates.getTypes(1));
+        assertArrayEquals(new int[]{}, candidates.getTypes(2));
+    }
+
+    @Test
+    public void noCandidates_buildEmpty() {
+        PlaceCandidates candidates = new PlaceCandidates.Builder(3).build();
+
+        assertTrue(candidates.isEmpty());
+        assertEquals(0, candidates.size());
+    }
+}
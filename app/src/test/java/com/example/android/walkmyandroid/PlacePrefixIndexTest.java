@@ -0,0 +1,184 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the matching and the ranking of the places selected before.
+ */
+public class PlacePrefixIndexTest {
+
+    private static final double NO_POSITION = Double.NaN;
+    private static final double SCALE_METERS = 1000;
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static PlaceSuggestion place(String id, String name, double latitude,
+            double longitude) {
+        return new PlaceSuggestion(id, name, "", latitude, longitude, new int[0]);
+    }
+
+    private static void recordTimes(PlacePrefixIndex index, PlaceSuggestion place, int times) {
+        for (int i = 0; i < times; i++) {
+            index.record(place);
+        }
+    }
+
+    @Test
+    public void tokenize_foldsCaseAndAccents() {
+        assertArrayEquals(new String[]{"cafe", "de", "flore"},
+                PlacePrefixIndex.tokenize("  Caf\u00e9 de FLORE! "));
+        assertArrayEquals(new String[]{"st", "pauli", "2"},
+                PlacePrefixIndex.tokenize("St.-Pauli/2"));
+        assertEquals(0, PlacePrefixIndex.tokenize(" - ").length);
+    }
+
+    @Test
+    public void search_matchesPrefixesOfAnyWord() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        index.record(place("a", "Blue Bottle Coffee", NO_POSITION, NO_POSITION));
+        index.record(place("b", "Bottle Shop", NO_POSITION, NO_POSITION));
+        index.record(place("c", "Coffee Bar", NO_POSITION, NO_POSITION));
+
+        assertEquals(2, index.search("bot", NO_POSITION, NO_POSITION, 10).size());
+        assertEquals(2, index.search("COF", NO_POSITION, NO_POSITION, 10).size());
+        assertTrue(index.search("x", NO_POSITION, NO_POSITION, 10).isEmpty());
+        assertTrue(index.search("  ", NO_POSITION, NO_POSITION, 10).isEmpty());
+
+        List<PlaceSuggestion> both = index.search("coffee bo", NO_POSITION, NO_POSITION, 10);
+        assertEquals(1, both.size());
+        assertEquals("a", both.get(0).id);
+    }
+
+    @Test
+    public void search_ranksByFrequencyThenRecency() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        PlaceSuggestion often = place("often", "Park Often", NO_POSITION, NO_POSITION);
+        PlaceSuggestion old = place("old", "Park Old", NO_POSITION, NO_POSITION);
+        PlaceSuggestion recent = place("recent", "Park Recent", NO_POSITION, NO_POSITION);
+        recordTimes(index, often, 3);
+        index.record(old);
+        index.record(recent);
+
+        List<PlaceSuggestion> ranked = index.search("park", NO_POSITION, NO_POSITION, 10);
+        assertEquals("often", ranked.get(0).id);
+        assertEquals("recent", ranked.get(1).id);
+        assertEquals("old", ranked.get(2).id);
+        assertEquals(2, index.search("park", NO_POSITION, NO_POSITION, 2).size());
+    }
+
+    @Test
+    public void search_discountsDistantPlaces() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        // Selected twice as often, but 10 km away
+        PlaceSuggestion far = place("far", "Station Far", 10000 / METERS_PER_DEGREE, 0);
+        PlaceSuggestion near = place("near", "Station Near", 0, 0);
+        recordTimes(index, far, 2);
+        index.record(near);
+
+        assertEquals("near", index.search("sta", 0, 0, 10).get(0).id);
+        // Without a position, only the frequency counts
+        assertEquals("far", index.search("sta", NO_POSITION, NO_POSITION, 10).get(0).id);
+    }
+
+    @Test
+    public void record_evictsTheLeastSelectedWhenFull() {
+        PlacePrefixIndex index = new PlacePrefixIndex(2, SCALE_METERS);
+        recordTimes(index, place("kept", "Museum Kept", NO_POSITION, NO_POSITION), 2);
+        index.record(place("dropped", "Museum Dropped", NO_POSITION, NO_POSITION));
+        index.record(place("new", "Museum New", NO_POSITION, NO_POSITION));
+
+        assertEquals(2, index.size());
+        assertTrue(index.search("dropped", NO_POSITION, NO_POSITION, 10).isEmpty());
+        assertEquals(2, index.search("museum", NO_POSITION, NO_POSITION, 10).size());
+        assertEquals("new", index.search("new", NO_POSITION, NO_POSITION, 10).get(0).id);
+    }
+
+    @Test
+    public void record_reindexesARenamedPlace() {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        index.record(place("a", "Old Name", NO_POSITION, NO_POSITION));
+        index.record(place("a", "New Name", NO_POSITION, NO_POSITION));
+
+        assertEquals(1, index.size());
+        assertTrue(index.search("old", NO_POSITION, NO_POSITION, 10).isEmpty());
+        List<PlaceSuggestion> renamed = index.search("name", NO_POSITION, NO_POSITION, 10);
+        assertEquals(1, renamed.size());
+        assertEquals("New Name", renamed.get(0).name);
+    }
+
+    @Test
+    public void saveAndLoad_keepsPlacesCountsAndDetails() throws Exception {
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        index.record(new PlaceSuggestion("a", "Caf\u00e9 de Flore", "172 Bd Saint-Germain",
+                48.8541, 2.3326, new int[]{15, 34}));
+        recordTimes(index, place("b", "Cafe Bar", NO_POSITION, NO_POSITION), 3);
+        File file = new File(mFolder.getRoot(), "places.idx");
+        index.save(file);
+
+        PlacePrefixIndex loaded = new PlacePrefixIndex(10, SCALE_METERS);
+        loaded.load(file);
+
+        assertEquals(2, loaded.size());
+        List<PlaceSuggestion> cafes = loaded.search("caf", NO_POSITION, NO_POSITION, 10);
+        assertEquals("b", cafes.get(0).id);
+        PlaceSuggestion flore = cafes.get(1);
+        assertEquals("Caf\u00e9 de Flore", flore.name);
+        assertEquals("172 Bd Saint-Germain", flore.address);
+        assertEquals(48.8541, flore.latitude, 0);
+        assertEquals(2.3326, flore.longitude, 0);
+        assertArrayEquals(new int[]{15, 34}, flore.types);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void load_mergesWithPlacesSelectedSince() throws Exception {
+        PlacePrefixIndex saved = new PlacePrefixIndex(10, SCALE_METERS);
+        recordTimes(saved, place("a", "Park One", NO_POSITION, NO_POSITION), 2);
+        saved.record(place("b", "Park Two", NO_POSITION, NO_POSITION));
+        File file = new File(mFolder.getRoot(), "places.idx");
+        saved.save(file);
+
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        index.record(place("b", "Park Two", NO_POSITION, NO_POSITION));
+        index.record(place("c", "Park Three", NO_POSITION, NO_POSITION));
+        index.load(file);
+
+        assertEquals(3, index.size());
+        List<PlaceSuggestion> parks = index.search("park", NO_POSITION, NO_POSITION, 10);
+        // b was selected twice in all; of a and b, the one selected since wins the tie
+        assertEquals("b", parks.get(0).id);
+        assertEquals("a", parks.get(1).id);
+        assertEquals("c", parks.get(2).id);
+    }
+
+    @Test
+    public void load_unknownFileFailsAndKeepsIndex() throws Exception {
+        File file = mFolder.newFile("places.idx");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(42);
+        out.close();
+        PlacePrefixIndex index = new PlacePrefixIndex(10, SCALE_METERS);
+        index.record(place("a", "Park", NO_POSITION, NO_POSITION));
+
+        try {
+            index.load(file);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Not a place index
+        }
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("park", NO_POSITION, NO_POSITION, 10).size());
+    }
+}
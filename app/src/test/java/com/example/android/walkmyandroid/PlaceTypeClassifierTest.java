@@ -0,0 +1,76 @@
+package com.example.android.walkmyandroid;
+
+import com.google.android.gms.location.places.Place;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the PlaceTypeClassifier, and for the place images it picks.
+ */
+public class PlaceTypeClassifierTest {
+
+    private static final int PLAIN = 0;
+    private static final int FOOD = 1;
+    private static final int SPORT = 2;
+    private static final int LEARNING = 3;
+
+    private final PlaceTypeClassifier mClassifier = new PlaceTypeClassifier.Builder(PLAIN)
+            .add(SPORT, 44)
+            .add(FOOD, 79, 15, 61)
+            .add(LEARNING, 82, 95)
+            .build();
+
+    @Test
+    public void bestRankedTypeWins_whateverTheOrder() {
+        assertEquals(SPORT, mClassifier.classify(new int[]{82, 44, 79}));
+        assertEquals(SPORT, mClassifier.classify(new int[]{79, 82, 44}));
+        assertEquals(FOOD, mClassifier.classify(new int[]{95, 15}));
+    }
+
+    @Test
+    public void unknownTypes_getDefault() {
+        assertEquals(PLAIN, mClassifier.classify(new int[0]));
+        assertEquals(PLAIN, mClassifier.classify(new int[]{0, 34, 1013, -1}));
+        assertEquals(LEARNING, mClassifier.classify(new int[]{1013, 95, 34}));
+        assertEquals(PlaceTypeClassifier.UNRANKED, mClassifier.getRank(1013));
+    }
+
+    @Test
+    public void addingTypeAgain_movesIt() {
+        PlaceTypeClassifier classifier = new PlaceTypeClassifier.Builder(PLAIN)
+                .add(FOOD, 15)
+                .add(SPORT, 44)
+                .add(LEARNING, 15)
+                .build();
+
+        assertEquals(SPORT, classifier.classify(new int[]{15, 44}));
+        assertEquals(LEARNING, classifier.classify(new int[]{15}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeType_fails() {
+        new PlaceTypeClassifier.Builder(PLAIN).add(FOOD, -1);
+    }
+
+    @Test
+    public void placeImages_preferSpecificPlaces() {
+        // A library on a campus, and a cafe in a gym
+        assertEquals(R.drawable.android_library, PlaceTypeDrawables.forTypes(
+                new int[]{Place.TYPE_UNIVERSITY, Place.TYPE_LIBRARY}));
+        assertEquals(R.drawable.android_gym, PlaceTypeDrawables.forTypes(
+                new int[]{Place.TYPE_CAFE, Place.TYPE_GYM}));
+        assertEquals(R.drawable.android_plain, PlaceTypeDrawables.forTypes(
+                new int[]{Place.TYPE_BANK}));
+    }
+
+    @Test
+    public void sampleSize_keepsImageAtLeastAsLargeAsView() {
+        assertEquals(1, PlaceImageLoader.sampleSize(1000, 800, 1000, 800));
+        assertEquals(1, PlaceImageLoader.sampleSize(1000, 800, 600, 500));
+        assertEquals(2, PlaceImageLoader.sampleSize(2000, 1600, 900, 700));
+        assertEquals(4, PlaceImageLoader.sampleSize(4000, 3000, 900, 700));
+        assertEquals(1, PlaceImageLoader.sampleSize(4000, 3000, 0, 0));
+    }
+}
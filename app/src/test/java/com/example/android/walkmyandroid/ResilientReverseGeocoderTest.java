@@ -0,0 +1,271 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the ResilientReverseGeocoder against a backend that injects latency and faults, on a
+ * fake clock.
+ */
+public class ResilientReverseGeocoderTest {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    private static final long OPEN_MILLIS = 30 * 1000;
+    private static final long SLOW_CALL_MILLIS = 5000;
+
+    private FakeClock mClock;
+    private FaultyBackend mBackend;
+    private CircuitBreaker mBreaker;
+    private final List<Long> mSleeps = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock();
+        mBackend = new FaultyBackend(mClock);
+        mBreaker = new CircuitBreaker(3, OPEN_MILLIS, mClock);
+    }
+
+    @Test
+    public void transientFailure_isRetriedWithBackoff() throws Exception {
+        mBackend.script(FaultyBackend.FAIL, FaultyBackend.FAIL, FaultyBackend.OK);
+
+        assertNotNull(geocoder(100, 2).getAddress(LAT, LNG));
+        assertEquals(3, mBackend.calls);
+        assertEquals(2, mSleeps.size());
+        // Full jitter stays under the doubling ceiling
+        assertTrue(mSleeps.get(0) < 250);
+        assertTrue(mSleeps.get(1) < 500);
+    }
+
+    @Test
+    public void backoff_isCappedAndJittered() throws Exception {
+        mBackend.script(FaultyBackend.FAIL, FaultyBackend.FAIL, FaultyBackend.FAIL,
+                FaultyBackend.FAIL, FaultyBackend.FAIL, FaultyBackend.FAIL);
+        CircuitBreaker lenient = new CircuitBreaker(100, OPEN_MILLIS, mClock);
+        ResilientReverseGeocoder geocoder = new ResilientReverseGeocoder(mBackend,
+                new TokenBucket(100, 100, mClock), lenient, 5, 250, 1000, SLOW_CALL_MILLIS,
+                mClock, sleeper(), new Random(1));
+
+        try {
+            geocoder.getAddress(LAT, LNG);
+            fail();
+        } catch (IOException expected) {
+            // All attempts failed
+        }
+        assertEquals(5, mSleeps.size());
+        long distinct = 0;
+        for (int i = 0; i < mSleeps.size(); i++) {
+            assertTrue(mSleeps.get(i) < 1000);
+            if (i > 0 && !mSleeps.get(i).equals(mSleeps.get(i - 1))) {
+                distinct++;
+            }
+        }
+        assertTrue(distinct > 0);
+    }
+
+    @Test
+    public void repeatedFailures_openCircuitAndStopCalls() throws Exception {
+        ResilientReverseGeocoder geocoder = geocoder(100, 0);
+        mBackend.failAlways = true;
+        for (int i = 0; i < 3; i++) {
+            assertFails(geocoder);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+
+        // While open, lookups fail without reaching the backend
+        for (int i = 0; i < 10; i++) {
+            assertFails(geocoder);
+        }
+        assertEquals(3, mBackend.calls);
+        assertEquals(10, geocoder.getRejectedCount());
+    }
+
+    @Test
+    public void openCircuit_closesAfterSuccessfulTrial() throws Exception {
+        ResilientReverseGeocoder geocoder = geocoder(100, 0);
+        mBackend.failAlways = true;
+        for (int i = 0; i < 3; i++) {
+            assertFails(geocoder);
+        }
+
+        mClock.now += OPEN_MILLIS;
+        mBackend.failAlways = false;
+        assertNotNull(geocoder.getAddress(LAT, LNG));
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    @Test
+    public void failedTrial_reopensCircuit() throws Exception {
+        ResilientReverseGeocoder geocoder = geocoder(100, 0);
+        mBackend.failAlways = true;
+        for (int i = 0; i < 3; i++) {
+            assertFails(geocoder);
+        }
+
+        mClock.now += OPEN_MILLIS;
+        assertFails(geocoder);
+        assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+        assertEquals(2, mBreaker.getOpenCount());
+        assertFails(geocoder);
+        assertEquals(4, mBackend.calls);
+    }
+
+    @Test
+    public void slowCalls_openCircuit() throws Exception {
+        ResilientReverseGeocoder geocoder = geocoder(100, 0);
+        mBackend.latencyMillis = SLOW_CALL_MILLIS + 1;
+        for (int i = 0; i < 3; i++) {
+            // Slow answers are still returned
+            assertNotNull(geocoder.getAddress(LAT, LNG));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, mBreaker.getState());
+    }
+
+    @Test
+    public void rateLimit_refusesBurstAndRefills() throws Exception {
+        ResilientReverseGeocoder geocoder = geocoder(2, 0);
+        geocoder.getAddress(LAT, LNG);
+        geocoder.getAddress(LAT, LNG);
+        assertFails(geocoder);
+        assertEquals(2, mBackend.calls);
+        // Refusals are not the backend's fault
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+
+        mClock.now += 1000;
+        assertNotNull(geocoder.getAddress(LAT, LNG));
+    }
+
+    @Test
+    public void reserve_isLeftToLookupsWithout() throws Exception {
+        TokenBucket budget = new TokenBucket(3, 1, mClock);
+        ResilientReverseGeocoder foreground = new ResilientReverseGeocoder(mBackend, budget,
+                mBreaker, 0, 250, 2000, SLOW_CALL_MILLIS, mClock, sleeper(), new Random(1));
+        ResilientReverseGeocoder background = new ResilientReverseGeocoder(mBackend, budget, 2,
+                mBreaker, 0, 250, 2000, SLOW_CALL_MILLIS, mClock, sleeper(), new Random(1));
+        assertNotNull(background.getAddress(LAT, LNG));
+        assertFails(background);
+        assertEquals(1, background.getRejectedCount());
+
+        // The reserve still answers the lookups on screen
+        assertNotNull(foreground.getAddress(LAT, LNG));
+        assertNotNull(foreground.getAddress(LAT, LNG));
+        assertFails(foreground);
+        assertEquals(3, mBackend.calls);
+    }
+
+    @Test
+    public void openCircuit_fallsBackToOffline() throws Exception {
+        ResilientReverseGeocoder network = geocoder(100, 0);
+        final GeoAddress offlineAddress = GeoAddress.ofLines("Offline");
+        FallbackReverseGeocoder fallback = new FallbackReverseGeocoder(network, false);
+        fallback.setOffline(new ReverseGeocoder() {
+            @Override
+            public GeoAddress getAddress(double latitude, double longitude) {
+                return offlineAddress;
+            }
+        });
+        mBackend.failAlways = true;
+        for (int i = 0; i < 10; i++) {
+            assertSame(offlineAddress, fallback.getAddress(LAT, LNG));
+        }
+        assertEquals(3, mBackend.calls);
+    }
+
+    @Test
+    public void badCoordinates_doNotTripBreaker() throws Exception {
+        ResilientReverseGeocoder geocoder = geocoder(100, 2);
+        mBackend.rejectCoordinates = true;
+        for (int i = 0; i < 5; i++) {
+            try {
+                geocoder.getAddress(LAT, LNG);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // Passed through without retries
+            }
+        }
+        assertEquals(5, mBackend.calls);
+        assertEquals(CircuitBreaker.State.CLOSED, mBreaker.getState());
+    }
+
+    private ResilientReverseGeocoder geocoder(int burst, int retries) {
+        return new ResilientReverseGeocoder(mBackend, new TokenBucket(burst, 1, mClock),
+                mBreaker, retries, 250, 2000, SLOW_CALL_MILLIS, mClock, sleeper(),
+                new Random(1));
+    }
+
+    private ResilientReverseGeocoder.Sleeper sleeper() {
+        return new ResilientReverseGeocoder.Sleeper() {
+            @Override
+            public void sleep(long millis) {
+                mSleeps.add(millis);
+                mClock.now += millis;
+            }
+        };
+    }
+
+    private static void assertFails(ReverseGeocoder geocoder) {
+        try {
+            geocoder.getAddress(LAT, LNG);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // The lookup failed
+        }
+    }
+
+    private static class FakeClock implements Clock {
+        long now = 1000000;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * A backend that takes a configurable time on the fake clock, and fails on demand.
+     */
+    private static class FaultyBackend implements ReverseGeocoder {
+        static final int OK = 0;
+        static final int FAIL = 1;
+
+        private final FakeClock mClock;
+        private final LinkedList<Integer> mScript = new LinkedList<>();
+        int calls;
+        long latencyMillis = 100;
+        boolean failAlways;
+        boolean rejectCoordinates;
+
+        FaultyBackend(FakeClock clock) {
+            mClock = clock;
+        }
+
+        void script(int... outcomes) {
+            for (int outcome : outcomes) {
+                mScript.add(outcome);
+            }
+        }
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            calls++;
+            mClock.now += latencyMillis;
+            if (rejectCoordinates) {
+                throw new IllegalArgumentException("Bad coordinates");
+            }
+            Integer outcome = mScript.poll();
+            if (failAlways || (outcome != null && outcome == FAIL)) {
+                throw new IOException("Injected fault");
+            }
+            return GeoAddress.ofLines("1600 Amphitheatre Pkwy");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that concurrent lookups through the SingleFlightReverseGeocoder share backend calls.
+ */
+public class SingleFlightReverseGeocoderTest {
+
+    private static final double CELL_SIZE_METERS = 25;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final int KEYS = 8;
+    private static final int THREADS_PER_KEY = 8;
+    private static final int ROUNDS = 50;
+
+    /**
+     * A backend that holds every call until it is released, and counts the calls per cell.
+     */
+    private static class BlockingGeocoder implements ReverseGeocoder {
+        final ConcurrentHashMap<Long, AtomicInteger> calls = new ConcurrentHashMap<>();
+        volatile CountDownLatch release = new CountDownLatch(1);
+        volatile IOException failure;
+
+        @Override
+        public GeoAddress getAddress(double latitude, double longitude) throws IOException {
+            long key = GridCells.cellKey(latitude, longitude, CELL_SIZE_METERS);
+            calls.putIfAbsent(key, new AtomicInteger());
+            calls.get(key).incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return GeoAddress.ofLines("Cell " + key);
+        }
+    }
+
+    @Test
+    public void contendedLookups_makeOneCallPerKey() throws Exception {
+        final BlockingGeocoder backend = new BlockingGeocoder();
+        final SingleFlightReverseGeocoder geocoder =
+                new SingleFlightReverseGeocoder(backend, CELL_SIZE_METERS);
+        final int threads = KEYS * THREADS_PER_KEY;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            backend.calls.clear();
+            backend.release = new CountDownLatch(1);
+            final CyclicBarrier start = new CyclicBarrier(threads);
+            final List<String> results = new ArrayList<>();
+            final AtomicInteger errors = new AtomicInteger();
+            long lookupsBefore = geocoder.getCallCount() + geocoder.getSharedCount();
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int key = i % KEYS;
+                // Spread the lookups of a key over its cell, a few meters apart
+                final double jitter = (i / KEYS) / METERS_PER_DEGREE;
+                Thread worker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            GeoAddress address = geocoder.getAddress(cellCenter(key) + jitter,
+                                    cellCenter(key));
+                            synchronized (results) {
+                                results.add(address.format());
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+
+            // Hold the backend until every lookup has started or attached to one
+            long deadline = System.currentTimeMillis() + 10000;
+            while (geocoder.getCallCount() + geocoder.getSharedCount() - lookupsBefore < threads
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            backend.release.countDown();
+            for (Thread worker : workers) {
+                worker.join(10000);
+            }
+
+            assertEquals(0, errors.get());
+            assertEquals(threads, results.size());
+            assertEquals(KEYS, backend.calls.size());
+            for (AtomicInteger calls : backend.calls.values()) {
+                assertEquals(1, calls.get());
+            }
+        }
+        assertEquals(ROUNDS * KEYS, geocoder.getCallCount());
+        assertEquals(ROUNDS * KEYS * (THREADS_PER_KEY - 1), geocoder.getSharedCount());
+    }
+
+    @Test
+    public void failure_isSharedWithWaiters() throws Exception {
+        final BlockingGeocoder backend = new BlockingGeocoder();
+        backend.failure = new IOException("Backend down");
+        final SingleFlightReverseGeocoder geocoder =
+                new SingleFlightReverseGeocoder(backend, CELL_SIZE_METERS);
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        geocoder.getAddress(cellCenter(0), cellCenter(0));
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        while (geocoder.getCallCount() + geocoder.getSharedCount() < 4) {
+            Thread.sleep(1);
+        }
+        backend.release.countDown();
+        for (Thread worker : workers) {
+            worker.join(10000);
+        }
+
+        assertEquals(4, failures.get());
+        assertEquals(1, backend.calls.values().iterator().next().get());
+    }
+
+    @Test
+    public void sequentialLookups_eachCallBackend() throws Exception {
+        BlockingGeocoder backend = new BlockingGeocoder();
+        backend.release.countDown();
+        SingleFlightReverseGeocoder geocoder =
+                new SingleFlightReverseGeocoder(backend, CELL_SIZE_METERS);
+
+        geocoder.getAddress(cellCenter(0), cellCenter(0));
+        geocoder.getAddress(cellCenter(0), cellCenter(0));
+
+        assertEquals(2, backend.calls.values().iterator().next().get());
+        assertEquals(0, geocoder.getSharedCount());
+    }
+
+    private static double cellCenter(int key) {
+        // Cells 100 m apart, with the lookups well inside them
+        return 10 + (key * 100 + 5) / METERS_PER_DEGREE;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the StartupTrace.
+ */
+public class StartupTraceTest {
+
+    private static final long MILLIS = 1000000;
+
+    @Test
+    public void mark_recordsTimeSinceStart() {
+        StartupTrace trace = new StartupTrace(5 * MILLIS);
+
+        assertEquals(120 * MILLIS, trace.mark(StartupTrace.Milestone.FIRST_FRAME, 125 * MILLIS));
+        assertEquals(120 * MILLIS, trace.getElapsedNanos(StartupTrace.Milestone.FIRST_FRAME));
+        assertTrue(trace.isReached(StartupTrace.Milestone.FIRST_FRAME));
+    }
+
+    @Test
+    public void mark_onlyKeepsFirstTime() {
+        StartupTrace trace = new StartupTrace(0);
+        trace.mark(StartupTrace.Milestone.FIRST_ADDRESS, 40 * MILLIS);
+
+        assertEquals(StartupTrace.NOT_REACHED,
+                trace.mark(StartupTrace.Milestone.FIRST_ADDRESS, 900 * MILLIS));
+        assertEquals(40 * MILLIS, trace.getElapsedNanos(StartupTrace.Milestone.FIRST_ADDRESS));
+    }
+
+    @Test
+    public void unreachedMilestones_areLeftOut() {
+        StartupTrace trace = new StartupTrace(0);
+        trace.mark(StartupTrace.Milestone.FIRST_FRAME, 120 * MILLIS);
+        trace.mark(StartupTrace.Milestone.FIRST_LIVE_ADDRESS, 2500 * MILLIS);
+
+        assertFalse(trace.isReached(StartupTrace.Milestone.DEFERRED_INIT));
+        assertEquals(StartupTrace.NOT_REACHED,
+                trace.getElapsedNanos(StartupTrace.Milestone.DEFERRED_INIT));
+        assertEquals("Startup: FIRST_FRAME=120ms FIRST_LIVE_ADDRESS=2500ms", trace.toString());
+    }
+}
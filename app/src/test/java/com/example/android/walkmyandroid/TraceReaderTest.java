@@ -0,0 +1,86 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the TraceReader.
+ */
+public class TraceReaderTest {
+
+    private static final long JUNE_1_2017_UTC = 1496275200000L;
+
+    private static InputStream stream(String text) throws IOException {
+        return new ByteArrayInputStream(text.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void readGpx_readsTrackPointsInOrder() throws IOException {
+        List<LocationFix> fixes = TraceReader.readGpx(stream(
+                "<?xml version=\"1.0\"?>\n"
+                        + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">"
+                        + "<trk><trkseg>"
+                        + "<trkpt lat=\"37.422\" lon=\"-122.084\"><ele>10</ele>"
+                        + "<time>2017-06-01T00:00:00Z</time></trkpt>"
+                        + "<trkpt lat=\"37.423\" lon=\"-122.085\">"
+                        + "<time>2017-06-01T00:00:05.250Z</time></trkpt>"
+                        + "</trkseg></trk></gpx>"));
+
+        assertEquals(2, fixes.size());
+        assertEquals(37.422, fixes.get(0).latitude, 0);
+        assertEquals(-122.084, fixes.get(0).longitude, 0);
+        assertEquals(JUNE_1_2017_UTC, fixes.get(0).timeMillis);
+        assertEquals(JUNE_1_2017_UTC + 5250, fixes.get(1).timeMillis);
+        assertFalse(fixes.get(1).hasAccuracy());
+    }
+
+    @Test(expected = IOException.class)
+    public void readGpx_rejectsPointWithoutTime() throws IOException {
+        TraceReader.readGpx(stream("<gpx><trk><trkseg><trkpt lat=\"1\" lon=\"2\"/>"
+                + "</trkseg></trk></gpx>"));
+    }
+
+    @Test(expected = IOException.class)
+    public void readGpx_rejectsMalformedXml() throws IOException {
+        TraceReader.readGpx(stream("<gpx><trk>"));
+    }
+
+    @Test
+    public void parseGpxTime_appliesOffset() throws IOException {
+        assertEquals(JUNE_1_2017_UTC, TraceReader.parseGpxTime("2017-06-01T02:00:00+02:00"));
+        assertEquals(JUNE_1_2017_UTC, TraceReader.parseGpxTime("2017-05-31T19:30:00-0430"));
+        assertEquals(JUNE_1_2017_UTC, TraceReader.parseGpxTime("2017-06-01T00:00:00"));
+        assertEquals(JUNE_1_2017_UTC + 120,
+                TraceReader.parseGpxTime("2017-06-01T00:00:00.1209Z"));
+    }
+
+    @Test
+    public void readCsv_readsOptionalColumns() throws IOException {
+        List<LocationFix> fixes = TraceReader.readCsv(stream(
+                "# time,lat,lng,accuracy,speed\n"
+                        + "1000,37.422,-122.084\n"
+                        + "\n"
+                        + "2000,37.423,-122.085,12.5\n"
+                        + "3000, 37.424, -122.086, , 1.5\n"));
+
+        assertEquals(3, fixes.size());
+        assertEquals(1000, fixes.get(0).timeMillis);
+        assertFalse(fixes.get(0).hasAccuracy());
+        assertEquals(12.5f, fixes.get(1).accuracyMeters, 0);
+        assertFalse(fixes.get(1).hasSpeed());
+        assertFalse(fixes.get(2).hasAccuracy());
+        assertEquals(1.5f, fixes.get(2).speedMetersPerSecond, 0);
+        assertEquals(37.424, fixes.get(2).latitude, 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void readCsv_rejectsMalformedLine() throws IOException {
+        TraceReader.readCsv(stream("1000,37.422,-122.084\n2000,north,-122.085\n"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the TraceReplayer.
+ */
+public class TraceReplayerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final LocationSchedule EVERY_FIX =
+            new LocationSchedule(1000, 1000, LocationSchedule.Accuracy.HIGH_ACCURACY);
+
+    /**
+     * @return One fix a second, for the given number of seconds.
+     */
+    private static List<LocationFix> trace(int seconds) {
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int i = 0; i < seconds; i++) {
+            fixes.add(new LocationFix(37.422 + i * 0.0001, -122.084, 50000 + i * 1000L,
+                    5, 1.4f));
+        }
+        return fixes;
+    }
+
+    /**
+     * Collects what the replayer delivers.
+     */
+    private static class RecordingListener implements LocationSource.Listener {
+        final List<LocationFix> fixes = Collections.synchronizedList(
+                new ArrayList<LocationFix>());
+        final List<Integer> batchSizes = Collections.synchronizedList(
+                new ArrayList<Integer>());
+
+        @Override
+        public void onFix(LocationFix fix) {
+            fixes.add(fix);
+        }
+
+        @Override
+        public void onFixes(List<LocationFix> batch) {
+            batchSizes.add(batch.size());
+            fixes.addAll(batch);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsSpeedAboveMaximum() {
+        new TraceReplayer(trace(2), TraceReplayer.MAX_SPEED + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsSpeedBelowRealTime() {
+        new TraceReplayer(trace(2), 0.5);
+    }
+
+    @Test
+    public void replay_deliversEveryFixInOrder() throws InterruptedException {
+        List<LocationFix> trace = trace(20);
+        TraceReplayer replayer = new TraceReplayer(trace, TraceReplayer.MAX_SPEED);
+        RecordingListener listener = new RecordingListener();
+
+        replayer.requestUpdates(EVERY_FIX, false, listener);
+
+        assertTrue(replayer.awaitEnd(TIMEOUT_MILLIS));
+        assertEquals(trace, listener.fixes);
+        assertTrue(listener.batchSizes.isEmpty());
+        assertEquals(20, replayer.getDeliveredCount());
+    }
+
+    @Test
+    public void replay_skipsFixesWithinTheInterval() throws InterruptedException {
+        TraceReplayer replayer = new TraceReplayer(trace(20), TraceReplayer.MAX_SPEED);
+        RecordingListener listener = new RecordingListener();
+
+        replayer.requestUpdates(new LocationSchedule(5000, 2000,
+                LocationSchedule.Accuracy.BALANCED_POWER), false, listener);
+
+        assertTrue(replayer.awaitEnd(TIMEOUT_MILLIS));
+        assertEquals(4, listener.fixes.size());
+        assertEquals(55000, listener.fixes.get(1).timeMillis);
+        assertEquals(16, replayer.getSkippedCount());
+    }
+
+    @Test
+    public void replay_batchesFixesOverSeveralIntervals() throws InterruptedException {
+        TraceReplayer replayer = new TraceReplayer(trace(15), TraceReplayer.MAX_SPEED);
+        RecordingListener listener = new RecordingListener();
+
+        replayer.requestUpdates(EVERY_FIX, true, listener);
+
+        assertTrue(replayer.awaitEnd(TIMEOUT_MILLIS));
+        // A batch closes once BATCH_INTERVALS intervals passed since its first fix; the rest
+        // is delivered at the end
+        assertEquals(LocationSource.BATCH_INTERVALS + 1, (int) listener.batchSizes.get(0));
+        assertEquals(15, listener.fixes.size());
+        assertEquals(3, listener.batchSizes.size());
+    }
+
+    @Test
+    public void removeUpdates_stopsTheReplay() throws InterruptedException {
+        TraceReplayer replayer = new TraceReplayer(trace(3600), TraceReplayer.MIN_SPEED);
+        RecordingListener listener = new RecordingListener();
+
+        replayer.requestUpdates(EVERY_FIX, false, listener);
+        replayer.removeUpdates();
+
+        assertTrue(replayer.awaitEnd(TIMEOUT_MILLIS));
+        assertTrue(listener.fixes.size() <= 1);
+    }
+
+    @Test
+    public void clock_followsTraceTime() throws InterruptedException {
+        TraceReplayer replayer = new TraceReplayer(trace(20), TraceReplayer.MAX_SPEED);
+        Clock clock = replayer.getClock();
+
+        assertEquals(50000, clock.currentTimeMillis());
+        replayer.requestUpdates(EVERY_FIX, false, new RecordingListener());
+        assertTrue(replayer.awaitEnd(TIMEOUT_MILLIS));
+        assertEquals(69000, clock.currentTimeMillis());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips tracks through the TrackFormat encoding and the TripRecorder.
+ */
+public class TrackFormatTest {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_keepsFixes() throws Exception {
+        List<LocationFix> walk = walk(1000, 0);
+        List<LocationFix> read = decode(encode(walk), Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(walk.size(), read.size());
+        for (int i = 0; i < walk.size(); i++) {
+            LocationFix expected = walk.get(i);
+            LocationFix actual = read.get(i);
+            assertEquals(expected.timeMillis, actual.timeMillis);
+            assertEquals(expected.latitude, actual.latitude, 1e-7);
+            assertEquals(expected.longitude, actual.longitude, 1e-7);
+            assertEquals(expected.accuracyMeters, actual.accuracyMeters, 0.05);
+        }
+    }
+
+    @Test
+    public void unknownAccuracy_staysUnknown() throws Exception {
+        List<LocationFix> fixes = new ArrayList<>();
+        fixes.add(new LocationFix(-33.8568, 151.2153, 5000, LocationFix.UNKNOWN,
+                LocationFix.UNKNOWN));
+        LocationFix read = decode(encode(fixes), 0, Long.MAX_VALUE).get(0);
+
+        assertFalse(read.hasAccuracy());
+        assertEquals(151.2153, read.longitude, 1e-7);
+    }
+
+    @Test
+    public void hourLongWalk_takesKilobytes() throws Exception {
+        byte[] encoded = encode(walk(3600, 0));
+
+        assertTrue("Encoded to " + encoded.length + " bytes", encoded.length < 32 * 1024);
+    }
+
+    @Test
+    public void rangeScan_returnsOnlyFixesInRange() throws Exception {
+        List<LocationFix> read = decode(encode(walk(3600, 0)), 600000, 1199000);
+
+        assertEquals(600, read.size());
+        assertEquals(600000, read.get(0).timeMillis);
+        assertEquals(1199000, read.get(read.size() - 1).timeMillis);
+    }
+
+    @Test
+    public void tornBlock_endsSegment() throws Exception {
+        byte[] encoded = encode(walk(300, 0));
+        byte[] torn = new byte[encoded.length - 10];
+        System.arraycopy(encoded, 0, torn, 0, torn.length);
+
+        // The first block is whole, the second one was cut short
+        assertEquals(TrackFormat.BLOCK_SIZE, decode(torn, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void recorder_writesSegmentsInTheBackground() throws Exception {
+        File dir = mFolder.newFolder("tracks");
+        TripRecorder recorder = new TripRecorder(dir, 4096);
+        List<LocationFix> walk = walk(1000, 1000000);
+        for (LocationFix fix : walk) {
+            assertTrue(recorder.record(fix));
+        }
+        recorder.flush();
+
+        List<LocationFix> read = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (read.size() < walk.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            read = recorder.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        assertEquals(walk.size(), read.size());
+        assertEquals(0, recorder.getDroppedCount());
+        assertTrue(dir.list().length > 1);
+        assertEquals(100, recorder.scan(1500000, 1599000).size());
+    }
+
+    @Test
+    public void recorder_flushesWithinDelayWhileFixesKeepArriving() throws Exception {
+        File dir = mFolder.newFolder("tracks");
+        TripRecorder recorder = new TripRecorder(dir, 1 << 20, 100);
+        List<LocationFix> walk = walk(TrackFormat.BLOCK_SIZE - 1, 1000000);
+        // A fix every 10 ms, so the writer is never idle, and the block never fills up
+        List<LocationFix> read = new ArrayList<>();
+        for (int i = 0; i < walk.size() && read.isEmpty(); i++) {
+            assertTrue(recorder.record(walk.get(i)));
+            Thread.sleep(10);
+            read = recorder.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        assertFalse(read.isEmpty());
+        assertEquals(walk.get(0).timeMillis, read.get(0).timeMillis);
+    }
+
+    /**
+     * One fix per second, walking north-east with some jitter.
+     */
+    private static List<LocationFix> walk(int count, long startMillis) {
+        List<LocationFix> fixes = new ArrayList<>();
+        java.util.Random random = new java.util.Random(5);
+        for (int i = 0; i < count; i++) {
+            double meters = i * 1.4;
+            fixes.add(new LocationFix(
+                    37.4220 + (meters + random.nextGaussian()) / METERS_PER_DEGREE,
+                    -122.0841 + (meters + random.nextGaussian()) / METERS_PER_DEGREE,
+                    startMillis + i * 1000L, 3 + random.nextInt(20) / 10f,
+                    LocationFix.UNKNOWN));
+        }
+        return fixes;
+    }
+
+    private static byte[] encode(List<LocationFix> fixes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        TrackFormat.writeFileHeader(out);
+        TrackFormat.Block block = new TrackFormat.Block();
+        TrackFormat.Buffer buffer = new TrackFormat.Buffer();
+        for (LocationFix fix : fixes) {
+            block.add(fix);
+            if (block.isFull()) {
+                TrackFormat.writeBlock(out, block, buffer);
+                block.clear();
+            }
+        }
+        if (block.count > 0) {
+            TrackFormat.writeBlock(out, block, buffer);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<LocationFix> decode(byte[] bytes, long from, long to)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        TrackFormat.readFileHeader(in);
+        List<LocationFix> fixes = new ArrayList<>();
+        TrackFormat.readBlocks(in, from, to, fixes);
+        return fixes;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.android.walkmyandroid;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic paths through the TrackSimplifier.
+ */
+public class TrackSimplifierTest {
+
+    private static final double START_LAT = 37.4220;
+    private static final double START_LNG = -122.0841;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final double TOLERANCE_METERS = 5;
+
+    private TrackSimplifier mSimplifier;
+
+    @Before
+    public void setUp() {
+        mSimplifier = new TrackSimplifier(TOLERANCE_METERS, 256);
+    }
+
+    @Test
+    public void straightLine_keepsEndpoints() {
+        List<LocationFix> path = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            path.add(fix(i, 0, i));
+        }
+        List<LocationFix> keyPoints = simplify(path);
+
+        assertEquals(2, keyPoints.size());
+        assertSame(path.get(0), keyPoints.get(0));
+        assertSame(path.get(199), keyPoints.get(1));
+    }
+
+    @Test
+    public void rightAngle_keepsCorner() {
+        List<LocationFix> path = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            path.add(fix(i, 0, i));
+        }
+        for (int i = 1; i <= 100; i++) {
+            path.add(fix(100, i, 100 + i));
+        }
+        List<LocationFix> keyPoints = simplify(path);
+
+        assertEquals(3, keyPoints.size());
+        // The corner may be cut by up to the tolerance on either leg
+        assertEquals(100, north(keyPoints.get(1)), 2 * TOLERANCE_METERS);
+        assertEquals(0, east(keyPoints.get(1)), 2 * TOLERANCE_METERS);
+    }
+
+    @Test
+    public void jitteryWalk_staysWithinTolerance() {
+        Random random = new Random(3);
+        List<LocationFix> path = new ArrayList<>();
+        double heading = 0;
+        double north = 0;
+        double east = 0;
+        for (int i = 0; i < 3600; i++) {
+            if (i % 300 == 0) {
+                heading = random.nextDouble() * 2 * Math.PI;
+            }
+            north += Math.cos(heading) * 1.4 + random.nextGaussian() * 0.5;
+            east += Math.sin(heading) * 1.4 + random.nextGaussian() * 0.5;
+            path.add(fix(north, east, i));
+        }
+        List<LocationFix> keyPoints = simplify(path);
+
+        assertTrue("Kept " + keyPoints.size(), keyPoints.size() < path.size() / 10);
+        int segment = 0;
+        for (LocationFix fix : path) {
+            while (keyPoints.get(segment + 1).timeMillis < fix.timeMillis) {
+                segment++;
+            }
+            double distance = distanceToSegment(fix, keyPoints.get(segment),
+                    keyPoints.get(segment + 1));
+            assertTrue(fix + " is " + distance + "m off", distance <= TOLERANCE_METERS + 0.01);
+        }
+    }
+
+    @Test
+    public void fullWindow_emitsKeyPoint() {
+        TrackSimplifier simplifier = new TrackSimplifier(TOLERANCE_METERS, 10);
+        int keyPoints = 0;
+        for (int i = 0; i < 100; i++) {
+            if (simplifier.onFix(fix(i, 0, i)) != null) {
+                keyPoints++;
+            }
+        }
+        assertTrue(keyPoints >= 100 / 11);
+    }
+
+    @Test
+    public void flush_startsNewPath() {
+        mSimplifier.onFix(fix(0, 0, 0));
+        mSimplifier.onFix(fix(10, 0, 1));
+        assertEquals(10, north(mSimplifier.flush()), 1e-6);
+        assertNull(mSimplifier.flush());
+
+        LocationFix start = fix(50, 50, 2);
+        assertSame(start, mSimplifier.onFix(start));
+    }
+
+    private List<LocationFix> simplify(List<LocationFix> path) {
+        List<LocationFix> keyPoints = new ArrayList<>();
+        for (LocationFix fix : path) {
+            LocationFix keyPoint = mSimplifier.onFix(fix);
+            if (keyPoint != null) {
+                keyPoints.add(keyPoint);
+            }
+        }
+        LocationFix last = mSimplifier.flush();
+        if (last != null) {
+            keyPoints.add(last);
+        }
+        return keyPoints;
+    }
+
+    private static LocationFix fix(double northMeters, double eastMeters, long second) {
+        return new LocationFix(START_LAT + northMeters / METERS_PER_DEGREE,
+                START_LNG + eastMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LAT))),
+                second * 1000, 5, LocationFix.UNKNOWN);
+    }
+
+    private static double north(LocationFix fix) {
+        return (fix.latitude - START_LAT) * METERS_PER_DEGREE;
+    }
+
+    private static double east(LocationFix fix) {
+        return (fix.longitude - START_LNG) * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(START_LAT));
+    }
+
+    private static double distanceToSegment(LocationFix fix, LocationFix start,
+            LocationFix end) {
+        double x = east(fix) - east(start);
+        double y = north(fix) - north(start);
+        double endX = east(end) - east(start);
+        double endY = north(end) - north(start);
+        double lengthSquared = endX * endX + endY * endY;
+        double t = lengthSquared == 0 ? 0 : (x * endX + y * endY) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(x - t * endX, y - t * endY);
+    }
+}
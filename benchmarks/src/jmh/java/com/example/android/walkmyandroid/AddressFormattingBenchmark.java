@@ -0,0 +1,63 @@
+package com.example.android.walkmyandroid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joining the address lines of a geocoder result, as every successful lookup does.
+ */
+@State(Scope.Thread)
+public class AddressFormattingBenchmark {
+
+    private static final String[] LINES = {
+            "1600 Amphitheatre Pkwy", "Mountain View, CA 94043", "USA", "Building 40"
+    };
+
+    @Param({"1", "3"})
+    public int lineCount;
+
+    private List<String> mLines;
+
+    @Setup
+    public void setUp() {
+        mLines = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            mLines.add(LINES[i]);
+        }
+    }
+
+    @Benchmark
+    public String join() {
+        return AddressFormatter.join(mLines);
+    }
+
+    /**
+     * The lines as the service collects them: a fresh list per result, then joined.
+     */
+    @Benchmark
+    public String collectAndJoin() {
+        ArrayList<String> addressFragments = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            addressFragments.add(LINES[i]);
+        }
+        return AddressFormatter.join(addressFragments);
+    }
+
+    /**
+     * A repeat address as the service now builds it: interned, so only formatted the first time.
+     */
+    @Benchmark
+    public String buildInternedAndFormat() {
+        GeoAddress.Builder builder = new GeoAddress.Builder();
+        for (int i = 0; i < lineCount; i++) {
+            builder.addLine(LINES[i]);
+        }
+        return builder.build().format();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.walkmyandroid;
+
+import com.google.android.gms.location.places.Place;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the Places API, which takes a fixed time per detection and finds one
+ * made up place in the cell of the coordinates.
+ */
+class FakePlacesProvider implements PlacesProvider {
+
+    private static final int[] TYPES = {Place.TYPE_CAFE};
+
+    private final long mLatencyMillis;
+    private final double mCellSizeMeters;
+    private final AtomicLong mCallCount = new AtomicLong();
+
+    /**
+     * @param latencyMillis  How long each detection takes, in wall clock time.
+     * @param cellSizeMeters The size of the cells that share a place.
+     */
+    FakePlacesProvider(long latencyMillis, double cellSizeMeters) {
+        mLatencyMillis = latencyMillis;
+        mCellSizeMeters = cellSizeMeters;
+    }
+
+    @Override
+    public Detection detectPlaces(double latitude, double longitude) {
+        long start = System.nanoTime();
+        mCallCount.incrementAndGet();
+        if (mLatencyMillis > 0) {
+            try {
+                Thread.sleep(mLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        String id = Long.toHexString(GridCells.cellKey(latitude, longitude, mCellSizeMeters));
+        PlaceCandidates candidates = new PlaceCandidates.Builder(1)
+                .add(id, "Place " + id, TYPES, 1f)
+                .build();
+        LatencyMetrics.recordSince(LatencyMetrics.Stage.PLACE_DETECTION, start);
+        return new Detection(candidates, null);
+    }
+
+    long getCallCount() {
+        return mCallCount.get();
+    }
+}
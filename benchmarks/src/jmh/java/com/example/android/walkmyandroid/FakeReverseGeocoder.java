@@ -0,0 +1,49 @@
+package com.example.android.walkmyandroid;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the network geocoder, which takes a fixed time per call and answers
+ * with a made up address for the cell of the coordinates. The time is on the clock of the
+ * replayed trace, so that the geocoder's timeouts see the latency they would on a device.
+ */
+class FakeReverseGeocoder implements ReverseGeocoder {
+
+    private final long mLatencyNanos;
+    private final double mCellSizeMeters;
+    private final AtomicLong mCallCount = new AtomicLong();
+
+    /**
+     * @param latencyMillis  How long each call takes, on the clock of the trace.
+     * @param speed          How many times faster than recorded the trace is replayed.
+     * @param cellSizeMeters The size of the cells that share an address.
+     */
+    FakeReverseGeocoder(long latencyMillis, double speed, double cellSizeMeters) {
+        mLatencyNanos = (long) (latencyMillis * 1e6 / speed);
+        mCellSizeMeters = cellSizeMeters;
+    }
+
+    @Override
+    public GeoAddress getAddress(double latitude, double longitude)
+            throws InterruptedIOException {
+        long start = System.nanoTime();
+        mCallCount.incrementAndGet();
+        if (mLatencyNanos > 0) {
+            try {
+                Thread.sleep(mLatencyNanos / 1000000, (int) (mLatencyNanos % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while geocoding");
+            }
+        }
+        long cell = GridCells.cellKey(latitude, longitude, mCellSizeMeters);
+        GeoAddress address = GeoAddress.ofLines("Cell " + Long.toHexString(cell), "Replay");
+        LatencyMetrics.recordSince(LatencyMetrics.Stage.GEOCODE, start);
+        return address;
+    }
+
+    long getCallCount() {
+        return mCallCount.get();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.walkmyandroid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * The caching layers in front of the geocoder and the Places API.
+ */
+@State(Scope.Thread)
+public class GeocodeCacheBenchmark {
+
+    private static final double LAT = 37.4220;
+    private static final double LNG = -122.0841;
+    private static final GeoAddress ADDRESS = GeoAddress.ofLines("1600 Amphitheatre Pkwy");
+
+    private AddressCache mAddressCache;
+    private CachingReverseGeocoder mGeocoder;
+    private PlaceCache mPlaceCache;
+    private MovementGate mMovementGate;
+    private double mMissLatitude = LAT;
+
+    @Setup
+    public void setUp() throws IOException {
+        mAddressCache = new AddressCache(25, Long.MAX_VALUE / 2, 256, Clock.SYSTEM);
+        mGeocoder = new CachingReverseGeocoder(new ReverseGeocoder() {
+            @Override
+            public GeoAddress getAddress(double latitude, double longitude) {
+                return ADDRESS;
+            }
+        }, mAddressCache);
+        mGeocoder.getAddress(LAT, LNG);
+
+        mPlaceCache = new PlaceCache(30, 3 * 60 * 60 * 1000, Long.MAX_VALUE / 2, 128,
+                PlaceCache.EvictionPolicy.LEAST_RECENTLY_USED, Clock.SYSTEM);
+        mPlaceCache.put(LAT, LNG, new PlaceCandidates.Builder(5)
+                .add("ChIJ", "Googleplex", new int[]{34, 1013}, 0.9f).build());
+
+        mMovementGate = new MovementGate(20, Long.MAX_VALUE / 2);
+        mMovementGate.shouldLookup(LAT, LNG, 0);
+    }
+
+    @Benchmark
+    public long cellKey() {
+        return GridCells.cellKey(LAT, LNG, 25);
+    }
+
+    @Benchmark
+    public GeoAddress addressCacheHit() throws IOException {
+        return mGeocoder.getAddress(LAT, LNG);
+    }
+
+    /**
+     * A lookup in a new cell every time, which goes to the (instant) backend and evicts.
+     */
+    @Benchmark
+    public GeoAddress addressCacheMiss() throws IOException {
+        mMissLatitude += 0.001;
+        if (mMissLatitude > 80) {
+            mMissLatitude = LAT;
+        }
+        return mGeocoder.getAddress(mMissLatitude, LNG);
+    }
+
+    @Benchmark
+    public PlaceCandidates placeCacheHit() {
+        return mPlaceCache.get(LAT, LNG);
+    }
+
+    @Benchmark
+    public boolean movementGateSuppressed() {
+        return mMovementGate.shouldLookup(LAT + 0.00001, LNG, 1000);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.android.walkmyandroid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the offline geocoder's spatial index, and looking up the nearest address in it.
+ */
+@State(Scope.Thread)
+public class KdTreeBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "500000"})
+    public int points;
+
+    private double[] mLatitudes;
+    private double[] mLongitudes;
+    private double[] mQueryLatitudes;
+    private double[] mQueryLongitudes;
+    private KdTree mTree;
+    private int mQuery;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        mLatitudes = new double[points];
+        mLongitudes = new double[points];
+        for (int i = 0; i < points; i++) {
+            mLatitudes[i] = 37.7 + random.nextDouble() * 0.2;
+            mLongitudes[i] = -122.5 + random.nextDouble() * 0.2;
+        }
+        mQueryLatitudes = new double[QUERIES];
+        mQueryLongitudes = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            mQueryLatitudes[i] = 37.7 + random.nextDouble() * 0.2;
+            mQueryLongitudes[i] = -122.5 + random.nextDouble() * 0.2;
+        }
+        mTree = KdTree.build(mLatitudes, mLongitudes);
+    }
+
+    @Benchmark
+    public int nearest() {
+        int query = mQuery++ & (QUERIES - 1);
+        return mTree.nearest(mQueryLatitudes[query], mQueryLongitudes[query]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public KdTree build() {
+        return KdTree.build(mLatitudes, mLongitudes);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.walkmyandroid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Answering a keystroke of the search bar from the places selected before.
+ */
+@State(Scope.Thread)
+public class PlaceAutocompleteBenchmark {
+
+    private static final int QUERIES = 1024;
+    private static final String[] WORDS = {"cafe", "park", "market", "station", "museum",
+            "library", "garden", "bakery", "bridge", "square", "hall", "street", "pier",
+            "theater", "school", "church"};
+
+    @Param({"50", "200"})
+    public int places;
+
+    private PlacePrefixIndex mIndex;
+    private String[] mQueries;
+    private double[] mQueryLatitudes;
+    private double[] mQueryLongitudes;
+    private int mQuery;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(23);
+        mIndex = new PlacePrefixIndex(places, 2000);
+        for (int i = 0; i < places; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            PlaceSuggestion place = new PlaceSuggestion("place" + i, name, "",
+                    37.7 + random.nextDouble() * 0.2, -122.5 + random.nextDouble() * 0.2,
+                    new int[0]);
+            // A few favourites and a long tail, like real selections
+            int selections = 1 + (int) (10 * random.nextDouble() * random.nextDouble());
+            for (int s = 0; s < selections; s++) {
+                mIndex.record(place);
+            }
+        }
+        mQueries = new String[QUERIES];
+        mQueryLatitudes = new double[QUERIES];
+        mQueryLongitudes = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            // Each keystroke of a word, sometimes followed by the start of a second one
+            String query = word.substring(0, 1 + random.nextInt(word.length()));
+            if (random.nextInt(4) == 0) {
+                query += " " + WORDS[random.nextInt(WORDS.length)].substring(0, 2);
+            }
+            mQueries[i] = query;
+            mQueryLatitudes[i] = 37.7 + random.nextDouble() * 0.2;
+            mQueryLongitudes[i] = -122.5 + random.nextDouble() * 0.2;
+        }
+    }
+
+    @Benchmark
+    public List<PlaceSuggestion> search() {
+        int query = mQuery++ & (QUERIES - 1);
+        return mIndex.search(mQueries[query], mQueryLatitudes[query], mQueryLongitudes[query],
+                5);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.walkmyandroid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Picking places out of a likelihood buffer, and mapping their types to an image.
+ */
+@State(Scope.Thread)
+public class PlaceSelectionBenchmark {
+
+    private static final int[] TYPE_POOL = {
+            1, 9, 15, 34, 44, 55, 69, 79, 82, 88, 1013
+    };
+
+    @Param({"5", "20"})
+    public int bufferSize;
+
+    private String[] mIds;
+    private String[] mNames;
+    private int[][] mTypes;
+    private float[] mLikelihoods;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        mIds = new String[bufferSize];
+        mNames = new String[bufferSize];
+        mTypes = new int[bufferSize][];
+        mLikelihoods = new float[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            mIds[i] = "ChIJ" + i;
+            mNames[i] = "Place " + i;
+            mTypes[i] = new int[1 + random.nextInt(4)];
+            for (int t = 0; t < mTypes[i].length; t++) {
+                mTypes[i][t] = TYPE_POOL[random.nextInt(TYPE_POOL.length)];
+            }
+            mLikelihoods[i] = random.nextFloat();
+        }
+    }
+
+    /**
+     * The scan of the original AddressResultReceiver, which only keeps the most likely place.
+     */
+    @Benchmark
+    public int maxLikelihoodScan() {
+        float maxLikelihood = 0;
+        int current = -1;
+        for (int i = 0; i < bufferSize; i++) {
+            if (maxLikelihood < mLikelihoods[i]) {
+                maxLikelihood = mLikelihoods[i];
+                current = i;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Keeping the five most likely places, as the place cache needs.
+     */
+    @Benchmark
+    public PlaceCandidates topCandidates() {
+        PlaceCandidates.Builder builder = new PlaceCandidates.Builder(5);
+        for (int i = 0; i < bufferSize; i++) {
+            builder.add(mIds[i], mNames[i], mTypes[i], mLikelihoods[i]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int typeToDrawable() {
+        int drawables = 0;
+        for (int i = 0; i < bufferSize; i++) {
+            drawables += PlaceTypeDrawables.forTypes(mTypes[i]);
+        }
+        return drawables;
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.android.walkmyandroid;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a location trace through the lookup pipeline of the app, against fake geocoder and
+ * Places backends, and reports the throughput, the depth of the geocode queue, the cache hit
+ * rates, the lookups refused by the backend protection and the latency of each stage. The
+ * geocode stack and the fix processing are built by {@link LookupPipeline}, like in the app,
+ * with the app's settings; the stack runs on the clock of the trace, so its rate limit is
+ * sped up with the replay. The activity itself needs a device, so this stands in for how it
+ * feeds the fixes to the pipeline. Run with ./gradlew :benchmarks:replay -Ptrace=walk.gpx
+ * -Pspeed=100; without a trace, a synthetic walk around a block is replayed.
+ *
+ * <p>Arguments: [trace.gpx|trace.csv|-] [speed] [geocodeLatencyMillis] [placeLatencyMillis]
+ * [batched] [locales], where locales are language tags such as en-US,fr-FR. The geocoder
+ * latency is on the clock of the trace; the reported stage latencies are in wall clock time.
+ */
+public class ReplayLoadTest {
+
+    private static final double DEFAULT_SPEED = 100;
+    private static final long DEFAULT_GEOCODE_LATENCY_MILLIS = 150;
+    private static final long DEFAULT_PLACE_LATENCY_MILLIS = 300;
+    private static final long QUEUE_SAMPLE_MILLIS = 5;
+    private static final long DRAIN_TIMEOUT_MILLIS = 60 * 1000;
+    private static final String DEFAULT_LOCALES = "en-US,fr-FR";
+
+    public static void main(String[] args) throws Exception {
+        String trace = args.length > 0 ? args[0] : "-";
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SPEED;
+        long geocodeLatency = args.length > 2 ? Long.parseLong(args[2])
+                : DEFAULT_GEOCODE_LATENCY_MILLIS;
+        long placeLatency = args.length > 3 ? Long.parseLong(args[3])
+                : DEFAULT_PLACE_LATENCY_MILLIS;
+        boolean batched = args.length > 4 && Boolean.parseBoolean(args[4]);
+        List<Locale> locales = new ArrayList<>();
+        for (String tag : (args.length > 5 ? args[5] : DEFAULT_LOCALES).split(",")) {
+            locales.add(Locale.forLanguageTag(tag.trim()));
+        }
+
+        List<LocationFix> fixes = "-".equals(trace) ? syntheticWalk() : read(trace);
+        System.out.println("Replaying " + fixes.size() + " fixes from " + trace + " at "
+                + speed + "x" + (batched ? ", batched" : "") + "; geocoder " + geocodeLatency
+                + "ms, places " + placeLatency + "ms, locales " + locales);
+        File stores = createTempDirectory();
+        try {
+            new ReplayLoadTest(fixes, speed, geocodeLatency, placeLatency, batched, locales,
+                    stores).run();
+        } finally {
+            deleteRecursively(stores);
+        }
+    }
+
+    private final TraceReplayer mReplayer;
+    private final boolean mBatched;
+    private final FakeReverseGeocoder mBackend;
+    private final FakePlacesProvider mPlaces;
+    private final LookupPipeline mPipeline;
+    private final AddressCache mAddressCache;
+    private final SingleFlightReverseGeocoder mSingleFlight;
+    private final GeocodeEngine mEngine;
+    private final BatchGeocoder mBatchGeocoder;
+    private final AddressPrefetcher mPrefetcher;
+    private final PlaceCache mPlaceCache;
+    // Stands in for the result thread of the activity
+    private final ExecutorService mResultThread = Executors.newSingleThreadExecutor();
+    private final Object mChannel = new Object();
+
+    // Only touched by the replay thread
+    private final FixSmoother mSmoother = LookupPipeline.newFixSmoother();
+    private final MovementGate mMovementGate = LookupPipeline.newMovementGate();
+    private final LocationSchedulePolicy mSchedulePolicy = new AdaptiveSchedulePolicy();
+    private LocationSchedule mSchedule;
+
+    private final AtomicLong mResultCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private long mQueueSamples;
+    private long mQueueTotal;
+    private int mQueueMax;
+
+    private final LocationSource.Listener mListener = new LocationSource.Listener() {
+        @Override
+        public void onFix(LocationFix rawFix) {
+            LocationFix fix = mSmoother.onFix(rawFix);
+            if (fix == null) {
+                return;
+            }
+            updateSchedule(mSchedulePolicy.onFix(fix));
+            if (mMovementGate.shouldLookup(fix.latitude, fix.longitude, fix.timeMillis)) {
+                mEngine.submit(mChannel, fix.latitude, fix.longitude,
+                        new ResultCallback(fix, System.nanoTime()));
+            }
+            mPrefetcher.onFix(fix);
+        }
+
+        @Override
+        public void onFixes(List<LocationFix> rawFixes) {
+            List<LocationFix> fixes = new ArrayList<>(rawFixes.size());
+            LocationSchedule schedule = mSchedule;
+            for (LocationFix rawFix : rawFixes) {
+                LocationFix fix = mSmoother.onFix(rawFix);
+                if (fix != null) {
+                    fixes.add(fix);
+                    schedule = mSchedulePolicy.onFix(fix);
+                }
+            }
+            if (fixes.isEmpty()) {
+                return;
+            }
+            updateSchedule(schedule);
+            LocationFix latest = fixes.get(fixes.size() - 1);
+            if (mMovementGate.shouldLookup(latest.latitude, latest.longitude,
+                    latest.timeMillis)) {
+                mEngine.submitBatch(mChannel, mBatchGeocoder, fixes,
+                        new ResultCallback(latest, System.nanoTime()));
+            }
+            mPrefetcher.onFix(latest);
+        }
+    };
+
+    /**
+     * @param locales        The user's languages; the first one is current.
+     * @param storeDirectory An empty directory for the address stores.
+     */
+    ReplayLoadTest(List<LocationFix> fixes, double speed, long geocodeLatencyMillis,
+            long placeLatencyMillis, boolean batched, List<Locale> locales,
+            File storeDirectory) {
+        mReplayer = new TraceReplayer(fixes, speed);
+        mBatched = batched;
+        Clock clock = mReplayer.getClock();
+        // One backend answers every locale, like the platform geocoder
+        mBackend = new FakeReverseGeocoder(geocodeLatencyMillis, speed,
+                LookupPipeline.ADDRESS_CELL_SIZE_METERS);
+        mPlaces = new FakePlacesProvider(placeLatencyMillis,
+                LookupPipeline.PLACE_CELL_SIZE_METERS);
+        mPipeline = new LookupPipeline(new GeocoderProvider() {
+            @Override
+            public ReverseGeocoder forLocale(Locale locale) {
+                return mBackend;
+            }
+        }, storeDirectory, locales, clock);
+        mAddressCache = mPipeline.getCachingGeocoder().getCache();
+        mSingleFlight = mPipeline.getSingleFlightGeocoder();
+        mEngine = mPipeline.getEngine();
+        mBatchGeocoder = mPipeline.getBatchGeocoder();
+        mPrefetcher = mPipeline.getPrefetcher();
+        mPlaceCache = LookupPipeline.newPlaceCache(clock);
+    }
+
+    void run() throws InterruptedException {
+        LatencyMetrics.reset();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sampleQueue();
+            }
+        }, 0, QUEUE_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        mSchedulePolicy.reset();
+        mSchedule = mSchedulePolicy.getInitialSchedule();
+        mReplayer.requestUpdates(mSchedule, mBatched, mListener);
+        while (!mReplayer.awaitEnd(DRAIN_TIMEOUT_MILLIS)) {
+            System.out.println("Replaying... " + mReplayer.getDeliveredCount() + " fixes");
+        }
+        long replayNanos = System.nanoTime() - start;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MILLIS);
+        while (!mEngine.isIdle() && System.nanoTime() < deadline) {
+            Thread.sleep(QUEUE_SAMPLE_MILLIS);
+        }
+        mResultThread.shutdown();
+        mResultThread.awaitTermination(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        long totalNanos = System.nanoTime() - start;
+        sampler.shutdownNow();
+        mEngine.shutdown();
+        report(replayNanos, totalNanos);
+    }
+
+    private void updateSchedule(LocationSchedule schedule) {
+        if (!schedule.equals(mSchedule)) {
+            mSchedule = schedule;
+            mReplayer.requestUpdates(schedule, mBatched, mListener);
+        }
+    }
+
+    private synchronized void sampleQueue() {
+        int pending = mEngine.getPendingCount();
+        mQueueSamples++;
+        mQueueTotal += pending;
+        mQueueMax = Math.max(mQueueMax, pending);
+    }
+
+    private synchronized void report(long replayNanos, long totalNanos) {
+        double replaySeconds = replayNanos / 1e9;
+        double totalSeconds = totalNanos / 1e9;
+        System.out.println(String.format("Replay: %.2fs (%.2fs to drain), %d fixes delivered,"
+                        + " %d skipped by the schedule, %.1f fixes/s",
+                replaySeconds, totalSeconds, mReplayer.getDeliveredCount(),
+                mReplayer.getSkippedCount(), mReplayer.getDeliveredCount() / replaySeconds));
+        System.out.println(String.format("Fixes: %d accepted, %d rejected; lookups: %d passed,"
+                        + " %d suppressed by the gate",
+                mSmoother.getAcceptedCount(), mSmoother.getRejectedCount(),
+                mMovementGate.getPassedCount(), mMovementGate.getSuppressedCount()));
+        System.out.println(String.format("Engine: %d submitted, %d superseded, %d shed,"
+                        + " %d results (%d errors), %.1f results/s",
+                mEngine.getSubmittedCount(), mEngine.getSupersededCount(),
+                mEngine.getShedCount(), mResultCount.get(), mErrorCount.get(),
+                mResultCount.get() / totalSeconds));
+        System.out.println(String.format("Queue depth: mean %.2f, max %d over %d samples",
+                mQueueSamples == 0 ? 0.0 : (double) mQueueTotal / mQueueSamples, mQueueMax,
+                mQueueSamples));
+        System.out.println(String.format("Address cache: %s hit rate, %d prefetched, %d of them"
+                        + " used; single flight shared %d of %d calls",
+                rate(mAddressCache.getHitCount(), mAddressCache.getMissCount()),
+                mAddressCache.getPrefetchedCount(), mAddressCache.getPrefetchHitCount(),
+                mSingleFlight.getSharedCount(), mSingleFlight.getCallCount()));
+        System.out.println(String.format("Place cache: %s hit rate",
+                rate(mPlaceCache.getHitCount(), mPlaceCache.getMissCount())));
+        MultiLocaleReverseGeocoder locales = mPipeline.getMultiLocaleGeocoder();
+        System.out.println(String.format("Backends: %d geocoder calls (%d to prefetch, %d over"
+                        + " budget; %d for other locales, %d failed, %d shed), %d place"
+                        + " detections",
+                mBackend.getCallCount(), mPrefetcher.getCallCount(),
+                mPrefetcher.getOverBudgetCount(), locales.getFanOutCallCount(),
+                locales.getFanOutFailureCount(), locales.getFanOutShedCount(),
+                mPlaces.getCallCount()));
+        System.out.println(String.format("Backend protection: %d lookups and %d background"
+                        + " lookups refused by the rate limit or the breaker, %d retries,"
+                        + " breaker opened %d times",
+                mPipeline.getRejectedCount(), mPipeline.getBackgroundRejectedCount(),
+                mPipeline.getRetryCount(), mPipeline.getBreakerOpenCount()));
+        System.out.println(LatencyMetrics.dump());
+    }
+
+    private static String rate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? "n/a" : String.format("%.1f%% (%d/%d)", 100.0 * hits / total, hits,
+                total);
+    }
+
+    private static File createTempDirectory() throws IOException {
+        File directory = File.createTempFile("replay", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        return directory;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static List<LocationFix> read(String path) throws IOException {
+        InputStream in = new FileInputStream(path);
+        return path.toLowerCase().endsWith(".gpx") ? TraceReader.readGpx(in)
+                : TraceReader.readCsv(in);
+    }
+
+    /**
+     * @return Two hours of walking around a block of about 400 by 300 meters, one fix a second.
+     */
+    private static List<LocationFix> syntheticWalk() {
+        double walkSpeed = 1.4;
+        double latitude0 = 37.4220;
+        double longitude0 = -122.0841;
+        double metersPerDegreeLatitude = 111320;
+        double metersPerDegreeLongitude = metersPerDegreeLatitude
+                * Math.cos(Math.toRadians(latitude0));
+        double width = 400;
+        double height = 300;
+        double perimeter = 2 * (width + height);
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int second = 0; second < 2 * 60 * 60; second++) {
+            double along = (second * walkSpeed) % perimeter;
+            double east;
+            double north;
+            if (along < width) {
+                east = along;
+                north = 0;
+            } else if (along < width + height) {
+                east = width;
+                north = along - width;
+            } else if (along < 2 * width + height) {
+                east = width - (along - width - height);
+                north = height;
+            } else {
+                east = 0;
+                north = height - (along - 2 * width - height);
+            }
+            fixes.add(new LocationFix(latitude0 + north / metersPerDegreeLatitude,
+                    longitude0 + east / metersPerDegreeLongitude, second * 1000L, 8,
+                    (float) walkSpeed));
+        }
+        return fixes;
+    }
+
+    /**
+     * Receives the address on a geocode worker, and detects the place on the result thread,
+     * like the activity.
+     */
+    private class ResultCallback implements GeocodeEngine.Callback {
+        private final LocationFix mFix;
+        private final long mStartNanos;
+
+        ResultCallback(LocationFix fix, long startNanos) {
+            mFix = fix;
+            mStartNanos = startNanos;
+        }
+
+        @Override
+        public void onAddressFound(GeoAddress address) {
+            onResult();
+        }
+
+        @Override
+        public void onAddressFailed(Exception error) {
+            mErrorCount.incrementAndGet();
+            onResult();
+        }
+
+        private void onResult() {
+            LatencyMetrics.recordSince(LatencyMetrics.Stage.FIX_TO_ADDRESS, mStartNanos);
+            mResultThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    PlaceCandidates candidates = mPlaceCache.get(mFix.latitude, mFix.longitude);
+                    if (candidates == null) {
+                        PlacesProvider.Detection detection =
+                                mPlaces.detectPlaces(mFix.latitude, mFix.longitude);
+                        if (detection != null && !detection.candidates.isEmpty()) {
+                            mPlaceCache.put(mFix.latitude, mFix.longitude,
+                                    detection.candidates);
+                        }
+                    }
+                    mResultCount.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.android.walkmyandroid;
+
+/**
+ * Stand-in for the generated resource IDs of the app.
+ */
+public final class R {
+
+    private R() {
+    }
+
+    public static final class drawable {
+        public static final int android_gym = 0x7f020000;
+        public static final int android_library = 0x7f020001;
+        public static final int android_plain = 0x7f020002;
+        public static final int android_restaurant = 0x7f020003;
+        public static final int android_school = 0x7f020004;
+
+        private drawable() {
+        }
+    }
+}
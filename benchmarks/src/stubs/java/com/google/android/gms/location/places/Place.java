@@ -0,0 +1,14 @@
+package com.google.android.gms.location.places;
+
+/**
+ * Stand-in for the Places API type, with the type constants of play-services-places 10.2.4.
+ */
+public interface Place {
+    int TYPE_CAFE = 15;
+    int TYPE_GYM = 44;
+    int TYPE_LIBRARY = 55;
+    int TYPE_MEAL_TAKEAWAY = 61;
+    int TYPE_RESTAURANT = 79;
+    int TYPE_SCHOOL = 82;
+    int TYPE_UNIVERSITY = 95;
+}